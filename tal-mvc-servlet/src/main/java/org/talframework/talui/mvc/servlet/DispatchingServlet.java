@@ -16,6 +16,7 @@
 
 package org.talframework.talui.mvc.servlet;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
@@ -30,15 +31,22 @@ import org.springframework.web.context.WebApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 import org.talframework.tal.aspects.annotations.HttpTrace;
 import org.talframework.tal.aspects.annotations.Trace;
-import org.talframework.talui.mvc.config.AppConfig;
+import org.talframework.talui.mvc.model.ModelPrefetcher;
 import org.talframework.talui.mvc.servlet.error.ServletExceptionResolver;
 import org.talframework.talui.mvc.servlet.error.StandardExceptionResolver;
 import org.talframework.talui.mvc.servlet.handlers.ActionRequestHandler;
 import org.talframework.talui.mvc.servlet.handlers.AsyncActionRequestHandler;
 import org.talframework.talui.mvc.servlet.handlers.AsyncRenderRequestHandler;
 import org.talframework.talui.mvc.servlet.handlers.PageRequestHandler;
+import org.talframework.talui.mvc.servlet.handlers.ParallelWindowRenderer;
 import org.talframework.talui.mvc.servlet.handlers.RenderRequestHandler;
+import org.talframework.talui.mvc.servlet.handlers.WindowFingerprinter;
+import org.talframework.talui.mvc.servlet.model.BinaryModelStateCodec;
 import org.talframework.talui.mvc.servlet.model.CookieModelAttributeResolver;
+import org.talframework.talui.mvc.servlet.model.FileModelStateStore;
+import org.talframework.talui.mvc.servlet.model.MemoryModelStateStore;
+import org.talframework.talui.mvc.servlet.model.SessionModelAttributeResolver;
+import org.talframework.talui.mvc.servlet.model.TextModelStateCodec;
 import org.talframework.talui.mvc.servlet.util.RequestAttributeUtils;
 import org.talframework.talui.mvc.servlet.util.ServletUrlGenerator;
 
@@ -65,6 +73,24 @@ import org.talframework.talui.mvc.servlet.util.ServletUrlGenerator;
  * this will cause the servlet to invoke the action on 
  * the given window and then redirect the browser back
  * to the same page or a different one.</p>
+ * 
+ * <p>Setting the prefetchThreads init parameter turns on the
+ * parallel resolution of resolved model attributes for page
+ * and window renders (see {@link ModelPrefetcher}). The
+ * prefetchTimeout parameter (in milliseconds, default 5000)
+ * limits how long a request waits for them.</p>
+ * 
+ * <p>Setting the windowThreads init parameter renders the
+ * windows of a page at the same time as the page (see
+ * {@link ParallelWindowRenderer}). The windowTimeout parameter
+ * (in milliseconds, default 2000) limits how long the page
+ * waits for each window.</p>
+ * 
+ * <p>The simple model attributes are held in cookies using the
+ * original readable format unless the stateKey init parameter is
+ * set to a shared secret (of at least 16 characters), in which
+ * case a signed binary format is used. Setting stateCodec to
+ * binary without a stateKey is an error.</p>
  *  
  * @author Tom Spencer
  */
@@ -73,28 +99,194 @@ public class DispatchingServlet extends HttpServlet {
 	
 	/** Member holds the application config, obtained at startup */
 	protected WebApplicationContext ctx = null;
+	/** Member holds the apps, pages and windows requests are routed to */
+	private RouteTable routes = null;
 	
 	/** Member holds the exception resolver */
 	private ServletExceptionResolver exceptionResolver = null;
 	/** Member holds the request handlers */
 	private Map<String, MVCRequestHandler> handlers = null;
+	/** Member holds the prefetcher for resolved attributes (if prefetchThreads is set) */
+	private ModelPrefetcher prefetcher = null;
+	/** Member holds the parallel window renderer (if windowThreads is set) */
+	private ParallelWindowRenderer windowRenderer = null;
 	
 	@Override
 	public void init(ServletConfig config) throws ServletException {
 		ctx = WebApplicationContextUtils.getRequiredWebApplicationContext(config.getServletContext());
+		routes = new RouteTable(ctx);
 		
 		exceptionResolver = new StandardExceptionResolver();
 		
+		initStateCodec(config);
+		initModelStore(config);
+		
+		PageRequestHandler pageHandler = new PageRequestHandler();
+		RenderRequestHandler renderHandler = new RenderRequestHandler();
+		
+		String threads = config.getInitParameter("prefetchThreads");
+		if( threads != null && threads.trim().length() > 0 ) {
+			String timeout = config.getInitParameter("prefetchTimeout");
+			try {
+				int n = Integer.parseInt(threads.trim());
+				long t = timeout != null ? Long.parseLong(timeout.trim()) : 5000L;
+				if( n > 0 ) prefetcher = new ModelPrefetcher(n, t);
+			}
+			catch( NumberFormatException e ) {
+				throw new ServletException("The prefetchThreads and prefetchTimeout settings must be numeric", e);
+			}
+			
+			pageHandler.setPrefetcher(prefetcher);
+			renderHandler.setPrefetcher(prefetcher);
+		}
+		
+		String windowThreads = config.getInitParameter("windowThreads");
+		if( windowThreads != null && windowThreads.trim().length() > 0 ) {
+			String timeout = config.getInitParameter("windowTimeout");
+			try {
+				int n = Integer.parseInt(windowThreads.trim());
+				long t = timeout != null ? Long.parseLong(timeout.trim()) : 2000L;
+				if( n > 0 ) windowRenderer = new ParallelWindowRenderer(n, t);
+			}
+			catch( NumberFormatException e ) {
+				throw new ServletException("The windowThreads and windowTimeout settings must be numeric", e);
+			}
+			
+			pageHandler.setWindowRenderer(windowRenderer);
+		}
+		
+		AsyncActionRequestHandler asyncActionHandler = new AsyncActionRequestHandler();
+		asyncActionHandler.setRenderHandler(renderHandler);
+		AsyncRenderRequestHandler asyncRenderHandler = new AsyncRenderRequestHandler();
+		
+		WindowFingerprinter fingerprinter = initFingerprinter(config);
+		renderHandler.setFingerprinter(fingerprinter);
+		asyncRenderHandler.setFingerprinter(fingerprinter);
+		
 		handlers = new HashMap<String, MVCRequestHandler>();
 		handlers.put("action", new ActionRequestHandler());
-		handlers.put("page", new PageRequestHandler());
-		handlers.put("render", new RenderRequestHandler());
-		handlers.put("asyncAction", new AsyncActionRequestHandler());
-		handlers.put("asyncRender", new AsyncRenderRequestHandler());
+		handlers.put("page", pageHandler);
+		handlers.put("render", renderHandler);
+		handlers.put("asyncAction", asyncActionHandler);
+		handlers.put("asyncRender", asyncRenderHandler);
 
 		super.init(config);
 	}
 	
+	/**
+	 * Sets up the codec used to hold the model state in cookies
+	 * from the stateCodec (text or binary), stateKey and
+	 * stateCompress init parameters. The binary codec is only
+	 * used when a stateKey is given.
+	 * 
+	 * @param config The servlet config
+	 */
+	private void initStateCodec(ServletConfig config) throws ServletException {
+		String type = config.getInitParameter("stateCodec");
+		String key = config.getInitParameter("stateKey");
+		String compress = config.getInitParameter("stateCompress");
+		
+		if( "text".equals(type) ) {
+			CookieModelAttributeResolver.setDefaultCodec(new TextModelStateCodec());
+		}
+		else if( type == null || "binary".equals(type) ) {
+			if( key == null ) {
+				if( type != null ) throw new ServletException("The binary stateCodec requires a stateKey shared by all servers");
+				CookieModelAttributeResolver.setDefaultCodec(new TextModelStateCodec());
+				return;
+			}
+			
+			boolean deflate = compress == null || Boolean.valueOf(compress).booleanValue();
+			try {
+				CookieModelAttributeResolver.setDefaultCodec(new BinaryModelStateCodec(key.getBytes("UTF-8"), deflate));
+			}
+			catch( IOException e ) {
+				throw new ServletException("Unable to read the stateKey", e);
+			}
+			catch( IllegalArgumentException e ) {
+				throw new ServletException("The stateKey is not valid: " + e.getMessage(), e);
+			}
+		}
+		else {
+			throw new ServletException("The stateCodec must be text or binary: " + type);
+		}
+	}
+	
+	/**
+	 * Creates the fingerprinter for window renders from the
+	 * windowETags (strict or derived) and windowFragments init
+	 * parameters. If windowETags is not set there is none. With
+	 * derived, resolved attributes are assumed to follow from the
+	 * rest of the model, with strict any window with a resolved
+	 * attribute is always rendered.
+	 * 
+	 * @param config The servlet config
+	 * @return The fingerprinter (or null)
+	 */
+	private WindowFingerprinter initFingerprinter(ServletConfig config) throws ServletException {
+		String type = config.getInitParameter("windowETags");
+		if( type == null || type.trim().length() == 0 ) return null;
+		if( !"strict".equals(type) && !"derived".equals(type) ) throw new ServletException("The windowETags must be strict or derived: " + type);
+		
+		String fragments = config.getInitParameter("windowFragments");
+		try {
+			int n = fragments != null ? Integer.parseInt(fragments.trim()) : 0;
+			return new WindowFingerprinter("derived".equals(type), n);
+		}
+		catch( NumberFormatException e ) {
+			throw new ServletException("The windowFragments setting must be numeric", e);
+		}
+	}
+	
+	/**
+	 * Sets up the store the session model state is held in from
+	 * the modelStore (memory or file) and modelStoreDir init
+	 * parameters. If modelStore is not set the state is held
+	 * directly in the session as before.
+	 * 
+	 * @param config The servlet config
+	 */
+	private void initModelStore(ServletConfig config) throws ServletException {
+		String type = config.getInitParameter("modelStore");
+		if( type == null || type.trim().length() == 0 ) return;
+		
+		if( "memory".equals(type) ) {
+			SessionModelAttributeResolver.setDefaultStore(new MemoryModelStateStore());
+		}
+		else if( "file".equals(type) ) {
+			String dir = config.getInitParameter("modelStoreDir");
+			File storeDir = null;
+			if( dir != null ) storeDir = new File(dir);
+			else {
+				File temp = (File)config.getServletContext().getAttribute("javax.servlet.context.tempdir");
+				if( temp == null ) throw new ServletException("The modelStoreDir must be set for a file model store");
+				storeDir = new File(temp, "modelState");
+			}
+			
+			try {
+				SessionModelAttributeResolver.setDefaultStore(new FileModelStateStore(storeDir));
+			}
+			catch( IllegalArgumentException e ) {
+				throw new ServletException("The modelStoreDir is not valid: " + e.getMessage(), e);
+			}
+		}
+		else {
+			throw new ServletException("The modelStore must be memory or file: " + type);
+		}
+	}
+	
+	/**
+	 * Overridden to stop any prefetcher or window renderer
+	 */
+	@Override
+	public void destroy() {
+		if( prefetcher != null ) prefetcher.shutdown();
+		if( windowRenderer != null ) windowRenderer.shutdown();
+		prefetcher = null;
+		windowRenderer = null;
+		super.destroy();
+	}
+	
 	@Override
 	@HttpTrace
 	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
@@ -136,7 +328,7 @@ public class DispatchingServlet extends HttpServlet {
 	 * Internal helper to get the request coordinates. This method
 	 * checks if we are an inner request and the coordinates are 
 	 * already set in the attributes - if so it uses them. Failing
-	 * that it gets the from the path....
+	 * that it gets the from the path using the route table....
 	 * 
 	 * <p><code>appName/requestType/pageName[/windowName[/action]]</code></p>
 	 * 
@@ -163,17 +355,7 @@ public class DispatchingServlet extends HttpServlet {
 			ServletUrlGenerator.getUrlGenerator(req);
 		}
 		
-		String[] pathElements = path.split("/");
-		coords.reset();
-		
-		coords.setApp((AppConfig)ctx.getBean(servlet));
-		if( pathElements.length > 0 ) coords.setRequestType(pathElements[0]);
-		if( pathElements.length > 1 ) coords.setPage(pathElements[1]);
-		if( pathElements.length > 2 ) coords.setWindow(pathElements[2]);
-		if( pathElements.length > 3 ) coords.setAction(pathElements[3]);
-		
-		if( coords.getApp() == null ) throw new InvalidCoordinatesException(servlet, path, "No App found");
-		if( coords.getPage() == null ) throw new InvalidCoordinatesException(servlet, path, "No Page found");
+		routes.route(servlet, path, coords);
 		if( coords.getRequestType() == null ) throw new InvalidCoordinatesException(servlet, path, "No request type found");
 		
 		return coords;
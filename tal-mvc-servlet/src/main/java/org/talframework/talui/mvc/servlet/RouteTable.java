@@ -0,0 +1,170 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.mvc.servlet;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.talframework.talui.mvc.config.AppConfig;
+import org.talframework.talui.mvc.config.PageConfig;
+
+/**
+ * This class holds the apps, pages and windows that the
+ * {@link DispatchingServlet} routes requests to. The apps in
+ * the context are found when the table is created so that
+ * turning a request path into {@link RequestCoordinates} does
+ * not touch the Spring context. The pages and windows are
+ * always found through the app and page themselves, so the
+ * table never holds a copy that can go out of date.
+ * 
+ * <p>An app that was not found up front (i.e. one that is
+ * lazily created) is looked up in the context the first time
+ * it is requested. If the context is refreshed the table is
+ * cleared and built again.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class RouteTable {
+
+	/** The context holding the apps */
+	private final ApplicationContext ctx;
+	/** The apps keyed by the servlet (bean) name */
+	private final ConcurrentMap<String, AppConfig> apps = new ConcurrentHashMap<String, AppConfig>();
+	/** The startup date of the context when the table was built */
+	private volatile long startupDate;
+	
+	/**
+	 * Constructs the table, finding all apps in the context
+	 * 
+	 * @param ctx The context
+	 */
+	public RouteTable(ApplicationContext ctx) {
+		if( ctx == null ) throw new IllegalArgumentException("You must supply the context to the route table");
+		this.ctx = ctx;
+		build();
+	}
+	
+	/**
+	 * Call to fill in the coordinates from the path
+	 * 
+	 * <p><code>requestType/pageName[/windowName[/action]]</code></p>
+	 * 
+	 * @param servlet The servlet path (the name of the app bean)
+	 * @param path The path info
+	 * @param coords The coordinates to fill in (which are reset)
+	 * @throws InvalidCoordinatesException If there is no app or page
+	 * @throws IllegalArgumentException If the page or window is not known
+	 */
+	public void route(String servlet, String path, RequestCoordinates coords) {
+		coords.reset();
+		
+		AppConfig app = getApp(servlet);
+		if( app == null ) throw new InvalidCoordinatesException(servlet, path, "No App found");
+		coords.setApp(app);
+		
+		// Split the path into its elements by hand (no regex)
+		String requestType = null;
+		String page = null;
+		String window = null;
+		String action = null;
+		int ln = path != null ? path.length() : 0;
+		int start = 0;
+		for( int i = 0 ; start < ln && i < 4 ; i++ ) {
+			int end = path.indexOf('/', start);
+			if( end < 0 ) end = ln;
+			
+			String elem = path.substring(start, end);
+			switch( i ) {
+			case 0: requestType = elem; break;
+			case 1: page = elem; break;
+			case 2: window = elem; break;
+			default: action = elem; break;
+			}
+			start = end + 1;
+		}
+		
+		if( requestType == null || page == null ) throw new InvalidCoordinatesException(servlet, path, "No Page found");
+		coords.setRequestType(requestType);
+		
+		PageConfig pageConfig = app.getPage(page);
+		coords.setPage(pageConfig);
+		
+		if( window != null ) coords.setWindow(pageConfig.getWindow(window));
+		if( action != null ) coords.setAction(action);
+	}
+	
+	/**
+	 * Clears and re-populates the table from the context
+	 */
+	@SuppressWarnings("unchecked")
+	public void build() {
+		startupDate = ctx.getStartupDate();
+		apps.clear();
+		
+		Map<String, Object> beans = ctx.getBeansOfType(AppConfig.class);
+		if( beans != null ) {
+			Iterator<String> it = beans.keySet().iterator();
+			while( it.hasNext() ) {
+				String name = it.next();
+				apps.put(name, (AppConfig)beans.get(name));
+			}
+		}
+	}
+	
+	/**
+	 * @return The number of apps in the table
+	 */
+	public int getSize() {
+		return apps.size();
+	}
+	
+	/**
+	 * Helper to get the app, looking it up in the context
+	 * if it is not already held.
+	 * 
+	 * @param servlet The servlet (app bean) name
+	 * @return The app (or null if there is no app)
+	 */
+	private AppConfig getApp(String servlet) {
+		if( servlet == null ) return null;
+		if( ctx.getStartupDate() != startupDate ) build();
+		
+		AppConfig ret = apps.get(servlet);
+		if( ret == null ) {
+			Object bean = null;
+			try {
+				bean = ctx.containsBean(servlet) ? ctx.getBean(servlet) : null;
+			}
+			catch( BeansException e ) {
+				throw new InvalidCoordinatesException(servlet, null, e);
+			}
+			
+			if( bean instanceof AppConfig ) {
+				ret = (AppConfig)bean;
+				AppConfig existing = apps.putIfAbsent(servlet, ret);
+				if( existing != null ) ret = existing;
+			}
+		}
+		
+		return ret;
+	}
+}
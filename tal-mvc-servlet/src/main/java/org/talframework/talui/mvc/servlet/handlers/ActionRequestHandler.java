@@ -97,7 +97,7 @@ public class ActionRequestHandler implements MVCRequestHandler {
 	 * @param event The event
 	 * @param model The current model (app and page layers)
 	 */
-	private Map<String, String> getEventActionParameters(PageEventConfig event, Model model) {
+	private static Map<String, String> getEventActionParameters(PageEventConfig event, Model model) {
 		Map<String, String> ret = null;
 		String[] attrs = event.getModelAttributes();
 		if( attrs != null && attrs.length > 0 ) {
@@ -115,8 +115,15 @@ public class ActionRequestHandler implements MVCRequestHandler {
 		return ret;
 	}
 	
+	/**
+	 * Helper to determine the URL of the page to move to
+	 * given the page event. Also used by the async action
+	 * handler.
+	 * 
+	 * @return The URL to go to
+	 */
 	@Trace
-	private String firePageEvent(RequestCoordinates coords, ModelLayerAttributesResolver resolver, UrlGenerator urlGenerator, PageEventConfig pageEvent) {
+	static String firePageEvent(RequestCoordinates coords, ModelLayerAttributesResolver resolver, UrlGenerator urlGenerator, PageEventConfig pageEvent) {
 	    StandardModel model = new StandardModel(resolver, false);
         model.pushLayer(coords.getApp().getModel());
         model.pushLayer(coords.getPage().getModel());
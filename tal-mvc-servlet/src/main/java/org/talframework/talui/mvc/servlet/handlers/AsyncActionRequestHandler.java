@@ -18,13 +18,20 @@ package org.talframework.talui.mvc.servlet.handlers;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.Map;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
 
 import org.talframework.tal.aspects.annotations.Trace;
+import org.talframework.talui.mvc.config.PageConfig;
 import org.talframework.talui.mvc.config.PageEventConfig;
+import org.talframework.talui.mvc.config.WindowConfig;
 import org.talframework.talui.mvc.input.InputModel;
 import org.talframework.talui.mvc.input.WebInputModel;
 import org.talframework.talui.mvc.model.StandardModel;
@@ -32,20 +39,37 @@ import org.talframework.talui.mvc.process.ActionProcessor;
 import org.talframework.talui.mvc.process.ModelLayerAttributesResolver;
 import org.talframework.talui.mvc.servlet.MVCRequestHandler;
 import org.talframework.talui.mvc.servlet.RequestCoordinates;
+import org.talframework.talui.mvc.servlet.util.RequestAttributeUtils;
+import org.talframework.talui.mvc.servlet.util.ServletUrlGenerator;
+import org.talframework.talui.util.htmlhelper.JsonCharStripper;
 
 /**
  * This handler handles async action requests. These are 
  * initiated by the browser, but the browser itself stays
- * on the same page. The return from here should be a list
- * of windows in the current page that have had an event
- * fired into them together with the page url if we are
- * to move to a different page. The return should be a 
- * JSON file.
+ * on the same page. The return is a JSON object holding the
+ * rendered HTML of each window in the page that the action,
+ * or any event fired from it, was processed on. If a page
+ * event means we are to move to a different page then the
+ * URL of that page is returned instead:
+ * 
+ * <pre>
+ * {"windows":[{"name":"w1","namespace":"ns1","html":"..."}]}
+ * {"page":"url"}
+ * </pre>
+ * 
+ * <p>Each window is rendered with the render handler (so a 
+ * prefetcher is used if set) and written out as soon as it
+ * is rendered. The windows are rendered without the action
+ * parameters, as they would be when the page is re-rendered
+ * after a normal action.</p>
  * 
  * @author Tom Spencer
  */
 public class AsyncActionRequestHandler implements MVCRequestHandler {
 	
+	/** The handler used to render each affected window */
+	private RenderRequestHandler renderHandler = new RenderRequestHandler();
+	
 	/**
 	 * Always returns true
 	 */
@@ -63,63 +87,142 @@ public class AsyncActionRequestHandler implements MVCRequestHandler {
 	
 	/**
 	 * Internal method to handle a doGet or a doPost. This
-	 * method determines the page, window and action that has
-	 * been invoked and passes on to the performAction method.
+	 * method processes the action and then renders each of
+	 * the affected windows into the response.
 	 */
 	@SuppressWarnings("unchecked")
 	@Trace
 	public void handleRequest(HttpServletRequest req, HttpServletResponse resp, ModelLayerAttributesResolver resolver, RequestCoordinates coords) throws ServletException, IOException {
-		//String forward = null; // The page to redirect to
-		
 		InputModel input = new WebInputModel(req.getParameterMap());
 			
 		ActionProcessor proc = new ActionProcessor(coords.getApp(), coords.getPage(), resolver);
 		PageEventConfig pageEvent = proc.processAction(input, coords.getWindow(), coords.getAction());
-			
+		
+		resp.setContentType("text/json");
+		resp.setHeader("Cache-Control", "no-cache");
+		
 		if( pageEvent != null ) {
-			StandardModel model = new StandardModel(resolver, false);
-			model.pushLayer(coords.getApp().getModel());
-			model.pushLayer(coords.getPage().getModel());
+			String forward = ActionRequestHandler.firePageEvent(coords, resolver, ServletUrlGenerator.getUrlGenerator(req), pageEvent);
 			
-			// UrlGenerator urlGenerator = ServletUrlGenerator.getUrlGenerator(req, coords);
-			// Determine page to go to and url - see ActionRequestHandler
+			Writer writer = resp.getWriter();
+			writer.write("{\"page\":\"");
+			if( forward != null ) JsonCharStripper.escape(forward, writer);
+			writer.write("\"}");
+			return;
 		}
 		
-		// Write out the output
-		resp.setContentType("text/json");
-		Writer writer = resp.getWriter();
-		writer.write("{ windows : [");
-		// The windows that had an event
-		writer.write("\"menuWindow\"");
-		// URL if page re-direct
-		writer.write("] }");
-		
-		//resp.setStatus(HttpServletResponse.SC_OK);
+		renderWindows(req, resp, resolver, coords, proc.getAffectedWindows());
 	}
 	
 	/**
-	 * Private helper to form a map of model attributes to
-	 * be passed to action on another page given the list
-	 * of model attributes to copy in the PageEvent config.
+	 * Renders each window in turn, writing it out to the
+	 * response once rendered.
 	 * 
-	 * @param event The event
-	 * @param model The current model (app and page layers)
+	 * @param req The request
+	 * @param resp The response
+	 * @param resolver The resolver (which holds the model after the action)
+	 * @param coords The coordinates of the action
+	 * @param windows The names of the windows to render
 	 */
-	/*private Map<String, String> getEventActionParameters(PageEventConfig event, Model model) {
-		Map<String, String> ret = null;
-		String[] attrs = event.getModelAttributes();
-		if( attrs != null && attrs.length > 0 ) {
-			ret = new HashMap<String, String>();
-			for( int i = 0 ; i < attrs.length ; i++ ) {
-				String k = attrs[i];
-				Object v = model.getAttribute(k);
+	@Trace
+	private void renderWindows(HttpServletRequest req, HttpServletResponse resp, ModelLayerAttributesResolver resolver, RequestCoordinates coords, Iterable<String> windows) throws ServletException, IOException {
+		PageConfig page = coords.getPage();
+		
+		// The render is read-only, any change is temporary
+		resolver.setSaveMode(false);
+		StandardModel model = new StandardModel(resolver, false);
+		model.pushLayer(coords.getApp().getModel());
+		model.pushLayer(page.getModel());
+		
+		RequestAttributeUtils.saveModel(req, model);
+		RequestAttributeUtils.saveCurrentApp(req, coords.getApp());
+		RequestAttributeUtils.saveCurrentPage(req, page);
+		
+		HttpServletRequest renderReq = new NoParameterRequest(req);
+		CapturingResponse capture = new CapturingResponse(resp);
+		Writer writer = resp.getWriter();
+		try {
+			writer.write("{\"windows\":[");
+			
+			boolean first = true;
+			Iterator<String> it = windows.iterator();
+			while( it.hasNext() ) {
+				WindowConfig window = page.getWindow(it.next());
+				
+				capture.reset();
+				RequestCoordinates windowCoords = new RequestCoordinates("render", coords.getApp(), page, window, null);
+				renderHandler.handleRequest(renderReq, capture, resolver, windowCoords);
 				
-				if( v != null ) ret.put(k, v.toString());
+				if( !first ) writer.write(',');
+				writer.write("{\"name\":\"");
+				JsonCharStripper.escape(window.getName(), writer);
+				writer.write("\",\"namespace\":\"");
+				JsonCharStripper.escape(window.getNamespace(), writer);
+				writer.write("\",\"html\":\"");
+				JsonCharStripper.escape(capture.getContent(), writer);
+				writer.write("\"}");
+				writer.flush();
+				first = false;
 			}
 			
-			if( ret.size() == 0 ) ret = null;
+			writer.write("]}");
+		}
+		finally {
+			RequestAttributeUtils.clearCurrentPage(req);
+			RequestAttributeUtils.clearCurrentApp(req);
+			RequestAttributeUtils.clearModel(req);
+			model.popLayer(page.getModel());
+			model.popLayer(coords.getApp().getModel());
 		}
+	}
+	
+	/**
+	 * @return the renderHandler
+	 */
+	public RenderRequestHandler getRenderHandler() {
+		return renderHandler;
+	}
+
+	/**
+	 * @param renderHandler the renderHandler to set
+	 */
+	public void setRenderHandler(RenderRequestHandler renderHandler) {
+		if( renderHandler == null ) throw new IllegalArgumentException("You must supply a render handler to the async action handler");
+		this.renderHandler = renderHandler;
+	}
+	
+	/**
+	 * Wraps the request hiding the action parameters from
+	 * the window renders.
+	 *
+	 * @author Tom Spencer
+	 */
+	private static final class NoParameterRequest extends HttpServletRequestWrapper {
 		
-		return ret;
-	}*/
+		public NoParameterRequest(HttpServletRequest request) {
+			super(request);
+		}
+		
+		@Override
+		public String getParameter(String name) {
+			return null;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public Map getParameterMap() {
+			return Collections.EMPTY_MAP;
+		}
+		
+		@SuppressWarnings("unchecked")
+		@Override
+		public Enumeration getParameterNames() {
+			return Collections.enumeration(Collections.EMPTY_LIST);
+		}
+		
+		@Override
+		public String[] getParameterValues(String name) {
+			return null;
+		}
+	}
 }
@@ -17,9 +17,6 @@
 package org.talframework.talui.mvc.servlet.handlers;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Enumeration;
-import java.util.Iterator;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
@@ -28,19 +25,20 @@ import javax.servlet.http.HttpServletResponse;
 import org.talframework.tal.aspects.annotations.Trace;
 import org.talframework.talui.mvc.View;
 import org.talframework.talui.mvc.config.WindowConfig;
-import org.talframework.talui.mvc.model.ModelAttribute;
 import org.talframework.talui.mvc.model.StandardModel;
 import org.talframework.talui.mvc.process.ModelLayerAttributesResolver;
-import org.talframework.talui.mvc.render.BasicRenderModel;
 import org.talframework.talui.mvc.servlet.RequestCoordinates;
 import org.talframework.talui.mvc.servlet.util.RequestAttributeUtils;
-import org.talframework.talui.template.core.TemplateConfigurationLocator;
 
 /**
  * This handler will render a window for an async request,
  * i.e. it has been initiated by the browser and is not part
  * of a full page render request.
  * 
+ * <p>If a {@link WindowFingerprinter} is set the ETag of the
+ * window is sent and a request whose If-None-Match matches it
+ * is answered with a 304 without rendering.</p>
+ * 
  * @author Tom Spencer
  */
 public class AsyncRenderRequestHandler extends RenderRequestHandler {
@@ -66,7 +64,6 @@ public class AsyncRenderRequestHandler extends RenderRequestHandler {
 	 * Obtains the view and passes to its prepareRender method.
 	 * If this returns a template then the template is included.
 	 */
-	@SuppressWarnings("unchecked")
 	@Trace
 	public void handleRequest(HttpServletRequest req, HttpServletResponse resp, ModelLayerAttributesResolver resolver, RequestCoordinates coords) throws ServletException, IOException {
 		StandardModel model = new StandardModel(resolver, false);
@@ -85,62 +82,24 @@ public class AsyncRenderRequestHandler extends RenderRequestHandler {
 		model.pushLayer(view.getModel());
 		
 		// Update the model with any parameters in request if they are valid
-		Enumeration e = req.getParameterNames();
-		if( e != null ) {
-			while( e.hasMoreElements() ) {
-				String attr = (String)e.nextElement();
-				if( model.containsKey(attr) ) {
-					String val = req.getParameter(attr);
-					if( val != null && val.length() != 0 ) model.setAttribute(attr, val);
-				}
-			}
-		}
-		
-		// Output a hidden form with windows configuration
-		outputWindowModelForm(req, resp, coords.getApp(), coords.getPage(), window, window.getWindow(), model);
+		applyRequestParameters(req, model);
 		
-		BasicRenderModel renderModel = new BasicRenderModel();
-		view.prepareRender(renderModel, model);
-		
-		// Add on any auto attributes to model
-		if( window.getModel() != null ) {
-			Collection<ModelAttribute> attrs = window.getModel().getAttributes();
-			if( attrs != null ) {
-				Iterator<ModelAttribute> it = attrs.iterator();
-				while( it.hasNext() ) {
-					ModelAttribute attr = it.next();
-					if( attr.isAutoRenderAttribute() ) {
-						Object val = model.getAttribute(attr.getName());
-						if( val != null ) renderModel.setAttribute(attr.getName(), val);
-					}
-				}
+		// Answer a conditional request before any template work
+		String etag = getFingerprinter() != null ? getFingerprinter().getETag(coords, view, model, req.getLocale(), req.getUserPrincipal()) : null;
+		if( etag != null ) {
+			resp.setHeader("ETag", etag);
+			resp.setHeader("Cache-Control", "private, no-cache");
+			if( WindowFingerprinter.matches(req.getHeader("If-None-Match"), etag) ) {
+				resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+				return;
 			}
 		}
+		if( writeHeldFragment(resp, etag) ) return;
 		
-		if( renderModel.getAttributes() != null ) RequestAttributeUtils.saveRenderModel(req, renderModel.getAttributes());
-
-		dispatchView(req, resp, renderModel);
+		if( getPrefetcher() != null ) getPrefetcher().prefetch(model);
 		
-		// No point clearing up request as its an async render we know we end here!
-	}
-
-	/**
-	 * Resolves and dispatches the view. Initially this is hard coded
-	 * to support JSPs and treat all others a Web Templates
-	 * 
-	 * @param req
-	 * @param resp
-	 * @param model
-	 */
-	@Trace
-	private void dispatchView(HttpServletRequest req, HttpServletResponse resp, BasicRenderModel model) throws IOException, ServletException {
-		String template = model.getTemplate();
+		renderWindow(req, resp, coords, view, model, etag);
 		
-		// See if its a template
-		if( TemplateConfigurationLocator.getInstance().getTemplate(template) != null ) {
-			template = "/template/" + template + ".html"; 
-		}
-		
-		req.getRequestDispatcher(template).include(req, resp);
+		// No point clearing up request as its an async render we know we end here!
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.mvc.servlet.handlers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+/**
+ * This class wraps the response so that anything included
+ * into it is captured rather than written out. It is used to
+ * render a window into a string that is then written as part
+ * of a larger response. Both the writer and the output stream
+ * are captured, bytes are decoded using the response character
+ * encoding.
+ * 
+ * <p>The class can be reused for several includes by calling
+ * {@link #reset()} between them.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class CapturingResponse extends HttpServletResponseWrapper {
+	
+	/** Holds the characters written */
+	private final StringWriter chars = new StringWriter();
+	/** The writer over chars */
+	private final PrintWriter writer = new PrintWriter(chars);
+	/** Holds any bytes written (created when first needed) */
+	private ByteArrayOutputStream bytes = null;
+	/** The stream over bytes (created when first needed) */
+	private ServletOutputStream stream = null;
+	
+	public CapturingResponse(HttpServletResponse response) {
+		super(response);
+	}
+	
+	/**
+	 * @return The writer that captures the output
+	 */
+	@Override
+	public PrintWriter getWriter() throws IOException {
+		return writer;
+	}
+	
+	/**
+	 * @return The stream that captures the output
+	 */
+	@Override
+	public ServletOutputStream getOutputStream() throws IOException {
+		if( stream == null ) {
+			bytes = new ByteArrayOutputStream();
+			stream = new ServletOutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					bytes.write(b);
+				}
+				
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					bytes.write(b, off, len);
+				}
+			};
+		}
+		return stream;
+	}
+	
+	/**
+	 * Only flushes the captured writer, nothing is sent
+	 */
+	@Override
+	public void flushBuffer() throws IOException {
+		writer.flush();
+	}
+	
+	/**
+	 * @return The output captured since created or last reset
+	 */
+	public String getContent() throws IOException {
+		writer.flush();
+		if( bytes == null || bytes.size() == 0 ) return chars.toString();
+		
+		String encoding = getCharacterEncoding();
+		return chars.toString() + bytes.toString(encoding != null ? encoding : "ISO-8859-1");
+	}
+	
+	/**
+	 * Clears any captured output
+	 */
+	@Override
+	public void reset() {
+		writer.flush();
+		chars.getBuffer().setLength(0);
+		if( bytes != null ) bytes.reset();
+	}
+	
+	/**
+	 * Clears any captured output
+	 */
+	@Override
+	public void resetBuffer() {
+		reset();
+	}
+}
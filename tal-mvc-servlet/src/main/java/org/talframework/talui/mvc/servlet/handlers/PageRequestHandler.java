@@ -17,17 +17,25 @@
 package org.talframework.talui.mvc.servlet.handlers;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.talframework.tal.aspects.annotations.Trace;
+import org.talframework.talui.mvc.View;
+import org.talframework.talui.mvc.config.PageConfig;
+import org.talframework.talui.mvc.config.WindowConfig;
+import org.talframework.talui.mvc.model.ModelPrefetcher;
 import org.talframework.talui.mvc.model.StandardModel;
 import org.talframework.talui.mvc.process.ModelLayerAttributesResolver;
 import org.talframework.talui.mvc.servlet.MVCRequestHandler;
 import org.talframework.talui.mvc.servlet.RequestCoordinates;
+import org.talframework.talui.mvc.servlet.handlers.ParallelWindowRenderer.WindowRenders;
 import org.talframework.talui.mvc.servlet.model.CookieModelAttributeResolver;
 import org.talframework.talui.mvc.servlet.util.RequestAttributeUtils;
 
@@ -35,10 +43,22 @@ import org.talframework.talui.mvc.servlet.util.RequestAttributeUtils;
  * This class aids the dispatching servlet to render
  * an entire page.
  * 
+ * <p>If a {@link ModelPrefetcher} is set then the resolved
+ * attributes of the app and page, and of the windows of the page
+ * and their current views, are obtained together before the page
+ * template is rendered. If a {@link ParallelWindowRenderer}
+ * is set then the windows of the page are rendered at the same
+ * time as the page template.</p>
+ * 
  * @author Tom Spencer
  */
 public class PageRequestHandler implements MVCRequestHandler {
 	
+	/** The prefetcher used to resolve attributes in parallel (if any) */
+	private ModelPrefetcher prefetcher = null;
+	/** The renderer used to render the windows in parallel (if any) */
+	private ParallelWindowRenderer windowRenderer = null;
+	
 	/**
 	 * Always returns false
 	 */
@@ -55,10 +75,10 @@ public class PageRequestHandler implements MVCRequestHandler {
 	/**
 	 * Simply forwards request to the page template
 	 */
-	@SuppressWarnings("unchecked")
 	@Trace
 	public void handleRequest(HttpServletRequest req, HttpServletResponse resp, ModelLayerAttributesResolver resolver, RequestCoordinates coords) throws ServletException, IOException {
 		StandardModel model = null;
+		WindowRenders renders = null;
 		
 		try {
 			model = new StandardModel(new CookieModelAttributeResolver(req, resp), true);
@@ -70,25 +90,108 @@ public class PageRequestHandler implements MVCRequestHandler {
 			RequestAttributeUtils.saveCurrentPage(req, coords.getPage());
 			
 			// Update the model with any parameters in request if they are valid
-			Enumeration e = req.getParameterNames();
-			if( e != null ) {
-				while( e.hasMoreElements() ) {
-					String attr = (String)e.nextElement();
-					if( model.containsKey(attr) ) {
-						String val = req.getParameter(attr);
-						if( val != null && val.length() != 0 ) model.setAttribute(attr, val);
-					}
-				}
-			}
+			applyRequestParameters(req, model);
+			
+			// Resolve the page and window attributes together
+			if( prefetcher != null ) prefetcher.prefetch(model, getWindowModels(req, coords, model));
+			
+			// Start the windows off
+			if( windowRenderer != null ) renders = windowRenderer.start(req, coords, model);
 			
 			String template = coords.getPage().getTemplate();
 			req.getRequestDispatcher(template).forward(req, resp);
 		}
 		finally {
+			if( renders != null ) {
+				renders.cancel();
+				RequestAttributeUtils.clearWindowRenders(req);
+			}
+			
 			if( model != null ) {
 				model.popLayer(coords.getPage().getModel());
 				model.popLayer(coords.getApp().getModel());
 			}
 		}
 	}
+	
+	/**
+	 * Helper to get a copy of the page model for each window in
+	 * the page with the window and its current view pushed, so
+	 * their attributes can be prefetched with those of the page.
+	 * Windows the page renders asynchronously are left out.
+	 * 
+	 * @param req The request
+	 * @param coords The coordinates of the page
+	 * @param model The page model
+	 * @return The window models (never null)
+	 */
+	private List<StandardModel> getWindowModels(HttpServletRequest req, RequestCoordinates coords, StandardModel model) {
+		List<StandardModel> ret = new ArrayList<StandardModel>();
+		PageConfig page = coords.getPage();
+		if( page.getWindows() == null ) return ret;
+		
+		Iterator<WindowConfig> it = page.getWindows().iterator();
+		while( it.hasNext() ) {
+			WindowConfig window = it.next();
+			if( windowRenderer != null && windowRenderer.isAsync(coords.getApp(), page, window) ) continue;
+			
+			StandardModel windowModel = model.copy(false);
+			windowModel.pushLayer(window.getModel());
+			View view = window.getWindow().getCurrentState(windowModel);
+			windowModel.pushLayer(view.getModel());
+			applyRequestParameters(req, windowModel);
+			ret.add(windowModel);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper to update the model with any parameters in the 
+	 * request that are attributes in the model.
+	 * 
+	 * @param req The request
+	 * @param model The model
+	 */
+	@SuppressWarnings("unchecked")
+	private void applyRequestParameters(HttpServletRequest req, StandardModel model) {
+		Enumeration e = req.getParameterNames();
+		if( e != null ) {
+			while( e.hasMoreElements() ) {
+				String attr = (String)e.nextElement();
+				if( model.containsKey(attr) ) {
+					String val = req.getParameter(attr);
+					if( val != null && val.length() != 0 ) model.setAttribute(attr, val);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the prefetcher
+	 */
+	public ModelPrefetcher getPrefetcher() {
+		return prefetcher;
+	}
+
+	/**
+	 * @param prefetcher the prefetcher to set
+	 */
+	public void setPrefetcher(ModelPrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+	
+	/**
+	 * @return the windowRenderer
+	 */
+	public ParallelWindowRenderer getWindowRenderer() {
+		return windowRenderer;
+	}
+
+	/**
+	 * @param windowRenderer the windowRenderer to set
+	 */
+	public void setWindowRenderer(ParallelWindowRenderer windowRenderer) {
+		this.windowRenderer = windowRenderer;
+	}
 }
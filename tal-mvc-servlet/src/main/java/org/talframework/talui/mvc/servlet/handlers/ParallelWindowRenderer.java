@@ -0,0 +1,320 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.servlet.handlers;
+
+import java.io.StringWriter;
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.talframework.talui.mvc.View;
+import org.talframework.talui.mvc.Window;
+import org.talframework.talui.mvc.config.AppConfig;
+import org.talframework.talui.mvc.config.PageConfig;
+import org.talframework.talui.mvc.config.WindowConfig;
+import org.talframework.talui.mvc.model.StandardModel;
+import org.talframework.talui.mvc.render.BasicRenderModel;
+import org.talframework.talui.mvc.servlet.RequestCoordinates;
+import org.talframework.talui.mvc.servlet.UrlGenerator;
+import org.talframework.talui.mvc.servlet.util.RequestAttributeUtils;
+import org.talframework.talui.mvc.servlet.util.ServletUrlGenerator;
+import org.talframework.talui.template.Renderer;
+import org.talframework.talui.template.TemplateConfiguration;
+import org.talframework.talui.template.core.TemplateConfigurationLocator;
+import org.talframework.talui.template.render.SimpleRenderModel;
+import org.talframework.talui.template.servlet.WebTemplateServlet;
+
+/**
+ * This class renders all of the windows of a page at the same
+ * time, each into its own buffer, while the page template is
+ * rendered. The {@link org.talframework.talui.mvc.servlet.tag.WindowTag}
+ * then writes out the buffer for the window when the page reaches
+ * it rather than including the window render.
+ * 
+ * <p>Each window is given its own copy of the page model and its
+ * layers and view are determined on the request thread (so the 
+ * request is never used by the render threads). The view is then
+ * prepared and, if it is a Web Template, rendered on a render 
+ * thread. Windows whose view is not a Web Template are left to 
+ * be included as normal. If a window does not complete within
+ * the timeout (from when the page asks for it) it is left for 
+ * the browser to fill in with an asyncRender.</p>
+ * 
+ * <p>Windows that the page renders asynchronously (initialAsync)
+ * are not needed. The window tag tells the renders when it meets
+ * one, the render is cancelled and the window is not rendered on
+ * later requests for the page.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class ParallelWindowRenderer {
+	
+	/** The executor that renders the windows */
+	private final ExecutorService executor;
+	/** The maximum time (in milliseconds) to wait for each window */
+	private final long timeout;
+	/** The handler used to write out the window */
+	private final RenderRequestHandler handler = new RenderRequestHandler();
+	/** The windows (by app, page and window) the page renders asynchronously */
+	private final ConcurrentMap<String, Boolean> asyncWindows = new ConcurrentHashMap<String, Boolean>();
+	
+	/**
+	 * Constructs the renderer with its own pool of threads
+	 * 
+	 * @param threads The maximum number of windows to render at once
+	 * @param timeout The maximum time (in milliseconds) to wait for a window
+	 */
+	public ParallelWindowRenderer(int threads, long timeout) {
+		if( threads < 1 ) throw new IllegalArgumentException("The window renderer requires at least 1 thread");
+		if( timeout < 1 ) throw new IllegalArgumentException("The window renderer requires a positive timeout");
+		
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new RenderThreadFactory());
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Starts rendering each window in the page. The renders are
+	 * saved in the request for the window tags to pick up.
+	 * 
+	 * @param req The request
+	 * @param coords The request coordinates
+	 * @param model The page model (with the app and page layers)
+	 * @return The renders (which should be cancelled once the page is rendered)
+	 */
+	public WindowRenders start(HttpServletRequest req, RequestCoordinates coords, StandardModel model) {
+		AppConfig app = coords.getApp();
+		PageConfig page = coords.getPage();
+		WindowRenders ret = new WindowRenders(this, app.getName() + '|' + page.getName() + '|');
+		if( page.getWindows() == null ) return ret;
+		
+		UrlGenerator urlGenerator = ServletUrlGenerator.getUrlGenerator(req);
+		Locale locale = req.getLocale();
+		Principal user = req.getUserPrincipal();
+		
+		Iterator<WindowConfig> it = page.getWindows().iterator();
+		while( it.hasNext() ) {
+			WindowConfig window = it.next();
+			if( asyncWindows.containsKey(ret.prefix + window.getName()) ) continue;
+			
+			// Set up the window model on this thread
+			StandardModel windowModel = model.copy(false);
+			windowModel.pushLayer(window.getModel());
+			Window w = window.getWindow();
+			View view = w.getCurrentState(windowModel);
+			windowModel.pushLayer(view.getModel());
+			handler.applyRequestParameters(req, windowModel);
+			windowModel.loadLayers();
+			
+			WindowRender render = new WindowRender(app, page, window, w, view, windowModel, urlGenerator, locale, user);
+			ret.add(window.getName(), executor.submit(render));
+		}
+		
+		RequestAttributeUtils.saveWindowRenders(req, ret);
+		return ret;
+	}
+	
+	/**
+	 * @param app The app
+	 * @param page The page
+	 * @param window The window
+	 * @return True if the page renders the window asynchronously
+	 */
+	public boolean isAsync(AppConfig app, PageConfig page, WindowConfig window) {
+		return asyncWindows.containsKey(app.getName() + '|' + page.getName() + '|' + window.getName());
+	}
+	
+	/**
+	 * Call to stop the renderer, typically when the
+	 * application is shutting down.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Holds the renders of the windows for a single page request
+	 * 
+	 * @author Tom Spencer
+	 */
+	public static final class WindowRenders {
+		/** The renderer that started the renders */
+		private final ParallelWindowRenderer renderer;
+		/** The prefix (app and page) for the windows */
+		private final String prefix;
+		/** The render of each window */
+		private final Map<String, Future<String>> renders = new HashMap<String, Future<String>>();
+		/** The windows that did not complete in time */
+		private final Map<String, Boolean> deferred = new HashMap<String, Boolean>();
+		
+		private WindowRenders(ParallelWindowRenderer renderer, String prefix) {
+			this.renderer = renderer;
+			this.prefix = prefix;
+		}
+		
+		private void add(String window, Future<String> render) {
+			renders.put(window, render);
+		}
+		
+		/**
+		 * Call to get the content of the window, waiting for
+		 * it up to the timeout.
+		 * 
+		 * @param window The name of the window
+		 * @return The content or null if it has not been rendered
+		 */
+		public String getContent(String window) {
+			Future<String> render = renders.remove(window);
+			if( render == null ) return null;
+			
+			try {
+				return render.get(renderer.timeout, TimeUnit.MILLISECONDS);
+			}
+			catch( TimeoutException e ) {
+				render.cancel(true);
+				deferred.put(window, Boolean.TRUE);
+				return null;
+			}
+			catch( ExecutionException e ) {
+				// Will be included, and so fail, as normal
+				return null;
+			}
+			catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				render.cancel(true);
+				return null;
+			}
+		}
+		
+		/**
+		 * Call when the page renders the window asynchronously.
+		 * Its render is cancelled and it is not rendered on 
+		 * later requests for the page.
+		 * 
+		 * @param window The name of the window
+		 */
+		public void skip(String window) {
+			renderer.asyncWindows.put(prefix + window, Boolean.TRUE);
+			
+			Future<String> render = renders.remove(window);
+			if( render != null ) render.cancel(true);
+		}
+		
+		/**
+		 * @param window The name of the window
+		 * @return True if the window did not render in time
+		 */
+		public boolean isDeferred(String window) {
+			return deferred.containsKey(window);
+		}
+		
+		/**
+		 * Cancels any renders that have not been used
+		 */
+		public void cancel() {
+			Iterator<Future<String>> it = renders.values().iterator();
+			while( it.hasNext() ) {
+				it.next().cancel(true);
+			}
+			renders.clear();
+		}
+	}
+	
+	/**
+	 * Renders a single window to a string, returning null if
+	 * its view is not a Web Template.
+	 * 
+	 * @author Tom Spencer
+	 */
+	private final class WindowRender implements Callable<String> {
+		private final AppConfig app;
+		private final PageConfig page;
+		private final WindowConfig config;
+		private final Window window;
+		private final View view;
+		private final StandardModel model;
+		private final UrlGenerator urlGenerator;
+		private final Locale locale;
+		private final Principal user;
+		
+		public WindowRender(AppConfig app, PageConfig page, WindowConfig config, Window window, View view, StandardModel model, UrlGenerator urlGenerator, Locale locale, Principal user) {
+			this.app = app;
+			this.page = page;
+			this.config = config;
+			this.window = window;
+			this.view = view;
+			this.model = model;
+			this.urlGenerator = urlGenerator;
+			this.locale = locale;
+			this.user = user;
+		}
+		
+		public String call() throws Exception {
+			try {
+				StringWriter writer = new StringWriter();
+				handler.outputWindowModelForm(writer, urlGenerator, app, page, config, window, model);
+				
+				BasicRenderModel renderModel = new BasicRenderModel();
+				view.prepareRender(renderModel, model);
+				handler.addAutoRenderAttributes(config, model, renderModel);
+				
+				String template = renderModel.getTemplate();
+				TemplateConfiguration templateConfig = template != null ? TemplateConfigurationLocator.getInstance().getTemplate(template) : null;
+				if( templateConfig == null || !templateConfig.hasRenderer("html") ) return null;
+				
+				Renderer renderer = templateConfig.getRenderer("html");
+				SimpleRenderModel templateModel = WebTemplateServlet.createRenderModel(writer, urlGenerator, templateConfig, renderer, config.getNamespace(), locale, user, renderModel.getAttributes());
+				renderer.render(templateModel);
+				return writer.toString();
+			}
+			finally {
+				model.popLayer(view.getModel());
+				model.popLayer(config.getModel());
+			}
+		}
+	}
+	
+	/**
+	 * Creates daemon threads for the renderer
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class RenderThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		
+		public Thread newThread(Runnable r) {
+			Thread ret = new Thread(r, "WindowRenderer-" + count.incrementAndGet());
+			ret.setDaemon(true);
+			return ret;
+		}
+	}
+}
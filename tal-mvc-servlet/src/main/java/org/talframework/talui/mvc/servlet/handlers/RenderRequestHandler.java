@@ -34,6 +34,7 @@ import org.talframework.talui.mvc.config.PageConfig;
 import org.talframework.talui.mvc.config.WindowConfig;
 import org.talframework.talui.mvc.model.ModelAttribute;
 import org.talframework.talui.mvc.model.ModelConfiguration;
+import org.talframework.talui.mvc.model.ModelPrefetcher;
 import org.talframework.talui.mvc.model.StandardModel;
 import org.talframework.talui.mvc.process.ModelLayerAttributesResolver;
 import org.talframework.talui.mvc.render.BasicRenderModel;
@@ -52,10 +53,24 @@ import org.talframework.talui.util.htmlhelper.HtmlConstants;
  * window and rendering it or dispatching the request
  * to the views template.
  * 
+ * <p>If a {@link ModelPrefetcher} is set then the resolved
+ * attributes of the window and its view are obtained together
+ * before the view is rendered.</p>
+ * 
+ * <p>If a {@link WindowFingerprinter} holding fragments is set
+ * then the ETag of the window is formed before any template
+ * work and, if a fragment is held for it, that is written out
+ * instead of rendering the window.</p>
+ * 
  * @author Tom Spencer
  */
 public class RenderRequestHandler implements MVCRequestHandler {
 	
+	/** The prefetcher used to resolve attributes in parallel (if any) */
+	private ModelPrefetcher prefetcher = null;
+	/** The fingerprinter used to form ETags and hold fragments (if any) */
+	private WindowFingerprinter fingerprinter = null;
+	
 	/**
 	 * Always returns false
 	 */
@@ -80,7 +95,6 @@ public class RenderRequestHandler implements MVCRequestHandler {
 	 * Obtains the view and passes to its prepareRender method.
 	 * If this returns a template then the template is included.
 	 */
-	@SuppressWarnings("unchecked")
 	@Trace
 	public void handleRequest(HttpServletRequest req, HttpServletResponse resp, ModelLayerAttributesResolver resolver, RequestCoordinates coords) throws ServletException, IOException {
 		StandardModel model = null;
@@ -99,42 +113,16 @@ public class RenderRequestHandler implements MVCRequestHandler {
 			model.pushLayer(view.getModel());
 			
 			// Update the model with any parameters in request if they are valid
-			Enumeration e = req.getParameterNames();
-			if( e != null ) {
-				while( e.hasMoreElements() ) {
-					String attr = (String)e.nextElement();
-					if( model.containsKey(attr) ) {
-						String val = req.getParameter(attr);
-						if( val != null && val.length() != 0 ) model.setAttribute(attr, val);
-					}
-				}
-			}
-			
-			// Output a hidden form with windows configuration
-			outputWindowModelForm(req, resp, coords.getApp(), coords.getPage(), window, w, model);
+			applyRequestParameters(req, model);
 			
-			// Ask current state for the render settings
-			BasicRenderModel renderModel = new BasicRenderModel();
-			view.prepareRender(renderModel, model);
-			
-			// Add on any auto attributes to model
-			if( window.getModel() != null ) {
-				Collection<ModelAttribute> attrs = window.getModel().getAttributes();
-				if( attrs != null ) {
-					Iterator<ModelAttribute> it = attrs.iterator();
-					while( it.hasNext() ) {
-						ModelAttribute attr = it.next();
-						if( attr.isAutoRenderAttribute() ) {
-							Object val = model.getAttribute(attr.getName());
-							if( val != null ) renderModel.setAttribute(attr.getName(), val);
-						}
-					}
-				}
-			}
+			// Use the held render if the window has not changed
+			String etag = fingerprinter != null ? fingerprinter.getETag(coords, view, model, req.getLocale(), req.getUserPrincipal()) : null;
+			if( writeHeldFragment(resp, etag) ) return;
 			
-			if( renderModel.getAttributes() != null ) RequestAttributeUtils.saveRenderModel(req, renderModel.getAttributes());
+			// Resolve the window and view attributes together
+			if( prefetcher != null ) prefetcher.prefetch(model);
 			
-			dispatchView(req, resp, renderModel);
+			renderWindow(req, resp, coords, view, model, etag);
 		}
 		finally {
 			RequestAttributeUtils.clearCurrentWindow(req);
@@ -144,6 +132,106 @@ public class RenderRequestHandler implements MVCRequestHandler {
 		}
 	}
 	
+	/**
+	 * Helper to write out the fragment held for the ETag
+	 * 
+	 * @param resp The response
+	 * @param etag The ETag of the window render (can be null)
+	 * @return True if a fragment was held and written
+	 */
+	protected boolean writeHeldFragment(HttpServletResponse resp, String etag) throws IOException {
+		String fragment = fingerprinter != null ? fingerprinter.getFragment(etag) : null;
+		if( fragment == null ) return false;
+		
+		resp.getWriter().write(fragment);
+		return true;
+	}
+	
+	/**
+	 * Helper to render the window, which must be on the model
+	 * along with its current view. The hidden form is written
+	 * and then the view is prepared and dispatched. If there
+	 * is an ETag and the fingerprinter is holding fragments then
+	 * the render is captured and held against it.
+	 * 
+	 * @param req The request
+	 * @param resp The response
+	 * @param coords The coordinates of the window
+	 * @param view The current view of the window
+	 * @param model The model
+	 * @param etag The ETag of the render (can be null)
+	 */
+	protected void renderWindow(HttpServletRequest req, HttpServletResponse resp, RequestCoordinates coords, View view, StandardModel model, String etag) throws ServletException, IOException {
+		WindowConfig window = coords.getWindow();
+		CapturingResponse capture = etag != null && fingerprinter != null && fingerprinter.isHoldingFragments() ? new CapturingResponse(resp) : null;
+		HttpServletResponse out = capture != null ? capture : resp;
+		
+		// Output a hidden form with windows configuration
+		outputWindowModelForm(req, out, coords.getApp(), coords.getPage(), window, window.getWindow(), model);
+		
+		// Ask current state for the render settings
+		BasicRenderModel renderModel = new BasicRenderModel();
+		view.prepareRender(renderModel, model);
+		
+		// Add on any auto attributes to model
+		addAutoRenderAttributes(window, model, renderModel);
+		
+		if( renderModel.getAttributes() != null ) RequestAttributeUtils.saveRenderModel(req, renderModel.getAttributes());
+		
+		dispatchView(req, out, renderModel);
+		
+		if( capture != null ) {
+			String content = capture.getContent();
+			fingerprinter.putFragment(etag, content);
+			resp.getWriter().write(content);
+		}
+	}
+	
+	/**
+	 * Helper to update the model with any parameters in the 
+	 * request that are attributes in the model.
+	 * 
+	 * @param req The request
+	 * @param model The model
+	 */
+	@SuppressWarnings("unchecked")
+	protected void applyRequestParameters(HttpServletRequest req, StandardModel model) {
+		Enumeration e = req.getParameterNames();
+		if( e != null ) {
+			while( e.hasMoreElements() ) {
+				String attr = (String)e.nextElement();
+				if( model.containsKey(attr) ) {
+					String val = req.getParameter(attr);
+					if( val != null && val.length() != 0 ) model.setAttribute(attr, val);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Helper to add the windows auto render attributes to the
+	 * render model.
+	 * 
+	 * @param window The window
+	 * @param model The model
+	 * @param renderModel The render model
+	 */
+	protected void addAutoRenderAttributes(WindowConfig window, StandardModel model, BasicRenderModel renderModel) {
+		if( window.getModel() == null ) return;
+		
+		Collection<ModelAttribute> attrs = window.getModel().getAttributes();
+		if( attrs != null ) {
+			Iterator<ModelAttribute> it = attrs.iterator();
+			while( it.hasNext() ) {
+				ModelAttribute attr = it.next();
+				if( attr.isAutoRenderAttribute() ) {
+					Object val = model.getAttribute(attr.getName());
+					if( val != null ) renderModel.setAttribute(attr.getName(), val);
+				}
+			}
+		}
+	}
+	
 	/**
 	 * Resolves and dispatches the view. Initially this is hard coded
 	 * to support JSPs and treat all others a Web Templates
@@ -171,11 +259,20 @@ public class RenderRequestHandler implements MVCRequestHandler {
 	 * @param window The window
 	 */
 	protected void outputWindowModelForm(HttpServletRequest req, HttpServletResponse resp, AppConfig app, PageConfig page, WindowConfig config, Window window, StandardModel model) throws IOException {
+		outputWindowModelForm(resp.getWriter(), ServletUrlGenerator.getUrlGenerator(req), app, page, config, window, model);
+	}
+	
+	/**
+	 * Helper to write out the hidden form with the windows model
+	 * attributes to the given writer.
+	 * 
+	 * @param writer The writer to output to
+	 * @param urlGenerator The url generator for the request
+	 * @param window The window
+	 */
+	protected void outputWindowModelForm(Writer writer, UrlGenerator urlGenerator, AppConfig app, PageConfig page, WindowConfig config, Window window, StandardModel model) throws IOException {
 		ModelConfiguration originalModel = window.getModel();
 		
-		Writer writer = resp.getWriter();
-		
-		UrlGenerator urlGenerator = ServletUrlGenerator.getUrlGenerator(req);
 		String action = urlGenerator.generateCustomUrl("asyncRender", app.getName(), page.getName(), config.getName(), null, null);
 		
 		GenericElement elem = new GenericElement();
@@ -209,4 +306,32 @@ public class RenderRequestHandler implements MVCRequestHandler {
 		GenericElement.writeTerminate(writer, HtmlConstants.ELEM_FORM);
 		writer.append('\n');
 	}
+	
+	/**
+	 * @return the prefetcher
+	 */
+	public ModelPrefetcher getPrefetcher() {
+		return prefetcher;
+	}
+
+	/**
+	 * @param prefetcher the prefetcher to set
+	 */
+	public void setPrefetcher(ModelPrefetcher prefetcher) {
+		this.prefetcher = prefetcher;
+	}
+	
+	/**
+	 * @return the fingerprinter
+	 */
+	public WindowFingerprinter getFingerprinter() {
+		return fingerprinter;
+	}
+
+	/**
+	 * @param fingerprinter the fingerprinter to set
+	 */
+	public void setFingerprinter(WindowFingerprinter fingerprinter) {
+		this.fingerprinter = fingerprinter;
+	}
 }
@@ -0,0 +1,243 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.mvc.servlet.handlers;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.talframework.talui.mvc.View;
+import org.talframework.talui.mvc.Window;
+import org.talframework.talui.mvc.model.StandardModel;
+import org.talframework.talui.mvc.servlet.RequestCoordinates;
+import org.talframework.talui.mvc.window.BaseWindow;
+import org.talframework.talui.mvc.window.MultiViewWindow;
+
+/**
+ * This class forms the ETag of a window render before any
+ * template work is done. The ETag is formed from the app, page
+ * and window, the current view (state) of the window, the locale
+ * and user it is rendered for, the values in the
+ * model (see {@link StandardModel#getFingerprint(boolean)}) and
+ * a generation that is set when this class is created, so that
+ * a redeploy (with possibly changed templates) changes every
+ * ETag. If the model cannot be fingerprinted there is no ETag
+ * and the window is always rendered.
+ * 
+ * <p>The fingerprinter can also hold the rendered fragments
+ * keyed by ETag so that a repeated render of a read-mostly
+ * window (such as a menu) is served without rendering. The
+ * fragments are held in a least recently used map up to the
+ * given size.</p>
+ * 
+ * <p>Only use this class if the views render purely from
+ * the model. A view that renders from anything else (i.e. 
+ * a service call in prepareRender) would be served stale.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class WindowFingerprinter {
+	
+	/** The generation, all ETags change when this does */
+	private final String generation = Long.toHexString(System.currentTimeMillis());
+	/** True if resolved attributes are assumed to be derived from the others */
+	private final boolean skipResolved;
+	/** The maximum number of fragments to hold */
+	private final int maxFragments;
+	/** The fragments (if held) */
+	private final Map<String, String> fragments;
+	
+	/**
+	 * Constructs the fingerprinter
+	 * 
+	 * @param skipResolved True if resolved attributes are ignored, otherwise a model with them has no ETag
+	 * @param maxFragments The number of rendered fragments to hold (0 to hold none)
+	 */
+	@SuppressWarnings("serial")
+	public WindowFingerprinter(boolean skipResolved, int maxFragments) {
+		this.skipResolved = skipResolved;
+		this.maxFragments = maxFragments;
+		
+		if( maxFragments > 0 ) {
+			this.fragments = new LinkedHashMap<String, String>(16, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+					return size() > WindowFingerprinter.this.maxFragments;
+				}
+			};
+		}
+		else {
+			this.fragments = null;
+		}
+	}
+	
+	/**
+	 * Call to get the ETag for the window. This should be called
+	 * once the window and view layers are on the model and any
+	 * request parameters have been applied. The locale and user
+	 * are part of the ETag as the window is rendered for them.
+	 * 
+	 * @param coords The coordinates of the window render
+	 * @param view The current view of the window
+	 * @param model The model
+	 * @param locale The locale the window is rendered in (can be null)
+	 * @param user The user the window is rendered for (can be null)
+	 * @return The (strong) ETag or null if the window cannot have one
+	 */
+	public String getETag(RequestCoordinates coords, View view, StandardModel model, Locale locale, Principal user) {
+		String fingerprint = model.getFingerprint(skipResolved);
+		if( fingerprint == null ) return null;
+		
+		StringBuilder buf = new StringBuilder();
+		buf.append('"').append(generation);
+		buf.append('-').append(coords.getApp().getName());
+		buf.append('-').append(coords.getPage().getName());
+		buf.append('-').append(coords.getWindow().getNamespace());
+		buf.append('-').append(getViewName(coords.getWindow().getWindow(), view));
+		buf.append('-').append(locale != null ? locale.toString() : "");
+		buf.append('-').append(user != null && user.getName() != null ? digest(user.getName()) : "");
+		buf.append('-').append(fingerprint).append('"');
+		return buf.toString();
+	}
+	
+	/**
+	 * Gets a name for the view that is stable across restarts.
+	 * This is the name of the view in a multi-view window, 
+	 * "default" for the default view and otherwise the class 
+	 * of the view and name of its model.
+	 * 
+	 * @param window The window
+	 * @param view The current view
+	 * @return The name
+	 */
+	private String getViewName(Window window, View view) {
+		if( window instanceof MultiViewWindow ) {
+			Map<String, View> views = ((MultiViewWindow)window).getViews();
+			if( views != null ) {
+				Iterator<String> it = views.keySet().iterator();
+				while( it.hasNext() ) {
+					String name = it.next();
+					if( views.get(name) == view ) return name;
+				}
+			}
+		}
+		if( window instanceof BaseWindow && ((BaseWindow)window).getDefaultView() == view ) return "default";
+		
+		String ret = view.getClass().getName();
+		if( view.getModel() != null ) ret = ret + "." + view.getModel().getName();
+		return ret;
+	}
+	
+	/**
+	 * Digests the value as hex so that it can be safely held 
+	 * in the ETag without giving it away
+	 */
+	private static String digest(String val) {
+		try {
+			byte[] hash = MessageDigest.getInstance("MD5").digest(val.getBytes("UTF-8"));
+			StringBuilder buf = new StringBuilder(hash.length * 2);
+			for( int i = 0 ; i < hash.length ; i++ ) {
+				int b = hash[i] & 0xFF;
+				if( b < 16 ) buf.append('0');
+				buf.append(Integer.toHexString(b));
+			}
+			return buf.toString();
+		}
+		catch( NoSuchAlgorithmException e ) {
+			throw new IllegalStateException("MD5 is not available: " + e.getMessage());
+		}
+		catch( UnsupportedEncodingException e ) {
+			throw new IllegalStateException("UTF-8 is not available: " + e.getMessage());
+		}
+	}
+	
+	/**
+	 * Determines if the ETag matches the If-None-Match header
+	 * 
+	 * @param header The If-None-Match header (can be null)
+	 * @param etag The ETag (can be null)
+	 * @return True if the header matches, and a 304 can be sent
+	 */
+	public static boolean matches(String header, String etag) {
+		if( header == null || etag == null ) return false;
+		if( header.trim().equals("*") ) return true;
+		
+		int start = 0;
+		while( start < header.length() ) {
+			int end = header.indexOf(',', start);
+			if( end < 0 ) end = header.length();
+			
+			String candidate = header.substring(start, end).trim();
+			if( candidate.startsWith("W/") ) candidate = candidate.substring(2);
+			if( candidate.equals(etag) ) return true;
+			
+			start = end + 1;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * @param etag The ETag of the render
+	 * @return The fragment held for the ETag (or null)
+	 */
+	public String getFragment(String etag) {
+		if( fragments == null || etag == null ) return null;
+		
+		synchronized( fragments ) {
+			return fragments.get(etag);
+		}
+	}
+	
+	/**
+	 * Holds the fragment for the ETag (if fragments are held)
+	 * 
+	 * @param etag The ETag of the render
+	 * @param fragment The rendered fragment
+	 */
+	public void putFragment(String etag, String fragment) {
+		if( fragments == null || etag == null || fragment == null ) return;
+		
+		synchronized( fragments ) {
+			fragments.put(etag, fragment);
+		}
+	}
+	
+	/**
+	 * @return True if fragments are held
+	 */
+	public boolean isHoldingFragments() {
+		return fragments != null;
+	}
+	
+	/**
+	 * Removes all held fragments
+	 */
+	public void clear() {
+		if( fragments == null ) return;
+		
+		synchronized( fragments ) {
+			fragments.clear();
+		}
+	}
+}
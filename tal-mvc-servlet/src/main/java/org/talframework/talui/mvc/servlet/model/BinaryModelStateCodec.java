@@ -0,0 +1,473 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.servlet.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.talframework.talui.mvc.model.ModelAttribute;
+import org.talframework.talui.mvc.model.ModelConfiguration;
+
+/**
+ * This class encodes the attributes of a model layer as a compact
+ * binary value. Each attribute is written as its name, a one byte
+ * type tag and the value in binary form (numbers as variable length
+ * integers). The result is optionally deflated (only if this makes
+ * it smaller), signed with a truncated HMAC-SHA256 over the model
+ * name and the data, and then Base64url encoded. A value that has
+ * been altered, or was encoded for a different model, is ignored.
+ * 
+ * <p>Strings, numbers, booleans, characters, dates and enums are
+ * held in their own type; the type of the model attribute is used
+ * to rebuild enums. Any other value is held as its string form.</p>
+ * 
+ * <p>If no key is given a random key is used, which means values
+ * cannot be read after a restart or by another server. Applications
+ * that run on more than one server must supply a shared key.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class BinaryModelStateCodec implements ModelStateCodec {
+	/** The version of the format */
+	private static final int VERSION = 1;
+	/** Flag set in the header if the data is deflated */
+	private static final int FLAG_DEFLATED = 0x80;
+	/** The number of bytes of the HMAC held */
+	private static final int MAC_LENGTH = 12;
+	/** The maximum size of data we will inflate to */
+	private static final int MAX_INFLATED = 16384;
+	/** The size of data above which we attempt to deflate */
+	private static final int DEFLATE_THRESHOLD = 64;
+	
+	private static final int TAG_STRING = 0;
+	private static final int TAG_INT = 1;
+	private static final int TAG_LONG = 2;
+	private static final int TAG_TRUE = 3;
+	private static final int TAG_FALSE = 4;
+	private static final int TAG_DOUBLE = 5;
+	private static final int TAG_FLOAT = 6;
+	private static final int TAG_SHORT = 7;
+	private static final int TAG_BYTE = 8;
+	private static final int TAG_CHAR = 9;
+	private static final int TAG_DATE = 10;
+	private static final int TAG_ENUM = 11;
+	
+	/** The Base64url alphabet */
+	private static final char[] ALPHABET = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+	/** The value of each Base64url character (-1 if invalid) */
+	private static final int[] VALUES = new int[128];
+	static {
+		for( int i = 0 ; i < VALUES.length ; i++ ) VALUES[i] = -1;
+		for( int i = 0 ; i < ALPHABET.length ; i++ ) VALUES[ALPHABET[i]] = i;
+	}
+	
+	/** The key used for the HMAC */
+	private final SecretKeySpec key;
+	/** Determines if we attempt to deflate the data */
+	private final boolean compress;
+	/** Holds a MAC per thread as they are not thread safe */
+	private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+		@Override
+		protected Mac initialValue() {
+			try {
+				Mac ret = Mac.getInstance("HmacSHA256");
+				ret.init(key);
+				return ret;
+			}
+			catch( GeneralSecurityException e ) {
+				throw new IllegalStateException("Unable to create the HMAC for the model state", e);
+			}
+		}
+	};
+	
+	/**
+	 * Constructs the codec with a random key
+	 * 
+	 * @param compress True if the data should be deflated when it helps
+	 */
+	public BinaryModelStateCodec(boolean compress) {
+		this(randomKey(), compress);
+	}
+	
+	/**
+	 * Constructs the codec with the given key
+	 * 
+	 * @param key The key for the HMAC (at least 16 bytes)
+	 * @param compress True if the data should be deflated when it helps
+	 */
+	public BinaryModelStateCodec(byte[] key, boolean compress) {
+		if( key == null || key.length < 16 ) throw new IllegalArgumentException("The model state key must be at least 16 bytes long");
+		
+		this.key = new SecretKeySpec(key, "HmacSHA256");
+		this.compress = compress;
+	}
+	
+	/**
+	 * Writes out the attributes and signs them
+	 */
+	public String encode(ModelConfiguration model, Map<String, Object> attrs) {
+		if( attrs == null || attrs.size() == 0 ) return null;
+		
+		byte[] data = null;
+		try {
+			ByteArrayOutputStream buf = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(buf);
+			
+			int count = 0;
+			Iterator<String> it = attrs.keySet().iterator();
+			while( it.hasNext() ) {
+				String name = it.next();
+				ModelAttribute attr = model.getAttribute(name);
+				Object val = attrs.get(name);
+				
+				if( val != null && attr != null && !attr.isFlash() && attr.isSimple() ) {
+					out.writeUTF(name);
+					writeValue(out, val);
+					count++;
+				}
+			}
+			
+			if( count == 0 ) return null;
+			out.flush();
+			data = buf.toByteArray();
+		}
+		catch( IOException e ) {
+			throw new IllegalStateException("Unable to encode model state for: " + model.getName(), e);
+		}
+		
+		int header = VERSION;
+		if( compress && data.length > DEFLATE_THRESHOLD ) {
+			byte[] deflated = deflate(data);
+			if( deflated.length < data.length ) {
+				data = deflated;
+				header |= FLAG_DEFLATED;
+			}
+		}
+		
+		byte[] mac = sign(model.getName(), header, data, 0, data.length);
+		byte[] ret = new byte[1 + data.length + MAC_LENGTH];
+		ret[0] = (byte)header;
+		System.arraycopy(data, 0, ret, 1, data.length);
+		System.arraycopy(mac, 0, ret, 1 + data.length, MAC_LENGTH);
+		
+		return encodeBase64(ret);
+	}
+	
+	/**
+	 * Checks the signature and then reads in each attribute
+	 */
+	public int decode(ModelConfiguration model, String value, Map<String, Object> attrs) {
+		byte[] bytes = decodeBase64(value);
+		if( bytes == null || bytes.length < 1 + MAC_LENGTH ) return 0;
+		
+		int header = bytes[0] & 0xff;
+		if( (header & ~FLAG_DEFLATED) != VERSION ) return 0;
+		
+		int ln = bytes.length - 1 - MAC_LENGTH;
+		byte[] mac = sign(model.getName(), header, bytes, 1, ln);
+		byte[] expected = new byte[MAC_LENGTH];
+		System.arraycopy(bytes, 1 + ln, expected, 0, MAC_LENGTH);
+		byte[] actual = new byte[MAC_LENGTH];
+		System.arraycopy(mac, 0, actual, 0, MAC_LENGTH);
+		if( !MessageDigest.isEqual(expected, actual) ) return 0;
+		
+		byte[] data = new byte[ln];
+		System.arraycopy(bytes, 1, data, 0, ln);
+		if( (header & FLAG_DEFLATED) != 0 ) data = inflate(data);
+		if( data == null ) return 0;
+		
+		Map<String, Object> decoded = new HashMap<String, Object>();
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+			while( in.available() > 0 ) {
+				String name = in.readUTF();
+				ModelAttribute attr = model.getAttribute(name);
+				Object val = readValue(in, attr != null ? attr.getType() : null);
+				
+				if( attr != null && attr.isSimple() && !attr.isFlash() ) decoded.put(name, val);
+			}
+		}
+		catch( IOException e ) {
+			return 0;
+		}
+		catch( IllegalArgumentException e ) {
+			return 0;
+		}
+		
+		attrs.putAll(decoded);
+		return decoded.size();
+	}
+	
+	/**
+	 * Writes out the tag and value
+	 */
+	private void writeValue(DataOutputStream out, Object val) throws IOException {
+		if( val instanceof String ) {
+			out.writeByte(TAG_STRING);
+			out.writeUTF((String)val);
+		}
+		else if( val instanceof Integer ) {
+			out.writeByte(TAG_INT);
+			writeVarLong(out, ((Integer)val).intValue());
+		}
+		else if( val instanceof Long ) {
+			out.writeByte(TAG_LONG);
+			writeVarLong(out, ((Long)val).longValue());
+		}
+		else if( val instanceof Boolean ) {
+			out.writeByte(((Boolean)val).booleanValue() ? TAG_TRUE : TAG_FALSE);
+		}
+		else if( val instanceof Double ) {
+			out.writeByte(TAG_DOUBLE);
+			out.writeDouble(((Double)val).doubleValue());
+		}
+		else if( val instanceof Float ) {
+			out.writeByte(TAG_FLOAT);
+			out.writeFloat(((Float)val).floatValue());
+		}
+		else if( val instanceof Short ) {
+			out.writeByte(TAG_SHORT);
+			writeVarLong(out, ((Short)val).shortValue());
+		}
+		else if( val instanceof Byte ) {
+			out.writeByte(TAG_BYTE);
+			out.writeByte(((Byte)val).byteValue());
+		}
+		else if( val instanceof Character ) {
+			out.writeByte(TAG_CHAR);
+			out.writeChar(((Character)val).charValue());
+		}
+		else if( val instanceof Date ) {
+			out.writeByte(TAG_DATE);
+			writeVarLong(out, ((Date)val).getTime());
+		}
+		else if( val instanceof Enum<?> ) {
+			out.writeByte(TAG_ENUM);
+			out.writeUTF(((Enum<?>)val).name());
+		}
+		else {
+			out.writeByte(TAG_STRING);
+			out.writeUTF(val.toString());
+		}
+	}
+	
+	/**
+	 * Reads in a value
+	 * 
+	 * @param in The input
+	 * @param type The type of the attribute (used for enums)
+	 * @return The value
+	 */
+	@SuppressWarnings("unchecked")
+	private Object readValue(DataInputStream in, Class<?> type) throws IOException {
+		int tag = in.readUnsignedByte();
+		switch( tag ) {
+		case TAG_STRING: return in.readUTF();
+		case TAG_INT: return Integer.valueOf((int)readVarLong(in));
+		case TAG_LONG: return Long.valueOf(readVarLong(in));
+		case TAG_TRUE: return Boolean.TRUE;
+		case TAG_FALSE: return Boolean.FALSE;
+		case TAG_DOUBLE: return Double.valueOf(in.readDouble());
+		case TAG_FLOAT: return Float.valueOf(in.readFloat());
+		case TAG_SHORT: return Short.valueOf((short)readVarLong(in));
+		case TAG_BYTE: return Byte.valueOf(in.readByte());
+		case TAG_CHAR: return Character.valueOf(in.readChar());
+		case TAG_DATE: return new Date(readVarLong(in));
+		case TAG_ENUM:
+			String name = in.readUTF();
+			if( type != null && type.isEnum() ) return Enum.valueOf(type.asSubclass(Enum.class), name);
+			return name;
+		default: throw new IOException("Invalid type in model state: " + tag);
+		}
+	}
+	
+	/**
+	 * Writes a zig-zag encoded variable length integer
+	 */
+	private static void writeVarLong(DataOutputStream out, long val) throws IOException {
+		long v = (val << 1) ^ (val >> 63);
+		while( (v & ~0x7fL) != 0 ) {
+			out.writeByte((int)((v & 0x7f) | 0x80));
+			v >>>= 7;
+		}
+		out.writeByte((int)v);
+	}
+	
+	/**
+	 * Reads a zig-zag encoded variable length integer
+	 */
+	private static long readVarLong(DataInputStream in) throws IOException {
+		long v = 0;
+		for( int shift = 0 ; shift < 64 ; shift += 7 ) {
+			int b = in.readUnsignedByte();
+			v |= (long)(b & 0x7f) << shift;
+			if( (b & 0x80) == 0 ) return (v >>> 1) ^ -(v & 1);
+		}
+		throw new IOException("Invalid number in model state");
+	}
+	
+	/**
+	 * Signs the model name, header and data
+	 */
+	private byte[] sign(String name, int header, byte[] data, int offset, int ln) {
+		Mac mac = macs.get();
+		try {
+			mac.update(name.getBytes("UTF-8"));
+		}
+		catch( IOException e ) {
+			throw new IllegalStateException("UTF-8 is not supported", e);
+		}
+		mac.update((byte)0);
+		mac.update((byte)header);
+		mac.update(data, offset, ln);
+		return mac.doFinal();
+	}
+	
+	/**
+	 * Deflates the data
+	 */
+	private static byte[] deflate(byte[] data) {
+		Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+		try {
+			deflater.setInput(data);
+			deflater.finish();
+			
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+			byte[] buf = new byte[512];
+			while( !deflater.finished() ) {
+				int n = deflater.deflate(buf);
+				out.write(buf, 0, n);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+	
+	/**
+	 * Inflates the data
+	 * 
+	 * @return The data or null if it is invalid or too large
+	 */
+	private static byte[] inflate(byte[] data) {
+		Inflater inflater = new Inflater(true);
+		try {
+			// nowrap requires an extra dummy byte at the end
+			byte[] input = new byte[data.length + 1];
+			System.arraycopy(data, 0, input, 0, data.length);
+			inflater.setInput(input);
+			
+			ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+			byte[] buf = new byte[512];
+			while( !inflater.finished() ) {
+				int n = inflater.inflate(buf);
+				if( n == 0 && (inflater.needsInput() || inflater.needsDictionary()) ) return null;
+				out.write(buf, 0, n);
+				if( out.size() > MAX_INFLATED ) return null;
+			}
+			return out.toByteArray();
+		}
+		catch( DataFormatException e ) {
+			return null;
+		}
+		finally {
+			inflater.end();
+		}
+	}
+	
+	/**
+	 * Encodes the bytes as Base64url without padding
+	 */
+	static String encodeBase64(byte[] data) {
+		StringBuilder buf = new StringBuilder((data.length * 4 + 2) / 3);
+		int i = 0;
+		for( ; i + 2 < data.length ; i += 3 ) {
+			int v = ((data[i] & 0xff) << 16) | ((data[i + 1] & 0xff) << 8) | (data[i + 2] & 0xff);
+			buf.append(ALPHABET[(v >> 18) & 0x3f]).append(ALPHABET[(v >> 12) & 0x3f]);
+			buf.append(ALPHABET[(v >> 6) & 0x3f]).append(ALPHABET[v & 0x3f]);
+		}
+		
+		int remaining = data.length - i;
+		if( remaining == 1 ) {
+			int v = (data[i] & 0xff) << 16;
+			buf.append(ALPHABET[(v >> 18) & 0x3f]).append(ALPHABET[(v >> 12) & 0x3f]);
+		}
+		else if( remaining == 2 ) {
+			int v = ((data[i] & 0xff) << 16) | ((data[i + 1] & 0xff) << 8);
+			buf.append(ALPHABET[(v >> 18) & 0x3f]).append(ALPHABET[(v >> 12) & 0x3f]).append(ALPHABET[(v >> 6) & 0x3f]);
+		}
+		
+		return buf.toString();
+	}
+	
+	/**
+	 * Decodes Base64url without padding
+	 * 
+	 * @return The bytes or null if the value is not valid
+	 */
+	static byte[] decodeBase64(String value) {
+		if( value == null ) return null;
+		
+		int ln = value.length();
+		if( ln % 4 == 1 ) return null;
+		
+		byte[] ret = new byte[(ln * 3) / 4];
+		int pos = 0;
+		int bits = 0;
+		int count = 0;
+		for( int i = 0 ; i < ln ; i++ ) {
+			char ch = value.charAt(i);
+			int v = ch < 128 ? VALUES[ch] : -1;
+			if( v < 0 ) return null;
+			
+			bits = (bits << 6) | v;
+			count += 6;
+			if( count >= 8 ) {
+				count -= 8;
+				ret[pos++] = (byte)(bits >> count);
+			}
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Creates a random key
+	 */
+	private static byte[] randomKey() {
+		byte[] ret = new byte[32];
+		new SecureRandom().nextBytes(ret);
+		return ret;
+	}
+}
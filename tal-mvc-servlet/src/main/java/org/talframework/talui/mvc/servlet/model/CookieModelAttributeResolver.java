@@ -17,15 +17,14 @@
 package org.talframework.talui.mvc.servlet.model;
 
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
 
 import javax.servlet.http.Cookie;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.talframework.tal.aspects.annotations.Trace;
-import org.talframework.talui.mvc.model.ModelAttribute;
 import org.talframework.talui.mvc.model.ModelConfiguration;
 
 /**
@@ -35,18 +34,55 @@ import org.talframework.talui.mvc.model.ModelConfiguration;
  * the attribute name. If there are any other model attributes
  * then they are stored in the session
  * 
+ * <p>The value of the cookie is formed by a {@link ModelStateCodec}.
+ * Unless another is set the readable {@link TextModelStateCodec}
+ * is used; the {@link BinaryModelStateCodec} is only set up when a
+ * shared key is configured. The request cookies are indexed by name
+ * the first time they are needed.</p>
+ * 
  * @author Tom Spencer
  */
 public class CookieModelAttributeResolver extends SessionModelAttributeResolver {
 	
+	/** The codec used when none is given */
+	private static volatile ModelStateCodec defaultCodec = new TextModelStateCodec();
+	
 	private final HttpServletRequest request;
 	private final HttpServletResponse response;
+	/** The codec for the cookie values */
+	private final ModelStateCodec codec;
+	/** The request cookies by name (created when first needed) */
+	private Map<String, Cookie> cookies = null;
 	
 	public CookieModelAttributeResolver(HttpServletRequest request, HttpServletResponse response) {
+		this(request, response, defaultCodec);
+	}
+	
+	public CookieModelAttributeResolver(HttpServletRequest request, HttpServletResponse response, ModelStateCodec codec) {
 		super(request);
+		if( codec == null ) throw new IllegalArgumentException("You must supply a codec to the cookie resolver");
+		
 		setIgnoreSimple(true);
 		this.request = request;
 		this.response = response;
+		this.codec = codec;
+	}
+	
+	/**
+	 * @return The codec used by default
+	 */
+	public static ModelStateCodec getDefaultCodec() {
+		return defaultCodec;
+	}
+	
+	/**
+	 * Call to set the codec used by default, typically at startup
+	 * 
+	 * @param codec The codec
+	 */
+	public static void setDefaultCodec(ModelStateCodec codec) {
+		if( codec == null ) throw new IllegalArgumentException("You must supply a default codec");
+		defaultCodec = codec;
 	}
 	
 	/**
@@ -63,25 +99,9 @@ public class CookieModelAttributeResolver extends SessionModelAttributeResolver
 		
 		// Find cookie for model if it exists
 		Cookie cookie = getModelCookie(model);
-		if( cookie != null && cookie.getValue() != null ) {
-			String[] vals = cookie.getValue().split(",");
-			if( vals != null && vals.length > 0 ) {
-				for( int i = 0 ; i < vals.length ; i++ ) {
-					// TODO: Clean this, firebug!!
-					String val = vals[i];
-					val = val.replaceAll("%3D", "=");
-					val = val.replaceAll("%22", "");
-					
-					int index = val.indexOf('=');
-					if( index > 0 && index < (val.length() - 1) ) {
-						if( ret == null ) ret = new HashMap<String, Object>();
-					
-						String k = val.substring(0, index).trim();
-						String v = val.substring(index +1).trim();
-						ret.put(k, v);
-					}
-				}
-			}
+		if( cookie != null && cookie.getValue() != null && cookie.getValue().length() > 0 ) {
+			Map<String, Object> attrs = ret != null ? ret : new HashMap<String, Object>();
+			if( codec.decode(model, cookie.getValue(), attrs) > 0 ) ret = attrs;
 		}
 		
 		// Save model attrs away in case asked for in same request
@@ -94,19 +114,17 @@ public class CookieModelAttributeResolver extends SessionModelAttributeResolver
 	 * Internal helper to get the cookie for a particular model
 	 */
 	private Cookie getModelCookie(ModelConfiguration model) {
-		Cookie ret = null;
-		
-		Cookie[] cookies = request.getCookies();
-		if( cookies != null && cookies.length > 0 ) {
-			for( int i = 0 ; i < cookies.length ; i++ ) {
-				if( cookies[i].getName().equals(model.getName()) ) {
-					ret = cookies[i];
-					break;
+		if( cookies == null ) {
+			cookies = new HashMap<String, Cookie>();
+			Cookie[] all = request.getCookies();
+			if( all != null ) {
+				for( int i = 0 ; i < all.length ; i++ ) {
+					if( !cookies.containsKey(all[i].getName()) ) cookies.put(all[i].getName(), all[i]);
 				}
 			}
 		}
 		
-		return ret;
+		return cookies.get(model.getName());
 	}
 	
 	/**
@@ -114,31 +132,28 @@ public class CookieModelAttributeResolver extends SessionModelAttributeResolver
 	 */
 	public void saveModelAttributes(ModelConfiguration model, Map<String, Object> attrs) {
 		super.saveModelAttributes(model, attrs);
-		
-		// Save cookies and session if set
+		writeCookie(model, attrs);
+	}
+	
+	/**
+	 * Saves the changed attributes in the session and rewrites
+	 * the cookie.
+	 */
+	@Override
+	public void saveChangedAttributes(ModelConfiguration model, Map<String, Object> attrs, Set<String> changed) {
+		super.saveChangedAttributes(model, attrs, changed);
+		writeCookie(model, attrs);
+	}
+	
+	/**
+	 * Writes the simple attributes out as a cookie (if in save mode)
+	 */
+	private void writeCookie(ModelConfiguration model, Map<String, Object> attrs) {
 		if( isSaveMode() ) {
-			StringBuilder buf = null;
-			
-			if( attrs != null ) {
-				Iterator<String> it = attrs.keySet().iterator();
-				while( it.hasNext() ) {
-					String name = it.next();
-					ModelAttribute attr = model.getAttribute(name);
-					
-					if( attr != null && !attr.isFlash() && attr.isSimple() ) {
-						Object val = attrs.get(name);
-						if( val != null ) {
-							if( buf == null ) buf = new StringBuilder();
-							else buf.append(", ");
-							
-							buf.append(name).append('=').append(val.toString());
-						}
-					}
-				}
-			}
+			String value = codec.encode(model, attrs);
 			
 			// Save the cookie away
-			Cookie cookie = new Cookie(model.getName(), buf != null ? buf.toString() : "");
+			Cookie cookie = new Cookie(model.getName(), value != null ? value : "");
 			cookie.setPath(request.getContextPath() + request.getServletPath());
 			addCookie(response, cookie);
 		}
@@ -150,16 +165,10 @@ public class CookieModelAttributeResolver extends SessionModelAttributeResolver
 	public void removeModel(ModelConfiguration model) {
 		super.removeModel(model);
 		
-		Cookie[] cookies = request.getCookies();
-		if( cookies != null ) {
-			for( int i = 0 ; i < cookies.length ; i++ ) {
-				if( cookies[i].getName().equals(model.getName()) ) {
-					Cookie cookie = new Cookie(model.getName(), "");
-					cookie.setPath(request.getContextPath() + request.getServletPath());
-					response.addCookie(cookie);
-					break;
-				}
-			}
+		if( getModelCookie(model) != null ) {
+			Cookie cookie = new Cookie(model.getName(), "");
+			cookie.setPath(request.getContextPath() + request.getServletPath());
+			response.addCookie(cookie);
 		}
 	}
 	
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.mvc.servlet.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class is a {@link ModelStateStore} that serialises each
+ * layer to its own file under a directory, one sub-directory per
+ * id. This keeps the state off the heap entirely between requests
+ * and, if the directory is shared, allows the state to survive a
+ * restart or be seen by other servers.
+ * 
+ * <p>All attributes held must be serializable. If a layer cannot
+ * be read or written the layer is treated as empty, the same as
+ * an expired session.</p>
+ * 
+ * <p>Each layer is written to a temporary file which is then
+ * renamed over the layer file, so a load never sees a partly
+ * written layer and does not need to lock. Changes are locked
+ * per id so requests for different sessions never wait on each
+ * other.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class FileModelStateStore implements ModelStateStore {
+
+	/** The directory to hold the state in */
+	private final File dir;
+	/** Holds the lock for each id that is being changed */
+	private final ConcurrentMap<String, Object> locks = new ConcurrentHashMap<String, Object>();
+	
+	/**
+	 * Constructs the store, creating the directory if needed
+	 * 
+	 * @param dir The directory to hold state in
+	 */
+	public FileModelStateStore(File dir) {
+		if( dir == null ) throw new IllegalArgumentException("You must supply a directory for the file model store");
+		if( !dir.isDirectory() && !dir.mkdirs() ) throw new IllegalArgumentException("Cannot create directory for model state: " + dir);
+		
+		this.dir = dir;
+	}
+	
+	/**
+	 * Reads the layer from its file
+	 */
+	public Map<String, Object> load(String id, String layer) {
+		return read(getFile(id, layer));
+	}
+	
+	/**
+	 * Writes the whole layer to its file
+	 */
+	public void save(String id, String layer, Map<String, Object> attrs) {
+		File file = getFile(id, layer);
+		synchronized( getLock(id) ) {
+			if( attrs == null || attrs.size() == 0 ) file.delete();
+			else write(file, new HashMap<String, Object>(attrs));
+		}
+	}
+	
+	/**
+	 * Reads the layer, applies the changes and writes it back
+	 */
+	public void update(String id, String layer, Map<String, Object> changed, Set<String> removed) {
+		File file = getFile(id, layer);
+		synchronized( getLock(id) ) {
+			Map<String, Object> attrs = read(file);
+			if( attrs == null ) attrs = new HashMap<String, Object>();
+			
+			if( changed != null ) attrs.putAll(changed);
+			if( removed != null ) {
+				Iterator<String> it = removed.iterator();
+				while( it.hasNext() ) {
+					attrs.remove(it.next());
+				}
+			}
+			
+			if( attrs.size() == 0 ) file.delete();
+			else write(file, attrs);
+		}
+	}
+	
+	/**
+	 * Deletes the layer file
+	 */
+	public void remove(String id, String layer) {
+		synchronized( getLock(id) ) {
+			getFile(id, layer).delete();
+		}
+	}
+	
+	/**
+	 * Deletes all the files for the id
+	 */
+	public void removeAll(String id) {
+		Object lock = getLock(id);
+		synchronized( lock ) {
+			File idDir = new File(dir, getFileName(id));
+			File[] files = idDir.listFiles();
+			if( files != null ) {
+				for( int i = 0 ; i < files.length ; i++ ) {
+					files[i].delete();
+				}
+			}
+			idDir.delete();
+			locks.remove(id, lock);
+		}
+	}
+	
+	/**
+	 * @return The directory the state is held in
+	 */
+	public File getDir() {
+		return dir;
+	}
+	
+	/**
+	 * Helper to get (or create) the lock for the id
+	 */
+	private Object getLock(String id) {
+		Object ret = locks.get(id);
+		if( ret == null ) {
+			ret = new Object();
+			Object existing = locks.putIfAbsent(id, ret);
+			if( existing != null ) ret = existing;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Helper to get the file for a layer
+	 */
+	private File getFile(String id, String layer) {
+		File idDir = new File(dir, getFileName(id));
+		return new File(idDir, getFileName(layer) + ".ser");
+	}
+	
+	/**
+	 * Helper to turn the name into a safe file name
+	 */
+	private String getFileName(String name) {
+		StringBuilder buf = new StringBuilder(name.length());
+		for( int i = 0 ; i < name.length() ; i++ ) {
+			char ch = name.charAt(i);
+			if( (ch >= 'a' && ch <= 'z') || (ch >= 'A' && ch <= 'Z') || (ch >= '0' && ch <= '9') || ch == '-' ) buf.append(ch);
+			else buf.append('_').append(Integer.toHexString(ch)).append('_');
+		}
+		return buf.toString();
+	}
+	
+	/**
+	 * Reads the attributes from the file
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, Object> read(File file) {
+		if( !file.isFile() ) return null;
+		
+		ObjectInputStream in = null;
+		try {
+			in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)));
+			return (Map<String, Object>)in.readObject();
+		}
+		catch( Exception e ) {
+			// Treat as no state
+			return null;
+		}
+		finally {
+			close(in);
+		}
+	}
+	
+	/**
+	 * Writes the attributes to a temporary file and then
+	 * renames it over the file. If the write fails the
+	 * layer is removed.
+	 */
+	private void write(File file, Map<String, Object> attrs) {
+		File parent = file.getParentFile();
+		if( !parent.isDirectory() ) parent.mkdirs();
+		
+		File temp = new File(parent, file.getName() + ".tmp");
+		ObjectOutputStream out = null;
+		boolean written = false;
+		try {
+			out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			out.writeObject(attrs);
+			out.close();
+			out = null;
+			written = true;
+		}
+		catch( IOException e ) {
+			// Fall through to remove any partial state
+		}
+		finally {
+			close(out);
+		}
+		
+		// Some platforms will not rename over an existing file
+		if( written && !temp.renameTo(file) ) {
+			file.delete();
+			written = temp.renameTo(file);
+		}
+		
+		if( !written ) {
+			temp.delete();
+			file.delete();
+		}
+	}
+	
+	/**
+	 * Closes the stream ignoring any errors
+	 */
+	private void close(Closeable stream) {
+		if( stream == null ) return;
+		try {
+			stream.close();
+		}
+		catch( IOException e ) {
+			// Ignore
+		}
+	}
+}
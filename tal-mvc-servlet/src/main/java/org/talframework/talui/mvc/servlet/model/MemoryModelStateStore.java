@@ -0,0 +1,131 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.mvc.servlet.model;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class is a {@link ModelStateStore} that holds the state
+ * in memory. The state is held outside of the session so the
+ * session itself is small (and cheap to replicate), but this
+ * does mean the store is local to this server and requires
+ * sticky sessions in a cluster.
+ * 
+ * @author Tom Spencer
+ */
+public final class MemoryModelStateStore implements ModelStateStore {
+
+	/** Holds the layers of each id */
+	private final ConcurrentMap<String, Map<String, Map<String, Object>>> state = new ConcurrentHashMap<String, Map<String, Map<String, Object>>>();
+	
+	/**
+	 * Returns a copy of the layer
+	 */
+	public Map<String, Object> load(String id, String layer) {
+		Map<String, Map<String, Object>> layers = state.get(id);
+		if( layers == null ) return null;
+		
+		synchronized( layers ) {
+			Map<String, Object> attrs = layers.get(layer);
+			return attrs != null ? new HashMap<String, Object>(attrs) : null;
+		}
+	}
+	
+	/**
+	 * Replaces the layer with a copy of the attributes
+	 */
+	public void save(String id, String layer, Map<String, Object> attrs) {
+		if( attrs == null || attrs.size() == 0 ) {
+			remove(id, layer);
+			return;
+		}
+		
+		Map<String, Map<String, Object>> layers = getLayers(id);
+		synchronized( layers ) {
+			layers.put(layer, new HashMap<String, Object>(attrs));
+		}
+	}
+	
+	/**
+	 * Updates just the changed attributes in the held layer
+	 */
+	public void update(String id, String layer, Map<String, Object> changed, Set<String> removed) {
+		Map<String, Map<String, Object>> layers = getLayers(id);
+		synchronized( layers ) {
+			Map<String, Object> attrs = layers.get(layer);
+			if( attrs == null ) {
+				attrs = new HashMap<String, Object>();
+				layers.put(layer, attrs);
+			}
+			
+			if( changed != null ) attrs.putAll(changed);
+			if( removed != null ) {
+				Iterator<String> it = removed.iterator();
+				while( it.hasNext() ) {
+					attrs.remove(it.next());
+				}
+			}
+			
+			if( attrs.size() == 0 ) layers.remove(layer);
+		}
+	}
+	
+	/**
+	 * Removes the layer
+	 */
+	public void remove(String id, String layer) {
+		Map<String, Map<String, Object>> layers = state.get(id);
+		if( layers == null ) return;
+		
+		synchronized( layers ) {
+			layers.remove(layer);
+		}
+	}
+	
+	/**
+	 * Removes all layers for the id
+	 */
+	public void removeAll(String id) {
+		state.remove(id);
+	}
+	
+	/**
+	 * @return The number of ids currently held
+	 */
+	public int getSize() {
+		return state.size();
+	}
+	
+	/**
+	 * Helper to get (or create) the layers for the id
+	 */
+	private Map<String, Map<String, Object>> getLayers(String id) {
+		Map<String, Map<String, Object>> ret = state.get(id);
+		if( ret == null ) {
+			ret = new HashMap<String, Map<String, Object>>();
+			Map<String, Map<String, Object>> existing = state.putIfAbsent(id, ret);
+			if( existing != null ) ret = existing;
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.servlet.model;
+
+import java.util.Map;
+
+import org.talframework.talui.mvc.model.ModelConfiguration;
+
+/**
+ * This interface represents a class that can turn the simple
+ * attributes of a model layer into a value that is safe to
+ * hold in a cookie and back again. It is used by the
+ * {@link CookieModelAttributeResolver}.
+ * 
+ * @author Tom Spencer
+ */
+public interface ModelStateCodec {
+
+	/**
+	 * Call to encode the attributes. Only attributes that are
+	 * in the model, are simple and are not flash are encoded.
+	 * 
+	 * @param model The model the attributes belong to
+	 * @param attrs The attributes
+	 * @return The encoded value (or null if there is nothing to encode)
+	 */
+	public String encode(ModelConfiguration model, Map<String, Object> attrs);
+	
+	/**
+	 * Call to decode a value previously encoded for the model.
+	 * Any value that cannot be decoded is ignored.
+	 * 
+	 * @param model The model the value is for
+	 * @param value The value
+	 * @param attrs The map to add the attributes to
+	 * @return The number of attributes decoded
+	 */
+	public int decode(ModelConfiguration model, String value, Map<String, Object> attrs);
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.mvc.servlet.model;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * This interface represents a store for the model state of a
+ * user that is held outside of the HTTP session. The
+ * {@link SessionModelAttributeResolver} uses a store (if set)
+ * so that the session only holds a small token and only the
+ * attributes that have changed are written on each action.
+ * 
+ * <p>The state is keyed by the store id (one per session) and
+ * the name of the model layer. Implementations must be thread
+ * safe as they are shared by all requests.</p>
+ * 
+ * @author Tom Spencer
+ */
+public interface ModelStateStore {
+
+	/**
+	 * Call to load the attributes of a layer
+	 * 
+	 * @param id The id of the session state
+	 * @param layer The name of the layer
+	 * @return A copy of the attributes (null if there are none)
+	 */
+	public Map<String, Object> load(String id, String layer);
+	
+	/**
+	 * Call to replace all the attributes of a layer
+	 * 
+	 * @param id The id of the session state
+	 * @param layer The name of the layer
+	 * @param attrs The attributes to hold (null or empty removes the layer)
+	 */
+	public void save(String id, String layer, Map<String, Object> attrs);
+	
+	/**
+	 * Call to update just some of the attributes of a layer
+	 * 
+	 * @param id The id of the session state
+	 * @param layer The name of the layer
+	 * @param changed The attributes that have been set (can be null)
+	 * @param removed The names of the attributes that have been removed (can be null)
+	 */
+	public void update(String id, String layer, Map<String, Object> changed, Set<String> removed);
+	
+	/**
+	 * Call to remove a layer
+	 * 
+	 * @param id The id of the session state
+	 * @param layer The name of the layer
+	 */
+	public void remove(String id, String layer);
+	
+	/**
+	 * Call to remove all layers, typically when the session ends
+	 * 
+	 * @param id The id of the session state
+	 */
+	public void removeAll(String id);
+}
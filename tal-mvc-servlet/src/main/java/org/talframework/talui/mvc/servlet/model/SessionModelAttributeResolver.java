@@ -16,25 +16,44 @@
 
 package org.talframework.talui.mvc.servlet.model;
 
+import java.io.Serializable;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
 
 import org.talframework.talui.mvc.model.ModelAttribute;
 import org.talframework.talui.mvc.model.ModelConfiguration;
-import org.talframework.talui.mvc.process.ModelLayerAttributesResolver;
+import org.talframework.talui.mvc.process.IncrementalModelLayerAttributesResolver;
 
 /**
  * This class implements the ModelLayerResolver interface
  * for the servlet by simply storing all layers in the
  * session as attributes.
  * 
+ * <p>If a {@link ModelStateStore} has been set then the layers
+ * are held in that store instead and the session only holds a
+ * small token identifying the state in the store. When saving
+ * after an action only the attributes that have changed are
+ * written to the store. The state is removed from the store
+ * when the session ends.</p>
+ * 
  * @author Tom Spencer
  */
-public class SessionModelAttributeResolver implements ModelLayerAttributesResolver {
+public class SessionModelAttributeResolver implements IncrementalModelLayerAttributesResolver {
+	/** The name of the session attribute holding the store token */
+	private static final String STORE_TOKEN = "_modelStateToken";
+	
+	/** The store to hold state in (null to hold in the session) */
+	private static volatile ModelStateStore defaultStore = null;
+	
 	/** Determines if simple attributes should be ignored as well as flash */
 	private boolean ignoreSimple = false;
 	/** Determines if we are saving changes (renders do not save changes) */
@@ -42,8 +61,30 @@ public class SessionModelAttributeResolver implements ModelLayerAttributesResolv
 	/** The request */
 	private final HttpServletRequest request;
 	
+	/** The store in use by this resolver */
+	private final ModelStateStore store;
+	
 	public SessionModelAttributeResolver(HttpServletRequest request) {
 		this.request = request;
+		this.store = defaultStore;
+	}
+	
+	/**
+	 * @return The store model state is held in (null if held in the session)
+	 */
+	public static ModelStateStore getDefaultStore() {
+		return defaultStore;
+	}
+	
+	/**
+	 * Call to set the store that all model state is held in,
+	 * typically at startup. Set to null to hold the state 
+	 * directly in the session.
+	 * 
+	 * @param store The store
+	 */
+	public static void setDefaultStore(ModelStateStore store) {
+		defaultStore = store;
 	}
 	
 	/**
@@ -56,7 +97,15 @@ public class SessionModelAttributeResolver implements ModelLayerAttributesResolv
 		
 		// Otherwise see if on session
 		HttpSession session = request.getSession(false);
-		if( session != null ) ret = (Map<String, Object>)session.getAttribute(model.getName());
+		if( session != null ) {
+			if( store != null ) {
+				StoreToken token = (StoreToken)session.getAttribute(STORE_TOKEN);
+				if( token != null ) ret = store.load(token.getId(), model.getName());
+			}
+			else {
+				ret = (Map<String, Object>)session.getAttribute(model.getName());
+			}
+		}
 		
 		return ret;
 	}
@@ -65,6 +114,49 @@ public class SessionModelAttributeResolver implements ModelLayerAttributesResolv
 	 * Simply saves the attributes in the session
 	 */
 	public void saveModelAttributes(ModelConfiguration model, Map<String, Object> attrs) {
+		saveAllAttributes(model, attrs);
+	}
+	
+	/**
+	 * Saves only the changed attributes if there is a store,
+	 * otherwise all attributes are saved on the session.
+	 */
+	public void saveChangedAttributes(ModelConfiguration model, Map<String, Object> attrs, Set<String> changed) {
+		if( store == null ) {
+			saveAllAttributes(model, attrs);
+			return;
+		}
+		
+		// Save all on this request for future access in same request
+		request.setAttribute(model.getName(), attrs);
+		if( !saveMode || changed == null || changed.size() == 0 ) return;
+		
+		Map<String, Object> setAttrs = null;
+		Set<String> removedAttrs = null;
+		Iterator<String> it = changed.iterator();
+		while( it.hasNext() ) {
+			String k = it.next();
+			Object v = attrs != null ? attrs.get(k) : null;
+			ModelAttribute attr = model.getAttribute(k);
+			if( v != null && attr != null && isSaved(attr) ) {
+				if( setAttrs == null ) setAttrs = new HashMap<String, Object>();
+				setAttrs.put(k, v);
+			}
+			else {
+				if( removedAttrs == null ) removedAttrs = new HashSet<String>();
+				removedAttrs.add(k);
+			}
+		}
+		
+		String id = getStoreId(setAttrs != null);
+		if( id != null ) store.update(id, model.getName(), setAttrs, removedAttrs);
+	}
+	
+	/**
+	 * Saves all the (non-flash) attributes in the session
+	 * or in the store if set.
+	 */
+	private void saveAllAttributes(ModelConfiguration model, Map<String, Object> attrs) {
 		// Save all on this request for future access in same request
 		request.setAttribute(model.getName(), attrs);
 		
@@ -78,26 +170,64 @@ public class SessionModelAttributeResolver implements ModelLayerAttributesResolv
 					Object v = attrs.get(k);
 					if( v != null ) {
 						ModelAttribute attr = model.getAttribute(k);
-						if( !attr.isFlash() && (!ignoreSimple || !attr.isSimple()) ) {
+						if( isSaved(attr) ) {
 							if( saveAttrs == null ) saveAttrs = new HashMap<String, Object>();
 							saveAttrs.put(k, v);
 						}
 					}
 				}
 			}
+			
+			if( store != null ) {
+				String id = getStoreId(saveAttrs != null);
+				if( id != null ) store.save(id, model.getName(), saveAttrs);
+			}
+			else {
+				HttpSession session = request.getSession(saveAttrs != null);
+				if( saveAttrs != null ) session.setAttribute(model.getName(), saveAttrs);
+				else if( session != null ) session.removeAttribute(model.getName());
+			}
+		}
+	}
+	
+	/**
+	 * Determines if the attribute is saved by this resolver
+	 */
+	private boolean isSaved(ModelAttribute attr) {
+		return !attr.isFlash() && (!ignoreSimple || !attr.isSimple());
+	}
+	
+	/**
+	 * Helper to get the id of the state in the store from the
+	 * token held on the session.
+	 * 
+	 * @param create If true the session and token are created if needed
+	 * @return The id (or null if there is none)
+	 */
+	private String getStoreId(boolean create) {
+		HttpSession session = request.getSession(create);
+		if( session == null ) return null;
 		
-			HttpSession session = request.getSession(saveAttrs != null);
-			if( saveAttrs != null ) session.setAttribute(model.getName(), saveAttrs);
-			else if( session != null ) session.removeAttribute(model.getName());
+		StoreToken token = (StoreToken)session.getAttribute(STORE_TOKEN);
+		if( token == null && create ) {
+			token = new StoreToken(UUID.randomUUID().toString());
+			session.setAttribute(STORE_TOKEN, token);
 		}
+		return token != null ? token.getId() : null;
 	}
 	
 	/**
 	 * Removes from session and the request
 	 */
 	public void removeModel(ModelConfiguration model) {
-		HttpSession session = request.getSession(false);
-		if( session != null ) session.removeAttribute(model.getName());
+		if( store != null ) {
+			String id = getStoreId(false);
+			if( id != null ) store.remove(id, model.getName());
+		}
+		else {
+			HttpSession session = request.getSession(false);
+			if( session != null ) session.removeAttribute(model.getName());
+		}
 		
 		request.removeAttribute(model.getName());
 	}
@@ -124,4 +254,41 @@ public class SessionModelAttributeResolver implements ModelLayerAttributesResolv
 	public void setIgnoreSimple(boolean ignoreSimple) {
 		this.ignoreSimple = ignoreSimple;
 	}
+	
+	/**
+	 * The token held on the session when the state is in a
+	 * store. When it is unbound (i.e. the session ends) the
+	 * state is removed from the store.
+	 *
+	 * @author Tom Spencer
+	 */
+	private static final class StoreToken implements HttpSessionBindingListener, Serializable {
+		private static final long serialVersionUID = 1L;
+		
+		/** The id of the state in the store */
+		private final String id;
+		
+		public StoreToken(String id) {
+			this.id = id;
+		}
+		
+		/**
+		 * @return The id of the state
+		 */
+		public String getId() {
+			return id;
+		}
+		
+		public void valueBound(HttpSessionBindingEvent event) {
+			// Nothing to do
+		}
+		
+		/**
+		 * Removes the state from the store
+		 */
+		public void valueUnbound(HttpSessionBindingEvent event) {
+			ModelStateStore store = defaultStore;
+			if( store != null ) store.removeAll(id);
+		}
+	}
 }
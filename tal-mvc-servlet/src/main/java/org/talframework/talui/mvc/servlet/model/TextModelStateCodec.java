@@ -0,0 +1,111 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.servlet.model;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.talframework.talui.mvc.model.ModelAttribute;
+import org.talframework.talui.mvc.model.ModelConfiguration;
+
+/**
+ * This class implements the original, readable, cookie format
+ * of name=value pairs separated by commas. All values are held
+ * as strings and values containing commas are not supported.
+ * 
+ * @author Tom Spencer
+ */
+public final class TextModelStateCodec implements ModelStateCodec {
+
+	/**
+	 * Writes out each attribute as name=value
+	 */
+	public String encode(ModelConfiguration model, Map<String, Object> attrs) {
+		if( attrs == null ) return null;
+		
+		StringBuilder buf = null;
+		Iterator<String> it = attrs.keySet().iterator();
+		while( it.hasNext() ) {
+			String name = it.next();
+			ModelAttribute attr = model.getAttribute(name);
+			
+			if( attr != null && !attr.isFlash() && attr.isSimple() ) {
+				Object val = attrs.get(name);
+				if( val != null ) {
+					if( buf == null ) buf = new StringBuilder();
+					else buf.append(", ");
+					
+					buf.append(name).append('=').append(val.toString());
+				}
+			}
+		}
+		
+		return buf != null ? buf.toString() : null;
+	}
+	
+	/**
+	 * Splits the value into name=value pairs
+	 */
+	public int decode(ModelConfiguration model, String value, Map<String, Object> attrs) {
+		if( value == null || value.length() == 0 ) return 0;
+		
+		int ret = 0;
+		int start = 0;
+		int ln = value.length();
+		while( start < ln ) {
+			int end = value.indexOf(',', start);
+			if( end < 0 ) end = ln;
+			
+			String val = unquote(value.substring(start, end));
+			int index = val.indexOf('=');
+			if( index > 0 && index < (val.length() - 1) ) {
+				attrs.put(val.substring(0, index).trim(), val.substring(index + 1).trim());
+				ret++;
+			}
+			
+			start = end + 1;
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Removes any quotes and escaped equals some browsers add
+	 */
+	private String unquote(String val) {
+		if( val.indexOf('%') < 0 && val.indexOf('"') < 0 ) return val;
+		
+		StringBuilder buf = new StringBuilder(val.length());
+		int ln = val.length();
+		for( int i = 0 ; i < ln ; i++ ) {
+			char ch = val.charAt(i);
+			if( ch == '"' ) continue;
+			else if( ch == '%' && i + 2 < ln && val.charAt(i + 1) == '3' && val.charAt(i + 2) == 'D' ) {
+				buf.append('=');
+				i += 2;
+			}
+			else if( ch == '%' && i + 2 < ln && val.charAt(i + 1) == '2' && val.charAt(i + 2) == '2' ) {
+				i += 2;
+			}
+			else {
+				buf.append(ch);
+			}
+		}
+		
+		return buf.toString();
+	}
+}
@@ -26,6 +26,7 @@ import javax.servlet.jsp.tagext.TagSupport;
 import org.talframework.talui.mvc.config.AppConfig;
 import org.talframework.talui.mvc.config.PageConfig;
 import org.talframework.talui.mvc.config.WindowConfig;
+import org.talframework.talui.mvc.servlet.handlers.ParallelWindowRenderer.WindowRenders;
 import org.talframework.talui.mvc.servlet.util.RequestAttributeUtils;
 
 /**
@@ -51,6 +52,12 @@ import org.talframework.talui.mvc.servlet.util.RequestAttributeUtils;
  * </div>
  * </code>
  * 
+ * <p>If the page has started rendering its windows in parallel
+ * (see {@link org.talframework.talui.mvc.servlet.handlers.ParallelWindowRenderer})
+ * then the rendered window is written out instead of including
+ * the window render. A window that does not render in time is
+ * output as if it was initially asynchronous.</p>
+ * 
  * @author Tom Spencer
  */
 public class WindowTag extends TagSupport {
@@ -81,6 +88,12 @@ public class WindowTag extends TagSupport {
 		
 		if( style == null ) style = "window";
 		
+		// The window will not be rendered with the page, so stop any render of it
+		if( initialAsync ) {
+			WindowRenders renders = RequestAttributeUtils.getWindowRenders((HttpServletRequest)pageContext.getRequest());
+			if( renders != null ) renders.skip(window);
+		}
+		
 		if( outerStyle != null ) builder.append("<div class=\"").append(outerStyle).append("\">\n");
 		builder.append("<div id=\"").append(windowConfig.getNamespace()).append("-wrapper\" class=\"").append(style).append("\">\n");
 		if( header ) {
@@ -148,11 +161,22 @@ public class WindowTag extends TagSupport {
 				builder.append("</script>");*/
 			}
 			else {
-				pageContext.getOut().write(builder.toString());
-				pageContext.getOut().flush();
-				pageContext.getServletContext().getRequestDispatcher(renderUrl).include(pageContext.getRequest(), pageContext.getResponse());
-				pageContext.getOut().flush();
-				builder.setLength(0);
+				// Use the window if rendered in parallel, else include it
+				WindowRenders renders = RequestAttributeUtils.getWindowRenders((HttpServletRequest)pageContext.getRequest());
+				String content = renders != null ? renders.getContent(window) : null;
+				if( content != null ) {
+					builder.append(content);
+				}
+				else if( renders != null && renders.isDeferred(window) ) {
+					builder.append("<div id=\"").append(windowConfig.getNamespace()).append("\" class=\"async-panel\">You must have JavaScript enabled to view this panel</div>");
+				}
+				else {
+					pageContext.getOut().write(builder.toString());
+					pageContext.getOut().flush();
+					pageContext.getServletContext().getRequestDispatcher(renderUrl).include(pageContext.getRequest(), pageContext.getResponse());
+					pageContext.getOut().flush();
+					builder.setLength(0);
+				}
 			}
 			
 			builder.append("\n\n  <!-- *** Window Content Ends *** -->\n");
@@ -25,6 +25,7 @@ import org.talframework.talui.mvc.config.PageConfig;
 import org.talframework.talui.mvc.config.WindowConfig;
 import org.talframework.talui.mvc.model.StandardModel;
 import org.talframework.talui.mvc.servlet.RequestCoordinates;
+import org.talframework.talui.mvc.servlet.handlers.ParallelWindowRenderer.WindowRenders;
 
 /**
  * This helper class is used by the servlet helpers to
@@ -46,6 +47,7 @@ public class RequestAttributeUtils {
 	
 	public final static String TEMPLATE_CONFIG = "templateConfig";
 	public final static String RENDER_MODEL = "renderModel";
+	public final static String WINDOW_RENDERS = "_windowRenders";
 	
 	/**
 	 * Call to get the request coordinates
@@ -84,6 +86,13 @@ public class RequestAttributeUtils {
 		req.setAttribute(MODEL, model);
 	}
 	
+	/**
+	 * Call to remove the model from the request
+	 */
+	public static void clearModel(HttpServletRequest req) {
+		req.removeAttribute(MODEL);
+	}
+	
 	/**
 	 * @return The current app from the request.
 	 */
@@ -98,6 +107,13 @@ public class RequestAttributeUtils {
 		req.setAttribute(APP, app);
 	}
 	
+	/**
+	 * Call to remove the current app from the request
+	 */
+	public static void clearCurrentApp(HttpServletRequest req) {
+		req.removeAttribute(APP);
+	}
+	
 	/**
 	 * @return The current page from the request.
 	 */
@@ -112,6 +128,13 @@ public class RequestAttributeUtils {
 		req.setAttribute(PAGE, page);
 	}
 	
+	/**
+	 * Call to remove the current page from the request
+	 */
+	public static void clearCurrentPage(HttpServletRequest req) {
+		req.removeAttribute(PAGE);
+	}
+	
 	/**
 	 * @return The current window from the request.
 	 */
@@ -165,4 +188,28 @@ public class RequestAttributeUtils {
 	public static void clearRenderModel(HttpServletRequest req) {
 		req.removeAttribute(RENDER_MODEL);
 	}
+	
+	/**
+	 * Call to get the windows being rendered in parallel
+	 * 
+	 * @param req The current request
+	 * @return The window renders (or null if not rendering in parallel)
+	 */
+	public static WindowRenders getWindowRenders(HttpServletRequest req) {
+		return (WindowRenders)req.getAttribute(WINDOW_RENDERS);
+	}
+	
+	/**
+	 * Call to save the windows being rendered in parallel
+	 */
+	public static void saveWindowRenders(HttpServletRequest req, WindowRenders renders) {
+		req.setAttribute(WINDOW_RENDERS, renders);
+	}
+	
+	/**
+	 * Call to clear the windows being rendered in parallel
+	 */
+	public static void clearWindowRenders(HttpServletRequest req) {
+		req.removeAttribute(WINDOW_RENDERS);
+	}
 }
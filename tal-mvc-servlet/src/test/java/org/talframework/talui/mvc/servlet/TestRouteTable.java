@@ -0,0 +1,226 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.servlet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.ApplicationContext;
+import org.talframework.talui.mvc.Window;
+import org.talframework.talui.mvc.config.AppConfig;
+import org.talframework.talui.mvc.config.PageConfig;
+import org.talframework.talui.mvc.config.WindowConfig;
+
+/**
+ * Tests the RouteTable class
+ * 
+ * @author Tom Spencer
+ */
+public class TestRouteTable {
+
+	/** JMock Mockery context */
+	private Mockery context = new JUnit4Mockery();
+	/** The context holding the apps */
+	private ApplicationContext ctx = null;
+	/** The app found up front */
+	private AppConfig app = null;
+	/** The app only found when requested */
+	private AppConfig lazy = null;
+	/** The table under test */
+	private RouteTable table = null;
+	/** The coordinates to fill in */
+	private RequestCoordinates coords = null;
+	
+	/**
+	 * Sets up the apps and the table
+	 */
+	@Before
+	public void setup() {
+		app = createApp("app", "page", "window");
+		lazy = createApp("lazy", "lazyPage", "lazyWindow");
+		
+		final Map<String, Object> beans = new HashMap<String, Object>();
+		beans.put("app", app);
+		
+		ctx = context.mock(ApplicationContext.class);
+		context.checking(new Expectations() {{
+			allowing(ctx).getStartupDate(); will(returnValue(1000L));
+			allowing(ctx).getBeansOfType(AppConfig.class); will(returnValue(beans));
+			allowing(ctx).containsBean("lazy"); will(returnValue(true));
+			allowing(ctx).getBean("lazy"); will(returnValue(lazy));
+			allowing(ctx).containsBean("other"); will(returnValue(true));
+			allowing(ctx).getBean("other"); will(returnValue("notAnApp"));
+			allowing(ctx).containsBean("unknown"); will(returnValue(false));
+		}});
+		
+		table = new RouteTable(ctx);
+		coords = new RequestCoordinates();
+	}
+	
+	/**
+	 * Ensures a full path is routed to the app, page and window
+	 */
+	@Test
+	public void fullPath() {
+		assertEquals(1, table.getSize());
+		
+		table.route("app", "action/page/window/submit", coords);
+		assertSame(app, coords.getApp());
+		assertEquals("action", coords.getRequestType());
+		assertSame(app.getPage("page"), coords.getPage());
+		assertSame(app.getPage("page").getWindow("window"), coords.getWindow());
+		assertEquals("submit", coords.getAction());
+	}
+	
+	/**
+	 * Ensures a path without a window or action leaves them null
+	 * and previous values are reset
+	 */
+	@Test
+	public void pageOnly() {
+		table.route("app", "action/page/window/submit", coords);
+		table.route("app", "render/page", coords);
+		assertSame(app, coords.getApp());
+		assertEquals("render", coords.getRequestType());
+		assertSame(app.getPage("page"), coords.getPage());
+		assertNull(coords.getWindow());
+		assertNull(coords.getAction());
+	}
+	
+	/**
+	 * Ensures an app not found up front is found in the context
+	 */
+	@Test
+	public void lazyApp() {
+		table.route("lazy", "render/lazyPage/lazyWindow", coords);
+		assertSame(lazy, coords.getApp());
+		assertSame(lazy.getPage("lazyPage").getWindow("lazyWindow"), coords.getWindow());
+		assertEquals(2, table.getSize());
+	}
+	
+	/**
+	 * Ensures the pages and windows are always those currently
+	 * in the app, even if they change after the table is built
+	 */
+	@Test
+	public void changedApp() {
+		table.route("app", "render/page", coords);
+		
+		AppConfig changed = createApp("app", "newPage", "newWindow");
+		List<PageConfig> pages = new ArrayList<PageConfig>(changed.getPages());
+		app.setPages(pages);
+		
+		table.route("app", "render/newPage/newWindow", coords);
+		assertSame(pages.get(0), coords.getPage());
+		assertSame(pages.get(0).getWindow("newWindow"), coords.getWindow());
+	}
+	
+	/**
+	 * Ensures an unknown app is invalid
+	 */
+	@Test(expected=InvalidCoordinatesException.class)
+	public void unknownApp() {
+		table.route("unknown", "render/page", coords);
+	}
+	
+	/**
+	 * Ensures a bean that is not an app is invalid
+	 */
+	@Test(expected=InvalidCoordinatesException.class)
+	public void notAnApp() {
+		table.route("other", "render/page", coords);
+	}
+	
+	/**
+	 * Ensures there must be an app
+	 */
+	@Test(expected=InvalidCoordinatesException.class)
+	public void nullApp() {
+		table.route(null, "render/page", coords);
+	}
+	
+	/**
+	 * Ensures there must be a path
+	 */
+	@Test(expected=InvalidCoordinatesException.class)
+	public void nullPath() {
+		table.route("app", null, coords);
+	}
+	
+	/**
+	 * Ensures there must be a page in the path
+	 */
+	@Test(expected=InvalidCoordinatesException.class)
+	public void noPage() {
+		table.route("app", "render", coords);
+	}
+	
+	/**
+	 * Ensures an unknown page fails as it does in the app
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void unknownPage() {
+		table.route("app", "render/unknown", coords);
+	}
+	
+	/**
+	 * Ensures an unknown window fails as it does in the page
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void unknownWindow() {
+		table.route("app", "render/page/unknown", coords);
+	}
+	
+	/**
+	 * Ensures there must be a context
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void nullContext() {
+		new RouteTable(null);
+	}
+	
+	/**
+	 * Helper to create an app with a single page and window
+	 */
+	private AppConfig createApp(String name, String pageName, String windowName) {
+		WindowConfig window = new WindowConfig(windowName, context.mock(Window.class, windowName));
+		List<WindowConfig> windows = new ArrayList<WindowConfig>();
+		windows.add(window);
+		
+		PageConfig page = new PageConfig();
+		page.setName(pageName);
+		page.setWindows(windows);
+		
+		List<PageConfig> pages = new ArrayList<PageConfig>();
+		pages.add(page);
+		
+		AppConfig ret = new AppConfig(name);
+		ret.setPages(pages);
+		return ret;
+	}
+}
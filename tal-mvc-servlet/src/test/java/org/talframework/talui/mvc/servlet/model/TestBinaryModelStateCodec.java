@@ -0,0 +1,197 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.servlet.model;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.talframework.talui.mvc.model.ModelAttribute;
+import org.talframework.talui.mvc.model.ModelConfiguration;
+import org.talframework.talui.mvc.model.SimpleModelAttribute;
+
+/**
+ * Tests the BinaryModelStateCodec class
+ * 
+ * @author Tom Spencer
+ */
+public class TestBinaryModelStateCodec {
+	
+	/** The shared key for the tests */
+	private static final byte[] KEY = "0123456789abcdef".getBytes();
+	
+	/** The model to encode against */
+	private ModelConfiguration model = null;
+	/** The codec under test */
+	private BinaryModelStateCodec codec = null;
+	
+	/**
+	 * Creates the test model and codec
+	 */
+	@Before
+	public void setup() {
+		model = createModel("test");
+		codec = new BinaryModelStateCodec(KEY, true);
+	}
+	
+	/**
+	 * Ensures each type of value survives the round trip
+	 */
+	@Test
+	public void roundTrip() {
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("str", "hello, world");
+		attrs.put("int", Integer.valueOf(-42));
+		attrs.put("long", Long.valueOf(1234567890123L));
+		attrs.put("bool", Boolean.TRUE);
+		attrs.put("dbl", Double.valueOf(1.5));
+		attrs.put("date", new Date(1000000L));
+		attrs.put("unknown", "ignored");
+		
+		String value = codec.encode(model, attrs);
+		assertNotNull(value);
+		
+		Map<String, Object> decoded = new HashMap<String, Object>();
+		assertEquals(5, codec.decode(model, value, decoded));
+		assertEquals("hello, world", decoded.get("str"));
+		assertEquals(Integer.valueOf(-42), decoded.get("int"));
+		assertEquals(Long.valueOf(1234567890123L), decoded.get("long"));
+		assertEquals(Boolean.TRUE, decoded.get("bool"));
+		assertEquals(Double.valueOf(1.5), decoded.get("dbl"));
+		assertFalse(decoded.containsKey("date")); // Not simple
+		assertFalse(decoded.containsKey("unknown"));
+		
+		// Same key in another codec reads it too
+		decoded.clear();
+		assertEquals(5, new BinaryModelStateCodec(KEY, false).decode(model, value, decoded));
+	}
+	
+	/**
+	 * Ensures nothing is encoded if there are no simple values
+	 */
+	@Test
+	public void empty() {
+		assertNull(codec.encode(model, new HashMap<String, Object>()));
+		assertNull(codec.encode(model, null));
+	}
+	
+	/**
+	 * Ensures a value with an altered MAC or data is ignored
+	 */
+	@Test
+	public void tampered() {
+		String value = encodeString();
+		
+		Map<String, Object> decoded = new HashMap<String, Object>();
+		assertEquals(0, codec.decode(model, alter(value, value.length() - 1), decoded));
+		assertEquals(0, codec.decode(model, alter(value, 2), decoded));
+		assertTrue(decoded.isEmpty());
+	}
+	
+	/**
+	 * Ensures a truncated or invalid value is ignored
+	 */
+	@Test
+	public void truncated() {
+		String value = encodeString();
+		
+		Map<String, Object> decoded = new HashMap<String, Object>();
+		assertEquals(0, codec.decode(model, value.substring(0, value.length() - 4), decoded));
+		assertEquals(0, codec.decode(model, value.substring(0, 8), decoded));
+		assertEquals(0, codec.decode(model, "", decoded));
+		assertEquals(0, codec.decode(model, null, decoded));
+		assertEquals(0, codec.decode(model, "not*base64!", decoded));
+		assertTrue(decoded.isEmpty());
+	}
+	
+	/**
+	 * Ensures a signed value that inflates beyond the limit is ignored
+	 */
+	@Test
+	public void oversize() {
+		StringBuilder buf = new StringBuilder();
+		for( int i = 0 ; i < 20000 ; i++ ) buf.append('a');
+		
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("str", buf.toString());
+		String value = codec.encode(model, attrs);
+		assertNotNull(value);
+		assertTrue(value.length() < 1000);
+		
+		Map<String, Object> decoded = new HashMap<String, Object>();
+		assertEquals(0, codec.decode(model, value, decoded));
+		assertTrue(decoded.isEmpty());
+	}
+	
+	/**
+	 * Ensures a value from another model or key is ignored
+	 */
+	@Test
+	public void otherModel() {
+		String value = encodeString();
+		
+		Map<String, Object> decoded = new HashMap<String, Object>();
+		assertEquals(0, codec.decode(createModel("other"), value, decoded));
+		assertEquals(0, new BinaryModelStateCodec("fedcba9876543210".getBytes(), true).decode(model, value, decoded));
+		assertTrue(decoded.isEmpty());
+	}
+	
+	/**
+	 * Ensures a short key is rejected
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void shortKey() {
+		new BinaryModelStateCodec("short".getBytes(), true);
+	}
+	
+	/**
+	 * Helper to encode a single string value
+	 */
+	private String encodeString() {
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("str", "value");
+		return codec.encode(model, attrs);
+	}
+	
+	/**
+	 * Helper to change a single character of the value
+	 */
+	private String alter(String value, int index) {
+		char ch = value.charAt(index) == 'A' ? 'B' : 'A';
+		return value.substring(0, index) + ch + value.substring(index + 1);
+	}
+	
+	/**
+	 * Helper to create a model with the test attributes
+	 */
+	private ModelConfiguration createModel(String name) {
+		List<ModelAttribute> attributes = new ArrayList<ModelAttribute>();
+		attributes.add(new SimpleModelAttribute("str"));
+		attributes.add(new SimpleModelAttribute("int", Integer.class));
+		attributes.add(new SimpleModelAttribute("long", Long.class));
+		attributes.add(new SimpleModelAttribute("bool", boolean.class));
+		attributes.add(new SimpleModelAttribute("dbl", Double.class));
+		attributes.add(new SimpleModelAttribute("date", Date.class));
+		return new ModelConfiguration(name, attributes);
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.servlet.model;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the FileModelStateStore class
+ * 
+ * @author Tom Spencer
+ */
+public class TestFileModelStateStore {
+	
+	/** The directory for the test */
+	private File dir = null;
+	/** The store under test */
+	private FileModelStateStore store = null;
+	
+	/**
+	 * Creates the store in a new temporary directory
+	 */
+	@Before
+	public void setup() throws Exception {
+		dir = File.createTempFile("modelstate", "");
+		dir.delete();
+		store = new FileModelStateStore(dir);
+	}
+	
+	/**
+	 * Removes the temporary directory
+	 */
+	@After
+	public void cleanup() {
+		delete(dir);
+	}
+
+	/**
+	 * Ensures a saved layer is loaded back
+	 */
+	@Test
+	public void saveLoad() {
+		assertTrue(dir.isDirectory());
+		assertNull(store.load("id", "layer"));
+		
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("a", "1");
+		attrs.put("b", new Integer(2));
+		store.save("id", "layer", attrs);
+		
+		Map<String, Object> loaded = store.load("id", "layer");
+		assertEquals(attrs, loaded);
+		assertNull(store.load("other", "layer"));
+		assertNull(store.load("id", "other"));
+		
+		// Names are made safe and no temporary file is left
+		store.save("a/b", "c:d", attrs);
+		assertEquals(attrs, store.load("a/b", "c:d"));
+		assertNull(store.load("a_b", "c:d"));
+		assertEquals(1, new File(dir, "id").list().length);
+	}
+	
+	/**
+	 * Ensures saving an empty layer removes it
+	 */
+	@Test
+	public void saveEmpty() {
+		store.save("id", "layer", Collections.<String, Object>singletonMap("a", "1"));
+		store.save("id", "layer", new HashMap<String, Object>());
+		assertNull(store.load("id", "layer"));
+		
+		store.save("id", "layer", Collections.<String, Object>singletonMap("a", "1"));
+		store.save("id", "layer", null);
+		assertNull(store.load("id", "layer"));
+	}
+	
+	/**
+	 * Ensures a layer that cannot be written is removed
+	 */
+	@Test
+	public void saveUnserializable() {
+		store.save("id", "layer", Collections.<String, Object>singletonMap("a", "1"));
+		store.save("id", "layer", Collections.<String, Object>singletonMap("a", new Object()));
+		assertNull(store.load("id", "layer"));
+		assertEquals(0, new File(dir, "id").list().length);
+	}
+	
+	/**
+	 * Ensures an update only touches the given attributes
+	 */
+	@Test
+	public void update() {
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("a", "1");
+		attrs.put("b", "2");
+		store.save("id", "layer", attrs);
+		
+		store.update("id", "layer", Collections.<String, Object>singletonMap("a", "changed"), Collections.singleton("b"));
+		Map<String, Object> loaded = store.load("id", "layer");
+		assertEquals(1, loaded.size());
+		assertEquals("changed", loaded.get("a"));
+		
+		store.update("id", "new", Collections.<String, Object>singletonMap("c", "3"), null);
+		assertEquals("3", store.load("id", "new").get("c"));
+		
+		store.update("id", "layer", null, Collections.singleton("a"));
+		assertNull(store.load("id", "layer"));
+	}
+	
+	/**
+	 * Ensures layers can be removed singly and all together
+	 */
+	@Test
+	public void remove() {
+		store.save("id", "layer1", Collections.<String, Object>singletonMap("a", "1"));
+		store.save("id", "layer2", Collections.<String, Object>singletonMap("b", "2"));
+		store.save("other", "layer1", Collections.<String, Object>singletonMap("c", "3"));
+		
+		store.remove("id", "layer1");
+		assertNull(store.load("id", "layer1"));
+		assertNotNull(store.load("id", "layer2"));
+		
+		store.removeAll("id");
+		assertNull(store.load("id", "layer2"));
+		assertFalse(new File(dir, "id").exists());
+		assertNotNull(store.load("other", "layer1"));
+		
+		store.remove("missing", "layer1");
+		store.removeAll("missing");
+	}
+	
+	/**
+	 * Ensures concurrent updates to different attributes of
+	 * the same id are not lost
+	 */
+	@Test
+	public void concurrentUpdate() throws Exception {
+		Thread[] threads = new Thread[4];
+		for( int i = 0 ; i < threads.length ; i++ ) {
+			final String name = "attr" + i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for( int j = 0 ; j < 20 ; j++ ) {
+						store.update("id", "layer", Collections.<String, Object>singletonMap(name, new Integer(j)), null);
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for( int i = 0 ; i < threads.length ; i++ ) threads[i].join();
+		
+		Map<String, Object> loaded = store.load("id", "layer");
+		assertEquals(threads.length, loaded.size());
+		for( int i = 0 ; i < threads.length ; i++ ) {
+			assertEquals(new Integer(19), loaded.get("attr" + i));
+		}
+	}
+	
+	/**
+	 * Helper to delete a file or directory
+	 */
+	private void delete(File file) {
+		File[] files = file.listFiles();
+		if( files != null ) {
+			for( int i = 0 ; i < files.length ; i++ ) delete(files[i]);
+		}
+		file.delete();
+	}
+}
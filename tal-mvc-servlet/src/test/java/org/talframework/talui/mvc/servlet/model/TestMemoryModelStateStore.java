@@ -0,0 +1,118 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.servlet.model;
+
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Tests the MemoryModelStateStore class
+ * 
+ * @author Tom Spencer
+ */
+public class TestMemoryModelStateStore {
+
+	/**
+	 * Ensures a saved layer is loaded as a copy
+	 */
+	@Test
+	public void saveLoad() {
+		MemoryModelStateStore store = new MemoryModelStateStore();
+		assertNull(store.load("id", "layer"));
+		
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("a", "1");
+		store.save("id", "layer", attrs);
+		attrs.put("b", "2");
+		
+		Map<String, Object> loaded = store.load("id", "layer");
+		assertEquals(1, loaded.size());
+		assertEquals("1", loaded.get("a"));
+		
+		loaded.put("c", "3");
+		assertEquals(1, store.load("id", "layer").size());
+		assertNull(store.load("other", "layer"));
+		assertNull(store.load("id", "other"));
+	}
+	
+	/**
+	 * Ensures saving an empty layer removes it
+	 */
+	@Test
+	public void saveEmpty() {
+		MemoryModelStateStore store = new MemoryModelStateStore();
+		store.save("id", "layer", Collections.<String, Object>singletonMap("a", "1"));
+		store.save("id", "layer", new HashMap<String, Object>());
+		assertNull(store.load("id", "layer"));
+		
+		store.save("id", "layer", Collections.<String, Object>singletonMap("a", "1"));
+		store.save("id", "layer", null);
+		assertNull(store.load("id", "layer"));
+	}
+	
+	/**
+	 * Ensures an update only touches the given attributes
+	 */
+	@Test
+	public void update() {
+		MemoryModelStateStore store = new MemoryModelStateStore();
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("a", "1");
+		attrs.put("b", "2");
+		store.save("id", "layer", attrs);
+		
+		store.update("id", "layer", Collections.<String, Object>singletonMap("a", "changed"), Collections.singleton("b"));
+		Map<String, Object> loaded = store.load("id", "layer");
+		assertEquals(1, loaded.size());
+		assertEquals("changed", loaded.get("a"));
+		
+		store.update("id", "new", Collections.<String, Object>singletonMap("c", "3"), null);
+		assertEquals("3", store.load("id", "new").get("c"));
+		
+		store.update("id", "layer", null, Collections.singleton("a"));
+		assertNull(store.load("id", "layer"));
+	}
+	
+	/**
+	 * Ensures layers can be removed singly and all together
+	 */
+	@Test
+	public void remove() {
+		MemoryModelStateStore store = new MemoryModelStateStore();
+		store.save("id", "layer1", Collections.<String, Object>singletonMap("a", "1"));
+		store.save("id", "layer2", Collections.<String, Object>singletonMap("b", "2"));
+		store.save("other", "layer1", Collections.<String, Object>singletonMap("c", "3"));
+		assertEquals(2, store.getSize());
+		
+		store.remove("id", "layer1");
+		assertNull(store.load("id", "layer1"));
+		assertNotNull(store.load("id", "layer2"));
+		
+		store.removeAll("id");
+		assertNull(store.load("id", "layer2"));
+		assertNotNull(store.load("other", "layer1"));
+		assertEquals(1, store.getSize());
+		
+		store.remove("missing", "layer1");
+		store.removeAll("missing");
+	}
+}
@@ -0,0 +1,333 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.servlet.model;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpSession;
+import javax.servlet.http.HttpSessionBindingEvent;
+import javax.servlet.http.HttpSessionBindingListener;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.talframework.talui.mvc.model.ModelAttribute;
+import org.talframework.talui.mvc.model.ModelConfiguration;
+import org.talframework.talui.mvc.model.SimpleModelAttribute;
+
+/**
+ * Tests the SessionModelAttributeResolver class, mainly that
+ * only the changed attributes are written to the store
+ * 
+ * @author Tom Spencer
+ */
+public class TestSessionModelAttributeResolver {
+	
+	/** The model layer to save */
+	private ModelConfiguration model = null;
+	/** The store recording the updates */
+	private RecordingStore store = null;
+	/** The session shared by the requests */
+	private FakeSession session = null;
+	
+	/**
+	 * Creates the model and sets the store
+	 */
+	@Before
+	public void setup() {
+		SimpleModelAttribute flash = new SimpleModelAttribute("flash");
+		flash.setFlash(true);
+		
+		List<ModelAttribute> attributes = new ArrayList<ModelAttribute>();
+		attributes.add(new SimpleModelAttribute("a"));
+		attributes.add(new SimpleModelAttribute("b"));
+		attributes.add(new SimpleModelAttribute("c"));
+		attributes.add(flash);
+		model = new ModelConfiguration("layer", attributes);
+		
+		store = new RecordingStore();
+		session = new FakeSession();
+		SessionModelAttributeResolver.setDefaultStore(store);
+	}
+	
+	/**
+	 * Clears the store
+	 */
+	@After
+	public void cleanup() {
+		SessionModelAttributeResolver.setDefaultStore(null);
+	}
+	
+	/**
+	 * Ensures only the changed attributes are written and that
+	 * a changed attribute that is not held (or is flash) is 
+	 * removed from the store
+	 */
+	@Test
+	public void saveChanged() {
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("a", "1");
+		attrs.put("b", "2");
+		attrs.put("flash", "f");
+		
+		SessionModelAttributeResolver resolver = new SessionModelAttributeResolver(createRequest(session));
+		resolver.saveChangedAttributes(model, attrs, set("a", "c", "flash"));
+		
+		assertEquals(1, store.updates);
+		assertEquals(1, store.changed.size());
+		assertEquals("1", store.changed.get("a"));
+		assertEquals(set("c", "flash"), store.removed);
+		assertNotNull(session.attributes.get("_modelStateToken"));
+		
+		// Loaded in a new request from the store
+		resolver = new SessionModelAttributeResolver(createRequest(session));
+		Map<String, Object> loaded = resolver.getModelAttributes(model);
+		assertEquals(1, loaded.size());
+		assertEquals("1", loaded.get("a"));
+		
+		// Subsequent changes update the held layer
+		attrs.put("b", "changed");
+		attrs.remove("a");
+		resolver.saveChangedAttributes(model, attrs, set("a", "b"));
+		assertEquals(2, store.updates);
+		assertEquals(1, store.changed.size());
+		assertEquals("changed", store.changed.get("b"));
+		assertEquals(set("a"), store.removed);
+		
+		loaded = new SessionModelAttributeResolver(createRequest(session)).getModelAttributes(model);
+		assertEquals(1, loaded.size());
+		assertEquals("changed", loaded.get("b"));
+	}
+	
+	/**
+	 * Ensures nothing is written (and no session is created)
+	 * if nothing has changed or not saving
+	 */
+	@Test
+	public void noChanges() {
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("a", "1");
+		
+		HttpServletRequest request = createRequest(null);
+		SessionModelAttributeResolver resolver = new SessionModelAttributeResolver(request);
+		resolver.saveChangedAttributes(model, attrs, new HashSet<String>());
+		resolver.saveChangedAttributes(model, attrs, null);
+		assertEquals(0, store.updates);
+		assertNull(request.getSession(false));
+		
+		// Still available for the rest of the request
+		assertSame(attrs, resolver.getModelAttributes(model));
+		
+		resolver = new SessionModelAttributeResolver(createRequest(session));
+		resolver.setSaveMode(false);
+		resolver.saveChangedAttributes(model, attrs, set("a"));
+		assertEquals(0, store.updates);
+	}
+	
+	/**
+	 * Ensures only removing attributes does not create a session
+	 */
+	@Test
+	public void removedWithoutSession() {
+		HttpServletRequest request = createRequest(null);
+		SessionModelAttributeResolver resolver = new SessionModelAttributeResolver(request);
+		resolver.saveChangedAttributes(model, new HashMap<String, Object>(), set("a"));
+		assertEquals(0, store.updates);
+		assertNull(request.getSession(false));
+	}
+	
+	/**
+	 * Ensures the full set of (non-flash) attributes is held in
+	 * the session when there is no store
+	 */
+	@Test
+	public void noStore() {
+		SessionModelAttributeResolver.setDefaultStore(null);
+		
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("a", "1");
+		attrs.put("b", "2");
+		attrs.put("flash", "f");
+		
+		SessionModelAttributeResolver resolver = new SessionModelAttributeResolver(createRequest(session));
+		resolver.saveChangedAttributes(model, attrs, set("a"));
+		
+		Map<?, ?> held = (Map<?, ?>)session.attributes.get("layer");
+		assertEquals(2, held.size());
+		assertEquals("1", held.get("a"));
+		assertEquals("2", held.get("b"));
+		assertNull(session.attributes.get("_modelStateToken"));
+		assertEquals(0, store.updates);
+	}
+	
+	/**
+	 * Ensures the state is removed from the store with the
+	 * model and when the session ends
+	 */
+	@Test
+	public void remove() {
+		Map<String, Object> attrs = new HashMap<String, Object>();
+		attrs.put("a", "1");
+		
+		SessionModelAttributeResolver resolver = new SessionModelAttributeResolver(createRequest(session));
+		resolver.saveChangedAttributes(model, attrs, set("a"));
+		
+		resolver = new SessionModelAttributeResolver(createRequest(session));
+		resolver.removeModel(model);
+		assertNull(resolver.getModelAttributes(model));
+		
+		resolver.saveChangedAttributes(model, attrs, set("a"));
+		assertEquals(1, store.getSize());
+		session.invalidate();
+		assertEquals(0, store.getSize());
+	}
+	
+	/**
+	 * Helper to create a set of names
+	 */
+	private Set<String> set(String... names) {
+		Set<String> ret = new HashSet<String>();
+		for( int i = 0 ; i < names.length ; i++ ) ret.add(names[i]);
+		return ret;
+	}
+	
+	/**
+	 * Helper to create a request. If the session is null one is
+	 * created only if asked for.
+	 */
+	private HttpServletRequest createRequest(final FakeSession requestSession) {
+		InvocationHandler handler = new InvocationHandler() {
+			private final Map<String, Object> attributes = new HashMap<String, Object>();
+			private FakeSession current = requestSession;
+			
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+				String name = method.getName();
+				if( "getAttribute".equals(name) ) return attributes.get(args[0]);
+				else if( "setAttribute".equals(name) ) attributes.put((String)args[0], args[1]);
+				else if( "removeAttribute".equals(name) ) attributes.remove(args[0]);
+				else if( "getSession".equals(name) ) {
+					boolean create = args == null || ((Boolean)args[0]).booleanValue();
+					if( current == null && create ) current = new FakeSession();
+					return current != null ? current.proxy : null;
+				}
+				else throw new UnsupportedOperationException(name);
+				return null;
+			}
+		};
+		
+		return (HttpServletRequest)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpServletRequest.class}, handler);
+	}
+	
+	/**
+	 * Simple session that holds its attributes in a map and
+	 * notifies any binding listeners
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class FakeSession implements InvocationHandler {
+		/** The attributes of the session */
+		final Map<String, Object> attributes = new HashMap<String, Object>();
+		/** The session itself */
+		final HttpSession proxy = (HttpSession)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{HttpSession.class}, this);
+		
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			String name = method.getName();
+			if( "getAttribute".equals(name) ) return attributes.get(args[0]);
+			else if( "setAttribute".equals(name) ) {
+				unbound((String)args[0], attributes.put((String)args[0], args[1]));
+				if( args[1] instanceof HttpSessionBindingListener ) ((HttpSessionBindingListener)args[1]).valueBound(new HttpSessionBindingEvent(this.proxy, (String)args[0], args[1]));
+			}
+			else if( "removeAttribute".equals(name) ) unbound((String)args[0], attributes.remove(args[0]));
+			else if( "invalidate".equals(name) ) invalidate();
+			else throw new UnsupportedOperationException(name);
+			return null;
+		}
+		
+		/**
+		 * Removes all attributes as if the session has ended
+		 */
+		public void invalidate() {
+			Iterator<String> it = new ArrayList<String>(attributes.keySet()).iterator();
+			while( it.hasNext() ) {
+				String name = it.next();
+				unbound(name, attributes.remove(name));
+			}
+		}
+		
+		/**
+		 * Helper to notify a value it has been unbound
+		 */
+		private void unbound(String name, Object value) {
+			if( value instanceof HttpSessionBindingListener ) ((HttpSessionBindingListener)value).valueUnbound(new HttpSessionBindingEvent(this.proxy, name, value));
+		}
+	}
+	
+	/**
+	 * Memory store that records the last update
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class RecordingStore implements ModelStateStore {
+		/** The store holding the state */
+		private final MemoryModelStateStore delegate = new MemoryModelStateStore();
+		/** The number of updates */
+		int updates = 0;
+		/** The attributes set in the last update */
+		Map<String, Object> changed = null;
+		/** The attributes removed in the last update */
+		Set<String> removed = null;
+		
+		public Map<String, Object> load(String id, String layer) {
+			return delegate.load(id, layer);
+		}
+		
+		public void save(String id, String layer, Map<String, Object> attrs) {
+			throw new UnsupportedOperationException("Expected only changes to be saved");
+		}
+		
+		public void update(String id, String layer, Map<String, Object> changed, Set<String> removed) {
+			this.updates++;
+			this.changed = changed;
+			this.removed = removed;
+			delegate.update(id, layer, changed, removed);
+		}
+		
+		public void remove(String id, String layer) {
+			delegate.remove(id, layer);
+		}
+		
+		public void removeAll(String id) {
+			delegate.removeAll(id);
+		}
+		
+		public int getSize() {
+			return delegate.getSize();
+		}
+	}
+}
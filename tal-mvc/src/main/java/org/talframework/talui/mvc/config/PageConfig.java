@@ -53,6 +53,11 @@ public final class PageConfig {
 	private Map<String, WindowConfig> windows = null;
 	/** The page events th*/
 	private Map<String, PageEventConfig> events = null;
+	/** The windows that have a config for each event (built when first needed) */
+	private volatile Map<String, WindowConfig[]> subscriptions = null;
+	
+	/** Returned when no window has a config for an event */
+	private static final WindowConfig[] NO_SUBSCRIBERS = new WindowConfig[0];
 	
 	/**
 	 * Default constructor - the page config will require
@@ -102,6 +107,7 @@ public final class PageConfig {
 		this.model = model;
 		this.windows = windows;
 		this.events = pageEvents;
+		this.subscriptions = buildSubscriptions();
 	}
 	
 	/**
@@ -207,6 +213,56 @@ public final class PageConfig {
 		return ret;
 	}
 	
+	/**
+	 * Call to get the windows that have a config for the given
+	 * event, i.e. the windows that an event is fired into. The
+	 * index is built when the page is initialised.
+	 * 
+	 * @param event The name of the event
+	 * @return The windows (never null)
+	 */
+	public WindowConfig[] getSubscribers(String event) {
+		Map<String, WindowConfig[]> index = subscriptions;
+		if( index == null ) {
+			index = buildSubscriptions();
+			subscriptions = index;
+		}
+		
+		WindowConfig[] ret = event != null ? index.get(event) : null;
+		return ret != null ? ret : NO_SUBSCRIBERS;
+	}
+	
+	/**
+	 * Helper to build the index of event name to the windows
+	 * that have a config for it.
+	 */
+	private Map<String, WindowConfig[]> buildSubscriptions() {
+		Map<String, List<WindowConfig>> lists = new HashMap<String, List<WindowConfig>>();
+		Iterator<WindowConfig> it = windows != null ? windows.values().iterator() : null;
+		while( it != null && it.hasNext() ) {
+			WindowConfig window = it.next();
+			Iterator<String> eventIt = window.getEventNames().iterator();
+			while( eventIt.hasNext() ) {
+				String event = eventIt.next();
+				List<WindowConfig> subscribers = lists.get(event);
+				if( subscribers == null ) {
+					subscribers = new ArrayList<WindowConfig>();
+					lists.put(event, subscribers);
+				}
+				subscribers.add(window);
+			}
+		}
+		
+		Map<String, WindowConfig[]> ret = new HashMap<String, WindowConfig[]>();
+		Iterator<String> nameIt = lists.keySet().iterator();
+		while( nameIt.hasNext() ) {
+			String event = nameIt.next();
+			List<WindowConfig> subscribers = lists.get(event);
+			ret.put(event, subscribers.toArray(new WindowConfig[subscribers.size()]));
+		}
+		return ret;
+	}
+	
 	/**
 	 * @return the windows
 	 */
@@ -225,6 +281,7 @@ public final class PageConfig {
 		if( windows == null || windows.size() == 0 ) throw new IllegalArgumentException("You have not created any windows in the " + name + " page");
 		
 		this.windows = new HashMap<String, WindowConfig>();
+		this.subscriptions = null;
 		Iterator<WindowConfig> it = windows.iterator();
 		while( it.hasNext() ) {
 			WindowConfig config = it.next();
@@ -265,6 +322,7 @@ public final class PageConfig {
 	 * {@link WindowConfig} instances out of them in this page.
 	 */
 	private void processWindows(Map<String, Object> windows) {
+		this.subscriptions = null;
 		Iterator<String> it = windows.keySet().iterator();
 		while( it.hasNext() ) {
 			String key = it.next();
@@ -17,10 +17,12 @@
 package org.talframework.talui.mvc.config;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.talframework.talui.mvc.Window;
 import org.talframework.talui.mvc.model.ModelAttribute;
@@ -224,6 +226,14 @@ public final class WindowConfig {
 		return model;
 	}
 	
+	/**
+	 * @return The names of the events this window has a config for (never null)
+	 */
+	public Set<String> getEventNames() {
+		if( this.events == null ) return Collections.emptySet();
+		else return Collections.unmodifiableSet(this.events.keySet());
+	}
+	
 	/**
 	 * Called to get the event configuration for the given
 	 * event.
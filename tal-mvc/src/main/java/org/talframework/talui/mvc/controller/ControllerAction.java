@@ -27,6 +27,12 @@ import org.talframework.talui.mvc.input.InputModel;
  * of a controller. A controller action can be configured
  * or it can be determined from annotations.
  * 
+ * <p>The methods are made accessible when the action is
+ * created so that the access checks are not repeated each
+ * time the action is invoked. After the first few calls the
+ * JVM replaces the reflective call with a generated accessor
+ * so the remaining cost per call is the argument array.</p>
+ * 
  * @author Tom Spencer
  */
 public final class ControllerAction {
@@ -65,10 +71,12 @@ public final class ControllerAction {
 			String result,
 			String failResult,
 			ParameterBinding[] parameters) {
+		if( method == null ) throw new IllegalArgumentException("You must supply the method to invoke for the controller action");
+		
 		this.controller = controller;
 		this.errorsAttribute = errorsAttribute;
-		this.method = method;
-		this.validationMethod = validationMethod;
+		this.method = makeAccessible(method);
+		this.validationMethod = makeAccessible(validationMethod);
 		this.result = result;
 		this.errorResult = failResult;
 		this.parameters = parameters;
@@ -93,7 +101,7 @@ public final class ControllerAction {
 		
 		// a. Bind parameters
 		Object[] args = null;
-		if( parameters != null ) {
+		if( parameters != null && parameters.length > 0 ) {
 			args = new Object[parameters.length];
 			for( int i = 0 ; i < parameters.length ; i++ ) {
 				args[i] = parameters[i] != null ? parameters[i].bind(model, input) : null;
@@ -138,6 +146,25 @@ public final class ControllerAction {
 		return ret != null ? ret.toString() : null;
 	}
 	
+	/**
+	 * Helper to turn off the access checks on the method. If
+	 * this is not allowed the method is invoked with the checks.
+	 * 
+	 * @param m The method (can be null)
+	 * @return The method
+	 */
+	private static Method makeAccessible(Method m) {
+		if( m != null && !m.isAccessible() ) {
+			try {
+				m.setAccessible(true);
+			}
+			catch( SecurityException e ) {
+				// Just invoke with the access checks
+			}
+		}
+		return m;
+	}
+	
 	@Override
 	public String toString() {
 		StringBuilder buf = new StringBuilder();
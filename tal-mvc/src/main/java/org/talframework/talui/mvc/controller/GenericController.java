@@ -16,7 +16,6 @@
 
 package org.talframework.talui.mvc.controller;
 
-import java.util.Iterator;
 import java.util.Map;
 
 import org.talframework.talui.mvc.Controller;
@@ -33,6 +32,11 @@ import org.talframework.talui.mvc.input.InputModel;
  * annotations to determine which method to call on the real
  * controller and how to bind the parameters to it.</p>
  * 
+ * <p>When the actions are set they are also held in a pair
+ * of arrays so that when there is no subActionParameter the
+ * input can be checked for each action without iterating
+ * over the map.</p>
+ * 
  * @author Tom Spencer
  */
 public final class GenericController implements Controller {
@@ -47,6 +51,10 @@ public final class GenericController implements Controller {
 	private ControllerAction defaultAction = null;
 	/** Holds any other controller methods */
 	private Map<String, ControllerAction> actions = null;
+	/** Holds the names of the other actions (in same order as actionTable) */
+	private String[] actionNames = null;
+	/** Holds the other actions (in same order as actionNames) */
+	private ControllerAction[] actionTable = null;
 	
 	
 	public GenericController() {
@@ -69,8 +77,7 @@ public final class GenericController implements Controller {
 	 * Finds the action method and calls it
 	 */
 	public String performAction(Model model, InputModel input) {
-		String subAction = determineSubAction(input);
-		ControllerAction action = subAction != null ? actions.get(subAction) : defaultAction;
+		ControllerAction action = determineAction(input);
 		
 		if( action == null ) {
 			throw new NoActionException("No subaction found in input: " + input);
@@ -82,34 +89,28 @@ public final class GenericController implements Controller {
 	}
 
 	/**
-	 * Internal method to get the subAction. The subAction will
-	 * be null unless the subAction is determined and matches
-	 * to a controller.
+	 * Internal method to get the action to perform. This is
+	 * the default action unless the subAction is determined and
+	 * matches to an action.
 	 * 
 	 * @param input The input model
-	 * @return The subAction.
+	 * @return The action (or null if there is no default)
 	 */
-	private String determineSubAction(InputModel input) {
-		String ret = null;
-		if( actions == null ) return ret;
+	private ControllerAction determineAction(InputModel input) {
+		if( actions == null ) return defaultAction;
 		
 		if( subActionParameter != null ) {
-			ret = input.getParameter(subActionParameter);
-			if( ret != null && ret.toString().equals("") ) ret = null;
-			if( ret != null && !actions.containsKey(ret) ) ret = null;
+			String subAction = input.getParameter(subActionParameter);
+			ControllerAction ret = subAction != null && subAction.length() > 0 ? actions.get(subAction) : null;
+			if( ret != null ) return ret;
 		}
-		else {
-			Iterator<String> it = actions.keySet().iterator();
-			while( it.hasNext() ) {
-				String subAction = it.next();
-				if( input.hasParameter(subAction) ) {
-					ret = subAction;
-					break;
-				}
+		else if( actionNames != null ) {
+			for( int i = 0 ; i < actionNames.length ; i++ ) {
+				if( input.hasParameter(actionNames[i]) ) return actionTable[i];
 			}
 		}
 		
-		return ret;
+		return defaultAction;
 	}
 	
 	@Override
@@ -192,6 +193,18 @@ public final class GenericController implements Controller {
 	 */
 	public void setActions(Map<String, ControllerAction> actions) {
 		this.actions = actions;
+		
+		if( actions != null ) {
+			actionNames = actions.keySet().toArray(new String[actions.size()]);
+			actionTable = new ControllerAction[actionNames.length];
+			for( int i = 0 ; i < actionNames.length ; i++ ) {
+				actionTable[i] = actions.get(actionNames[i]);
+			}
+		}
+		else {
+			actionNames = null;
+			actionTable = null;
+		}
 	}
 	
 }
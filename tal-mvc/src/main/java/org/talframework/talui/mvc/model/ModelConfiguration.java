@@ -18,10 +18,14 @@ package org.talframework.talui.mvc.model;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A model configuration holds all the details about the attributes
@@ -37,14 +41,28 @@ import java.util.Map;
  * a state configuration and optionally a temporary transaction
  * model.</p>
  * 
+ * <p>A configuration also holds the lookup tables the
+ * {@link StandardModel} builds for the stacks of layers that
+ * have this configuration on top, so the tables are only built
+ * once and are released along with the configuration.</p>
+ * 
  * @author Tom Spencer
  */
 public final class ModelConfiguration {
+	
+	/** The maximum number of stack tables held by a configuration */
+	private static final int MAX_STACK_TABLES = 16;
+	/** Counts the changes to any configuration so held stack tables can tell they are out of date */
+	private static final AtomicInteger CHANGES = new AtomicInteger();
 
 	/** Member holds the name of the configuration */
 	private final String name;
 	/** Member holds the attributes in this model configuration */
 	private final Map<String, ModelAttribute> modelAttributes;
+	/** Holds the tables for stacks with this configuration on top (null until needed) */
+	private Map<Object, Object> stackTables = null;
+	/** Holds the count of changes when the stack tables were started */
+	private int stackTablesChanges = 0;
 	 
 	/**
 	 * Constructs a ModelConfiguration will all its attributes.
@@ -75,6 +93,7 @@ public final class ModelConfiguration {
 	 */
 	public void addAttribute(ModelAttribute attr) {
 		this.modelAttributes.put(attr.getName(), attr);
+		CHANGES.incrementAndGet();
 	}
 
 	/**
@@ -114,6 +133,13 @@ public final class ModelConfiguration {
 	public Collection<ModelAttribute> getAttributes() {
 		return modelAttributes.values();
 	}
+	
+	/**
+	 * @return The names (including any aliases) of all attributes in the config
+	 */
+	public Set<String> getAttributeNames() {
+		return Collections.unmodifiableSet(modelAttributes.keySet());
+	}
 
 	/**
 	 * @return the name
@@ -150,6 +176,7 @@ public final class ModelConfiguration {
 		if( !validAlias ) throw new IllegalArgumentException("You cannot add an alias [" + alias + "] for an attribute [" + name + "] that does not have that alias name: " + attr);
 		
 		modelAttributes.put(alias, attr);
+		CHANGES.incrementAndGet();
 	}
 	
 	/**
@@ -178,6 +205,7 @@ public final class ModelConfiguration {
 				if( attr.getType().isAssignableFrom(a.getType()) ) {
 					if( !modelAttributes.containsKey(matchName) ) {
 						modelAttributes.put(matchName, a);
+						CHANGES.incrementAndGet();
 						ret = a.getName();
 						break;
 					}
@@ -230,6 +258,47 @@ public final class ModelConfiguration {
 	 */
 	public void removeAttribute(String name) {
 		modelAttributes.remove(name);
+		CHANGES.incrementAndGet();
+	}
+	
+	/**
+	 * Call to get a table held for a stack of layers that has
+	 * this configuration on top. Tables are not returned if any
+	 * configuration has changed since they were held.
+	 * 
+	 * @param key The key for the stack
+	 * @return The table or null if none is held
+	 */
+	synchronized Object getStackTable(Object key) {
+		if( stackTables == null ) return null;
+		if( stackTablesChanges != CHANGES.get() ) {
+			stackTables = null;
+			return null;
+		}
+		return stackTables.get(key);
+	}
+	
+	/**
+	 * Call to hold a table for a stack of layers that has this
+	 * configuration on top. Only the most recently used tables
+	 * are held.
+	 * 
+	 * @param key The key for the stack
+	 * @param table The table to hold
+	 */
+	@SuppressWarnings("serial")
+	synchronized void setStackTable(Object key, Object table) {
+		int changes = CHANGES.get();
+		if( stackTables == null || stackTablesChanges != changes ) {
+			stackTables = new LinkedHashMap<Object, Object>(4, 0.75f, true) {
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Object, Object> eldest) {
+					return size() > MAX_STACK_TABLES;
+				}
+			};
+			stackTablesChanges = changes;
+		}
+		stackTables.put(key, table);
 	}
 	
 	/*
@@ -0,0 +1,413 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.talframework.talui.mvc.Model;
+
+/**
+ * This class resolves the outstanding resolved attributes of a
+ * {@link StandardModel} in parallel. Normally each resolved
+ * attribute is obtained the first time it is read, so a page that
+ * needs several searches waits for each in turn. Prefetching runs
+ * all of the resolvers that cannot nest (and so cannot depend on
+ * each other) at the same time on a bounded pool of threads so the
+ * wait is only as long as the slowest of them.
+ * 
+ * <p>The resolvers are given a view of the model that serialises
+ * access to the underlying model and treats them as nested, so 
+ * they see exactly what they would if they were run in turn. The
+ * calling thread waits for the resolvers up to the timeout and then
+ * holds any values obtained. Any resolver that fails or does not
+ * complete in time is simply left to be resolved when it is read.</p>
+ * 
+ * <p>The attributes of layers that are pushed later in the request
+ * (such as the windows of a page) can be obtained in the same batch
+ * by passing in models that extend the main model with those layers.
+ * Their values are held in the main model against the layer so they
+ * are found when the layer is pushed.</p>
+ * 
+ * <p>Prefetching is opt-in as resolvers are run on other threads
+ * and so must not depend on thread bound state.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class ModelPrefetcher {
+	
+	/** The executor that runs the resolvers */
+	private final ExecutorService executor;
+	/** The maximum time (in milliseconds) to wait for the resolvers */
+	private final long timeout;
+	
+	/**
+	 * Constructs the prefetcher with its own pool of threads
+	 * 
+	 * @param threads The maximum number of resolvers to run at once
+	 * @param timeout The maximum time (in milliseconds) to wait
+	 */
+	public ModelPrefetcher(int threads, long timeout) {
+		if( threads < 1 ) throw new IllegalArgumentException("The prefetcher requires at least 1 thread");
+		if( timeout < 1 ) throw new IllegalArgumentException("The prefetcher requires a positive timeout");
+		
+		this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new PrefetchThreadFactory());
+		this.timeout = timeout;
+	}
+	
+	/**
+	 * Call to resolve, in parallel, all outstanding resolved
+	 * attributes in the models current layers. Nothing is done
+	 * if there are less than 2 attributes to resolve.
+	 * 
+	 * @param model The model
+	 * @return The number of attributes obtained
+	 */
+	public int prefetch(StandardModel model) {
+		return prefetch(model, null);
+	}
+	
+	/**
+	 * Call to resolve, in parallel, all outstanding resolved
+	 * attributes in the models current layers and in the layers
+	 * the other models add on top of them. The other models are
+	 * typically a copy of a page model for each window with the
+	 * window and view layers pushed. The values from the other
+	 * models are held in the main model against their layer.
+	 * Nothing is done if there are less than 2 attributes to
+	 * resolve.
+	 * 
+	 * @param model The model
+	 * @param others The models that extend the model (can be null)
+	 * @return The number of attributes obtained
+	 */
+	public int prefetch(StandardModel model, List<StandardModel> others) {
+		List<Fetch> fetches = new ArrayList<Fetch>();
+		List<PrefetchModel> views = new ArrayList<PrefetchModel>();
+		addFetches(fetches, views, model, null);
+		for( int i = 0 ; others != null && i < others.size() ; i++ ) {
+			addFetches(fetches, views, others.get(i), model);
+		}
+		if( fetches.size() < 2 ) return 0;
+		
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(fetches.size());
+		for( int i = 0 ; i < fetches.size() ; i++ ) {
+			final Fetch fetch = fetches.get(i);
+			tasks.add(new Callable<Object>() {
+				public Object call() throws Exception {
+					return fetch.attr.getValue(fetch.view);
+				}
+			});
+		}
+		
+		List<Future<Object>> results = null;
+		for( int i = 0 ; i < views.size() ; i++ ) views.get(i).model.setResolverEnabled(false);
+		try {
+			results = executor.invokeAll(tasks, timeout, TimeUnit.MILLISECONDS);
+		}
+		catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			for( int i = 0 ; i < views.size() ; i++ ) {
+				views.get(i).close();
+				views.get(i).model.setResolverEnabled(true);
+			}
+		}
+		
+		int ret = 0;
+		for( int i = 0 ; results != null && i < results.size() ; i++ ) {
+			Future<Object> result = results.get(i);
+			if( !result.isDone() || result.isCancelled() ) continue;
+			
+			try {
+				Object value = result.get();
+				if( value != null ) {
+					Fetch fetch = fetches.get(i);
+					if( fetch.layer == null ) model.setPrefetchedValue(fetch.attr, value);
+					else model.setPrefetchedValue(fetch.layer, fetch.attr, value);
+					ret++;
+				}
+			}
+			catch( ExecutionException e ) {
+				// Left to be resolved (and fail) when it is read
+			}
+			catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Helper to add the attributes to fetch from a model. If
+	 * this is another model then only the attributes that are
+	 * not in the main model (or already being fetched for the 
+	 * same layer) are added.
+	 * 
+	 * @param fetches The fetches to add to
+	 * @param views The views of each model to add to
+	 * @param model The model to add the attributes of
+	 * @param main The main model (null if model is the main model)
+	 */
+	private void addFetches(List<Fetch> fetches, List<PrefetchModel> views, StandardModel model, StandardModel main) {
+		List<ModelAttribute> attrs = model.getPrefetchAttributes();
+		PrefetchModel view = null;
+		for( int i = 0 ; i < attrs.size() ; i++ ) {
+			ModelAttribute attr = attrs.get(i);
+			ModelConfiguration layer = null;
+			if( main != null ) {
+				layer = model.getPrefetchLayer(attr);
+				if( layer == null || layer == main.getPrefetchLayer(attr) || isFetching(fetches, layer, attr) ) continue;
+			}
+			
+			if( view == null ) {
+				view = new PrefetchModel(model);
+				views.add(view);
+			}
+			fetches.add(new Fetch(attr, layer, view));
+		}
+	}
+	
+	/**
+	 * Helper to determine if the attribute of the layer is
+	 * already being fetched
+	 */
+	private boolean isFetching(List<Fetch> fetches, ModelConfiguration layer, ModelAttribute attr) {
+		for( int i = 0 ; i < fetches.size() ; i++ ) {
+			Fetch fetch = fetches.get(i);
+			if( fetch.layer == layer && fetch.attr == attr ) return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Call to stop the prefetcher, typically when the 
+	 * application is shutting down.
+	 */
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	/**
+	 * Holds an attribute to fetch along with the view of the
+	 * model to resolve it against.
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class Fetch {
+		/** The attribute */
+		final ModelAttribute attr;
+		/** The layer holding the attribute (null if in the main model) */
+		final ModelConfiguration layer;
+		/** The view to resolve against */
+		final PrefetchModel view;
+		
+		public Fetch(ModelAttribute attr, ModelConfiguration layer, PrefetchModel view) {
+			this.attr = attr;
+			this.layer = layer;
+			this.view = view;
+		}
+	}
+	
+	/**
+	 * Creates daemon threads for the prefetcher
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class PrefetchThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		
+		public Thread newThread(Runnable r) {
+			Thread ret = new Thread(r, "ModelPrefetcher-" + count.incrementAndGet());
+			ret.setDaemon(true);
+			return ret;
+		}
+	}
+	
+	/**
+	 * The view of the model given to the resolvers. All access is
+	 * synchronised on the underlying model and, once closed, the
+	 * view can no longer be used so a resolver that overruns the
+	 * timeout cannot touch the model as the request continues.
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class PrefetchModel implements Model {
+		/** The underlying model */
+		private final StandardModel model;
+		/** Set once the prefetch is complete */
+		private boolean closed = false;
+		
+		public PrefetchModel(StandardModel model) {
+			this.model = model;
+		}
+		
+		/**
+		 * Closes the view
+		 */
+		public void close() {
+			synchronized( model ) {
+				closed = true;
+			}
+		}
+		
+		/**
+		 * Ensures the view is still open, must be called holding the lock
+		 */
+		private void checkOpen() {
+			if( closed ) throw new IllegalStateException("The model cannot be used once the prefetch is complete");
+		}
+		
+		public Object getAttribute(String name) {
+			synchronized( model ) {
+				checkOpen();
+				return model.getAttribute(name);
+			}
+		}
+		
+		public void setAttribute(String name, Object value) {
+			synchronized( model ) {
+				checkOpen();
+				model.setAttribute(name, value);
+			}
+		}
+		
+		public void removeAttribute(String name) {
+			synchronized( model ) {
+				checkOpen();
+				model.removeAttribute(name);
+			}
+		}
+		
+		public boolean containsValueFor(String name) {
+			synchronized( model ) {
+				checkOpen();
+				return model.containsValueFor(name);
+			}
+		}
+		
+		public void registerCleanupTask(ModelCleanupTask task, String attribute) {
+			synchronized( model ) {
+				checkOpen();
+				model.registerCleanupTask(task, attribute);
+			}
+		}
+		
+		public int size() {
+			synchronized( model ) {
+				checkOpen();
+				return model.size();
+			}
+		}
+		
+		public boolean isEmpty() {
+			synchronized( model ) {
+				checkOpen();
+				return model.isEmpty();
+			}
+		}
+		
+		public boolean containsKey(Object key) {
+			synchronized( model ) {
+				checkOpen();
+				return model.containsKey(key);
+			}
+		}
+		
+		public boolean containsValue(Object value) {
+			synchronized( model ) {
+				checkOpen();
+				return model.containsValue(value);
+			}
+		}
+		
+		public Object get(Object key) {
+			synchronized( model ) {
+				checkOpen();
+				return model.get(key);
+			}
+		}
+		
+		public Object put(String key, Object value) {
+			synchronized( model ) {
+				checkOpen();
+				return model.put(key, value);
+			}
+		}
+		
+		public void putAll(Map<? extends String, ? extends Object> map) {
+			synchronized( model ) {
+				checkOpen();
+				model.putAll(map);
+			}
+		}
+		
+		public Object remove(Object key) {
+			synchronized( model ) {
+				checkOpen();
+				return model.remove(key);
+			}
+		}
+		
+		public Set<String> keySet() {
+			synchronized( model ) {
+				checkOpen();
+				return model.keySet();
+			}
+		}
+		
+		public Collection<Object> values() {
+			synchronized( model ) {
+				checkOpen();
+				return model.values();
+			}
+		}
+		
+		public void clear() {
+			synchronized( model ) {
+				checkOpen();
+				model.clear();
+			}
+		}
+		
+		/**
+		 * Returns a copy so it cannot be read as the model changes
+		 */
+		public Set<Map.Entry<String, Object>> entrySet() {
+			synchronized( model ) {
+				checkOpen();
+				return new HashSet<Map.Entry<String, Object>>(model.entrySet());
+			}
+		}
+	}
+}
@@ -17,9 +17,12 @@
 package org.talframework.talui.mvc.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -38,15 +41,30 @@ import org.talframework.talui.mvc.process.ModelLayerAttributesResolver;
  * any attributes stored in order to save them away (which is
  * not done automatically).
  * 
+ * <p>The layers are held as a stack in an array and are always
+ * matched by identity, never by the (expensive) equals method of
+ * {@link ModelConfiguration}. Attribute names are resolved through
+ * a table of name to layer and attribute, so finding an attribute
+ * is a single lookup regardless of the number of layers. The table
+ * depends only on the layer definitions in the stack, so it is built
+ * once for each distinct stack and held (read-only) by the layer on
+ * top of the stack, where it is shared between all models.</p>
+ * 
  * @author Tom Spencer
  */
 public class StandardModel implements Model {
 	
 	/** Member holds the model layer resolver */
 	private final ModelLayerAttributesResolver resolver;
-	/** Member holds the model layers that make up the model */
-	private List<ModelConfiguration> layers = new ArrayList<ModelConfiguration>();
-	/** Member holds a map of model attributes */
+	/** Member holds the model layers that make up the model (the last is checked first) */
+	private ModelConfiguration[] layers = new ModelConfiguration[4];
+	/** Member holds the attributes of each layer in the stack once they are obtained */
+	private Map<String, Object>[] layerAttributes = newAttributesArray(4);
+	/** Member holds the number of layers in the stack */
+	private int depth = 0;
+	/** Member holds the (shared) name to slot table for the current stack (null until needed) */
+	private Map<String, Slot> slots = null;
+	/** Member holds a map of model attributes keyed by layer identity */
 	private Map<ModelConfiguration, Map<String, Object> > modelAttributes = null;
 	/** Member holds the events generated from changed model elements */
 	private List<ModelEvent> events = null;
@@ -58,6 +76,8 @@ public class StandardModel implements Model {
 	private boolean autoClear = false;
 	/** Holds any cleanup tasks registered */
 	private Map<String, ModelCleanupTask> cleanupTasks = null;
+	/** Holds the names of the attributes changed in each layer (keyed by layer identity) */
+	private Map<ModelConfiguration, Set<String>> changes = null;
 
 	/**
 	 * Constructs a standard model with the given layers which are
@@ -104,17 +124,31 @@ public class StandardModel implements Model {
 				Iterator<ModelAttribute> it = attrs.iterator();
 				while( it.hasNext() ) {
 					ModelAttribute a = it.next();
-					if( a.isClearOnAction() ) {
+					if( a.isClearOnAction() && modelAttrs.containsKey(a.getName()) ) {
 						modelAttrs.remove(a.getName());
+						recordChange(model, a.getName());
 					}
 				}
 				
-				if( modelAttributes == null ) modelAttributes = new HashMap<ModelConfiguration, Map<String,Object>>();
+				if( modelAttributes == null ) modelAttributes = new IdentityHashMap<ModelConfiguration, Map<String,Object>>();
 				modelAttributes.put(model, modelAttrs);
 			}
 		}
 		
-		this.layers.add(0, model);
+		if( depth == layers.length ) {
+			ModelConfiguration[] newLayers = new ModelConfiguration[depth * 2];
+			System.arraycopy(layers, 0, newLayers, 0, depth);
+			layers = newLayers;
+			
+			Map<String, Object>[] newAttributes = newAttributesArray(depth * 2);
+			System.arraycopy(layerAttributes, 0, newAttributes, 0, depth);
+			layerAttributes = newAttributes;
+		}
+		
+		layers[depth] = model;
+		layerAttributes[depth] = modelAttributes != null ? modelAttributes.get(model) : null;
+		depth++;
+		slots = null;
 	}
 	
 	/**
@@ -127,11 +161,10 @@ public class StandardModel implements Model {
 	 * @return The attributes in that layer (they have been saved)
 	 */
 	public Map<String, Object> popLayer(ModelConfiguration model) {
-		if( layers == null ) return null;
 		if( model == null || model.getAttributes() == null ) return null;
 		
-		ModelConfiguration layer = this.layers.size() > 0 ? this.layers.get(0) : null;
-		if( layer != null && layer.equals(model) ) {
+		ModelConfiguration layer = depth > 0 ? layers[depth - 1] : null;
+		if( layer != null && (layer == model || layer.equals(model)) ) {
 		    // Invoke any cleanup tasks (then remove the task)
 		    if( cleanupTasks != null ) {
 		        Iterator<ModelAttribute> it = model.getAttributes().iterator();
@@ -145,25 +178,31 @@ public class StandardModel implements Model {
 		        }
 		    }
 		    
-			this.layers.remove(0);
-			return modelAttributes != null ? modelAttributes.get(model) : null;
+			depth--;
+			layers[depth] = null;
+			layerAttributes[depth] = null;
+			slots = null;
+			return modelAttributes != null ? modelAttributes.get(layer) : null;
 		}
 		else {
-			throw new IllegalArgumentException("Illegal model passed in to push layer - that valid layer [" + model + "] is not at the top of the pile: " + layers);
+			throw new IllegalArgumentException("Illegal model passed in to push layer - that valid layer [" + model + "] is not at the top of the pile: " + Arrays.asList(layers).subList(0, depth));
 		}
 	}
 	
 	/**
 	 * Internal helper to get the model attributes for the 
-	 * given model configuration. If these have previously
-	 * been obtained they are stored locally, otherwise we
-	 * use the model attribute resolver.
+	 * layer at the given position in the stack. If these have
+	 * previously been obtained they are stored locally, otherwise
+	 * we use the model attribute resolver.
 	 * 
-	 * @param model
-	 * @return
+	 * @param index The position of the layer
+	 * @return The attributes (or null if there are none)
 	 */
-	private Map<String, Object> getModelAttributes(ModelConfiguration model) {
-		Map<String, Object> ret = null;
+	private Map<String, Object> getModelAttributes(int index) {
+		Map<String, Object> ret = layerAttributes[index];
+		if( ret != null ) return ret;
+		
+		ModelConfiguration model = layers[index];
 		if( modelAttributes != null ) {
 			ret = modelAttributes.get(model);
 		}
@@ -171,23 +210,226 @@ public class StandardModel implements Model {
 		if( ret == null ) {
 			ret = resolver.getModelAttributes(model);
 			if( ret != null ) {
-				if( modelAttributes == null ) modelAttributes = new HashMap<ModelConfiguration, Map<String,Object>>();
+				if( modelAttributes == null ) modelAttributes = new IdentityHashMap<ModelConfiguration, Map<String,Object>>();
 				modelAttributes.put(model, ret);
 			}
 		}
 		
+		layerAttributes[index] = ret;
 		return ret;
 	}
 	
 	/**
 	 * Helper to save model attributes away locally
 	 * 
-	 * @param model The model the attributes are for
+	 * @param index The position of the layer the attributes are for
 	 * @param attrs The attributes
 	 */
-	private void saveModelAttributes(ModelConfiguration model, Map<String, Object> attrs) {
-		if( modelAttributes == null ) modelAttributes = new HashMap<ModelConfiguration, Map<String,Object>>();
+	private void saveModelAttributes(int index, Map<String, Object> attrs) {
+		if( modelAttributes == null ) modelAttributes = new IdentityHashMap<ModelConfiguration, Map<String,Object>>();
+		
+		ModelConfiguration model = layers[index];
 		modelAttributes.put(model, attrs);
+		for( int i = 0 ; i < depth ; i++ ) {
+			if( layers[i] == model ) layerAttributes[i] = attrs;
+		}
+	}
+	
+	/**
+	 * Helper to find the slot for an attribute.
+	 * 
+	 * @param name The name of the attribute
+	 * @return The slot or null if no layer holds the attribute
+	 */
+	private Slot getSlot(String name) {
+		return getSlots().get(name);
+	}
+	
+	/**
+	 * Helper to get the table of slots for the current stack.
+	 * The table is held by the layer on top of the stack and
+	 * shared between all models with the same layers, so it is
+	 * only built the first time a stack of those layers is seen.
+	 * 
+	 * @return The table of slots (read-only)
+	 */
+	@SuppressWarnings("unchecked")
+	private Map<String, Slot> getSlots() {
+		if( slots == null ) {
+			if( depth == 0 ) return Collections.emptyMap();
+			
+			ModelConfiguration top = layers[depth - 1];
+			StackKey key = new StackKey(layers, depth);
+			Map<String, Slot> table = (Map<String, Slot>)top.getStackTable(key);
+			if( table == null ) {
+				table = buildSlots(key.layers);
+				top.setStackTable(key, table);
+			}
+			slots = table;
+		}
+		
+		return slots;
+	}
+	
+	/**
+	 * Helper to build the table of slots for the given stack
+	 * of layers. Higher layers hide the attributes of lower
+	 * layers with the same name.
+	 * 
+	 * @param stack The layers (the last is checked first)
+	 * @return The table of slots (read-only)
+	 */
+	private static Map<String, Slot> buildSlots(ModelConfiguration[] stack) {
+		Map<String, Slot> table = new HashMap<String, Slot>();
+		for( int i = 0 ; i < stack.length ; i++ ) {
+			ModelConfiguration layer = stack[i];
+			Iterator<String> it = layer.getAttributeNames().iterator();
+			while( it.hasNext() ) {
+				String attrName = it.next();
+				table.put(attrName, new Slot(i, layer.getAttribute(attrName)));
+			}
+		}
+		return Collections.unmodifiableMap(table);
+	}
+	
+	/**
+	 * Helper to create an array of attribute maps
+	 */
+	@SuppressWarnings("unchecked")
+	private static Map<String, Object>[] newAttributesArray(int size) {
+		return new Map[size];
+	}
+	
+	/**
+	 * Call to get a fingerprint of the current values in the
+	 * model. The fingerprint covers the name and value of each
+	 * attribute in the stack (the value is the stored value or
+	 * the default). It is only possible to fingerprint simple
+	 * values, so if any non-simple attribute has a value then
+	 * null is returned.
+	 * 
+	 * <p>Resolved attributes are not resolved. If skipResolved
+	 * is true they are assumed to be derived from the other
+	 * attributes and are left out, otherwise their presence
+	 * means the model cannot be fingerprinted.</p>
+	 * 
+	 * @param skipResolved True if resolved attributes are ignored
+	 * @return The fingerprint (as hex) or null if it cannot be formed
+	 */
+	public String getFingerprint(boolean skipResolved) {
+		long hash = 0xcbf29ce484222325L;
+		for( int i = 0 ; i < depth ; i++ ) {
+			hash = fingerprint(hash, layers[i].getName());
+			
+			Iterator<String> it = layers[i].getAttributeNames().iterator();
+			while( it.hasNext() ) {
+				Slot slot = getSlot(it.next());
+				if( slot.layer != i ) continue;
+				
+				ModelAttribute attr = slot.attribute;
+				if( attr.isResolved() ) {
+					if( skipResolved ) continue;
+					return null;
+				}
+				
+				Object val = getAttribute(attr.getName());
+				if( val != null && !attr.isSimple() ) return null;
+				
+				hash = fingerprint(hash, attr.getName());
+				hash = fingerprint(hash, val != null ? val.toString() : null);
+			}
+		}
+		
+		return Long.toHexString(hash);
+	}
+	
+	/**
+	 * Helper to add a string to the fingerprint (FNV-1a)
+	 */
+	private static long fingerprint(long hash, String val) {
+		if( val != null ) {
+			int ln = val.length();
+			for( int i = 0 ; i < ln ; i++ ) {
+				hash ^= val.charAt(i);
+				hash *= 0x100000001b3L;
+			}
+		}
+		
+		// Separator so ("ab", "c") differs from ("a", "bc")
+		hash ^= val != null ? 0x1F : 0x1E;
+		hash *= 0x100000001b3L;
+		return hash;
+	}
+	
+	/**
+	 * Call to obtain the stored attributes of every layer in
+	 * the stack now, rather than when they are first used. 
+	 */
+	public void loadLayers() {
+		for( int i = 0 ; i < depth ; i++ ) getModelAttributes(i);
+	}
+	
+	/**
+	 * Creates a new model with the same resolver and layers as
+	 * this model and a copy of the attributes held in each layer.
+	 * The copy is independent of this model so it can be used
+	 * (by a single thread) while this model continues to be used.
+	 * The attributes of this models layers are loaded as part of
+	 * the copy.
+	 * 
+	 * @param recordEvents True if the copy should record events
+	 * @return The new model
+	 */
+	public StandardModel copy(boolean recordEvents) {
+		loadLayers();
+		
+		StandardModel ret = new StandardModel(resolver, recordEvents);
+		ret.source = source;
+		if( modelAttributes != null ) {
+			ret.modelAttributes = new IdentityHashMap<ModelConfiguration, Map<String,Object>>();
+			Iterator<ModelConfiguration> it = modelAttributes.keySet().iterator();
+			while( it.hasNext() ) {
+				ModelConfiguration config = it.next();
+				Map<String, Object> attrs = modelAttributes.get(config);
+				ret.modelAttributes.put(config, attrs != null ? new HashMap<String, Object>(attrs) : null);
+			}
+		}
+		
+		for( int i = 0 ; i < depth ; i++ ) ret.pushLayer(layers[i]);
+		ret.autoClear = autoClear;
+		
+		return ret;
+	}
+	
+	/**
+	 * Call to get the names of the attributes that have been set
+	 * or removed in the given layer during the lifetime of this
+	 * model. Unlike the events this includes all attributes and
+	 * also the resolved attributes whose value has been obtained
+	 * and held in the layer.
+	 * 
+	 * @param model The layer
+	 * @return The names of the changed attributes (never null)
+	 */
+	public Set<String> getChangedAttributes(ModelConfiguration model) {
+		Set<String> ret = changes != null ? changes.get(model) : null;
+		return ret != null ? Collections.unmodifiableSet(ret) : Collections.<String>emptySet();
+	}
+	
+	/**
+	 * Helper to record an attribute as changed
+	 * 
+	 * @param model The layer
+	 * @param name The name of the attribute
+	 */
+	private void recordChange(ModelConfiguration model, String name) {
+		if( changes == null ) changes = new IdentityHashMap<ModelConfiguration, Set<String>>();
+		Set<String> names = changes.get(model);
+		if( names == null ) {
+			names = new HashSet<String>();
+			changes.put(model, names);
+		}
+		names.add(name);
 	}
 	
 	/**
@@ -237,44 +479,32 @@ public class StandardModel implements Model {
 	 * Works through the layers in reverse order
 	 */
 	public Object getAttribute(String name) {
-		Object ret = null;
-		boolean found = false;
+		Slot slot = getSlot(name);
+		if( slot == null ) {
+			throw new UnsupportedModelAttributeException(name);
+		}
 		
-		Iterator<ModelConfiguration> it = this.layers.iterator();
-		while( it.hasNext() ) {
-			ModelConfiguration layer = it.next();
-			if( layer.hasAttribute(name) ) {
-				ModelAttribute attr = layer.getAttribute(name);
-				
-				found = true;
-				Map<String, Object> attributes = getModelAttributes(layer);
-				if( attributes != null && attributes.containsKey(attr.getName()) ) {
-					ret = attributes.get(attr.getName());
-					break;
-				}
-				
-				// Attribute does not exist, get it
-				ret = getNonLocalAttribute(attr);
-				if( ret != null ) {
-					if( attributes == null ) {
-						attributes = new HashMap<String, Object>();
-						saveModelAttributes(layer, attributes);
-					}
-					
-					attributes.put(attr.getName(), ret);
-					break;
-				}
-				
-				// Finally get default (but, don't store it!)
-				else {
-					ret = attr.getDefaultValue(this);
-					break;
-				}
+		ModelAttribute attr = slot.attribute;
+		Map<String, Object> attributes = getModelAttributes(slot.layer);
+		if( attributes != null && attributes.containsKey(attr.getName()) ) {
+			return attributes.get(attr.getName());
+		}
+		
+		// Attribute does not exist, get it
+		Object ret = getNonLocalAttribute(attr);
+		if( ret != null ) {
+			if( attributes == null ) {
+				attributes = new HashMap<String, Object>();
+				saveModelAttributes(slot.layer, attributes);
 			}
+			
+			attributes.put(attr.getName(), ret);
+			recordChange(layers[slot.layer], attr.getName());
 		}
 		
-		if( !found ) {
-			throw new UnsupportedModelAttributeException(name);
+		// Finally get default (but, don't store it!)
+		else {
+			ret = attr.getDefaultValue(this);
 		}
 		
 		return ret;
@@ -306,101 +536,78 @@ public class StandardModel implements Model {
 	 * Works through the layers in reverse order to set the attribute
 	 */
 	public void setAttribute(String name, Object value) {
-		Iterator<ModelConfiguration> it = this.layers.iterator();
-		while( it.hasNext() ) {
-			ModelConfiguration layer = it.next();
-			if( layer.hasAttribute(name) ) {
-				ModelAttribute attr = layer.getAttribute(name);
-				
-				Map<String, Object> attributes = getModelAttributes(layer);
-				Object oldValue = null;
-				if( attributes == null ) {
-					attributes = new HashMap<String, Object>();
-					saveModelAttributes(layer, attributes);
-				}
-				else {
-					oldValue = attributes.get(attr.getName());
-				}
-				
-				value = attr.setValue(this, oldValue, value);
-				attributes.put(attr.getName(), value);
-				
-				// Raise event if appropriate
-				if( events != null ) {
-					if( attr.isEventable() ) {
-						events.add(new ModelEvent(
-								source,
-								layer,
-								attr,
-								oldValue,
-								value));
-					}
-				}
-				
-				return;
-			}
+		Slot slot = getSlot(name);
+		if( slot == null ) throw new UnsupportedModelAttributeException(name);
+		
+		ModelAttribute attr = slot.attribute;
+		Map<String, Object> attributes = getModelAttributes(slot.layer);
+		Object oldValue = null;
+		if( attributes == null ) {
+			attributes = new HashMap<String, Object>();
+			saveModelAttributes(slot.layer, attributes);
+		}
+		else {
+			oldValue = attributes.get(attr.getName());
 		}
 		
-		throw new UnsupportedModelAttributeException(name);
+		value = attr.setValue(this, oldValue, value);
+		attributes.put(attr.getName(), value);
+		recordChange(layers[slot.layer], attr.getName());
+		
+		// Raise event if appropriate
+		if( events != null ) {
+			if( attr.isEventable() ) {
+				events.add(new ModelEvent(
+						source,
+						layers[slot.layer],
+						attr,
+						oldValue,
+						value));
+			}
+		}
 	}
 	
 	/**
 	 * Works through the layers in reverse order to remove the attribute
 	 */
 	public void removeAttribute(String name) {
-		Iterator<ModelConfiguration> it = this.layers.iterator();
-		while( it.hasNext() ) {
-			ModelConfiguration layer = it.next();
-			if( layer.hasAttribute(name) ) {
-				ModelAttribute attr = layer.getAttribute(name);
-				
-				Map<String, Object> attributes = getModelAttributes(layer);
-				Object oldValue = null;
-				if( attributes != null ) {
-					oldValue = attributes.get(attr.getName());
-					attributes.remove(attr.getName());
-				}
-				
-				// Raise an event
-				if( events != null ) {
-					if( attr.isEventable() ) {
-						events.add(new ModelEvent(
-								source,
-								layer,
-								attr,
-								oldValue,
-								null));
-					}
-				}
-				
-				return;
-			}
+		Slot slot = getSlot(name);
+		if( slot == null ) throw new UnsupportedModelAttributeException(name);
+		
+		ModelAttribute attr = slot.attribute;
+		Map<String, Object> attributes = getModelAttributes(slot.layer);
+		Object oldValue = null;
+		if( attributes != null ) {
+			oldValue = attributes.get(attr.getName());
+			attributes.remove(attr.getName());
+			recordChange(layers[slot.layer], attr.getName());
 		}
 		
-		throw new UnsupportedModelAttributeException(name);
+		// Raise an event
+		if( events != null ) {
+			if( attr.isEventable() ) {
+				events.add(new ModelEvent(
+						source,
+						layers[slot.layer],
+						attr,
+						oldValue,
+						null));
+			}
+		}
 	}
 	
 	public boolean containsValueFor(String name) {
-		boolean ret = false;
+		Slot slot = getSlot(name);
+		if( slot == null ) return false;
 		
-		Iterator<ModelConfiguration> it = this.layers.iterator();
-		while( it.hasNext() && !ret ) {
-			ModelConfiguration layer = it.next();
-			if( layer.hasAttribute(name) ) {
-				ModelAttribute attr = layer.getAttribute(name);
-				if( !attr.isResolved() ) {
-					Map<String, Object> attributes = getModelAttributes(layer);
-					ret = attributes != null && attributes.containsKey(attr.getName());
-				}
-				else {
-					ret = true;
-				}
-				
-				break;
-			}
+		ModelAttribute attr = slot.attribute;
+		if( !attr.isResolved() ) {
+			Map<String, Object> attributes = getModelAttributes(slot.layer);
+			return attributes != null && attributes.containsKey(attr.getName());
+		}
+		else {
+			return true;
 		}
-		
-		return ret;
 	}
 	
 	/**
@@ -412,6 +619,120 @@ public class StandardModel implements Model {
 	    cleanupTasks.put(attribute, task);
 	}
 	
+	/**
+	 * Call to get the resolved attributes visible in the current
+	 * stack that do not allow nested access and do not yet have
+	 * a value. These are the candidates for resolving in 
+	 * parallel by the {@link ModelPrefetcher}. The attributes of
+	 * every layer are obtained as part of this call.
+	 * 
+	 * @return The attributes (never null)
+	 */
+	List<ModelAttribute> getPrefetchAttributes() {
+		List<ModelAttribute> ret = new ArrayList<ModelAttribute>();
+		if( depth == 0 ) return ret;
+		
+		loadLayers();
+		Map<ModelAttribute, ModelAttribute> seen = new IdentityHashMap<ModelAttribute, ModelAttribute>();
+		Iterator<Slot> it = getSlots().values().iterator();
+		while( it.hasNext() ) {
+			Slot slot = it.next();
+			ModelAttribute attr = slot.attribute;
+			if( !attr.isResolved() || attr.isResolverNestable() ) continue;
+			Slot named = getSlot(attr.getName());
+			if( named == null || named.attribute != attr ) continue; // Hidden by a higher layer
+			
+			Map<String, Object> attributes = layerAttributes[slot.layer];
+			if( attributes != null && attributes.containsKey(attr.getName()) ) continue;
+			
+			if( seen.put(attr, attr) == null ) ret.add(attr);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Call to hold a value obtained by the {@link ModelPrefetcher}
+	 * for an attribute. This is ignored if the attribute no longer
+	 * resolves to the given attribute or a value is already held.
+	 * 
+	 * @param attr The attribute
+	 * @param value The value (ignored if null)
+	 */
+	void setPrefetchedValue(ModelAttribute attr, Object value) {
+		Slot slot = getSlot(attr.getName());
+		if( value == null || slot == null || slot.attribute != attr ) return;
+		
+		Map<String, Object> attributes = getModelAttributes(slot.layer);
+		if( attributes == null ) {
+			attributes = new HashMap<String, Object>();
+			saveModelAttributes(slot.layer, attributes);
+		}
+		
+		if( !attributes.containsKey(attr.getName()) ) {
+			attributes.put(attr.getName(), value);
+			recordChange(layers[slot.layer], attr.getName());
+		}
+	}
+	
+	/**
+	 * Call to get the layer an attribute resolves to in the
+	 * current stack.
+	 * 
+	 * @param attr The attribute
+	 * @return The layer or null if the name does not resolve to the attribute
+	 */
+	ModelConfiguration getPrefetchLayer(ModelAttribute attr) {
+		Slot slot = getSlot(attr.getName());
+		return slot != null && slot.attribute == attr ? layers[slot.layer] : null;
+	}
+	
+	/**
+	 * Call to hold a value obtained by the {@link ModelPrefetcher}
+	 * for an attribute of a layer that is not in the stack, 
+	 * typically a window layer that is pushed later in the 
+	 * request. The attributes of the layer are obtained and held
+	 * so the value is there once the layer is pushed. This is 
+	 * ignored if a value is already held or if auto clearing (as
+	 * the layer would then not be cleared when pushed).
+	 * 
+	 * @param layer The layer holding the attribute
+	 * @param attr The attribute
+	 * @param value The value (ignored if null)
+	 */
+	void setPrefetchedValue(ModelConfiguration layer, ModelAttribute attr, Object value) {
+		if( value == null || autoClear ) return;
+		for( int i = depth - 1 ; i >= 0 ; i-- ) {
+			if( layers[i] == layer ) {
+				setPrefetchedValue(attr, value);
+				return;
+			}
+		}
+		
+		Map<String, Object> attributes = modelAttributes != null ? modelAttributes.get(layer) : null;
+		if( attributes == null ) attributes = resolver.getModelAttributes(layer);
+		if( attributes == null ) attributes = new HashMap<String, Object>();
+		if( modelAttributes == null ) modelAttributes = new IdentityHashMap<ModelConfiguration, Map<String,Object>>();
+		modelAttributes.put(layer, attributes);
+		
+		if( !attributes.containsKey(attr.getName()) ) {
+			attributes.put(attr.getName(), value);
+			recordChange(layer, attr.getName());
+		}
+	}
+	
+	/**
+	 * Turns the use of resolvers on or off. This is turned off
+	 * while the {@link ModelPrefetcher} is running resolvers
+	 * so that they are treated as nested, exactly as if they
+	 * were being obtained in turn.
+	 * 
+	 * @param on True to allow resolvers, false otherwise
+	 */
+	void setResolverEnabled(boolean on) {
+		canUseResolver = on;
+	}
+	
 	/**
 	 * This private method gets the value of the attribute
 	 * from the ModelAttribute description. It will pass the
@@ -442,15 +763,13 @@ public class StandardModel implements Model {
 	 * @return The stored attribute
 	 */
 	private Object getStoredAttribute(String name) {
-		if( layers == null || name == null ) return false;
+		if( name == null ) return null;
 		
 		Object ret = null;
-		Iterator<ModelConfiguration> it = layers.iterator();
-		while( it.hasNext() ) {
-			ModelConfiguration config = it.next();
-			ModelAttribute attr = config.getAttribute(name);
+		for( int i = depth - 1 ; i >= 0 ; i-- ) {
+			ModelAttribute attr = layers[i].getAttribute(name);
 			if( attr != null ) {
-				Map<String, Object> attrs = modelAttributes != null ? modelAttributes.get(config) : null;
+				Map<String, Object> attrs = getStoredAttributes(i);
 				if( attrs != null && attrs.containsKey(attr.getName()) ) {
 					ret = attrs.get(attr.getName());
 					break;
@@ -461,6 +780,19 @@ public class StandardModel implements Model {
 		return ret;
 	}
 	
+	/**
+	 * Internal helper to get the attributes already stored
+	 * for a layer without going to the resolver.
+	 * 
+	 * @param index The position of the layer
+	 * @return The stored attributes (or null)
+	 */
+	private Map<String, Object> getStoredAttributes(int index) {
+		Map<String, Object> ret = layerAttributes[index];
+		if( ret == null && modelAttributes != null ) ret = modelAttributes.get(layers[index]);
+		return ret;
+	}
+	
 	//////////////////////////////////////////
 	// Map Operations
 	
@@ -469,13 +801,9 @@ public class StandardModel implements Model {
 	 * attributes throughout layer, some may be null
 	 */
 	public int size() {
-		if( layers == null ) return 0;
-		
 		int ret = 0;
-		Iterator<ModelConfiguration> it = layers.iterator();
-		while( it.hasNext() ) {
-			ModelConfiguration layer = it.next();
-			ret += layer.getAttributes().size();
+		for( int i = 0 ; i < depth ; i++ ) {
+			ret += layers[i].getAttributes().size();
 		}
 		
 		return ret;
@@ -486,7 +814,7 @@ public class StandardModel implements Model {
 	 * attributes in the layers (which is unlikely!)
 	 */
 	public boolean isEmpty() {
-		if( layers == null ) return true;
+		if( depth == 0 ) return true;
 		else if( size() == 0 ) return true;
 		else return false;
 	}
@@ -499,21 +827,9 @@ public class StandardModel implements Model {
 	 * @return True if it exists, false otherwise
 	 */
 	public boolean containsKey(Object key) {
-		if( layers == null || key == null ) return false;
-		
-		String k = key.toString();
-		
-		boolean ret = false;
-		Iterator<ModelConfiguration> it = layers.iterator();
-		while( it.hasNext() ) {
-			ModelConfiguration layer = it.next();
-			if( layer.hasAttribute(k) ) {
-				ret = true;
-				break;
-			}
-		}
+		if( key == null ) return false;
 		
-		return ret;
+		return getSlot(key.toString()) != null;
 	}
 	
 	/**
@@ -580,13 +896,9 @@ public class StandardModel implements Model {
 	 * Returns all 'set' attributes in a set
 	 */
 	public Set<String> keySet() {
-		if( layers == null ) return new HashSet<String>();
-		
 		HashSet<String> ret = new HashSet<String>();
-		Iterator<ModelConfiguration> it = layers.iterator();
-		while( it.hasNext() ) {
-			ModelConfiguration config = it.next();
-			Map<String, Object> attrs = modelAttributes != null ? modelAttributes.get(config) : null;
+		for( int i = depth - 1 ; i >= 0 ; i-- ) {
+			Map<String, Object> attrs = getStoredAttributes(i);
 			if( attrs != null ) {
 				ret.addAll(attrs.keySet());
 			}
@@ -599,13 +911,9 @@ public class StandardModel implements Model {
 	 * Returns all 'set' attributes in a list
 	 */
 	public Collection<Object> values() {
-		if( layers == null ) return new ArrayList<Object>();
-		
 		ArrayList<Object> ret = new ArrayList<Object>();
-		Iterator<ModelConfiguration> it = layers.iterator();
-		while( it.hasNext() ) {
-			ModelConfiguration config = it.next();
-			Map<String, Object> attrs = modelAttributes != null ? modelAttributes.get(config) : null;
+		for( int i = depth - 1 ; i >= 0 ; i-- ) {
+			Map<String, Object> attrs = getStoredAttributes(i);
 			if( attrs != null ) {
 				ret.addAll(attrs.values());
 			}
@@ -629,4 +937,64 @@ public class StandardModel implements Model {
 	public Set<java.util.Map.Entry<String, Object>> entrySet() {
 		throw new UnsupportedOperationException("You cannot get the entry set of a model, it is not a real map!");
 	}
+	
+	/**
+	 * Holds the position of the layer an attribute name
+	 * resolves to in the current stack and the attribute
+	 * itself.
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class Slot {
+		/** The position of the layer in the stack */
+		final int layer;
+		/** The attribute in that layer */
+		final ModelAttribute attribute;
+		
+		public Slot(int layer, ModelAttribute attribute) {
+			this.layer = layer;
+			this.attribute = attribute;
+		}
+	}
+	
+	/**
+	 * Key for the held slot tables. This holds a copy of the
+	 * layers in the stack and matches them by identity, never
+	 * by the equals method of {@link ModelConfiguration}.
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class StackKey {
+		/** The layers in the stack */
+		final ModelConfiguration[] layers;
+		/** The hash of the layer identities */
+		private final int hash;
+		
+		public StackKey(ModelConfiguration[] layers, int depth) {
+			this.layers = new ModelConfiguration[depth];
+			System.arraycopy(layers, 0, this.layers, 0, depth);
+			
+			int h = depth;
+			for( int i = 0 ; i < depth ; i++ ) h = h * 31 + System.identityHashCode(layers[i]);
+			this.hash = h;
+		}
+		
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			if( obj == this ) return true;
+			if( !(obj instanceof StackKey) ) return false;
+			
+			StackKey other = (StackKey)obj;
+			if( other.hash != hash || other.layers.length != layers.length ) return false;
+			for( int i = 0 ; i < layers.length ; i++ ) {
+				if( other.layers[i] != layers[i] ) return false;
+			}
+			return true;
+		}
+	}
 }
@@ -16,10 +16,14 @@
 
 package org.talframework.talui.mvc.process;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.talframework.tal.aspects.annotations.Trace;
 import org.talframework.talui.mvc.Model;
@@ -53,6 +57,11 @@ public final class ActionProcessor {
 	private final PageConfig page;
 	/** Holds the model prepopulated with app and page */
 	private final StandardModel model;
+	/** The number of waves of events that are processed */
+	private static final int MAX_EVENT_WAVES = 3;
+	
+	/** Holds the names of the windows an action was processed on (in order) */
+	private final Set<String> affectedWindows = new LinkedHashSet<String>();
 	
 	
 	/**
@@ -104,7 +113,7 @@ public final class ActionProcessor {
 		event = page.getEvent(fullResult);
 		if( event == null ) event = app.getEvent(fullResult);
 		
-		processEvents(3);
+		processEvents();
 		
 		// Save model layers away
 		Map<ModelConfiguration, Map<String, Object> > modelAttributes = model.getModelAttributes();
@@ -112,7 +121,12 @@ public final class ActionProcessor {
 			Iterator<ModelConfiguration> it = modelAttributes.keySet().iterator();
 			while( it.hasNext() ) {
 				ModelConfiguration config = it.next();
-				model.getResolver().saveModelAttributes(config, modelAttributes.get(config));
+				if( model.getResolver() instanceof IncrementalModelLayerAttributesResolver ) {
+					((IncrementalModelLayerAttributesResolver)model.getResolver()).saveChangedAttributes(config, modelAttributes.get(config), model.getChangedAttributes(config));
+				}
+				else {
+					model.getResolver().saveModelAttributes(config, modelAttributes.get(config));
+				}
 			}
 		}
 		
@@ -124,67 +138,101 @@ public final class ActionProcessor {
 	}
 	
 	/**
-	 * Internal recursive function that processes events. It repeatedly
-	 * calls itself only a certain amount of times to stop any recursive
-	 * events endlessly playing.
+	 * Call to get the names of the windows that processed an
+	 * action, either the original action or one fired from an
+	 * event. These are the windows whose state may have changed.
 	 * 
-	 * @param model The model
-	 * @param tries The number of times to process events
+	 * @return The names of the windows in the order they were first acted upon
 	 */
-	private void processEvents(int tries) {
+	public Set<String> getAffectedWindows() {
+		return Collections.unmodifiableSet(affectedWindows);
+	}
+	
+	/**
+	 * Internal function that processes the events raised by the
+	 * model. The events are processed in waves, the events raised
+	 * while processing one wave form the next. Only a certain 
+	 * number of waves are processed to stop windows endlessly
+	 * firing events into each other, any events after that are
+	 * dropped (and counted in the {@link EventStatistics}).
+	 * 
+	 * <p>Within a wave, events for the same attribute that would 
+	 * be fired into the same window are merged, so the window is
+	 * only fired into once with the first old value and the last 
+	 * new value.</p>
+	 */
+	private void processEvents() {
+		EventStatistics stats = EventStatistics.getInstance();
+		
+		int wave = 0;
 		List<ModelEvent> events = model.getEvents();
 		model.clearEvents();
-		
-		if( events != null && events.size() > 0 ) {
-			if( tries <= 0 ) {
-				return;
+		while( events != null && events.size() > 0 ) {
+			if( wave++ >= MAX_EVENT_WAVES ) {
+				stats.recordDropped(events.size());
+				break;
 			}
 			
+			// Queue up the events for each subscribing window
+			Map<String, PendingEvent> pending = new LinkedHashMap<String, PendingEvent>();
+			int merged = 0;
 			Iterator<ModelEvent> it = events.iterator();
 			while( it.hasNext() ) {
-				processEvent(it.next());
+				ModelEvent event = it.next();
+				String sourceWindow = event.getSource();
+				String name = event.getEventName();
+				
+				WindowConfig[] subscribers = page.getSubscribers(name);
+				for( int i = 0 ; i < subscribers.length ; i++ ) {
+					WindowConfig window = subscribers[i];
+					if( sourceWindow != null && window.getName().equals(sourceWindow) ) continue;
+					
+					String key = window.getName() + '.' + name;
+					PendingEvent existing = pending.get(key);
+					if( existing != null ) {
+						existing.newValue = event.getNewValue();
+						merged++;
+					}
+					else {
+						pending.put(key, new PendingEvent(window, window.getEventConfig(name), event.getOldValue(), event.getNewValue()));
+					}
+				}
+			}
+			stats.recordWave(events.size(), pending.size(), merged);
+			
+			// Fire them
+			Iterator<PendingEvent> pendingIt = pending.values().iterator();
+			while( pendingIt.hasNext() ) {
+				processEvent(pendingIt.next());
 			}
 			
-			processEvents(--tries);
+			events = model.getEvents();
+			model.clearEvents();
 		}
 	}
 	
 	/**
-	 * This helper function processes an event by firing them
-	 * into all windows (excluding the source window) in the 
-	 * page that have a config for the event.
+	 * This helper function fires an event into a window.
 	 * 
-	 * @param model The model
-	 * @param events The events
-	 * @param sourceWindow The source window
+	 * @param event The event to fire
 	 */
 	@Trace
-    private void processEvent(ModelEvent event) {
-		String sourceWindow = event.getSource();
-		String name = event.getEventName();
-			
-		Iterator<WindowConfig> itWindows = page.getWindows().iterator();
-		while( itWindows.hasNext() ) {
-			WindowConfig window = itWindows.next();
-			if( sourceWindow == null || !window.getName().equals(sourceWindow) ) {
-				EventConfig e = window.getEventConfig(name);
-				if( e != null ) {
-					Map<String, Object> params = new HashMap<String, Object>();
-					if( event.getNewValue() != null ) {
-						params.put(e.getNewValueName(), event.getNewValue());
-					}
-					if( event.getOldValue() != null && e.getOldValueName() != null ) {
-						params.put(e.getOldValueName(), event.getOldValue());
-					}
-					
-					InputModel input = new SimpleInputModel(params);
-					
-					// Process the action
-					model.setSource(window.getName());
-					processWindowAction(window, input, e.getAction());
-				}
-			}
+    private void processEvent(PendingEvent event) {
+		EventConfig e = event.config;
+		
+		Map<String, Object> params = new HashMap<String, Object>(4);
+		if( event.newValue != null ) {
+			params.put(e.getNewValueName(), event.newValue);
+		}
+		if( event.oldValue != null && e.getOldValueName() != null ) {
+			params.put(e.getOldValueName(), event.oldValue);
 		}
+		
+		InputModel input = new SimpleInputModel(params);
+		
+		// Process the action
+		model.setSource(event.window.getName());
+		processWindowAction(event.window, input, e.getAction());
 	}
 	
 	/**
@@ -199,6 +247,7 @@ public final class ActionProcessor {
 	@Trace
     private String processWindowAction(WindowConfig config, InputModel input, String action) {
 		Window window = config.getWindow();
+		affectedWindows.add(config.getName());
 		model.pushLayer(config.getModel());
 		
 		View view = window.getCurrentState(model);
@@ -262,4 +311,27 @@ public final class ActionProcessor {
 		
 		return newView;
 	}
+	
+	/**
+	 * Holds an event waiting to be fired into a window
+	 *
+	 * @author Tom Spencer
+	 */
+	private static final class PendingEvent {
+		/** The window to fire into */
+		final WindowConfig window;
+		/** The window's config for the event */
+		final EventConfig config;
+		/** The old value (of the first event) */
+		final Object oldValue;
+		/** The new value (of the last event) */
+		Object newValue;
+		
+		public PendingEvent(WindowConfig window, EventConfig config, Object oldValue, Object newValue) {
+			this.window = window;
+			this.config = config;
+			this.oldValue = oldValue;
+			this.newValue = newValue;
+		}
+	}
 }
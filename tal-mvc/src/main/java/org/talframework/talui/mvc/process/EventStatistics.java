@@ -0,0 +1,124 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.mvc.process;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds simple counters about the model events
+ * processed by the {@link ActionProcessor}s. A high number of
+ * dropped events indicates windows that keep firing events
+ * into each other.
+ * 
+ * @author Tom Spencer
+ */
+public final class EventStatistics {
+	/** Single instance (per (parent) classloader) of this class */
+	private static final EventStatistics INSTANCE = new EventStatistics();
+	
+	/** The number of events raised by the model */
+	private final AtomicLong raised = new AtomicLong();
+	/** The number of times an event was fired into a window */
+	private final AtomicLong fired = new AtomicLong();
+	/** The number of events merged into another for the same window */
+	private final AtomicLong merged = new AtomicLong();
+	/** The number of events dropped because too many waves of events occurred */
+	private final AtomicLong dropped = new AtomicLong();
+	
+	/**
+	 * @return The single instance of the statistics
+	 */
+	public static EventStatistics getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Hidden constructor
+	 */
+	private EventStatistics() {
+	}
+	
+	/**
+	 * Records a wave of events (before they are fired)
+	 * 
+	 * @param events The number of events in the wave
+	 * @param fired The number of times they are fired into windows
+	 * @param merged The number of times they were merged
+	 */
+	void recordWave(int events, int fired, int merged) {
+		this.raised.addAndGet(events);
+		this.fired.addAndGet(fired);
+		this.merged.addAndGet(merged);
+	}
+	
+	/**
+	 * Records events that are dropped
+	 * 
+	 * @param events The number of events
+	 */
+	void recordDropped(int events) {
+		raised.addAndGet(events);
+		dropped.addAndGet(events);
+	}
+	
+	/**
+	 * Resets all counters
+	 */
+	public void reset() {
+		raised.set(0);
+		fired.set(0);
+		merged.set(0);
+		dropped.set(0);
+	}
+	
+	/**
+	 * @return The number of events raised by the model
+	 */
+	public long getRaised() {
+		return raised.get();
+	}
+	
+	/**
+	 * @return The number of times an event was fired into a window
+	 */
+	public long getFired() {
+		return fired.get();
+	}
+	
+	/**
+	 * @return The number of events merged into another for the same window
+	 */
+	public long getMerged() {
+		return merged.get();
+	}
+	
+	/**
+	 * @return The number of events dropped
+	 */
+	public long getDropped() {
+		return dropped.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "EventStatistics: raised=" + getRaised() +
+			", fired=" + getFired() + 
+			", merged=" + getMerged() + 
+			", dropped=" + getDropped();
+	}
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.mvc.process;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.talframework.talui.mvc.model.ModelConfiguration;
+
+/**
+ * Extends the {@link ModelLayerAttributesResolver} for resolvers
+ * that can save just the attributes that have changed during
+ * the request rather than the full set. This is used by resolvers
+ * that write the attributes to an external store, where writing
+ * the full set on every action would be expensive.
+ * 
+ * @author Tom Spencer
+ */
+public interface IncrementalModelLayerAttributesResolver extends ModelLayerAttributesResolver {
+
+	/**
+	 * Called to save the model attributes that have changed. The
+	 * full set of attributes is passed in, but only those named
+	 * in changed need to be written out. Any changed name that is
+	 * not in attrs has been removed.
+	 * 
+	 * @param model The model to save
+	 * @param attrs The (full set of) attributes of the model
+	 * @param changed The names of the attributes that have changed
+	 */
+	public void saveChangedAttributes(ModelConfiguration model, Map<String, Object> attrs, Set<String> changed);
+}
@@ -103,6 +103,34 @@ public class TestGenericController {
 		context.assertIsSatisfied();
 	}
 	
+	/**
+	 * Tests a manually setup controller dispatches to the
+	 * action named in the input and otherwise to the default
+	 */
+	@Test
+	public void manualActions() throws Exception {
+		ControllerAction magic = new ControllerAction(basic, "errors", BasicController.class.getMethod("performMagic"), null, null, null, null);
+		Map<String, ControllerAction> actions = new HashMap<String, ControllerAction>();
+		actions.put("first", magic);
+		actions.put("second", new ControllerAction(basic, "errors", BasicController.class.getMethod("performMagic"), null, "second", null, null));
+		
+		GenericController ctrl = new GenericController();
+		ctrl.setController(basic);
+		ctrl.setActions(actions);
+		ctrl.setDefaultAction(magic);
+		ctrl.init();
+		
+		context.checking(new Expectations() {{
+			allowing(input).hasParameter("first"); will(returnValue(false));
+			allowing(input).hasParameter("second"); will(returnValue(true));
+			allowing(model).containsKey("errors"); will(returnValue(false));
+			oneOf(basic).performMagic(); will(returnValue(null));
+		}});
+		
+		Assert.assertEquals("second", ctrl.performAction(model, input));
+		context.assertIsSatisfied();
+	}
+	
 	///////////////////////////////////////////////
 	// Complex Controller
 
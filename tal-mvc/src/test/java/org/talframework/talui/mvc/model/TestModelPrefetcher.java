@@ -0,0 +1,186 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.mvc.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.talframework.talui.mvc.Model;
+import org.talframework.talui.mvc.process.SimpleModelAttributeResolver;
+
+/**
+ * Tests the ModelPrefetcher class
+ * 
+ * @author Tom Spencer
+ */
+@SuppressWarnings("serial")
+public class TestModelPrefetcher {
+	
+	private ModelPrefetcher underTest = null;
+	private CountDownLatch latch = null;
+	private LatchResolver first = null;
+	private LatchResolver second = null;
+	private ModelConfiguration layer = null;
+	
+	@Before
+	public void setup() {
+		underTest = new ModelPrefetcher(4, 5000);
+		latch = new CountDownLatch(2);
+		first = new LatchResolver("first");
+		second = new LatchResolver("second");
+		
+		final SimpleModelAttribute simple = new SimpleModelAttribute("simple");
+		simple.setDefaultValue("default");
+		
+		layer = new ModelConfiguration("layer", new ArrayList<ModelAttribute>() {{
+			add(simple);
+			add(new ResolvedModelAttribute("first", first, null, null));
+			add(new ResolvedModelAttribute("second", second, null, null));
+			add(new ResolvedModelAttribute("nested", new NestedResolver(), null, null)); }});
+	}
+	
+	@After
+	public void tearDown() {
+		underTest.shutdown();
+	}
+	
+	/**
+	 * Ensures the resolvers are run at the same time (each
+	 * waits for the other) and their values are held
+	 */
+	@Test
+	public void parallel() {
+		StandardModel model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(layer);
+		
+		assertEquals(2, underTest.prefetch(model));
+		
+		assertEquals("first-default", model.getAttribute("first"));
+		assertEquals("second-default", model.getAttribute("second"));
+		assertEquals(1, first.calls.get());
+		assertEquals(1, second.calls.get());
+	}
+	
+	/**
+	 * Ensures a resolver that fails is left to be resolved as normal
+	 */
+	@Test
+	public void nestedLeft() {
+		StandardModel model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(layer);
+		underTest.prefetch(model);
+		
+		assertEquals(1, model.getPrefetchAttributes().size());
+		assertEquals("first-default", model.getAttribute("nested"));
+	}
+	
+	/**
+	 * Ensures the attributes of layers in other models are
+	 * resolved in the same batch and held in the main model
+	 * for when the layers are pushed
+	 */
+	@Test
+	public void otherLayers() {
+		final SimpleModelAttribute simple = new SimpleModelAttribute("simple");
+		simple.setDefaultValue("page");
+		ModelConfiguration page = new ModelConfiguration("page", new ArrayList<ModelAttribute>() {{
+			add(simple); }});
+		final ModelAttribute firstAttr = new ResolvedModelAttribute("first", first, null, null);
+		ModelConfiguration window1 = new ModelConfiguration("window1", new ArrayList<ModelAttribute>() {{
+			add(firstAttr); }});
+		final ModelAttribute secondAttr = new ResolvedModelAttribute("second", second, null, null);
+		ModelConfiguration window2 = new ModelConfiguration("window2", new ArrayList<ModelAttribute>() {{
+			add(secondAttr);
+			add(firstAttr); }});
+		
+		StandardModel model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(page);
+		
+		List<StandardModel> others = new ArrayList<StandardModel>();
+		StandardModel other = model.copy(false);
+		other.pushLayer(window1);
+		others.add(other);
+		other = model.copy(false);
+		other.pushLayer(window2);
+		others.add(other);
+		
+		assertEquals(3, underTest.prefetch(model, others));
+		assertEquals(0, model.getPrefetchAttributes().size());
+		
+		model.pushLayer(window1);
+		assertEquals("first-page", model.getAttribute("first"));
+		model.popLayer(window1);
+		model.pushLayer(window2);
+		assertEquals("second-page", model.getAttribute("second"));
+		assertEquals("first-page", model.getAttribute("first"));
+		assertTrue(model.getChangedAttributes(window2).contains("first"));
+		model.popLayer(window2);
+		
+		assertEquals(2, first.calls.get());
+		assertEquals(1, second.calls.get());
+	}
+	
+	/**
+	 * Resolver that only completes once both resolvers have been called 
+	 */
+	private class LatchResolver implements ModelResolver {
+		private final String prefix;
+		private final AtomicInteger calls = new AtomicInteger();
+		
+		public LatchResolver(String prefix) {
+			this.prefix = prefix;
+		}
+		
+		public Object getModelAttribute(Model model, String name, Object param) {
+			calls.incrementAndGet();
+			latch.countDown();
+			try {
+				if( !latch.await(2, TimeUnit.SECONDS) ) return null;
+			}
+			catch( InterruptedException e ) {
+				return null;
+			}
+			return prefix + "-" + model.getAttribute("simple");
+		}
+		
+		public boolean canNestResolver() {
+			return false;
+		}
+	}
+	
+	/**
+	 * Resolver that uses another resolved attribute
+	 */
+	private class NestedResolver implements ModelResolver {
+		public Object getModelAttribute(Model model, String name, Object param) {
+			return model.getAttribute("first");
+		}
+		
+		public boolean canNestResolver() {
+			return false;
+		}
+	}
+}
@@ -17,8 +17,10 @@
 package org.talframework.talui.mvc.model;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -184,6 +186,7 @@ public class TestStandardModel {
 		context.assertIsSatisfied();
 		assertNotNull(attr);
 		assertEquals("resolvedok", attr);
+		assertTrue(model.getChangedAttributes(layer2).contains("resolved"));
 	}
 	
 	/**
@@ -239,6 +242,165 @@ public class TestStandardModel {
 		assertEquals("changed", attr);
 	}
 	
+	/**
+	 * Tests the attribute resolves to the lower layer once
+	 * the upper layer is popped and that its value is kept
+	 */
+	@Test
+	public void popRestoresLayer() {
+		StandardModel model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(layer1);
+		model.pushLayer(layer2);
+		assertEquals("layer2", model.getAttribute("layered"));
+		
+		model.setAttribute("layered", "changed");
+		model.popLayer(layer2);
+		assertEquals("layer1", model.getAttribute("layered"));
+		
+		model.pushLayer(layer2);
+		assertEquals("changed", model.getAttribute("layered"));
+		assertEquals(7, model.size());
+	}
+	
+	/**
+	 * Tests that layers that are equal, but not the same, 
+	 * hold their own values
+	 */
+	@Test
+	public void equalLayers() {
+		ModelConfiguration copy = layer1.clone();
+		assertEquals(layer1, copy);
+		
+		StandardModel model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(layer1);
+		model.setAttribute("simple", "first");
+		model.pushLayer(copy);
+		assertEquals("default", model.getAttribute("simple"));
+		
+		model.setAttribute("simple", "second");
+		model.popLayer(copy);
+		assertEquals("first", model.getAttribute("simple"));
+	}
+	
+	/**
+	 * Tests a copy of the model starts with the same values
+	 * but is then independent of the original
+	 */
+	@Test
+	public void copy() {
+		StandardModel model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(layer1);
+		model.setAttribute("simple", "changed");
+		
+		StandardModel copy = model.copy(false);
+		assertEquals("changed", copy.getAttribute("simple"));
+		
+		copy.pushLayer(layer2);
+		copy.setAttribute("simple", "copy");
+		assertEquals("changed", model.getAttribute("simple"));
+		assertEquals("copy", copy.getAttribute("simple"));
+		assertEquals(3, model.size());
+		
+		copy.popLayer(layer2);
+		copy.popLayer(layer1);
+	}
+	
+	/**
+	 * Tests the changed attributes are tracked against the
+	 * layer that holds them
+	 */
+	@Test
+	public void changedAttributes() {
+		StandardModel model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(layer1);
+		model.pushLayer(layer2);
+		assertEquals(0, model.getChangedAttributes(layer1).size());
+		
+		model.setAttribute("parent", "changed");
+		model.setAttribute("layered", "changed");
+		model.removeAttribute("nonDefault");
+		
+		assertEquals(1, model.getChangedAttributes(layer1).size());
+		assertTrue(model.getChangedAttributes(layer1).contains("parent"));
+		assertEquals(2, model.getChangedAttributes(layer2).size());
+		assertTrue(model.getChangedAttributes(layer2).contains("layered"));
+		assertTrue(model.getChangedAttributes(layer2).contains("nonDefault"));
+	}
+	
+	/**
+	 * Tests the fingerprint follows the values in the model
+	 * and is not formed over resolved attributes unless asked
+	 */
+	@Test
+	public void fingerprint() {
+		StandardModel model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(layer1);
+		String original = model.getFingerprint(false);
+		assertNotNull(original);
+		
+		model.setAttribute("simple", "changed");
+		String changed = model.getFingerprint(false);
+		assertNotNull(changed);
+		assertFalse(original.equals(changed));
+		
+		model.setAttribute("simple", "default");
+		assertEquals(original, model.getFingerprint(false));
+		
+		model.pushLayer(layer2);
+		assertNull(model.getFingerprint(false));
+		assertNotNull(model.getFingerprint(true));
+	}
+	
+	/**
+	 * Tests models over the same layers share the layer lookup
+	 * but not the values, and a different stack of the same
+	 * layers resolves names against its own order
+	 */
+	@Test
+	public void sharedLayers() {
+		StandardModel first = new StandardModel(new SimpleModelAttributeResolver(), false);
+		first.pushLayer(layer1);
+		first.pushLayer(layer2);
+		StandardModel second = new StandardModel(new SimpleModelAttributeResolver(), false);
+		second.pushLayer(layer1);
+		second.pushLayer(layer2);
+		
+		first.setAttribute("layered", "changed");
+		assertEquals("changed", first.getAttribute("layered"));
+		assertEquals("layer2", second.getAttribute("layered"));
+		
+		StandardModel reversed = new StandardModel(new SimpleModelAttributeResolver(), false);
+		reversed.pushLayer(layer2);
+		reversed.pushLayer(layer1);
+		assertEquals("layer1", reversed.getAttribute("layered"));
+		
+		second.popLayer(layer2);
+		assertEquals("layer1", second.getAttribute("layered"));
+		assertFalse(second.containsKey("nonDefault"));
+		assertTrue(first.containsKey("nonDefault"));
+	}
+	
+	/**
+	 * Tests a change to a layer after it has been used is seen
+	 * by the next model over the same layers
+	 */
+	@Test
+	public void changedLayer() {
+		StandardModel model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(layer1);
+		model.pushLayer(layer2);
+		assertFalse(model.containsKey("added"));
+		
+		SimpleModelAttribute added = new SimpleModelAttribute("added");
+		added.setDefaultValue("value");
+		layer1.addAttribute(added);
+		
+		model = new StandardModel(new SimpleModelAttributeResolver(), false);
+		model.pushLayer(layer1);
+		model.pushLayer(layer2);
+		assertEquals("value", model.getAttribute("added"));
+	}
+	
 	/**
 	 * Tests we record events
 	 */
@@ -18,6 +18,7 @@ package org.talframework.talui.mvc.process;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -169,6 +170,8 @@ public class TestActionProcessor {
 		
 		proc.processAction(null, window1, "action1");
 		context.assertIsSatisfied();
+		assertEquals(1, proc.getAffectedWindows().size());
+		assertTrue(proc.getAffectedWindows().contains("window1"));
 	}
 	
 	/**
@@ -254,6 +257,7 @@ public class TestActionProcessor {
 		
 		proc.processAction(null, page.getWindow("window1"), "action1");
 		context.assertIsSatisfied();
+		assertEquals("[window1, window2]", proc.getAffectedWindows().toString());
 	}
 	
 	/**
@@ -291,9 +295,12 @@ public class TestActionProcessor {
 		// Should be no further attempts, even though last action will raise an event
 		// NOTE: There is no error, but if logging is enabled we will get a log statement
 		
+		EventStatistics.getInstance().reset();
 		ActionProcessor proc = new ActionProcessor(app, page, resolver);
 		proc.processAction(null, this.window1, "action1");
 		context.assertIsSatisfied();
+		assertEquals(3, EventStatistics.getInstance().getFired());
+		assertEquals(1, EventStatistics.getInstance().getDropped());
 	}
 	
 	/**
@@ -17,6 +17,7 @@
 package org.talframework.talui.template;
 
 import java.io.IOException;
+import java.io.Serializable;
 
 /**
  * This interface represents a basic building block that at
@@ -32,7 +33,7 @@ import java.io.IOException;
  * 
  * @author Tom Spencer
  */
-public interface RenderElement {
+public interface RenderElement extends Serializable {
 
 	/**
 	 * Called at compile time to add another element to 
@@ -192,6 +192,20 @@ public interface RenderModel {
 	 */
 	public RenderNode pushNode(String name, int index);
 	
+	/**
+	 * Call to push a new node when the object for that
+	 * node is already held. This is used when iterating
+	 * around collections, arrays and maps so the member
+	 * does not need to be looked up again from the 
+	 * current node.
+	 * 
+	 * @param name The name, key or index of the node (relative to current node)
+	 * @param index The index of the node (or -1 if not indexed)
+	 * @param value The object for the new node
+	 * @return The new render node
+	 */
+	public RenderNode pushNode(String name, int index, Object value);
+	
 	/**
 	 * Call to pop the last node off the stack. So
 	 * if the current node is "some.object.member"
@@ -17,6 +17,7 @@
 package org.talframework.talui.template;
 
 import java.io.IOException;
+import java.io.Serializable;
 
 
 /**
@@ -24,9 +25,13 @@ import java.io.IOException;
  * rendering out a template from the source information
  * given to it.
  * 
+ * <p>Renderers (and the render and template elements they
+ * hold) are serializable so they can be compiled at build
+ * time and loaded at runtime, see {@link org.talframework.talui.template.core.PrecompiledRendererStore}.</p>
+ * 
  * @author Tom Spencer
  */
-public interface Renderer {
+public interface Renderer extends Serializable {
 	
 	/**
 	 * Determines if the renderer iterates around the model
@@ -16,6 +16,7 @@
 
 package org.talframework.talui.template;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 
@@ -44,7 +45,7 @@ import java.util.Map;
  * @sa Renderer 
  * @author Tom Spencer
  */
-public interface Template {
+public interface Template extends Serializable {
 
 	/**
 	 * @return The name of the element
@@ -16,6 +16,7 @@
 
 package org.talframework.talui.template;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
 
@@ -37,7 +38,7 @@ import java.util.Map;
  * 
  * @author Tom Spencer
  */
-public interface TemplateElement {
+public interface TemplateElement extends Serializable {
 
 	/**
 	 * @return The name of the element
@@ -185,6 +185,36 @@ public class BasicTemplateRenderMold implements TemplateRenderMold {
 		behaviourMolds.add(new BehaviourMold(behaviour, styles, mold));
 	}
 	
+	/**
+	 * Gets a key that describes how this mold is configured. This
+	 * is the class of the default mold and of each mold held
+	 * together with what they are matched against, so it changes
+	 * if a different factory or forms support is used.
+	 * 
+	 * @return The key for the configuration of this mold
+	 */
+	public String getConfigurationKey() {
+		StringBuilder buf = new StringBuilder();
+		buf.append(defaultMold != null ? defaultMold.getClass().getName() : null);
+		appendKey(buf, "named", namedMolds);
+		appendKey(buf, "typed", styledMolds);
+		appendKey(buf, "behaviour", behaviourMolds);
+		return buf.toString();
+	}
+	
+	/**
+	 * Helper to add the key of each of the molds to the buffer
+	 */
+	private void appendKey(StringBuilder buf, String kind, List<? extends MatchedMold> molds) {
+		if( molds == null ) return;
+		
+		Iterator<? extends MatchedMold> it = molds.iterator();
+		while( it.hasNext() ) {
+			buf.append(';').append(kind).append(':');
+			it.next().appendKey(buf);
+		}
+	}
+	
 	/**
 	 * Default version of this class creates an empty render
 	 * element and puts all children inside.
@@ -325,6 +355,26 @@ public class BasicTemplateRenderMold implements TemplateRenderMold {
 			result.update(positiveMatch, inexactMatch, nosStyles, mold);
 		}
 		
+		/**
+		 * Adds what this mold matches against and the class of
+		 * the mold to the buffer.
+		 * 
+		 * @param buf The buffer
+		 */
+		public void appendKey(StringBuilder buf) {
+			buf.append(getSelector());
+			if( styles != null ) {
+				for( int i = 0 ; i < styles.length ; i++ ) buf.append(i == 0 ? '[' : ',').append(styles[i]);
+				buf.append(']');
+			}
+			buf.append('=').append(mold.getClass().getName());
+		}
+		
+		/**
+		 * @return The name, type or behaviour the mold is matched against
+		 */
+		protected abstract String getSelector();
+		
 		/**
 		 * Called during match to determine if this mold is an
 		 * exact match for the element
@@ -359,6 +409,11 @@ public class BasicTemplateRenderMold implements TemplateRenderMold {
 			this.type = type;
 		}
 		
+		@Override
+		protected String getSelector() {
+			return type;
+		}
+		
 		@Override
 		protected boolean isExactMatch(TemplateElement element) {
 			return this.type.equals(element.getType());
@@ -387,6 +442,11 @@ public class BasicTemplateRenderMold implements TemplateRenderMold {
 			this.name = name;
 		}
 		
+		@Override
+		protected String getSelector() {
+			return name;
+		}
+		
 		@Override
 		protected boolean isExactMatch(TemplateElement element) {
 			return this.name.equals(element.getName());
@@ -413,6 +473,11 @@ public class BasicTemplateRenderMold implements TemplateRenderMold {
 			this.behaviour = behaviour;
 		}
 		
+		@Override
+		protected String getSelector() {
+			return behaviour.getName();
+		}
+		
 		@Override
 		protected boolean isExactMatch(TemplateElement element) {
 			return element.getBehaviour(behaviour) != null;
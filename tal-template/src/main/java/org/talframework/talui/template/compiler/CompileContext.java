@@ -0,0 +1,301 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.template.compiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.talframework.tal.aspects.annotations.Trace;
+import org.talframework.talui.template.RenderElement;
+import org.talframework.talui.template.Renderer;
+import org.talframework.talui.template.Template;
+import org.talframework.talui.template.TemplateConfiguration;
+
+/**
+ * This class holds the state of a single compilation run of a
+ * {@link SimpleGenericCompiler}. The compiler itself only holds
+ * its configuration (the mold and the inbuilt styles), so a
+ * single compiler can be used by many threads at once. Each call
+ * to compile creates a new context and it is the context that
+ * is passed to the molds as the {@link GenericCompiler}.
+ * 
+ * <p>An instance of this class must only be used by a single
+ * thread.</p>
+ * 
+ * @author Tom Spencer
+ */
+public class CompileContext implements GenericCompiler {
+	
+	/** The compiler this context belongs to */
+	private final SimpleGenericCompiler compiler;
+	
+	/** Member holds the current styles */
+	private String[] styles = new String[0];
+	/** Member holds the current template styles */
+	private String[] templateStyles = new String[0];
+	
+	/** Member holds the model templates to be compiled */
+	private final Map<String, Template> modelTemplates;
+	/** Member holds the render elements against each template */
+	private final Map<String, RenderElement> renderedTemplates = new HashMap<String, RenderElement>();
+	
+	/**
+	 * Constructs a new context for a compilation run
+	 * 
+	 * @param compiler The compiler that is compiling
+	 * @param modelTemplates The model templates that can be compiled
+	 */
+	public CompileContext(SimpleGenericCompiler compiler, Map<String, Template> modelTemplates) {
+		if( compiler == null ) throw new IllegalArgumentException("Cannot create a compile context without a compiler");
+		
+		this.compiler = compiler;
+		this.modelTemplates = modelTemplates != null ? modelTemplates : new HashMap<String, Template>();
+	}
+	
+	/**
+	 * Compiling a configuration from within a compile is a 
+	 * new compilation run, so this is passed to the compiler.
+	 */
+	public Renderer compile(TemplateConfiguration config) {
+		return compiler.compile(config);
+	}
+	
+	/**
+	 * Just returns the styles member.
+	 */
+	public String[] getStyles() {
+		return styles;
+	}
+	
+	public String[] getTemplateStyles() {
+		return templateStyles;
+	}
+	
+	/**
+	 * Determines if style is set of not (either perm or template)
+	 */
+	public boolean isStyle(String style) {
+		return isStyle(style, false);
+	}
+	
+	/**
+	 * Determines if style is set of not (either perm or template)
+	 */
+	public boolean isStyle(String style, boolean nonTemplateOnly) {
+		String[] compilerStyles = compiler.getCompilerStyles();
+		if( compilerStyles != null ) {
+			for( int i = 0 ; i < compilerStyles.length ; i++ ) {
+				if( compilerStyles[i].equals(style) ) return true;
+			}
+		}
+		
+		for( int i = 0 ; i < this.styles.length ; i++ ) {
+			if( this.styles[i].equals(style) ) return true;
+		}
+		
+		if( !nonTemplateOnly && this.templateStyles != null ) {
+			for( int i = 0 ; i < this.templateStyles.length ; i++ ) {
+				if( this.templateStyles[i].equals(style) ) return true;
+			}
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * Adds the given style to end of array
+	 */
+	public boolean addStyle(String style) {
+		if( style == null ) return false;
+		
+		boolean ret = isStyle(style);
+		
+		ArrayList<String> styles = new ArrayList<String>();
+		
+		for( int i = 0 ; i < this.styles.length ; i++ ) {
+			if( !style.equals(this.styles[i]) ) styles.add(this.styles[i]);
+		}
+		
+		styles.add(style);
+		
+		this.styles = styles.toArray(new String[styles.size()]);
+		return ret;
+	}
+	
+	/**
+	 * Removes style from array
+	 */
+	public void removeStyle(String style) {
+		if( style == null ) return;
+		
+		ArrayList<String> styles = new ArrayList<String>();
+		
+		for( int i = 0 ; i < this.styles.length ; i++ ) {
+			if( !style.equals(this.styles[i]) ) styles.add(this.styles[i]);
+		}
+		
+		if( styles.size() == 0 ) this.styles = new String[0];
+		else this.styles = styles.toArray(new String[styles.size()]);
+	}
+	
+	/**
+	 * Adds the given style to end of array
+	 */
+	public boolean addTemplateStyle(String style) {
+		if( style == null ) return false;
+		
+		boolean ret = isStyle(style, true);
+		
+		ArrayList<String> styles = new ArrayList<String>();
+		
+		for( int i = 0 ; i < this.templateStyles.length ; i++ ) {
+			if( !style.equals(this.templateStyles[i]) ) styles.add(this.templateStyles[i]);
+		}
+		
+		styles.add(style);
+		
+		this.templateStyles = styles.toArray(new String[styles.size()]);
+		return ret;
+	}
+	
+	/**
+	 * Removes style from array
+	 */
+	public void removeTemplateStyle(String style) {
+		if( style == null ) return;
+		
+		ArrayList<String> styles = new ArrayList<String>();
+		
+		for( int i = 0 ; i < this.templateStyles.length ; i++ ) {
+			if( !style.equals(this.templateStyles[i]) ) styles.add(this.templateStyles[i]);
+		}
+		
+		if( styles.size() == 0 ) this.templateStyles = new String[0];
+		else this.templateStyles = styles.toArray(new String[styles.size()]);
+	}
+	
+	/**
+	 * @return The current style name by adding all styles together (suffixed .)
+	 */
+	public String getStyleName() {
+		if( this.styles.length == 0 ) return null;
+		
+		StringBuilder ret = new StringBuilder();
+		for( int i = 0 ; i < this.styles.length ; i++ ) {
+			ret.append(this.styles[i]);
+			ret.append('.');
+		}
+		
+		return ret.toString();
+	}
+	
+	/**
+	 * First this method finds the template (throwing if it does not
+	 * exist). Then it sees if we have already rendered this template.
+	 * If so returns it's name, otherwise starts compiling it.
+	 */
+	public RenderElement compileTemplate(String templateName, String[] styles, String[] templateStyles) {
+		Template template = modelTemplates.get(templateName);
+		if( template == null ) throw new IllegalArgumentException("!!! Cannot compile template as it does not exist in set of model templates: " + templateName);
+		
+		return compileTemplate(template, styles, templateStyles);
+	}
+	
+	/**
+	 * First this method finds the template (throwing if it does not
+	 * exist). Then it sees if we have already rendered this template.
+	 * If so returns it's name, otherwise starts compiling it.
+	 */
+	@Trace
+	public RenderElement compileTemplate(Template template, String[] styles, String[] innerTemplateStyles) {
+		// Set the new styles
+		List<String> removeStyles = new ArrayList<String>();
+		if( styles != null ) {
+			for( int i = 0 ; i < styles.length ; i++ ) {
+				if( !isStyle(styles[i], true) ) {
+					addStyle(styles[i]);
+					removeStyles.add(styles[i]);
+				}
+			}
+		}
+		String[] tempStyles = this.templateStyles;
+		this.templateStyles = innerTemplateStyles;
+		if( this.templateStyles == null ) this.templateStyles = new String[0];
+		
+		// Actually compiler
+		RenderElement ret = null;
+		try {
+			String name = template.getName();
+			String style = getStyleName();
+			if( style != null ) name = style + name;
+			
+			ret = renderedTemplates.get(name);
+			if( ret == null ) {
+				ret = compiler.createTemplateElement(template);
+				renderedTemplates.put(name, ret);
+				
+				RenderElement root = compiler.getMold().compile(this, template);
+				ret.addElement(root);
+			}
+		}
+		finally {
+			// Remove any styles
+			Iterator<String> it = removeStyles.iterator();
+			while( it.hasNext() ) {
+				removeStyle(it.next());
+			}
+			
+			// Replace the template styles
+			this.templateStyles = tempStyles;
+		}
+		
+		return ret;
+	}
+	
+	public RenderElement getTemplate(String name) {
+		return renderedTemplates.get(name);
+	}
+	
+	public void addTemplate(String name, RenderElement elem) {
+		renderedTemplates.put(name, elem);
+	}
+	
+	/**
+	 * @return The compiler this context belongs to
+	 */
+	public SimpleGenericCompiler getCompiler() {
+		return compiler;
+	}
+
+	/**
+	 * @return the modelTemplates
+	 */
+	public Map<String, Template> getModelTemplates() {
+		return modelTemplates;
+	}
+
+	/**
+	 * @return the renderedTemplates
+	 */
+	public Map<String, RenderElement> getRenderedTemplates() {
+		return renderedTemplates;
+	}
+}
@@ -16,13 +16,12 @@
 
 package org.talframework.talui.template.compiler;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 
 import org.talframework.tal.aspects.annotations.Trace;
+import org.talframework.talui.template.Compiler;
 import org.talframework.talui.template.RenderElement;
 import org.talframework.talui.template.Renderer;
 import org.talframework.talui.template.Template;
@@ -40,9 +39,16 @@ import org.talframework.talui.template.render.elements.special.EmptyElement;
  * template and uses the render templates to produce the 
  * compiled renderer.
  * 
+ * <p>The compiler only holds its configuration. The state of
+ * each compilation is held in a new {@link CompileContext},
+ * which is what the molds see as the {@link GenericCompiler},
+ * so the compiler can be shared and used by many threads at
+ * once. The configuration should not be changed once the
+ * compiler is in use.</p>
+ * 
  * @author Tom Spencer
  */
-public class SimpleGenericCompiler implements GenericCompiler {
+public class SimpleGenericCompiler implements Compiler {
 	
 	/** If true the compiler will always recurse all templates in compilation */
 	private boolean recurseTemplates = false;
@@ -50,16 +56,8 @@ public class SimpleGenericCompiler implements GenericCompiler {
 	private String[] compilerStyles = null;
 	/** The mold to use for any templates */
 	private TemplateRenderMold mold = null;
-	
-	/** Member holds the current styles */
-	private String[] styles = new String[0];
-	/** Member holds the current template styles */
-	private String[] templateStyles = new String[0];
-	
-	/** Member holds the model templates to be compiled */
-	private Map<String, Template> modelTemplates = null;
-	/** Member holds the render elements against each template */
-	private Map<String, RenderElement> renderedTemplates = null;
+	/** If true static markup is pre-rendered once compilation is complete */
+	private boolean coalesceStaticMarkup = false;
 	
 	/**
 	 * Obtains the root set of render templates and renders the 
@@ -69,19 +67,25 @@ public class SimpleGenericCompiler implements GenericCompiler {
 	 */
 	@Trace
 	public Renderer compile(TemplateConfiguration config) {
-		// reset run elements
-		this.modelTemplates = config.getTemplates();
-		this.renderedTemplates = new HashMap<String, RenderElement>();
-		this.styles = new String[0];
-		this.templateStyles = new String[0];
+		CompileContext context = new CompileContext(this, config.getTemplates());
 		
 		Renderer ret = null;
 		if( recurseTemplates ) {
+			Map<String, Template> modelTemplates = context.getModelTemplates();
 			Iterator<String> it = modelTemplates.keySet().iterator();
 			while( it.hasNext() ) {
 				String name = it.next();
 				Template template = modelTemplates.get(name);
-				compileTemplate(template, null, null);
+				context.compileTemplate(template, null, null);
+			}
+			
+			Map<String, RenderElement> renderedTemplates = context.getRenderedTemplates();
+			if( coalesceStaticMarkup ) {
+				StaticMarkupCoalescer coalescer = new StaticMarkupCoalescer();
+				Iterator<RenderElement> it2 = renderedTemplates.values().iterator();
+				while( it2.hasNext() ) {
+					coalescer.coalesce(it2.next());
+				}
 			}
 			
 			ret = new TemplateRenderer(renderedTemplates);
@@ -89,8 +93,10 @@ public class SimpleGenericCompiler implements GenericCompiler {
 		
 		// Start with only the 1 template
 		else {
-			RenderElement renderedRootTemplate = compileTemplate(config.getMainTemplate(), null, null);
-			ret = new ModelRenderer(swapRootTemplate(config, renderedRootTemplate));
+			RenderElement renderedRootTemplate = context.compileTemplate(config.getMainTemplate(), null, null);
+			RenderElement root = swapRootTemplate(config, renderedRootTemplate);
+			if( coalesceStaticMarkup ) root = new StaticMarkupCoalescer().coalesce(root);
+			ret = new ModelRenderer(root);
 		}
 		
 		return ret;
@@ -109,205 +115,6 @@ public class SimpleGenericCompiler implements GenericCompiler {
 		return root;
 	}
 	
-	/**
-	 * Just returns the styles member.
-	 */
-	public String[] getStyles() {
-		return styles;
-	}
-	
-	public String[] getTemplateStyles() {
-		return templateStyles;
-	}
-	
-	/**
-	 * Determines if style is set of not (either perm or template)
-	 */
-	public boolean isStyle(String style) {
-		return isStyle(style, false);
-	}
-	
-	/**
-	 * Determines if style is set of not (either perm or template)
-	 */
-	public boolean isStyle(String style, boolean nonTemplateOnly) {
-		if( this.compilerStyles != null ) {
-			for( int i = 0 ; i < this.compilerStyles.length ; i++ ) {
-				if( this.compilerStyles[i].equals(style) ) return true;
-			}
-		}
-		
-		for( int i = 0 ; i < this.styles.length ; i++ ) {
-			if( this.styles[i].equals(style) ) return true;
-		}
-		
-		if( !nonTemplateOnly && this.templateStyles != null ) {
-			for( int i = 0 ; i < this.templateStyles.length ; i++ ) {
-				if( this.templateStyles[i].equals(style) ) return true;
-			}
-		}
-		
-		return false;
-	}
-	
-	/**
-	 * Adds the given style to end of array
-	 */
-	public boolean addStyle(String style) {
-		if( style == null ) return false;
-		
-		boolean ret = isStyle(style);
-		
-		ArrayList<String> styles = new ArrayList<String>();
-		
-		for( int i = 0 ; i < this.styles.length ; i++ ) {
-			if( !style.equals(this.styles[i]) ) styles.add(this.styles[i]);
-		}
-		
-		styles.add(style);
-		
-		this.styles = styles.toArray(new String[styles.size()]);
-		return ret;
-	}
-	
-	/**
-	 * Removes style from array
-	 */
-	public void removeStyle(String style) {
-		if( style == null ) return;
-		
-		ArrayList<String> styles = new ArrayList<String>();
-		
-		for( int i = 0 ; i < this.styles.length ; i++ ) {
-			if( !style.equals(this.styles[i]) ) styles.add(this.styles[i]);
-		}
-		
-		if( styles.size() == 0 ) this.styles = new String[0];
-		else this.styles = styles.toArray(new String[styles.size()]);
-	}
-	
-	/**
-	 * Adds the given style to end of array
-	 */
-	public boolean addTemplateStyle(String style) {
-		if( style == null ) return false;
-		
-		boolean ret = isStyle(style, true);
-		
-		ArrayList<String> styles = new ArrayList<String>();
-		
-		for( int i = 0 ; i < this.templateStyles.length ; i++ ) {
-			if( !style.equals(this.templateStyles[i]) ) styles.add(this.templateStyles[i]);
-		}
-		
-		styles.add(style);
-		
-		this.templateStyles = styles.toArray(new String[styles.size()]);
-		return ret;
-	}
-	
-	/**
-	 * Removes style from array
-	 */
-	public void removeTemplateStyle(String style) {
-		if( style == null ) return;
-		
-		ArrayList<String> styles = new ArrayList<String>();
-		
-		for( int i = 0 ; i < this.templateStyles.length ; i++ ) {
-			if( !style.equals(this.templateStyles[i]) ) styles.add(this.templateStyles[i]);
-		}
-		
-		if( styles.size() == 0 ) this.templateStyles = new String[0];
-		else this.templateStyles = styles.toArray(new String[styles.size()]);
-	}
-	
-	/**
-	 * @return The current style name by adding all styles together (suffixed .)
-	 */
-	public String getStyleName() {
-		if( this.styles.length == 0 ) return null;
-		
-		StringBuilder ret = new StringBuilder();
-		for( int i = 0 ; i < this.styles.length ; i++ ) {
-			ret.append(this.styles[i]);
-			ret.append('.');
-		}
-		
-		return ret.toString();
-	}
-	
-	/**
-	 * First this method finds the template (throwing if it does not
-	 * exist). Then it sees if we have already rendered this template.
-	 * If so returns it's name, otherwise starts compiling it.
-	 */
-	public RenderElement compileTemplate(String templateName, String[] styles, String[] templateStyles) {
-		Template template = modelTemplates.get(templateName);
-		if( template == null ) throw new IllegalArgumentException("!!! Cannot compile template as it does not exist in set of model templates: " + templateName);
-		
-		return compileTemplate(template, styles, templateStyles);
-	}
-	
-	/**
-	 * First this method finds the template (throwing if it does not
-	 * exist). Then it sees if we have already rendered this template.
-	 * If so returns it's name, otherwise starts compiling it.
-	 */
-	@Trace
-	public RenderElement compileTemplate(Template template, String[] styles, String[] innerTemplateStyles) {
-		// Set the new styles
-		List<String> removeStyles = new ArrayList<String>();
-		if( styles != null ) {
-			for( int i = 0 ; i < styles.length ; i++ ) {
-				if( !isStyle(styles[i], true) ) {
-					addStyle(styles[i]);
-					removeStyles.add(styles[i]);
-				}
-			}
-		}
-		String[] tempStyles = this.templateStyles;
-		this.templateStyles = innerTemplateStyles;
-		if( this.templateStyles == null ) this.templateStyles = new String[0];
-		
-		// Actually compiler
-		RenderElement ret = null;
-		try {
-			String name = template.getName();
-			String style = getStyleName();
-			if( style != null ) name = style + name;
-			
-			ret = renderedTemplates.get(name);
-			if( ret == null ) {
-				ret = createTemplateElement(template);
-				renderedTemplates.put(name, ret);
-				
-				RenderElement root = mold.compile(this, template);
-				ret.addElement(root);
-			}
-		}
-		finally {
-			// Remove any styles
-			Iterator<String> it = removeStyles.iterator();
-			while( it.hasNext() ) {
-				removeStyle(it.next());
-			}
-			
-			// Replace the template styles
-			this.templateStyles = tempStyles;
-		}
-		
-		return ret;
-	}
-	
-	public RenderElement getTemplate(String name) {
-		return renderedTemplates.get(name);
-	}
-	
-	public void addTemplate(String name, RenderElement elem) {
-		renderedTemplates.put(name, elem);
-	}
-	
 	/**
 	 * This method can be overridden by any derived class to set
 	 * the render element to use for any template. The default
@@ -320,6 +127,26 @@ public class SimpleGenericCompiler implements GenericCompiler {
 		return new EmptyElement();
 	}
 	
+	/**
+	 * Gets a key that describes the configuration of this compiler.
+	 * Renderers compiled by compilers with the same key are the
+	 * same, so this is used to tell if a precompiled renderer can
+	 * be used in place of compiling it again.
+	 * 
+	 * @return The key for the configuration of this compiler
+	 */
+	public String getConfigurationKey() {
+		StringBuilder buf = new StringBuilder();
+		buf.append(getClass().getName());
+		buf.append(";recurse=").append(recurseTemplates);
+		buf.append(";coalesce=").append(coalesceStaticMarkup);
+		buf.append(";styles=").append(compilerStyles != null ? Arrays.asList(compilerStyles) : null);
+		buf.append(";mold=");
+		if( mold instanceof BasicTemplateRenderMold ) buf.append(((BasicTemplateRenderMold)mold).getConfigurationKey());
+		else buf.append(mold != null ? mold.getClass().getName() : null);
+		return buf.toString();
+	}
+	
 	//////////////////////////////////////////
 	// Getters/Setters
 
@@ -338,38 +165,31 @@ public class SimpleGenericCompiler implements GenericCompiler {
 	}
 
 	/**
-	 * @return the modelTemplates
-	 */
-	public Map<String, Template> getModelTemplates() {
-		return modelTemplates;
-	}
-
-	/**
-	 * @param modelTemplates the modelTemplates to set
+	 * @return the compilerStyles
 	 */
-	public void setModelTemplates(Map<String, Template> modelTemplates) {
-		this.modelTemplates = modelTemplates;
+	public String[] getCompilerStyles() {
+		return compilerStyles;
 	}
 
 	/**
-	 * @return the renderedTemplates
+	 * @param compilerStyles the compilerStyles to set
 	 */
-	public Map<String, RenderElement> getRenderedTemplates() {
-		return renderedTemplates;
+	public void setCompilerStyles(String[] compilerStyles) {
+		this.compilerStyles = compilerStyles;
 	}
 
 	/**
-	 * @return the compilerStyles
+	 * @return the coalesceStaticMarkup
 	 */
-	public String[] getCompilerStyles() {
-		return compilerStyles;
+	public boolean isCoalesceStaticMarkup() {
+		return coalesceStaticMarkup;
 	}
 
 	/**
-	 * @param compilerStyles the compilerStyles to set
+	 * @param coalesceStaticMarkup If true any markup that does not depend on the model is pre-rendered
 	 */
-	public void setCompilerStyles(String[] compilerStyles) {
-		this.compilerStyles = compilerStyles;
+	public void setCoalesceStaticMarkup(boolean coalesceStaticMarkup) {
+		this.coalesceStaticMarkup = coalesceStaticMarkup;
 	}
 
 	/**
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.compiler;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.talframework.talui.template.RenderElement;
+import org.talframework.talui.template.render.elements.AbstractRenderElement;
+import org.talframework.talui.template.render.elements.StaticMarkupElement;
+import org.talframework.talui.template.render.elements.html.AbstractHtmlElement;
+import org.talframework.talui.template.render.elements.special.BaseMemberElement;
+import org.talframework.talui.template.render.elements.special.EmptyElement;
+import org.talframework.talui.template.render.elements.special.WrappingRenderElement;
+
+/**
+ * This class is a post-compile optimisation pass over a tree of
+ * render elements. It finds HTML elements whose start and end
+ * markup does not depend on the model (see
+ * {@link AbstractHtmlElement#isStaticMarkup()}) and pre-renders
+ * that markup. The element is then replaced in its parent by the
+ * start markup, its children and the end markup. Runs of markup
+ * are then folded together into a single {@link StaticMarkupElement}
+ * that is written in one call at render time. Empty elements are
+ * also folded into their parent in the same way.
+ * 
+ * <p>The output of the render tree is unchanged. A new instance
+ * of this class should be used for each compile run.</p>
+ * 
+ * @author Tom Spencer
+ */
+public class StaticMarkupCoalescer {
+
+	/** Holds the elements already processed (compiled templates are shared) */
+	private final Map<RenderElement, RenderElement> processed = new IdentityHashMap<RenderElement, RenderElement>();
+
+	/**
+	 * Call to optimise the tree of elements starting at the root.
+	 * The root element itself is never replaced.
+	 * 
+	 * @param root The root element
+	 * @return The root element
+	 */
+	public RenderElement coalesce(RenderElement root) {
+		optimise(root);
+		return root;
+	}
+
+	/**
+	 * Optimises the given element (if not already done)
+	 * 
+	 * @param elem The element
+	 */
+	private void optimise(RenderElement elem) {
+		if( elem == null || processed.containsKey(elem) ) return;
+		processed.put(elem, elem);
+
+		if( elem instanceof AbstractRenderElement ) optimiseChildren((AbstractRenderElement)elem);
+		else if( elem instanceof BaseMemberElement ) optimise(((BaseMemberElement)elem).getTemplate());
+		else if( elem instanceof WrappingRenderElement ) optimise(((WrappingRenderElement)elem).getPrimaryElement());
+	}
+
+	/**
+	 * Replaces the children of the element with the optimised
+	 * set of children.
+	 * 
+	 * @param elem The element to optimise
+	 */
+	private void optimiseChildren(AbstractRenderElement elem) {
+		List<RenderElement> children = elem.getChildren();
+		if( children == null || children.size() == 0 ) return;
+
+		List<RenderElement> newChildren = new ArrayList<RenderElement>(children.size());
+		StringBuilder markup = new StringBuilder();
+		int ln = children.size();
+		for( int i = 0 ; i < ln ; i++ ) {
+			addChild(children.get(i), newChildren, markup);
+		}
+		flush(newChildren, markup);
+
+		elem.setChildren(newChildren);
+	}
+
+	/**
+	 * Adds the child either as markup or as an element
+	 * 
+	 * @param child The child to add
+	 * @param newChildren The new set of children
+	 * @param markup The current run of static markup
+	 */
+	private void addChild(RenderElement child, List<RenderElement> newChildren, StringBuilder markup) {
+		if( child instanceof StaticMarkupElement ) {
+			markup.append(((StaticMarkupElement)child).getMarkup());
+		}
+		else if( isFoldable(child) ) {
+			optimise(child);
+
+			AbstractRenderElement parent = (AbstractRenderElement)child;
+			if( child instanceof AbstractHtmlElement ) markup.append(((AbstractHtmlElement)child).getStaticStart());
+
+			List<RenderElement> children = parent.getChildren();
+			if( children != null ) {
+				int ln = children.size();
+				for( int i = 0 ; i < ln ; i++ ) {
+					addChild(children.get(i), newChildren, markup);
+				}
+			}
+
+			if( child instanceof AbstractHtmlElement ) markup.append(((AbstractHtmlElement)child).getStaticEnd());
+		}
+		else {
+			optimise(child);
+			flush(newChildren, markup);
+			newChildren.add(child);
+		}
+	}
+
+	/**
+	 * Adds any current markup as a new static element
+	 * 
+	 * @param newChildren The new children
+	 * @param markup The current run of static markup (which is reset)
+	 */
+	private void flush(List<RenderElement> newChildren, StringBuilder markup) {
+		if( markup.length() > 0 ) {
+			newChildren.add(new StaticMarkupElement(markup.toString()));
+			markup.setLength(0);
+		}
+	}
+
+	/**
+	 * Determines if the element can be folded into its parent
+	 * 
+	 * @param elem The element
+	 * @return True if it can be replaced with its markup and children
+	 */
+	private boolean isFoldable(RenderElement elem) {
+		if( elem instanceof EmptyElement ) return true;
+		else if( elem instanceof AbstractHtmlElement ) return ((AbstractHtmlElement)elem).isStaticMarkup();
+		else return false;
+	}
+}
@@ -40,7 +40,8 @@ public class HtmlCompiler extends SimpleGenericCompiler {
 
 	/**
 	 * Creates an instance of the compiler using the default
-	 * HtmlTemplateElementRenderMoldFactory.
+	 * HtmlTemplateElementRenderMoldFactory. Static markup is 
+	 * pre-rendered at the end of each compilation.
 	 * 
 	 * @param incForm If true form support is added, false otherwise
 	 */
@@ -48,6 +49,7 @@ public class HtmlCompiler extends SimpleGenericCompiler {
 		BasicTemplateRenderMold mold = new BasicTemplateRenderMold();
 		mold.configureMold(HtmlTemplateElementRenderMoldFactory.getInstance(), incForm);
 		setMold(mold);
+		setCoalesceStaticMarkup(true);
 	}
 	
 	/**
@@ -61,6 +63,7 @@ public class HtmlCompiler extends SimpleGenericCompiler {
 		BasicTemplateRenderMold mold = new BasicTemplateRenderMold();
 		mold.configureMold(factory, incForm);
 		setMold(mold);
+		setCoalesceStaticMarkup(true);
 	}
 	
 	/**
@@ -86,6 +86,8 @@ public class MessagesElementMold implements TemplateElementRenderMold {
 	 * @author Tom Spencer
 	 */
 	private class MessageParameter implements RenderParameter {
+		private static final long serialVersionUID = 1L;
+		
 		private final String codeProperty;
 		private final String paramsProperty;
 		
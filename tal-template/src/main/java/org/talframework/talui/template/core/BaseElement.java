@@ -19,6 +19,9 @@ package org.talframework.talui.template.core;
 import java.beans.BeanInfo;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -36,7 +39,8 @@ import org.talframework.talui.template.TemplateElement;
  * 
  * @author Tom Spencer
  */
-public class BaseElement {
+public class BaseElement implements Serializable {
+	private static final long serialVersionUID = 1L;
 
 	/** Member holds the name */
 	private String name = null;
@@ -45,14 +49,21 @@ public class BaseElement {
 	/** Member holds any child elements the element may have */
 	private List<TemplateElement> elements = null;
 	/** Member holds the list of valid settings for this class */
-	private Map<String, Method> validSettings = new HashMap<String, Method>();
+	private transient Map<String, Method> validSettings = new HashMap<String, Method>();
 	
 	/**
 	 * This base version of init does nothing
 	 */
 	public void init(List<TemplateElement> children) {
 		this.elements = children != null ? new ArrayList<TemplateElement>(children) : null;
-		
+		findSettings();
+	}
+	
+	/**
+	 * Finds the valid settings of this class (its readable 
+	 * bean properties)
+	 */
+	private void findSettings() {
 		try {
 			BeanInfo info = Introspector.getBeanInfo(this.getClass());
 			PropertyDescriptor[] props = info.getPropertyDescriptors();
@@ -68,6 +79,16 @@ public class BaseElement {
 		}
 	}
 	
+	/**
+	 * Finds the valid settings again when the element is
+	 * deserialised as methods are not serializable
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		validSettings = new HashMap<String, Method>();
+		findSettings();
+	}
+	
 	/**
 	 * Helper for the TemplateElement.getBejaviour method. 
 	 * Derived classes can override if certain behaviours are
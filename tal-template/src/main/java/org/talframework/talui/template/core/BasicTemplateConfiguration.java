@@ -16,11 +16,20 @@
 
 package org.talframework.talui.template.core;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.talframework.talui.template.Compiler;
 import org.talframework.talui.template.Renderer;
@@ -41,6 +50,23 @@ import org.talframework.talui.template.core.props.CommandProperty;
  * any configuration. It contains some logic to create some 
  * standard templates.
  * 
+ * <p>If the renderers are not created at init time then each
+ * one is compiled on first use. Compilation is held as a future
+ * against the render type so that, however many threads ask 
+ * for the renderer at once, it is compiled exactly once and 
+ * the other threads wait for that result.</p>
+ * 
+ * <p>Before compiling a renderer the configuration checks the
+ * {@link PrecompiledRendererStore} for a renderer that was 
+ * compiled at build time and uses that instead if it is still
+ * valid.</p>
+ * 
+ * <p>Compilers are re-entrant, so renderers for different
+ * configurations (or render types) can be compiled at the same
+ * time. The {@link ParallelTemplateCompiler} uses this to 
+ * compile all registered configurations that do not init their
+ * renderers at startup.</p>
+ * 
  * @author Tom Spencer
  */
 public class BasicTemplateConfiguration implements TemplateConfiguration {
@@ -64,7 +90,7 @@ public class BasicTemplateConfiguration implements TemplateConfiguration {
 	private Map<String, Compiler> compilers = null;
 	
 	/** Member holds the cached renders keyed by render type */
-	private Map<String, Renderer> renderers = new HashMap<String, Renderer>();
+	private final ConcurrentMap<String, RendererEntry> renderers = new ConcurrentHashMap<String, RendererEntry>();
 	
 	/**
 	 * Call to initialise the configuration after setup. All
@@ -78,10 +104,7 @@ public class BasicTemplateConfiguration implements TemplateConfiguration {
 		if( initRenderers ) {
 			Iterator<String> it2 = compilers.keySet().iterator();
 			while( it2.hasNext() ) {
-				String renderType = it2.next();
-				Compiler c = compilers.get(renderType);
-				Renderer r = c.compile(this);
-				renderers.put(renderType, r);
+				getRendererEntry(it2.next()).get();
 			}
 		}
 		
@@ -97,15 +120,124 @@ public class BasicTemplateConfiguration implements TemplateConfiguration {
 	public Renderer getRenderer(String renderType) {
 		if( compilers == null || !compilers.containsKey(renderType) ) throw new IllegalArgumentException("The render type does not exist in the configuration: " + renderType);
 		
-		Renderer ret = renderers.get(renderType);
-		if( ret == null && !initRenderers ) {
-			ret = compilers.get(renderType).compile(this);
-			renderers.put(renderType, ret);
+		RendererEntry entry = renderers.get(renderType);
+		if( entry == null ) {
+			if( initRenderers ) return null;
+			entry = getRendererEntry(renderType);
+		}
+		
+		entry.hits.incrementAndGet();
+		return entry.get();
+	}
+	
+	/**
+	 * Compiles the renderer if it has not already been compiled.
+	 * This is used by the {@link ParallelTemplateCompiler} to
+	 * compile the renderers at startup. It does not count as a
+	 * hit on the renderer.
+	 * 
+	 * @param renderType The render type
+	 * @return The renderer
+	 * @throws IllegalArgumentException if the renderer does not exist
+	 */
+	public Renderer compileRenderer(String renderType) {
+		if( compilers == null || !compilers.containsKey(renderType) ) throw new IllegalArgumentException("The render type does not exist in the configuration: " + renderType);
+		
+		return getRendererEntry(renderType).get();
+	}
+	
+	/**
+	 * Gets the entry for the renderer, adding it if it does
+	 * not exist. Only the thread that adds the entry compiles
+	 * the renderer. If the compile fails the entry is removed
+	 * so it can be tried again.
+	 * 
+	 * @param renderType The render type
+	 * @return The entry
+	 */
+	private RendererEntry getRendererEntry(final String renderType) {
+		RendererEntry ret = renderers.get(renderType);
+		if( ret != null ) return ret;
+		
+		final Compiler compiler = compilers.get(renderType);
+		RendererEntry entry = new RendererEntry(new Callable<Renderer>() {
+			public Renderer call() throws Exception {
+				Renderer ret = PrecompiledRendererStore.getInstance().load(BasicTemplateConfiguration.this, renderType, compiler);
+				if( ret != null ) return ret;
+				
+				return compiler.compile(BasicTemplateConfiguration.this);
+			}
+		});
+		
+		ret = renderers.putIfAbsent(renderType, entry);
+		if( ret == null ) {
+			ret = entry;
+			entry.compile();
+			if( entry.failed ) renderers.remove(renderType, entry);
 		}
 		
 		return ret;
 	}
 	
+	/**
+	 * Writes out the compile time and hits of each renderer
+	 * compiled so far.
+	 * 
+	 * @param writer The writer to write to
+	 * @throws IOException Any exceptions from the writer
+	 */
+	public void writeStatistics(Writer writer) throws IOException {
+		Map<String, RendererEntry> entries = new TreeMap<String, RendererEntry>(renderers);
+		Iterator<String> it = entries.keySet().iterator();
+		while( it.hasNext() ) {
+			String renderType = it.next();
+			RendererEntry entry = entries.get(renderType);
+			
+			writer.write("\t");
+			writer.write(renderType);
+			writer.write(": compileMs=");
+			writer.write(Long.toString(entry.compileTime / 1000000));
+			writer.write(", hits=");
+			writer.write(Long.toString(entry.hits.get()));
+			writer.write('\n');
+		}
+	}
+	
+	/**
+	 * Gets the time taken to compile the renderer
+	 * 
+	 * @param renderType The render type
+	 * @return The time in ms (or -1 if it has not been compiled)
+	 */
+	public long getCompileTime(String renderType) {
+		RendererEntry entry = renderers.get(renderType);
+		return entry != null && entry.isDone() ? entry.compileTime / 1000000 : -1;
+	}
+	
+	/**
+	 * Gets the number of times the renderer has been requested
+	 * 
+	 * @param renderType The render type
+	 * @return The number of hits
+	 */
+	public long getRendererHits(String renderType) {
+		RendererEntry entry = renderers.get(renderType);
+		return entry != null ? entry.hits.get() : 0;
+	}
+	
+	/**
+	 * Gets the time the source of the templates was last
+	 * modified. This is recorded against renderers compiled
+	 * at build time so they are only used if the source has
+	 * not changed. This version returns 0 as the templates 
+	 * are setup in code.
+	 * 
+	 * @return The time the source was modified (0 if not known)
+	 */
+	public long getSourceModified() {
+		return 0;
+	}
+	
 	/**
 	 * Safely determines if the renderer exists
 	 */
@@ -436,10 +568,17 @@ public class BasicTemplateConfiguration implements TemplateConfiguration {
 	}
 
 	/**
-	 * @return the renderers
+	 * @return A copy of the renderers that have been compiled
 	 */
 	public Map<String, Renderer> getRenderers() {
-		return renderers;
+		Map<String, Renderer> ret = new HashMap<String, Renderer>();
+		Iterator<String> it = renderers.keySet().iterator();
+		while( it.hasNext() ) {
+			String renderType = it.next();
+			RendererEntry entry = renderers.get(renderType);
+			if( entry != null && entry.isDone() && !entry.failed ) ret.put(renderType, entry.get());
+		}
+		return ret;
 	}
 
 	/**
@@ -469,4 +608,70 @@ public class BasicTemplateConfiguration implements TemplateConfiguration {
 	public void setResourceBase(String resourceBase) {
 		this.resourceBase = resourceBase;
 	}
+	
+	/**
+	 * Holds the compilation of a renderer along with the
+	 * time it took to compile and the number of hits.
+	 *
+	 * @author Tom Spencer
+	 */
+	private static final class RendererEntry extends FutureTask<Renderer> {
+		/** The time in nanos the compile started */
+		private long start = 0;
+		/** The time in nanos the compile took */
+		private volatile long compileTime = 0;
+		/** True if the compile failed */
+		private volatile boolean failed = false;
+		/** The number of times the renderer has been requested */
+		private final AtomicLong hits = new AtomicLong();
+		
+		public RendererEntry(Callable<Renderer> compile) {
+			super(compile);
+		}
+		
+		/**
+		 * Compiles the renderer recording the time taken
+		 */
+		public void compile() {
+			start = System.nanoTime();
+			run();
+		}
+		
+		/**
+		 * Records the time taken before the renderer is made
+		 * available so anyone that sees it done sees the time
+		 */
+		@Override
+		protected void set(Renderer v) {
+			compileTime = System.nanoTime() - start;
+			super.set(v);
+		}
+		
+		@Override
+		protected void setException(Throwable t) {
+			compileTime = System.nanoTime() - start;
+			failed = true;
+			super.setException(t);
+		}
+		
+		/**
+		 * Gets the renderer waiting for it to compile if needed.
+		 * Any compile failure is rethrown. 
+		 */
+		@Override
+		public Renderer get() {
+			try {
+				return super.get();
+			}
+			catch( ExecutionException e ) {
+				if( e.getCause() instanceof RuntimeException ) throw (RuntimeException)e.getCause();
+				if( e.getCause() instanceof Error ) throw (Error)e.getCause();
+				throw new IllegalStateException("Failed to compile the renderer: " + e.getCause());
+			}
+			catch( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted waiting for the renderer to compile");
+			}
+		}
+	}
 }
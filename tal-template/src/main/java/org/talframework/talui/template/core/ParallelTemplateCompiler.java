@@ -0,0 +1,223 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.template.core;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.talframework.tal.aspects.annotations.Trace;
+import org.talframework.tal.aspects.annotations.TraceWarn;
+import org.talframework.talui.template.TemplateConfiguration;
+
+/**
+ * This class compiles the renderers of many template configurations
+ * at the same time. Compilation is CPU bound and each renderer is
+ * independent so, as the compilers are re-entrant, the renderers
+ * are compiled on a fixed pool of threads (by default one per 
+ * processor). Startup then scales with the number of cores rather
+ * than the number of templates.
+ * 
+ * <p>Typically the configurations are set not to init their
+ * renderers and this class compiles all the configurations held
+ * in the {@link TemplateConfigurationLocator} once they have all
+ * been registered. Any renderer that is already compiled (or is
+ * compiling) is not compiled again. The compile time of each
+ * renderer is returned keyed by the configuration name and render
+ * type.</p>
+ * 
+ * @author Tom Spencer
+ */
+public class ParallelTemplateCompiler {
+
+	/** The number of threads to compile on (0 is one per processor) */
+	private int threads = 0;
+	/** The time in ms of the last run */
+	private volatile long elapsed = -1;
+	
+	/**
+	 * Default constructor, which compiles on a thread per processor
+	 */
+	public ParallelTemplateCompiler() {
+	}
+	
+	/**
+	 * Constructs the compiler with a set number of threads
+	 * 
+	 * @param threads The number of threads (0 is one per processor)
+	 */
+	public ParallelTemplateCompiler(int threads) {
+		setThreads(threads);
+	}
+	
+	/**
+	 * Compiles all the basic template configurations that are
+	 * registered with the {@link TemplateConfigurationLocator}.
+	 * 
+	 * @return The compile time in ms of each renderer keyed by config.renderType
+	 */
+	@Trace
+	public Map<String, Long> compileAll() {
+		TemplateConfigurationLocator locator = TemplateConfigurationLocator.getInstance();
+		
+		List<BasicTemplateConfiguration> configs = new ArrayList<BasicTemplateConfiguration>();
+		Iterator<String> it = locator.getTemplateNames().iterator();
+		while( it.hasNext() ) {
+			TemplateConfiguration config = locator.getTemplate(it.next());
+			if( config instanceof BasicTemplateConfiguration ) configs.add((BasicTemplateConfiguration)config);
+		}
+		
+		return compile(configs);
+	}
+	
+	/**
+	 * Compiles all the renderers of the given configurations in
+	 * parallel, waiting for all of them to complete. If any fail
+	 * to compile the others are still compiled and then the first
+	 * failure is thrown.
+	 * 
+	 * @param configs The configurations to compile
+	 * @return The compile time in ms of each renderer keyed by config.renderType
+	 */
+	public Map<String, Long> compile(List<BasicTemplateConfiguration> configs) {
+		long start = System.currentTimeMillis();
+		
+		List<CompileTask> tasks = new ArrayList<CompileTask>();
+		Iterator<BasicTemplateConfiguration> it = configs.iterator();
+		while( it.hasNext() ) {
+			BasicTemplateConfiguration config = it.next();
+			if( config.getCompilers() == null ) continue;
+			
+			Iterator<String> it2 = config.getCompilers().keySet().iterator();
+			while( it2.hasNext() ) {
+				tasks.add(new CompileTask(config, it2.next()));
+			}
+		}
+		
+		Map<String, Long> ret = new TreeMap<String, Long>();
+		if( tasks.size() == 0 ) return ret;
+		
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(poolSize, tasks.size()), new CompileThreadFactory());
+		RuntimeException failure = null;
+		try {
+			List<Future<Object>> results = executor.invokeAll(tasks);
+			for( int i = 0 ; i < results.size() ; i++ ) {
+				CompileTask task = tasks.get(i);
+				try {
+					results.get(i).get();
+				}
+				catch( ExecutionException e ) {
+					compileFailed(task.config.getName(), task.renderType, e.getCause());
+					if( failure == null ) {
+						if( e.getCause() instanceof RuntimeException ) failure = (RuntimeException)e.getCause();
+						else failure = new IllegalStateException("Failed to compile the renderer [" + task.renderType + "] of template: " + task.config.getName() + ": " + e.getCause());
+					}
+				}
+				
+				ret.put(task.config.getName() + "." + task.renderType, task.config.getCompileTime(task.renderType));
+			}
+		}
+		catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for the templates to compile");
+		}
+		finally {
+			executor.shutdown();
+			elapsed = System.currentTimeMillis() - start;
+		}
+		
+		if( failure != null ) throw failure;
+		return ret;
+	}
+	
+	/**
+	 * Called when a renderer fails to compile
+	 * 
+	 * @param name The name of the configuration
+	 * @param renderType The render type
+	 * @param cause The cause of the failure
+	 */
+	@TraceWarn
+	private void compileFailed(String name, String renderType, Throwable cause) {
+	}
+	
+	/**
+	 * @return the threads
+	 */
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * @param threads The number of threads to compile on (0 or less is one per processor)
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	/**
+	 * @return The time in ms the last compile took (-1 if not run)
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+	
+	/**
+	 * Compiles a single renderer of a configuration
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class CompileTask implements Callable<Object> {
+		private final BasicTemplateConfiguration config;
+		private final String renderType;
+		
+		public CompileTask(BasicTemplateConfiguration config, String renderType) {
+			this.config = config;
+			this.renderType = renderType;
+		}
+		
+		public Object call() throws Exception {
+			return config.compileRenderer(renderType);
+		}
+	}
+	
+	/**
+	 * Creates the daemon threads the renderers are compiled on
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class CompileThreadFactory implements ThreadFactory {
+		private final AtomicInteger count = new AtomicInteger();
+		
+		public Thread newThread(Runnable r) {
+			Thread ret = new Thread(r, "tal-template-compile-" + count.incrementAndGet());
+			ret.setDaemon(true);
+			return ret;
+		}
+	}
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.talframework.tal.aspects.annotations.TraceWarn;
+import org.talframework.talui.template.Compiler;
+import org.talframework.talui.template.Renderer;
+import org.talframework.talui.template.compiler.SimpleGenericCompiler;
+
+/**
+ * This class writes and reads renderers that have been compiled
+ * at build time. The renderers of a {@link BasicTemplateConfiguration}
+ * are serialised into a file per render type under the location 
+ * (by default META-INF/tal-templates/). This is done by the 
+ * compile-templates goal of the Tal UI Maven plugin, which puts 
+ * the files in the build output so they are on the classpath at 
+ * runtime.
+ * 
+ * <p>At runtime the configuration asks this class for each 
+ * renderer before it compiles it. The precompiled renderer is
+ * only used if it was compiled by a compiler of the same class
+ * and configuration and the source of the templates has not 
+ * been modified since it was compiled. Renderers are not held 
+ * for configurations that cannot tell when their source was 
+ * modified. If the renderer cannot be read for any reason
+ * (i.e. the classes have changed) the renderer is compiled as
+ * normal.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class PrecompiledRendererStore {
+	/** Single instance (per (parent) classloader) of this class */
+	private static final PrecompiledRendererStore INSTANCE = new PrecompiledRendererStore();
+	
+	/** The version of the file format (change if the header or the serialised renderers change) */
+	private static final int VERSION = 2;
+	
+	/** The classpath location of the precompiled renderers */
+	private volatile String location = "META-INF/tal-templates/";
+	/** Determines if precompiled renderers are used */
+	private volatile boolean enabled = true;
+	
+	/**
+	 * Hidden constructor - you cannot create an instance of this class
+	 */
+	private PrecompiledRendererStore() {
+	}
+	
+	/**
+	 * @return The single instance of the store
+	 */
+	public static PrecompiledRendererStore getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Loads the precompiled renderer for the configuration
+	 * 
+	 * @param config The configuration
+	 * @param renderType The render type
+	 * @param compiler The compiler that would compile it
+	 * @return The renderer or null if there is no (valid) precompiled renderer
+	 */
+	public Renderer load(BasicTemplateConfiguration config, String renderType, Compiler compiler) {
+		if( !enabled ) return null;
+		
+		String resource = location + getFileName(config, renderType);
+		ClassLoader loader = getClassLoader(config);
+		InputStream stream = loader.getResourceAsStream(resource);
+		if( stream == null ) return null;
+		
+		try {
+			ObjectInputStream in = new LoaderObjectInputStream(new BufferedInputStream(stream), loader);
+			try {
+				if( in.readInt() != VERSION ) return null;
+				if( !getCompilerKey(compiler).equals(in.readUTF()) ) return null;
+				
+				long sourceModified = in.readLong();
+				long current = config.getSourceModified();
+				if( sourceModified <= 0 || current <= 0 || current > sourceModified ) return null;
+				
+				return (Renderer)in.readObject();
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch( Exception e ) {
+			precompiledFailed(resource, e.toString());
+			return null;
+		}
+	}
+	
+	/**
+	 * Writes out all the compiled renderers of the configuration
+	 * into the location under the given directory.
+	 * 
+	 * @param config The configuration
+	 * @param dir The base directory (i.e. the build output directory)
+	 * @return The number of renderers written (0 if the source modified time is not known)
+	 * @throws IOException If the renderers cannot be written
+	 */
+	public int write(BasicTemplateConfiguration config, File dir) throws IOException {
+		long sourceModified = config.getSourceModified();
+		if( sourceModified <= 0 ) return 0;
+		
+		File outputDir = new File(dir, location);
+		if( !outputDir.exists() && !outputDir.mkdirs() ) throw new IOException("Cannot create the output directory: " + outputDir);
+		
+		int ret = 0;
+		Map<String, Renderer> renderers = config.getRenderers();
+		Iterator<String> it = renderers.keySet().iterator();
+		while( it.hasNext() ) {
+			String renderType = it.next();
+			Compiler compiler = config.getCompilers().get(renderType);
+			
+			ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(new File(outputDir, getFileName(config, renderType)))));
+			try {
+				out.writeInt(VERSION);
+				out.writeUTF(getCompilerKey(compiler));
+				out.writeLong(sourceModified);
+				out.writeObject(renderers.get(renderType));
+			}
+			finally {
+				out.close();
+			}
+			
+			ret++;
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Gets the name of the file for the renderer. This is
+	 * the name of the config, its root template and the
+	 * render type as config names are not always unique.
+	 * 
+	 * @param config The configuration
+	 * @param renderType The render type
+	 * @return The name of the file
+	 */
+	public String getFileName(BasicTemplateConfiguration config, String renderType) {
+		StringBuilder buf = new StringBuilder();
+		buf.append(config.getName()).append('.').append(config.getRootTemplate()).append('.').append(renderType);
+		for( int i = 0 ; i < buf.length() ; i++ ) {
+			char c = buf.charAt(i);
+			if( !Character.isLetterOrDigit(c) && c != '.' && c != '-' && c != '_' ) buf.setCharAt(i, '_');
+		}
+		return buf.append(".ser").toString();
+	}
+	
+	/**
+	 * Gets the key for the compiler. This is its configuration key
+	 * if it has one or its class otherwise.
+	 * 
+	 * @param compiler The compiler
+	 * @return The key to compare
+	 */
+	private String getCompilerKey(Compiler compiler) {
+		if( compiler instanceof SimpleGenericCompiler ) return ((SimpleGenericCompiler)compiler).getConfigurationKey();
+		return compiler.getClass().getName();
+	}
+	
+	/**
+	 * Gets the classloader to load the renderer with
+	 */
+	private ClassLoader getClassLoader(BasicTemplateConfiguration config) {
+		ClassLoader ret = Thread.currentThread().getContextClassLoader();
+		return ret != null ? ret : config.getClass().getClassLoader();
+	}
+	
+	/**
+	 * Helper to call for the tracing aspects to log it
+	 */
+	@TraceWarn
+	private void precompiledFailed(String resource, String reason) {
+	}
+	
+	/**
+	 * @return The classpath location of the precompiled renderers
+	 */
+	public String getLocation() {
+		return location;
+	}
+
+	/**
+	 * @param location The classpath location of the precompiled renderers (must end in /)
+	 */
+	public void setLocation(String location) {
+		this.location = location;
+	}
+
+	/**
+	 * @return True if precompiled renderers are used
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * @param enabled False to always compile the renderers at runtime
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+	
+	/**
+	 * Resolves the classes of the renderer against the given
+	 * loader as the templates are typically in the web app.
+	 * 
+	 * @author Tom Spencer
+	 */
+	private static final class LoaderObjectInputStream extends ObjectInputStream {
+		private final ClassLoader loader;
+		
+		public LoaderObjectInputStream(InputStream in, ClassLoader loader) throws IOException {
+			super(in);
+			this.loader = loader;
+		}
+		
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+			try {
+				return Class.forName(desc.getName(), false, loader);
+			}
+			catch( ClassNotFoundException e ) {
+				return super.resolveClass(desc);
+			}
+		}
+	}
+}
@@ -45,6 +45,7 @@ import org.talframework.talui.template.core.props.StringProperty;
  * @author Tom Spencer
  */
 public class SimpleTemplate extends BaseElement implements Template {
+	private static final long serialVersionUID = 1L;
 
 	private Class<?> templateClass = null;
 	private boolean autoDiscover = true;
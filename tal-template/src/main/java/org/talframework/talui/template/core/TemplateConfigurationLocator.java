@@ -16,9 +16,15 @@
 
 package org.talframework.talui.template.core;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Hashtable;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.talframework.tal.aspects.annotations.Trace;
 import org.talframework.talui.template.TemplateConfiguration;
@@ -30,12 +36,20 @@ import org.talframework.talui.template.TemplateConfiguration;
  * registers itself against this instance and the default
  * WebTemplateServlet serves up the templates from here. 
  * 
+ * <p>The templates are held in a map that is never changed
+ * once it has been published. Adding a template copies the
+ * map, adds the template and then publishes the new map. 
+ * This means a get never locks, which suits the usage where 
+ * templates are almost always added at startup and then
+ * read on every request.</p>
+ * 
  * @author Tom Spencer
  */
 public class TemplateConfigurationLocator {
 	private static final TemplateConfigurationLocator INSTANCE = new TemplateConfigurationLocator();
 	
-	private Map<String, TemplateConfiguration> config = new HashMap<String, TemplateConfiguration>();
+	/** The current (unmodifiable) map of templates */
+	private volatile Map<String, Entry> config = Collections.emptyMap();
 	
 	/**
 	 * @return The singleton (per classloader) instance of this class
@@ -59,56 +73,101 @@ public class TemplateConfigurationLocator {
 	 * @return The template (or null)
 	 */
 	public TemplateConfiguration getTemplate(String name) {
-		return config.get(name);
+		Entry entry = config.get(name);
+		if( entry == null ) return null;
+		
+		entry.hits.incrementAndGet();
+		return entry.config;
+	}
+	
+	/**
+	 * @return The names of all the templates held
+	 */
+	public Set<String> getTemplateNames() {
+		return Collections.unmodifiableSet(config.keySet());
 	}
 	
 	/**
 	 * Sets the template inside the locator.
 	 * 
-	 * <p>This version of the method is synchronised. The idea is that
-	 * all your templates will be created and register themselves at
-	 * startup. The BasicTemplateConfiguration does this automatically.
-	 * This follows the fail-fast principle. Although this method is
-	 * synchronised so only one thread can do it at a time, the
-	 * underlying map is a Hashmap and not sync'd - therefore, the 
-	 * get performance in the running system is high. There is another
-	 * version of this method below that is used when added configs to
-	 * a known running system. If that is used it turns the hashmap
-	 * into a hashtable for safety.</p>  
+	 * <p>The idea is that all your templates will be created and 
+	 * register themselves at startup. The BasicTemplateConfiguration 
+	 * does this automatically. This follows the fail-fast principle.
+	 * Only one thread can add a template at a time, but readers are 
+	 * never blocked.</p>  
 	 * 
 	 * @param name The name of the template
 	 * @param config The template
 	 */
 	public synchronized void setTemplate(String name, TemplateConfiguration config) {
-		this.config.put(name, config);
+		Map<String, Entry> configMap = new HashMap<String, Entry>(this.config);
+		configMap.put(name, new Entry(config));
+		this.config = Collections.unmodifiableMap(configMap);
 	}
 	
 	/**
-	 * Sets the template inside the locator
-	 * 
-	 * <p>Unlike the above method this turns the internal hashmap into a
-	 * hashtable, so get performance is lower from this point on. A log
-	 * warning is created. This just means we've detected a missing template
-	 * in a running system.</p>
-	 * 
-	 * <p>For the total purist this is not totally 100% safe. It will be
-	 * on most platforms, Intel based anyway. The solution would be to make
-	 * the map a hashtable from the start, but that is a task I leave to
-	 * the person that has this problem - my solution would be to register
-	 * all template configs during startup and thus not have this issue.</p>
+	 * Sets the template inside the locator when the system is
+	 * already running. This just means we've detected a missing 
+	 * template in a running system, it is otherwise the same as
+	 * setTemplate.
 	 * 
 	 * @param name The name of the template
 	 * @param config The template
 	 */
 	@Trace
     public void setTemplateWhenRunning(String name, TemplateConfiguration config) {
-		Map<String, TemplateConfiguration> configMap = null;
-		
-		synchronized (this) {
-			configMap = new Hashtable<String, TemplateConfiguration>(this.config);
-			configMap.put(name, config);
+		setTemplate(name, config);
+	}
+	
+	/**
+	 * Gets the number of times the template has been requested
+	 * 
+	 * @param name The name of the template
+	 * @return The number of hits (or -1 if the template does not exist)
+	 */
+	public long getHits(String name) {
+		Entry entry = config.get(name);
+		return entry != null ? entry.hits.get() : -1;
+	}
+	
+	/**
+	 * Writes out a simple text report of each template, the
+	 * number of times it has been requested and, for basic
+	 * configurations, the compile time and hits of each of
+	 * its renderers.
+	 * 
+	 * @param writer The writer to write to
+	 * @throws IOException Any exceptions from the writer
+	 */
+	public void writeStatistics(Writer writer) throws IOException {
+		Map<String, Entry> configMap = new TreeMap<String, Entry>(config);
+		Iterator<String> it = configMap.keySet().iterator();
+		while( it.hasNext() ) {
+			String name = it.next();
+			Entry entry = configMap.get(name);
+			
+			writer.write(name);
+			writer.write(": hits=");
+			writer.write(Long.toString(entry.hits.get()));
+			writer.write('\n');
+			
+			if( entry.config instanceof BasicTemplateConfiguration ) {
+				((BasicTemplateConfiguration)entry.config).writeStatistics(writer);
+			}
 		}
+	}
+	
+	/**
+	 * Holds a template and the number of hits on it
+	 *
+	 * @author Tom Spencer
+	 */
+	private static final class Entry {
+		private final TemplateConfiguration config;
+		private final AtomicLong hits = new AtomicLong();
 		
-		this.config = configMap;
+		public Entry(TemplateConfiguration config) {
+			this.config = config;
+		}
 	}
 }
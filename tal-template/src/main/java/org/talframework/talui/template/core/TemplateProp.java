@@ -34,6 +34,7 @@ import org.talframework.talui.template.behaviour.InnerTemplateElement;
  * @author Tom Spencer
  */
 public class TemplateProp extends BaseElement implements InnerTemplateElement {
+	private static final long serialVersionUID = 1L;
 	
 	private String template = null;
 
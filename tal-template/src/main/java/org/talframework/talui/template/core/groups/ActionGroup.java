@@ -25,6 +25,7 @@ import org.talframework.talui.template.behaviour.supporting.ResourceProperty;
 import org.talframework.talui.template.core.BaseElement;
 
 public class ActionGroup extends SimpleGroup implements CommandElement, ResourceProperty, ReferenceElement {
+	private static final long serialVersionUID = 1L;
 
 	/** Holds the resource to output as the actions name - default is action.name */
 	private String message = null;
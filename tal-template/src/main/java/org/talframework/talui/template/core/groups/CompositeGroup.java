@@ -27,6 +27,7 @@ package org.talframework.talui.template.core.groups;
  * @author Tom Spencer
  */
 public class CompositeGroup extends SimpleGroup {
+	private static final long serialVersionUID = 1L;
 
 	/** Holds the label for the composite group */
 	private String label = null;
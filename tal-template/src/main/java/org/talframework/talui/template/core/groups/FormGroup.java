@@ -25,6 +25,7 @@ package org.talframework.talui.template.core.groups;
  * @author Tom Spencer
  */
 public class FormGroup extends SimpleGroup {
+	private static final long serialVersionUID = 1L;
 
 	/** Holds the action to submit form into */
 	private String action = null;
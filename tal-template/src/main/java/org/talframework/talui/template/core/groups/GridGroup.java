@@ -31,6 +31,7 @@ package org.talframework.talui.template.core.groups;
  * @author Tom Spencer
  */
 public class GridGroup extends SimpleGroup {
+	private static final long serialVersionUID = 1L;
 	
 	private String[] headings = null;
 
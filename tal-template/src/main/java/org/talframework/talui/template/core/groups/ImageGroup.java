@@ -20,6 +20,7 @@ import org.talframework.talui.template.RenderModel;
 import org.talframework.talui.template.behaviour.supporting.ImageElement;
 
 public class ImageGroup extends SimpleGroup implements ImageElement {
+	private static final long serialVersionUID = 1L;
 	
 	private String resource = null;
 	
@@ -30,6 +30,7 @@ import org.talframework.talui.template.core.BaseElement;
  * @author Tom Spencer
  */
 public class MessageGroup extends BaseElement implements TemplateElement {
+	private static final long serialVersionUID = 1L;
 	
 	/** Holds the name of the attribute in render model holding errors */
 	private String errorsAttribute = "errors";
@@ -32,6 +32,7 @@ import org.talframework.talui.template.core.BaseElement;
  * @author Tom Spencer
  */
 public class SimpleGroup extends BaseElement implements GroupElement, ContainerElement {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Passes children on to base init
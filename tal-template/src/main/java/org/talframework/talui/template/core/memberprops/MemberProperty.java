@@ -26,6 +26,7 @@ import org.talframework.talui.template.TemplateElement;
 import org.talframework.talui.template.core.BaseElement;
 
 public class MemberProperty extends BaseElement implements org.talframework.talui.template.behaviour.MemberProperty {
+	private static final long serialVersionUID = 1L;
 	
 	/** Holds the name of the template to delegate rendering to */
 	private String template = null;
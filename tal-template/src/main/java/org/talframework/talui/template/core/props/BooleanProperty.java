@@ -28,6 +28,7 @@ import org.talframework.talui.template.behaviour.property.CheckedProperty;
  * @author Tom Spencer
  */
 public class BooleanProperty extends SimpleProperty implements CheckedProperty {
+	private static final long serialVersionUID = 1L;
 
 	/** The value if the property is true */
 	private String trueValue = null;
@@ -28,6 +28,7 @@ import org.talframework.talui.template.render.codes.CodeTypeFactoryLocator;
  * @author Tom Spencer
  */
 public class ChoiceProperty extends SimpleProperty implements CodedProperty {
+	private static final long serialVersionUID = 1L;
 
 	/** Holds the search url (in case not std) */
 	private String searchUrl = null;
@@ -32,6 +32,7 @@ import org.talframework.talui.template.behaviour.CommandElement;
  * @author Tom Spencer
  */
 public class CommandProperty extends SimpleProperty implements CommandElement {
+	private static final long serialVersionUID = 1L;
 
 	/** The action to perform */
 	private String action = null;
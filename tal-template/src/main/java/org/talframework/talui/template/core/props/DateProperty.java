@@ -31,6 +31,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public class DateProperty extends SimpleProperty implements org.talframework.talui.template.behaviour.property.DateProperty {
+	private static final long serialVersionUID = 1L;
 	
 	/** Holds the date style to output (if -1 date is not output) */
 	private String dateStyle = "short";
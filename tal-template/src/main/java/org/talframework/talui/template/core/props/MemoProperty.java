@@ -26,6 +26,7 @@ import org.talframework.talui.template.behaviour.property.TextProperty;
  * @author Tom Spencer
  */
 public class MemoProperty extends SimpleProperty implements TextProperty {
+	private static final long serialVersionUID = 1L;
 
 	/** Holds the maximum length of the string */
 	private Integer maxLength = null;
@@ -27,6 +27,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public class NumberProperty extends SimpleProperty implements org.talframework.talui.template.behaviour.property.NumberProperty {
+	private static final long serialVersionUID = 1L;
 
 	/** Holds the min value the number can take on */
 	private Number minimum = null;
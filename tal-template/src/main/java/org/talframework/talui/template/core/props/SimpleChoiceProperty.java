@@ -34,6 +34,7 @@ import org.talframework.talui.template.render.codes.CodeTypeFactoryLocator;
  * @author Tom Spencer
  */
 public class SimpleChoiceProperty extends SimpleProperty implements CodedProperty {
+	private static final long serialVersionUID = 1L;
 
 	/** The type of codes this field holds */
 	private String codeType = null;
@@ -34,6 +34,7 @@ import org.talframework.talui.template.core.BaseElement;
  *
  */
 public class SimpleProperty extends BaseElement implements DynamicProperty {
+	private static final long serialVersionUID = 1L;
 	
 	/** Determines if field is mandatory */
 	private boolean mandatory = false;
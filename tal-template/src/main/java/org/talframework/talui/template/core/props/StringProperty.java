@@ -26,6 +26,7 @@ import org.talframework.talui.template.behaviour.property.TextProperty;
  * @author Tom Spencer
  */
 public class StringProperty extends SimpleProperty implements TextProperty {
+	private static final long serialVersionUID = 1L;
 
 	/** If true will put the string into proper case */
 	private boolean properCase = false;
@@ -16,6 +16,12 @@
 
 package org.talframework.talui.template.core.xml;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+
 import org.talframework.talui.template.core.BasicTemplateConfiguration;
 
 /**
@@ -43,6 +49,42 @@ public final class XmlTemplateConfiguration extends BasicTemplateConfiguration {
 		super.init();
 	}
 	
+	/**
+	 * Returns the time the template resource was last modified
+	 */
+	@Override
+	public long getSourceModified() {
+		if( templateResource == null || templateResource.length() == 0 ) return 0;
+		
+		try {
+			// As per the reader, first as a classpath resource
+			URL url = null;
+			if( templateResource.charAt(0) == '/' ) {
+				url = templateReader.getClass().getResource(templateResource);
+			}
+			else {
+				File f = new File(templateResource);
+				if( f.exists() ) return f.lastModified();
+				url = new URL(templateResource);
+			}
+			
+			if( url == null ) return 0;
+			
+			// Getting the date opens the resource, so close it (and the JAR)
+			URLConnection connection = url.openConnection();
+			if( connection instanceof JarURLConnection ) connection.setUseCaches(false);
+			try {
+				return connection.getLastModified();
+			}
+			finally {
+				connection.getInputStream().close();
+			}
+		}
+		catch( IOException e ) {
+			return 0;
+		}
+	}
+	
 	////////////////////////////////////////////////
 	// Getters / Setters
 
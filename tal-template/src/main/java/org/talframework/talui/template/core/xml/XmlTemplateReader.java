@@ -17,20 +17,35 @@
 package org.talframework.talui.template.core.xml;
 
 import java.beans.BeanInfo;
+import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.lang.reflect.Method;
 import java.text.DateFormat;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.talframework.tal.aspects.annotations.Trace;
 import org.talframework.talui.template.Template;
@@ -53,11 +68,10 @@ import org.talframework.talui.template.core.props.NumberProperty;
 import org.talframework.talui.template.core.props.SimpleChoiceProperty;
 import org.talframework.talui.template.core.props.SimpleProperty;
 import org.talframework.talui.template.core.props.StringProperty;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * This class will read an XML file containing
@@ -73,12 +87,24 @@ import org.w3c.dom.NodeList;
  * constructed separately and the mappings must be
  * added manually.
  * 
+ * <p>Files are read with SAX in a single pass, so no document
+ * is built in memory. The bean properties of each template and
+ * template element class are found once and held, rather than
+ * being introspected for every XML element. The reader can be
+ * used by many threads at once and can load a number of files
+ * in parallel, but the mappings should not be changed once it
+ * is in use.</p>
+ * 
  * @author Tom Spencer
  */
 public class XmlTemplateReader {
 	
 	/** The singleton instance that is used by default */
 	private static final XmlTemplateReader XML_READER = new XmlTemplateReader();
+	/** The factory for the SAX parsers */
+	private static final SAXParserFactory PARSER_FACTORY = SAXParserFactory.newInstance();
+	/** The setters of each template and template element class, found on first use */
+	private static final ConcurrentMap<Class<?>, ElementSetters> SETTERS = new ConcurrentHashMap<Class<?>, ElementSetters>();
 	
 	/** The template class to use */
 	private Class<? extends Template> templateClass = null;
@@ -202,6 +228,11 @@ public class XmlTemplateReader {
 	 * then as a classpath resource (if it begins /), and 
 	 * failing that as a uri.
 	 * 
+	 * <p>The file is read in a single streaming pass, each 
+	 * template and template element is created and has its
+	 * attributes set as its start tag is read and is initialised
+	 * when its end tag is read.</p>
+	 * 
 	 * @param resource The XML file/resource
 	 * @return The list of templates found
 	 * @throws IllegalArgumentException Is thrown if we come across errors in the XML file/mapping
@@ -210,74 +241,111 @@ public class XmlTemplateReader {
     public List<Template> loadTemplates(String resource) {
 		if( resource == null || resource.length() == 0 ) throw new IllegalArgumentException("Cannot load a XML Doc with no resource");
 		
-		Document doc = null;
-		
+		TemplateHandler handler = new TemplateHandler();
+		InputStream stream = null;
 		try {
-			DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-			DocumentBuilder db = dbf.newDocumentBuilder();
+			InputSource source = null;
 			
 			// a. Try as a classpath resource first
 			if( resource.charAt(0) == '/' ) {
-				doc = db.parse(this.getClass().getResourceAsStream(resource) );
+				stream = this.getClass().getResourceAsStream(resource);
+				if( stream == null ) throw new IOException("The resource does not exist: " + resource);
+				source = new InputSource(stream);
 			}
 			else {
 				File f = new File(resource);
-				if( f.exists() ) doc = db.parse(f);
-				else doc = db.parse(resource);
+				if( f.exists() ) {
+					stream = new FileInputStream(f);
+					source = new InputSource(stream);
+					source.setSystemId(f.toURI().toString());
+				}
+				else {
+					source = new InputSource(resource);
+				}
 			}
+			
+			newParser().parse(source, handler);
+		}
+		catch( RuntimeException e ) {
+			throw e;
 		}
 		catch( Exception e ) {
 			throw new IllegalArgumentException("Unable to load the XML template file it appears to be invalid: " + e.getMessage());
 		}
+		finally {
+			try {
+				if( stream != null ) stream.close();
+			}
+			catch( IOException e ) {
+				// Nothing we can do
+			}
+		}
 		
-		Element root = doc.getDocumentElement();
-		return loadTemplates(root);
+		return handler.templates;
 	}
 	
+	/**
+	 * Loads the templates from a number of XML files at the same
+	 * time on a fixed pool of threads. Each file is loaded exactly
+	 * as {@link #loadTemplates(String)}. If any fail to load the
+	 * others are still loaded and then the first failure is thrown.
+	 * 
+	 * @param resources The XML files/resources
+	 * @param threads The number of threads to use (0 or less is one per processor)
+	 * @return The templates found in each resource, in the same order as the resources
+	 */
 	@Trace
-    private List<Template> loadTemplates(Element root) {
-		List<Template> ret = new ArrayList<Template>();
-	
-		NodeList children = root.getChildNodes();
-		if( children != null ) {
-			for( int i = 0 ; i < children.getLength() ; i++ ) {
-				Node n = children.item(i);
-				if( n.getNodeType() == Node.ELEMENT_NODE &&
-						"template".equals(n.getNodeName()) ) {
-					Template t = createTemplate();
-					
-					mapElement((Element)n, t);
-					List<TemplateElement> nextChildren = loadTemplateElements(t, (Element)n);
-					t.init(nextChildren);
-					
-					ret.add(t);
+	public Map<String, List<Template>> loadTemplates(List<String> resources, int threads) {
+		Map<String, List<Template>> ret = new LinkedHashMap<String, List<Template>>();
+		if( resources == null || resources.size() == 0 ) return ret;
+		
+		List<Callable<List<Template>>> tasks = new ArrayList<Callable<List<Template>>>(resources.size());
+		Iterator<String> it = resources.iterator();
+		while( it.hasNext() ) {
+			final String resource = it.next();
+			tasks.add(new Callable<List<Template>>() {
+				public List<Template> call() throws Exception {
+					return loadTemplates(resource);
+				}
+			});
+		}
+		
+		int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(poolSize, tasks.size()));
+		RuntimeException failure = null;
+		try {
+			List<Future<List<Template>>> results = executor.invokeAll(tasks);
+			for( int i = 0 ; i < results.size() ; i++ ) {
+				try {
+					ret.put(resources.get(i), results.get(i).get());
+				}
+				catch( ExecutionException e ) {
+					if( failure != null ) continue;
+					else if( e.getCause() instanceof RuntimeException ) failure = (RuntimeException)e.getCause();
+					else failure = new IllegalArgumentException("Unable to load XML template file [" + resources.get(i) + "]: " + e.getCause());
 				}
 			}
 		}
+		catch( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted waiting for the XML template files to load");
+		}
+		finally {
+			executor.shutdown();
+		}
 		
+		if( failure != null ) throw failure;
 		return ret;
 	}
 	
-	@Trace
-    private List<TemplateElement> loadTemplateElements(Template template, Element parent) {
-		List<TemplateElement> ret = new ArrayList<TemplateElement>();
-		
-		NodeList children = parent.getChildNodes();
-		if( children != null ) {
-			for( int i = 0 ; i < children.getLength() ; i++ ) {
-				Node n = children.item(i);
-				if( n.getNodeType() == Node.ELEMENT_NODE ) {
-					TemplateElement e = createTemplateElement(n.getNodeName());
-					mapElement((Element)n, e);
-					
-					List<TemplateElement> nextChildren = loadTemplateElements(template, (Element)n);
-					e.init(template, nextChildren);
-					ret.add(e);
-				}
-			}
+	/**
+	 * Creates a new SAX parser. The factory is shared, but is
+	 * not guaranteed to be thread safe.
+	 */
+	private SAXParser newParser() throws ParserConfigurationException, SAXException {
+		synchronized( PARSER_FACTORY ) {
+			return PARSER_FACTORY.newSAXParser();
 		}
-		
-		return ret.size() > 0 ? ret : null;
 	}
 	
 	@Trace
@@ -313,50 +381,48 @@ public class XmlTemplateReader {
 	 * This internal helper does most of the magic. It simply
 	 * maps each and every public property of the template
 	 * element class to an attribute and if the attribute is
-	 * set (and not empty!) it will set it.
+	 * set it will set it. Any other attributes are passed to
+	 * the properties setter (if there is one). The setters
+	 * are found once per class (see {@link ElementSetters}).
 	 * 
-	 * @param xmlElement
-	 * @param templateElement
+	 * @param attrs The attributes of the XML element
+	 * @param templateElement The template or template element
 	 */
-	private void mapElement(Element xmlElement, Object templateElement) {
-		// a. Create map of all attributes
-		Map<String, String> properties = new HashMap<String, String>();
-		NamedNodeMap attrs = xmlElement.getAttributes();
-		if( attrs != null ) {
-			int ln = attrs.getLength();
-			for( int i = 0 ; i < ln ; i++ ) {
-				Node a = attrs.item(i);
-				if( a.getNodeType() == Node.ATTRIBUTE_NODE ) {
-					properties.put(a.getNodeName(), a.getNodeValue());
-				}
+	private void mapElement(Attributes attrs, Object templateElement) {
+		ElementSetters setters = getSetters(templateElement.getClass());
+		
+		// a. Match each attribute to a setter, holding any others
+		String[] values = new String[setters.names.length];
+		Map<String, String> properties = null;
+		int ln = attrs.getLength();
+		for( int i = 0 ; i < ln ; i++ ) {
+			String name = attrs.getQName(i);
+			Integer index = setters.indexes.get(name);
+			if( index != null ) {
+				values[index.intValue()] = attrs.getValue(i);
+			}
+			else {
+				if( properties == null ) properties = new HashMap<String, String>();
+				properties.put(name, attrs.getValue(i));
 			}
 		}
 		
-		// b. Add in all props we match specifically (remove from list if found)
+		// b. Set the props we match specifically (in property order)
 		try {
-			Method propsSetter = null;
-			BeanInfo info = Introspector.getBeanInfo(templateElement.getClass());
-			PropertyDescriptor[] props = info.getPropertyDescriptors();
-			for( int i = 0 ; i < props.length ; i++ ) {
-				if( xmlElement.hasAttribute(props[i].getName()) ) {
-					if( props[i].getWriteMethod() == null ) throw new IllegalArgumentException("There is no setter for the attribute [" + props[i].getName() + "] on the template element class: " + templateElement.getClass());
-					
-					String v = xmlElement.getAttribute(props[i].getName());
-					Object val = convertXmlAttribute(v, props[i]);
-					props[i].getWriteMethod().invoke(templateElement, val);
-					
-					// Remove from properties
-					properties.remove(props[i].getName());
-				}
+			for( int i = 0 ; i < values.length ; i++ ) {
+				if( values[i] == null ) continue;
 				
-				if( props[i].getName().equals("properties") ) {
-					propsSetter = props[i].getWriteMethod();
-				}
+				String name = setters.names[i];
+				if( setters.setters[i] == null ) throw new IllegalArgumentException("There is no setter for the attribute [" + name + "] on the template element class: " + templateElement.getClass());
+				if( setters.converters[i] == null ) throw new IllegalArgumentException("Cannot load XML template file because attribute [" + name + "] type is not supported: " + setters.types[i]);
+				
+				Object val = setters.converters[i].convert(setters.types[i], values[i]);
+				setters.setters[i].invoke(templateElement, val);
 			}
 			
 			// c. Add the properties in
-			if( properties.size() > 0 && propsSetter != null ) {
-				propsSetter.invoke(templateElement, properties);
+			if( properties != null && setters.propsSetter != null ) {
+				setters.propsSetter.invoke(templateElement, properties);
 			}
 		}
 		catch( RuntimeException e ) {
@@ -368,25 +434,136 @@ public class XmlTemplateReader {
 	}
 	
 	/**
-	 * This method performs simple 
+	 * Gets the setters for the class, finding them if this is
+	 * the first time the class has been seen.
 	 * 
-	 * @param attr
-	 * @param prop
-	 * @return
+	 * @param cls The template or template element class
+	 * @return The setters
+	 */
+	private ElementSetters getSetters(Class<?> cls) {
+		ElementSetters ret = SETTERS.get(cls);
+		if( ret == null ) {
+			ret = new ElementSetters(cls);
+			ElementSetters existing = SETTERS.putIfAbsent(cls, ret);
+			if( existing != null ) ret = existing;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Holds the setters of a template or template element class,
+	 * in the order they are returned by the {@link Introspector},
+	 * along with the converter for each property type.
 	 */
-	private Object convertXmlAttribute(String attr, PropertyDescriptor prop) {
-		Object ret = null;
-		Class<?> param = prop.getPropertyType();
+	private static final class ElementSetters {
+		/** The index of each property in the arrays below */
+		private final Map<String, Integer> indexes;
+		/** The name of each property */
+		private final String[] names;
+		/** The type of each property */
+		private final Class<?>[] types;
+		/** The setter of each property (null if there is no setter) */
+		private final Method[] setters;
+		/** The converter for each property (null if the type is not supported) */
+		private final ParamConverter[] converters;
+		/** The setter for any other attributes (if any) */
+		private final Method propsSetter;
 		
-		ParamConverter converter = converters.get(param);
-		if( converter != null ) {
-			ret = converter.convert(param, attr);
+		public ElementSetters(Class<?> cls) {
+			PropertyDescriptor[] props = null;
+			try {
+				BeanInfo info = Introspector.getBeanInfo(cls);
+				props = info.getPropertyDescriptors();
+			}
+			catch( IntrospectionException e ) {
+				throw new IllegalArgumentException("Unable to load XML template file: " + e.getMessage());
+			}
+			
+			indexes = new HashMap<String, Integer>();
+			names = new String[props.length];
+			types = new Class<?>[props.length];
+			setters = new Method[props.length];
+			converters = new ParamConverter[props.length];
+			
+			Method propsSetter = null;
+			for( int i = 0 ; i < props.length ; i++ ) {
+				indexes.put(props[i].getName(), Integer.valueOf(i));
+				names[i] = props[i].getName();
+				types[i] = props[i].getPropertyType();
+				setters[i] = props[i].getWriteMethod();
+				converters[i] = types[i] != null ? XmlTemplateReader.converters.get(types[i]) : null;
+				
+				if( names[i].equals("properties") ) propsSetter = setters[i];
+			}
+			this.propsSetter = propsSetter;
 		}
-		else {
-			throw new IllegalArgumentException("Cannot load XML template file because attribute [" + prop.getName() + "] type is not supported: " + param);
+	}
+	
+	/**
+	 * The SAX handler that builds the templates as the file is
+	 * read. Only template elements directly under the root are
+	 * read, everything else at that level is ignored.
+	 */
+	private final class TemplateHandler extends DefaultHandler {
+		/** The templates read */
+		private final List<Template> templates = new ArrayList<Template>();
+		/** The template being read */
+		private Template template = null;
+		/** The stack of open template elements */
+		private final LinkedList<TemplateElement> elements = new LinkedList<TemplateElement>();
+		/** The stack of children of the open template (first) and elements */
+		private final LinkedList<List<TemplateElement>> children = new LinkedList<List<TemplateElement>>();
+		/** The current depth in the file (the root element is 1) */
+		private int depth = 0;
+		/** The depth of an ignored element (0 if not ignoring) */
+		private int ignoreDepth = 0;
+		
+		@Override
+		public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+			++depth;
+			if( depth == 1 || ignoreDepth > 0 ) return;
+			
+			if( depth == 2 ) {
+				if( !"template".equals(qName) ) {
+					ignoreDepth = depth;
+					return;
+				}
+				
+				template = createTemplate();
+				mapElement(attributes, template);
+			}
+			else {
+				TemplateElement e = createTemplateElement(qName);
+				mapElement(attributes, e);
+				elements.addFirst(e);
+			}
+			
+			children.addFirst(new ArrayList<TemplateElement>());
 		}
 		
-		return ret;
+		@Override
+		public void endElement(String uri, String localName, String qName) throws SAXException {
+			int level = depth--;
+			if( level == 1 ) return;
+			if( ignoreDepth > 0 ) {
+				if( ignoreDepth == level ) ignoreDepth = 0;
+				return;
+			}
+			
+			List<TemplateElement> elementChildren = children.removeFirst();
+			if( elementChildren.size() == 0 ) elementChildren = null;
+			
+			if( level == 2 ) {
+				template.init(elementChildren);
+				templates.add(template);
+				template = null;
+			}
+			else {
+				TemplateElement e = elements.removeFirst();
+				e.init(template, elementChildren);
+				children.getFirst().add(e);
+			}
+		}
 	}
 	
 	/**
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render;
+
+/**
+ * This interface represents a service that can prepare
+ * (typically parse and cache) an expression ahead of it
+ * being evaluated. Render elements that hold expressions
+ * pass them to the {@link ExpressionPreparerLocator} as
+ * they are constructed by the compilers so that there is
+ * no parsing cost at render time.
+ * 
+ * @author Tom Spencer
+ */
+public interface ExpressionPreparer {
+
+	/**
+	 * Call to prepare the expression for later evaluation.
+	 * 
+	 * @param expr The expression to prepare
+	 * @param expected The type the expression is expected to evaluate to
+	 */
+	public void prepareExpression(String expr, Class<?> expected);
+}
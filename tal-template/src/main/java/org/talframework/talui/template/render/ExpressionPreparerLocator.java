@@ -0,0 +1,80 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render;
+
+/**
+ * This class holds the single {@link ExpressionPreparer} that
+ * render elements hand their expressions to when they are
+ * constructed at compile time. If no preparer has been set
+ * then preparing an expression does nothing and the expression
+ * is simply handled when it is first evaluated.
+ * 
+ * <p>The ApacheELExpressionCache registers itself with this
+ * locator when it is created, so as long as it is created at
+ * startup (see web-template-context.xml) all expressions are
+ * parsed as the templates are compiled.</p>
+ * 
+ * @author Tom Spencer
+ */
+public class ExpressionPreparerLocator {
+	/** Single instance (per (parent) classloader) of this class */
+	private static final ExpressionPreparerLocator INSTANCE = new ExpressionPreparerLocator();
+
+	/** Holds the preparer (if any) */
+	private volatile ExpressionPreparer preparer = null;
+
+	/**
+	 * Hidden constructor - you cannot create an instance of this class
+	 */
+	private ExpressionPreparerLocator() {
+	}
+
+	/**
+	 * @return The single instance of the locator
+	 */
+	public static ExpressionPreparerLocator getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Call to prepare an expression. Does nothing if the
+	 * expression is null or there is no preparer.
+	 * 
+	 * @param expr The expression
+	 * @param expected The expected type (if null Object is assumed)
+	 */
+	public void prepareExpression(String expr, Class<?> expected) {
+		ExpressionPreparer preparer = this.preparer;
+		if( preparer == null || expr == null ) return;
+
+		preparer.prepareExpression(expr, expected != null ? expected : Object.class);
+	}
+
+	/**
+	 * @return the preparer
+	 */
+	public ExpressionPreparer getPreparer() {
+		return preparer;
+	}
+
+	/**
+	 * @param preparer the preparer to set
+	 */
+	public void setPreparer(ExpressionPreparer preparer) {
+		this.preparer = preparer;
+	}
+}
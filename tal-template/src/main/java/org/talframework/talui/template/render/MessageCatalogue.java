@@ -0,0 +1,252 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render;
+
+import java.lang.ref.WeakReference;
+import java.text.MessageFormat;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.PropertyResourceBundle;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class holds the messages of a resource bundle in a given
+ * locale for the {@link SimpleRenderModel}. A message is read
+ * from the bundle the first time it is asked for and is then
+ * held, as is the fact a message is missing, so the bundle (and
+ * any MissingResourceException) is only involved once per key.
+ * The {@link MessageFormat}s used to format messages with 
+ * arguments are also held once they are parsed and each format
+ * uses a copy of them as they are not thread safe.
+ * 
+ * <p>The keys of properties and list bundles are read up front.
+ * For these a key that is not present is known to be missing 
+ * without asking the bundle. Other bundles (such as prototype 
+ * bundles) may return a message for any key, so these are
+ * always asked the first time.</p>
+ * 
+ * <p>The catalogues are held by bundle name and locale (or by
+ * the bundle itself if the model is given one), so the bundle is
+ * only resolved once and the catalogue is shared by all render
+ * models. Only the most recently used catalogues are held by
+ * name. Catalogues held by bundle are only weakly held so they
+ * do not keep the bundle alive. No more than maxSize messages or
+ * formats are held by any one catalogue.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class MessageCatalogue {
+	/** Marker held for a missing message */
+	private static final String MISSING = new String("<missing>");
+	/** The maximum number of catalogues that are held by name */
+	private static final int MAX_CATALOGUES = 500;
+	
+	/** The catalogue used when there is no bundle */
+	private static final MessageCatalogue EMPTY = new MessageCatalogue(null);
+	/** The catalogues held by bundle name and locale (in access order, guarded by itself) */
+	@SuppressWarnings("serial")
+	private static final Map<String, MessageCatalogue> namedCatalogues = new LinkedHashMap<String, MessageCatalogue>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, MessageCatalogue> eldest) {
+			return size() > MAX_CATALOGUES;
+		}
+	};
+	/** The catalogues held (weakly as they refer to the bundle) against the bundle they were created for */
+	private static final Map<ResourceBundle, WeakReference<MessageCatalogue>> bundleCatalogues = new WeakHashMap<ResourceBundle, WeakReference<MessageCatalogue>>();
+	/** The maximum number of messages and formats held in each catalogue */
+	private static volatile int maxSize = 5000;
+	
+	/** The bundle (may be null in which case no messages are present) */
+	private final ResourceBundle bundle;
+	/** The keys of the bundle if these are known to be complete */
+	private final Set<String> keys;
+	/** The messages (or MISSING marker) read so far */
+	private final ConcurrentMap<String, String> messages = new ConcurrentHashMap<String, String>();
+	/** The formats parsed so far */
+	private final ConcurrentMap<String, MessageFormat> formats = new ConcurrentHashMap<String, MessageFormat>();
+	
+	/**
+	 * Gets the catalogue for the bundle with the given name
+	 * in the given locale.
+	 * 
+	 * @param name The base name of the bundle
+	 * @param locale The locale (if null the default is used)
+	 * @return The catalogue
+	 * @throws MissingResourceException If the bundle does not exist
+	 */
+	public static MessageCatalogue getCatalogue(String name, Locale locale) {
+		String key = name + '|' + locale;
+		MessageCatalogue ret = null;
+		synchronized( namedCatalogues ) {
+			ret = namedCatalogues.get(key);
+		}
+		
+		if( ret == null ) {
+			ret = getCatalogue(locale != null ? ResourceBundle.getBundle(name, locale) : ResourceBundle.getBundle(name));
+			synchronized( namedCatalogues ) {
+				MessageCatalogue existing = namedCatalogues.get(key);
+				if( existing != null ) ret = existing;
+				else namedCatalogues.put(key, ret);
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Gets the catalogue for the given bundle
+	 * 
+	 * @param bundle The bundle (may be null)
+	 * @return The catalogue
+	 */
+	public static MessageCatalogue getCatalogue(ResourceBundle bundle) {
+		if( bundle == null ) return EMPTY;
+		
+		synchronized( bundleCatalogues ) {
+			WeakReference<MessageCatalogue> ref = bundleCatalogues.get(bundle);
+			MessageCatalogue ret = ref != null ? ref.get() : null;
+			if( ret == null ) {
+				ret = new MessageCatalogue(bundle);
+				bundleCatalogues.put(bundle, new WeakReference<MessageCatalogue>(ret));
+			}
+			return ret;
+		}
+	}
+	
+	/**
+	 * Removes all held catalogues
+	 */
+	public static void clear() {
+		synchronized( namedCatalogues ) {
+			namedCatalogues.clear();
+		}
+		synchronized( bundleCatalogues ) {
+			bundleCatalogues.clear();
+		}
+	}
+	
+	/**
+	 * @return The number of catalogues held by name
+	 */
+	public static int getSize() {
+		synchronized( namedCatalogues ) {
+			return namedCatalogues.size();
+		}
+	}
+	
+	/**
+	 * @return The maximum number of messages and formats held in each catalogue
+	 */
+	public static int getMaxSize() {
+		return maxSize;
+	}
+	
+	/**
+	 * @param maxSize The maximum number of messages and formats held in each catalogue
+	 */
+	public static void setMaxSize(int maxSize) {
+		MessageCatalogue.maxSize = maxSize;
+	}
+	
+	/**
+	 * Constructs the catalogue reading in the keys if
+	 * they are known to be complete.
+	 * 
+	 * @param bundle The bundle
+	 */
+	private MessageCatalogue(ResourceBundle bundle) {
+		this.bundle = bundle;
+		
+		if( bundle instanceof PropertyResourceBundle || bundle instanceof ListResourceBundle ) {
+			Set<String> bundleKeys = new HashSet<String>();
+			Enumeration<String> e = bundle.getKeys();
+			while( e.hasMoreElements() ) bundleKeys.add(e.nextElement());
+			this.keys = bundleKeys;
+		}
+		else {
+			this.keys = null;
+		}
+	}
+	
+	/**
+	 * @return The bundle the catalogue is for
+	 */
+	public ResourceBundle getBundle() {
+		return bundle;
+	}
+	
+	/**
+	 * Gets a message from the catalogue
+	 * 
+	 * @param key The key of the message
+	 * @return The message or null if it is missing
+	 */
+	public String getMessage(String key) {
+		if( bundle == null ) return null;
+		
+		String ret = messages.get(key);
+		if( ret == null ) {
+			ret = MISSING;
+			if( keys == null || keys.contains(key) ) {
+				try {
+					ret = bundle.getString(key);
+				}
+				catch( MissingResourceException e ) {
+					// Held as missing
+				}
+				catch( ClassCastException e ) {
+					// Not a string, so held as missing
+				}
+			}
+			
+			if( messages.size() < maxSize ) messages.put(key, ret);
+		}
+		
+		return ret != MISSING ? ret : null;
+	}
+	
+	/**
+	 * Formats the pattern with the arguments. The parsed pattern
+	 * is held so it is only parsed once, each call formats with
+	 * a copy of it.
+	 * 
+	 * @param pattern The pattern
+	 * @param args The arguments
+	 * @return The formatted message
+	 */
+	public String format(String pattern, Object[] args) {
+		MessageFormat format = formats.get(pattern);
+		if( format == null ) {
+			format = new MessageFormat(pattern);
+			if( formats.size() < maxSize ) {
+				MessageFormat existing = formats.putIfAbsent(pattern, format);
+				if( existing != null ) format = existing;
+			}
+		}
+		
+		// Formats (and their sub-formats) are not thread safe, a clone copies them
+		return ((MessageFormat)format.clone()).format(args);
+	}
+}
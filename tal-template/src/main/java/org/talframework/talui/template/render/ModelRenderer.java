@@ -32,6 +32,7 @@ import org.talframework.talui.template.Renderer;
  * @author Tom Spencer
  */
 public class ModelRenderer implements Renderer {
+	private static final long serialVersionUID = 1L;
 	
 	/** Member holds the root template */
 	private final RenderElement rootTemplate;
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This class holds the getter methods for each class that
+ * has been rendered. The getters for a class are found by
+ * introspection the first time a property on an instance
+ * of that class is requested and are then held for all
+ * further requests, so a render of many rows of the same
+ * type of object only introspects that type once.
+ * 
+ * <p>The class also provides direct access to the members
+ * of arrays, lists, collections and maps so no property
+ * path needs to be formed and parsed for each row.</p>
+ * 
+ * <p>Note this class is purely static, so a single instance of it
+ * is provided on the classloader.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class PropertyAccessorCache {
+	private static final PropertyAccessorCache INSTANCE = new PropertyAccessorCache();
+	
+	/** Holds the getters (keyed by property name) for each class */
+	private final ConcurrentMap<Class<?>, Map<String, Method>> accessors = new ConcurrentHashMap<Class<?>, Map<String, Method>>();
+	
+	/**
+	 * Hidden constructor, does nothing just prevents lots of
+	 * instances.
+	 */
+	private PropertyAccessorCache() {
+	}
+	
+	/**
+	 * @return The single instance of the PropertyAccessorCache
+	 */
+	public static PropertyAccessorCache getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Determines if the bean has a readable property of the
+	 * given name.
+	 * 
+	 * @param bean The bean
+	 * @param name The name of the property
+	 * @return True if the property can be read
+	 */
+	public boolean isReadableProperty(Object bean, String name) {
+		if( bean == null ) return false;
+		return getAccessors(bean.getClass()).containsKey(name);
+	}
+	
+	/**
+	 * Gets the value of the property on the bean.
+	 * 
+	 * @param bean The bean
+	 * @param name The name of the property
+	 * @return The value or null if the bean is null or has no such property
+	 */
+	public Object getProperty(Object bean, String name) {
+		if( bean == null ) return null;
+		
+		Method getter = getAccessors(bean.getClass()).get(name);
+		if( getter == null ) return null;
+		
+		try {
+			return getter.invoke(bean, (Object[])null);
+		}
+		catch( InvocationTargetException e ) {
+			if( e.getCause() instanceof RuntimeException ) throw (RuntimeException)e.getCause();
+			throw new IllegalArgumentException("Unable to read property [" + name + "] on class: " + bean.getClass(), e.getCause());
+		}
+		catch( IllegalAccessException e ) {
+			throw new IllegalArgumentException("Unable to read property [" + name + "] on class: " + bean.getClass(), e);
+		}
+	}
+	
+	/**
+	 * Gets a member of an array, list, collection or map. For
+	 * arrays and collections the index is used directly, for 
+	 * maps the key is used.
+	 * 
+	 * @param obj The array, collection or map
+	 * @param key The key of the member (only used for maps)
+	 * @param index The index of the member (not used for maps)
+	 * @return The member or null if it does not exist
+	 */
+	public Object getIndexedValue(Object obj, String key, int index) {
+		if( obj == null ) return null;
+		
+		if( obj instanceof Map<?, ?> ) {
+			Map<?, ?> map = (Map<?, ?>)obj;
+			Object ret = map.get(key);
+			if( ret == null && key != null && !map.containsKey(key) ) {
+				// Key may not be a string, so match on its string form
+				Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator();
+				while( it.hasNext() ) {
+					Map.Entry<?, ?> entry = it.next();
+					if( entry.getKey() != null && key.equals(entry.getKey().toString()) ) return entry.getValue();
+				}
+			}
+			return ret;
+		}
+		
+		if( index < 0 ) return null;
+		
+		if( obj instanceof List<?> ) {
+			List<?> list = (List<?>)obj;
+			return index < list.size() ? list.get(index) : null;
+		}
+		else if( obj instanceof Collection<?> ) {
+			Collection<?> coll = (Collection<?>)obj;
+			if( index >= coll.size() ) return null;
+			
+			Iterator<?> it = coll.iterator();
+			for( int i = 0 ; i < index ; i++ ) it.next();
+			return it.next();
+		}
+		else if( obj.getClass().isArray() ) {
+			return index < Array.getLength(obj) ? Array.get(obj, index) : null;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Removes all held accessors
+	 */
+	public void clear() {
+		accessors.clear();
+	}
+	
+	/**
+	 * Gets the accessors for the class, introspecting the
+	 * class if they are not already held.
+	 * 
+	 * @param cls The class
+	 * @return The getters keyed by property name
+	 */
+	private Map<String, Method> getAccessors(Class<?> cls) {
+		Map<String, Method> ret = accessors.get(cls);
+		if( ret == null ) {
+			ret = introspect(cls);
+			Map<String, Method> existing = accessors.putIfAbsent(cls, ret);
+			if( existing != null ) ret = existing;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Introspects the class to find all of its getters
+	 * 
+	 * @param cls The class
+	 * @return The getters keyed by property name
+	 */
+	private Map<String, Method> introspect(Class<?> cls) {
+		Map<String, Method> ret = new HashMap<String, Method>();
+		
+		try {
+			BeanInfo info = Introspector.getBeanInfo(cls);
+			PropertyDescriptor[] props = info.getPropertyDescriptors();
+			for( int i = 0 ; i < props.length ; i++ ) {
+				Method getter = props[i].getReadMethod();
+				if( getter == null ) continue;
+				
+				// Allows access to public getters on non-public classes
+				if( !Modifier.isPublic(getter.getDeclaringClass().getModifiers()) ) {
+					getter.setAccessible(true);
+				}
+				
+				ret.put(props[i].getName(), getter);
+			}
+		}
+		catch( Exception e ) {
+			throw new IllegalArgumentException("Unable to introspect the class: " + cls, e);
+		}
+		
+		return Collections.unmodifiableMap(ret);
+	}
+}
@@ -42,4 +42,17 @@ public interface RenderNodeFactory {
 	 * @return The new node
 	 */
 	public RenderNode getNode(RenderModel model, RenderNode current, String name, int index);
+	
+	/**
+	 * Called to get a render node for an object that has
+	 * already been obtained by the caller.
+	 * 
+	 * @param model The render model
+	 * @param current The current node (if there is one)
+	 * @param name The name, key or index (relative to current node) of the new node
+	 * @param index If the name is a key or index, the integer index for the node
+	 * @param value The object for the new node
+	 * @return The new node
+	 */
+	public RenderNode getNode(RenderModel model, RenderNode current, String name, int index, Object value);
 }
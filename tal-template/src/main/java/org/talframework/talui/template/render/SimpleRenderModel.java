@@ -18,11 +18,9 @@ package org.talframework.talui.template.render;
 
 import java.io.Writer;
 import java.security.Principal;
-import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
-import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 
 import org.talframework.tal.aspects.annotations.TraceWarn;
@@ -75,7 +73,7 @@ public class SimpleRenderModel implements RenderModel, AttributeAdaptor {
 	private String namespace = null;
 	private Principal user = null;
 	private Locale locale = null;
-	private ResourceBundle bundle = null;
+	private MessageCatalogue messages = MessageCatalogue.getCatalogue((ResourceBundle)null);
 	private Map<String, Object> model = null;
 	private RenderNode currentNode = null;
 	
@@ -157,21 +155,21 @@ public class SimpleRenderModel implements RenderModel, AttributeAdaptor {
 	 * Simply returns the configured resource bundle
 	 */
 	public ResourceBundle getBundle() {
-		return bundle;
+		return messages.getBundle();
 	}
 	
 	/**
-	 * Simply gets the key from the bundle if it exists
+	 * Simply gets the key from the bundle if it exists. The
+	 * messages are held in a {@link MessageCatalogue}.
 	 */
 	public String getMessage(String key, String def) {
+		ResourceBundle bundle = messages.getBundle();
 		if( bundle == null && def == null ) throw new IllegalArgumentException("Cannot get a message when there is no bundle set to use");
 		
 		String ret = def;
 		if( bundle != null ) {
-			try {
-				ret = bundle.getString(key);
-			}
-			catch( MissingResourceException e ) {
+			ret = messages.getMessage(key);
+			if( ret == null ) {
 			    missingResource(key, bundle.toString());
 				ret = def;
 			}
@@ -189,7 +187,7 @@ public class SimpleRenderModel implements RenderModel, AttributeAdaptor {
 
 	/**
 	 * Uses MessageFormat to format the message with the given
-	 * arguments
+	 * arguments (the parsed formats are held in the catalogue)
 	 */
 	public String getMessage(String key, String def, Object[] args) {
 		String msg = getMessage(key, def);
@@ -221,7 +219,7 @@ public class SimpleRenderModel implements RenderModel, AttributeAdaptor {
 			if( newArgs != null ) args = newArgs;
 		}
 		
-		if( args != null ) msg = MessageFormat.format(msg, args);
+		if( args != null ) msg = messages.format(msg, args);
 		return msg;
 	}
 	
@@ -284,6 +282,18 @@ public class SimpleRenderModel implements RenderModel, AttributeAdaptor {
 		return currentNode;
 	}
 	
+	/**
+	 * Simply uses the node factory to get the new node 
+	 * for the given value. If there is no nodeFactory an 
+	 * unsupported exception is thrown.
+	 */
+	public RenderNode pushNode(String name, int index, Object value) {
+		if( nodeFactory == null ) throw new UnsupportedOperationException("Cannot push a node because there is no node factory set of the Simple Render Model");
+		
+		currentNode = nodeFactory.getNode(this, currentNode, name, index, value);
+		return currentNode;
+	}
+	
 	/**
 	 * Gets the parent to the current node or throws an exception
 	 * if there isn't a current node.
@@ -444,17 +454,19 @@ public class SimpleRenderModel implements RenderModel, AttributeAdaptor {
 	 * @param bundle The bundle to use when rendering
 	 */
 	public void setBundle(ResourceBundle bundle) {
-		this.bundle = bundle;
+		this.messages = MessageCatalogue.getCatalogue(bundle);
 	}
 	
 	/**
 	 * Call to set the bundle given its base name. If it
-	 * does not exist it will use a default one.
+	 * does not exist it will use a default one. The bundle
+	 * is only resolved the first time it is used in the 
+	 * current locale (see {@link MessageCatalogue}).
 	 * 
 	 * @param name The name of the bundle
 	 */
 	public void setBundle(String name) {
-		this.bundle = locale != null ? ResourceBundle.getBundle(name, locale) : ResourceBundle.getBundle(name);
+		this.messages = MessageCatalogue.getCatalogue(name, locale);
 	}
 
 	/**
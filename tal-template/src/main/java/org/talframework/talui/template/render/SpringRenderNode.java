@@ -21,8 +21,10 @@ import org.springframework.beans.BeanWrapperImpl;
 import org.talframework.talui.template.RenderNode;
 
 /**
- * This class uses Spring (specifically the bean access elements)
- * to implement the RenderNode functionality.
+ * This class implements the RenderNode functionality. Simple
+ * properties are read using the getters held in the 
+ * {@link PropertyAccessorCache}, nested or indexed property
+ * paths fall back to the bean access elements of Spring.
  * 
  * @author Tom Spencer
  */
@@ -76,11 +78,14 @@ public final class SpringRenderNode implements RenderNode {
 	}
 	
 	/**
-	 * Uses the bean wrapper to get the property. This
-	 * creates the bean wrapper if neccessary.
+	 * Uses the cached getters to get a simple property. For
+	 * property paths the bean wrapper is used, which is
+	 * created if neccessary.
 	 */
 	public Object getProperty(String name) {
 		if( bean == null ) return null;
+		if( name.indexOf('.') < 0 && name.indexOf('[') < 0 ) return PropertyAccessorCache.getInstance().getProperty(bean, name);
+		
 		if( wrapper == null ) wrapper = new BeanWrapperImpl(bean);
 		
 		return wrapper.isReadableProperty(name) ? wrapper.getPropertyValue(name) : null;
@@ -16,15 +16,15 @@
 
 package org.talframework.talui.template.render;
 
-import org.springframework.beans.BeanWrapper;
-import org.springframework.beans.BeanWrapperImpl;
 import org.talframework.talui.template.RenderModel;
 import org.talframework.talui.template.RenderNode;
 
 /**
  * This class implements the render node factory interface using
- * SpringRenderNodes that use the bean access mechanisms of
- * Spring to get at the property values.
+ * SpringRenderNodes. Property values and the members of arrays,
+ * collections and maps are read through the {@link PropertyAccessorCache}
+ * so there is no introspection or parsing of property paths
+ * per node.
  * 
  * <p>Note this class is purely static, so a single instance of it
  * is provided on the classloader.</p>
@@ -54,50 +54,45 @@ public final class SpringRenderNodeFactory implements RenderNodeFactory {
 	 */
 	public RenderNode getNode(RenderModel model, RenderNode current, String name, int index) {
 		Object bean = null;
+		
+		// New node, get from the model
+		if( current == null ) bean = model.getObject(name);
+		
+		// Indexed node
+		else if( index >= 0 ) bean = PropertyAccessorCache.getInstance().getIndexedValue(current.getObject(), name, index);
+		
+		// Standard node relative to current node
+		else bean = current.getProperty(name);
+		
+		return getNode(model, current, name, index, bean);
+	}
+	
+	/**
+	 * Creates a SpringRenderNode for the given object forming its
+	 * name and id from the current node.
+	 */
+	public RenderNode getNode(RenderModel model, RenderNode current, String name, int index, Object value) {
 		String nodeName = null;
 		String nodeId = null;
 		
-		// New node, get from the model
+		// New node
 		if( current == null ) {
-			bean = model.getObject(name);
 			nodeName = name;
 			nodeId = name;
 		}
 		
 		// Indexed node
 		else if( index >= 0 ) {
-			BeanWrapper wrapper = new BeanWrapperImpl(new IndexableObject(current.getObject()));
-			bean = wrapper.getPropertyValue("object[" + name + "]");
-			
 			nodeName = model.getTempBuffer().append(current.getName()).append('[').append(name).append(']').toString();
 			nodeId = model.getTempBuffer().append(current.getId()).append('[').append(name).append(']').toString();
 		}
 		
 		// Standard node relative to current node
 		else {
-			bean = current.getProperty(name);
 			nodeName = model.getTempBuffer().append(current.getName()).append('.').append(name).toString();
 			nodeId = model.getTempBuffer().append(current.getId()).append('-').append(name).toString();
 		}
 		
-		return new SpringRenderNode(current, nodeName, nodeId, index, bean);
-	}
-	
-	/**
-	 * Helper class to wrap the bean if its known to be
-	 * a array, collection or map.
-	 * 
-	 * @author Tom Spencer
-	 */
-	private class IndexableObject {
-		private final Object object;
-		public IndexableObject(Object obj) {
-			this.object = obj;
-		}
-		
-		@SuppressWarnings("unused")
-		public Object getObject() {
-			return object;
-		}
+		return new SpringRenderNode(current, nodeName, nodeId, index, value);
 	}
 }
@@ -25,6 +25,7 @@ import org.talframework.talui.template.RenderModel;
 import org.talframework.talui.template.Renderer;
 
 public class TemplateRenderer implements Renderer {
+	private static final long serialVersionUID = 1L;
 	
 	/** Member holds the map of templates */
 	private final Map<String, RenderElement> templates;
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render.apacheel;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.el.ELContext;
+import javax.el.ELResolver;
+import javax.el.ExpressionFactory;
+import javax.el.FunctionMapper;
+import javax.el.ValueExpression;
+import javax.el.VariableMapper;
+
+import org.apache.el.ExpressionFactoryImpl;
+import org.apache.el.lang.FunctionMapperImpl;
+import org.apache.el.lang.VariableMapperImpl;
+import org.talframework.talui.template.render.ExpressionPreparer;
+import org.talframework.talui.template.render.ExpressionPreparerLocator;
+
+/**
+ * This class holds the parsed Jasper EL {@link ValueExpression}s
+ * keyed by the expression and the type it is expected to evaluate
+ * to. There is a single instance of this class which is shared by
+ * all {@link ApacheELExpressionEvaluator}s so an expression is only
+ * parsed once regardless of how many times (or in how many threads)
+ * it is evaluated.
+ * 
+ * <p>The cache registers itself with the {@link ExpressionPreparerLocator}
+ * when created so that the render elements fill it as they are built
+ * by the compilers. The cache is bounded by maxSize, once it is full
+ * new expressions are still parsed but are not held. This protects
+ * against expressions that are formed dynamically at render time.</p>
+ * 
+ * <p>The parsed expressions do not hold onto the context they are
+ * created with (other than the function and variable mappers, which
+ * are empty) and are safe to evaluate against different contexts
+ * in different threads.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class ApacheELExpressionCache implements ExpressionPreparer {
+	/** Single instance (per (parent) classloader) of this class */
+	private static final ApacheELExpressionCache INSTANCE = new ApacheELExpressionCache();
+
+	/** The factory used to parse all expressions */
+	private final ExpressionFactory factory = new ExpressionFactoryImpl();
+	/** The context used only when parsing, no resolution is performed against it */
+	private final ELContext parseContext;
+
+	/** The parsed expressions, keyed first by expected type and then by expression */
+	private final ConcurrentMap<Class<?>, ConcurrentMap<String, ValueExpression>> expressions = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, ValueExpression>>();
+	/** Holds the number of expressions held */
+	private final AtomicInteger size = new AtomicInteger();
+	/** The maximum number of expressions that will be held */
+	private volatile int maxSize = 5000;
+
+	/**
+	 * @return The single instance of the cache
+	 */
+	public static ApacheELExpressionCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Hidden constructor - creates the parse context and registers
+	 * the cache as the expression preparer.
+	 */
+	private ApacheELExpressionCache() {
+		final VariableMapper variableMapper = new VariableMapperImpl();
+		final FunctionMapper functionMapper = new FunctionMapperImpl();
+
+		parseContext = new ELContext() {
+			@Override
+			public ELResolver getELResolver() {
+				return null;
+			}
+
+			@Override
+			public FunctionMapper getFunctionMapper() {
+				return functionMapper;
+			}
+
+			@Override
+			public VariableMapper getVariableMapper() {
+				return variableMapper;
+			}
+		};
+
+		ExpressionPreparerLocator.getInstance().setPreparer(this);
+	}
+
+	/**
+	 * Parses and holds the expression
+	 */
+	public void prepareExpression(String expr, Class<?> expected) {
+		getExpression(expr, expected);
+	}
+
+	/**
+	 * Call to get the parsed expression, parsing it if it is
+	 * not already held.
+	 * 
+	 * @param expr The expression
+	 * @param expected The expected type of the result
+	 * @return The parsed expression
+	 */
+	public ValueExpression getExpression(String expr, Class<?> expected) {
+		ConcurrentMap<String, ValueExpression> typeExpressions = expressions.get(expected);
+		ValueExpression ret = typeExpressions != null ? typeExpressions.get(expr) : null;
+
+		if( ret == null ) {
+			ret = factory.createValueExpression(parseContext, expr, expected);
+
+			if( size.get() < maxSize ) {
+				if( typeExpressions == null ) {
+					typeExpressions = new ConcurrentHashMap<String, ValueExpression>();
+					ConcurrentMap<String, ValueExpression> existing = expressions.putIfAbsent(expected, typeExpressions);
+					if( existing != null ) typeExpressions = existing;
+				}
+
+				ValueExpression existing = typeExpressions.putIfAbsent(expr, ret);
+				if( existing != null ) ret = existing;
+				else size.incrementAndGet();
+			}
+		}
+
+		return ret;
+	}
+
+	/**
+	 * Removes all held expressions
+	 */
+	public void clear() {
+		expressions.clear();
+		size.set(0);
+	}
+
+	/**
+	 * @return The number of expressions currently held
+	 */
+	public int getSize() {
+		return size.get();
+	}
+
+	/**
+	 * @return the maxSize
+	 */
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @param maxSize the maxSize to set
+	 */
+	public void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+	}
+}
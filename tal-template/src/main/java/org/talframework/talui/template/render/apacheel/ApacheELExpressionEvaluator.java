@@ -23,14 +23,12 @@ import javax.el.BeanELResolver;
 import javax.el.CompositeELResolver;
 import javax.el.ELContext;
 import javax.el.ELResolver;
-import javax.el.ExpressionFactory;
 import javax.el.FunctionMapper;
 import javax.el.ListELResolver;
 import javax.el.MapELResolver;
 import javax.el.ValueExpression;
 import javax.el.VariableMapper;
 
-import org.apache.el.ExpressionFactoryImpl;
 import org.apache.el.lang.FunctionMapperImpl;
 import org.apache.el.lang.VariableMapperImpl;
 import org.talframework.tal.aspects.annotations.Trace;
@@ -44,6 +42,12 @@ import org.talframework.talui.template.render.ExpressionEvaluator;
  * Tomcat). This is an optional dependency on the project
  * as you could provide your own implementation.
  * 
+ * <p>The parsed expressions are held in the shared
+ * {@link ApacheELExpressionCache} so each expression is only
+ * parsed once. The EL context and resolvers are created with
+ * the evaluator so each evaluation only sets the current model
+ * and node and then gets the value.</p>
+ * 
  * <p><b>Note: </b>This class should be constructed once for
  * each render model it is used within as it holds state 
  * between calls that if used across models would cause 
@@ -53,47 +57,57 @@ import org.talframework.talui.template.render.ExpressionEvaluator;
  */
 public class ApacheELExpressionEvaluator implements ExpressionEvaluator {
 	
-	private ExpressionFactory factory = new ExpressionFactoryImpl();
-	/** Member holds the context which is created on first use */
-	private ELContext context = null;
+	/** Member holds the shared cache of parsed expressions */
+	private final ApacheELExpressionCache cache = ApacheELExpressionCache.getInstance();
+	/** Member holds the context the expressions are evaluated against */
+	private final ELContext context;
 	/** Member holds the single node resolver set against the ELContext above */
-	private RenderNodeELResolver nodeResolver = null;
+	private final RenderNodeELResolver nodeResolver;
+	/** Member holds the single model resolver set against the ELContext above */
+	private final RenderModelELResolver modelResolver;
+	
+	/**
+	 * Constructs the evaluator creating the EL context and
+	 * chain of resolvers it uses.
+	 */
+	public ApacheELExpressionEvaluator() {
+		nodeResolver = new RenderNodeELResolver();
+		modelResolver = new RenderModelELResolver(null);
+		
+		final CompositeELResolver resolver = new CompositeELResolver();
+		resolver.add(nodeResolver);
+		resolver.add(modelResolver);
+		resolver.add(new ArrayELResolver());
+	    resolver.add(new ListELResolver());
+	    resolver.add(new MapELResolver());
+	    resolver.add(new BeanELResolver());
+	    
+	    final VariableMapper variableMapper = new VariableMapperImpl();
+	    final FunctionMapper functionMapper = new FunctionMapperImpl();
+		
+		context = new ELContext() {
+			@Override
+			public ELResolver getELResolver() {
+				return resolver;
+			}
+			
+			@Override
+			public FunctionMapper getFunctionMapper() {
+				return functionMapper;
+			}
+			
+			@Override
+			public VariableMapper getVariableMapper() {
+				return variableMapper;
+			}
+		};
+	}
 
 	@Trace
 	public Object evaluateExpression(Map<String, Object> model, RenderNode node, String expr, Class<?> expected) {
-		if( context == null ) {
-			nodeResolver = new RenderNodeELResolver();
-			final CompositeELResolver resolver = new CompositeELResolver();
-			resolver.add(nodeResolver);
-			resolver.add(new RenderModelELResolver(model));
-			resolver.add(new ArrayELResolver());
-		    resolver.add(new ListELResolver());
-		    resolver.add(new MapELResolver());
-		    resolver.add(new BeanELResolver());
-		    
-		    final VariableMapper variableMapper = new VariableMapperImpl();
-		    final FunctionMapper functionMapper = new FunctionMapperImpl();
-			
-			context = new ELContext() {
-				@Override
-				public ELResolver getELResolver() {
-					return resolver;
-				}
-				
-				@Override
-				public FunctionMapper getFunctionMapper() {
-					return functionMapper;
-				}
-				
-				@Override
-				public VariableMapper getVariableMapper() {
-					return variableMapper;
-				}
-			};
-		}
-		
 		nodeResolver.setCurrent(node);
-		ValueExpression expression = factory.createValueExpression(context, expr, expected);
+		modelResolver.setModel(model);
+		ValueExpression expression = cache.getExpression(expr, expected);
 		try {
 			return expression.getValue(context);
 		}
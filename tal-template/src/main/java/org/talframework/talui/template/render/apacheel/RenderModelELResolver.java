@@ -29,7 +29,7 @@ import javax.el.PropertyNotWritableException;
 
 public class RenderModelELResolver extends ELResolver {
 	private final ELResolver delegate = new MapELResolver();
-	private final Map<String, Object> model;
+	private Map<String, Object> model;
 	
 	public RenderModelELResolver(Map<String, Object> model) {
 		this.model = model;
@@ -42,6 +42,13 @@ public class RenderModelELResolver extends ELResolver {
 		return model;
 	}
 	
+	/**
+	 * @param model the model to resolve against
+	 */
+	public void setModel(Map<String, Object> model) {
+		this.model = model;
+	}
+	
 	/**
 	 * Delegates to Map resolver
 	 */
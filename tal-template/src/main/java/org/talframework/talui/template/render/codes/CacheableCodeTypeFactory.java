@@ -0,0 +1,31 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render.codes;
+
+/**
+ * This marker interface is implemented by {@link CodeTypeFactory}
+ * instances whose code types depend only on the locale and
+ * parameters (and not on the user) and which do not change once
+ * created. The {@link CodeTypeFactoryLocator} holds the code types
+ * from these factories for a configurable time rather than
+ * asking the factory each time.
+ * 
+ * @author Tom Spencer
+ */
+public interface CacheableCodeTypeFactory extends CodeTypeFactory {
+
+}
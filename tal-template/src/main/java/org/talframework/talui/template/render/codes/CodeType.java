@@ -37,7 +37,8 @@ public interface CodeType {
 	/**
 	 * Call to get the codes in this type. The order will
 	 * be a natural order determined by the implementation
-	 * of this class.
+	 * of this class. Implementations may return the same 
+	 * array each time, so the caller must not modify it.
 	 * 
 	 * @return The codes
 	 */
@@ -18,9 +18,13 @@ package org.talframework.talui.template.render.codes;
 
 import java.security.Principal;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.ResourceBundle;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.talframework.talui.template.RenderModel;
 
@@ -50,6 +54,15 @@ import org.talframework.talui.template.RenderModel;
  * at start up time to observe the fail fast principle
  * though.</p>
  * 
+ * <p>The code types from factories that implement 
+ * {@link CacheableCodeTypeFactory} are held by this class, keyed
+ * by the type, locale and parameters. They are held for the 
+ * cacheTimeout (default 5 minutes) and no more than maxCached 
+ * (default 500) are held. Setting either to 0 turns off the 
+ * cache. A factory whose codes change should call 
+ * {@link #codeTypeChanged(String)} so the held code types are
+ * dropped.</p>
+ * 
  * @author Tom Spencer
  */
 public class CodeTypeFactoryLocator {
@@ -58,6 +71,12 @@ public class CodeTypeFactoryLocator {
 	
 	/** Holds the factories */
 	private Map<String, CodeTypeFactory> codeFactories = new HashMap<String, CodeTypeFactory>();
+	/** Holds the cached code types */
+	private final ConcurrentMap<String, CachedCodeType> cache = new ConcurrentHashMap<String, CachedCodeType>();
+	/** The time in ms a code type is cached for */
+	private volatile long cacheTimeout = 300000;
+	/** The maximum number of code types that are cached */
+	private volatile int maxCached = 500;
 	
 	/**
 	 * Hidden constructor - you cannot create an instance of this class
@@ -85,6 +104,7 @@ public class CodeTypeFactoryLocator {
 	 */
 	public synchronized void addCodeFactory(String name, CodeTypeFactory factory) {
 		codeFactories.put(name, factory);
+		cache.clear();
 	}
 	
 	/**
@@ -123,21 +143,35 @@ public class CodeTypeFactoryLocator {
 	 * @return The CodeType
 	 * @throws IllegalArgumentException If the code type is not known
 	 */
-	@SuppressWarnings("unchecked")
 	public static CodeType getCodeType(String name, RenderModel model, Map<String, String> params) {
+		return resolveCodeType(name, model.getObject(name), model, params);
+	}
+	
+	/**
+	 * As {@link #getCodeType(String, RenderModel, Map)}, but where
+	 * the caller has already got the object (if any) held in the 
+	 * model under the name.
+	 * 
+	 * @param name The type of codes required
+	 * @param obj The object in the model under the name (may be null)
+	 * @param model The render model
+	 * @param params Any additional parameters
+	 * @return The CodeType
+	 * @throws IllegalArgumentException If the code type is not known
+	 */
+	@SuppressWarnings("unchecked")
+	public static CodeType resolveCodeType(String name, Object obj, RenderModel model, Map<String, String> params) {
 		CodeType ret = null;
 		
 		// First check the model
-		Object obj = model.getObject(name);
 		if( obj != null ) {
 			if( obj instanceof CodeType ) ret = (CodeType)obj;
 			else if( obj instanceof ResourceBundle ) ret = new ResourceCodeType(name, (ResourceBundle)obj);
-			else if( obj instanceof Map ) ret = new SimpleCodeType(name, (Map<String, String>)obj);
+			else if( obj instanceof Map ) ret = SimpleCodeType.wrap(name, (Map<String, String>)obj);
 		}
 		
 		if( ret == null ) {
-			CodeTypeFactory factory = getInstance().getCodeFactory(name);
-			ret = factory.getCodeType(model.getLocale(), model.getUser(), params);
+			ret = getInstance().getCachedCodeType(name, model.getLocale(), model.getUser(), params);
 		}
 		
 		return ret;
@@ -156,7 +190,129 @@ public class CodeTypeFactoryLocator {
 	 * @throws IllegalArgumentException If the code type is not known
 	 */
 	public static CodeType getCodeType(String name, Locale locale, Principal user, Map<String, String> params) {
-		CodeTypeFactory factory = getInstance().getCodeFactory(name);
-		return factory.getCodeType(locale, user, params);
+		return getInstance().getCachedCodeType(name, locale, user, params);
+	}
+	
+	/**
+	 * Gets the code type from the cache if the factory is
+	 * cacheable, otherwise it is obtained from the factory.
+	 * 
+	 * @param name The type of codes required
+	 * @param locale The locale we want
+	 * @param user The current user
+	 * @param params Any additional parameters
+	 * @return The CodeType
+	 * @throws IllegalArgumentException If the code type is not known
+	 */
+	public CodeType getCachedCodeType(String name, Locale locale, Principal user, Map<String, String> params) {
+		CodeTypeFactory factory = getCodeFactory(name);
+		if( !(factory instanceof CacheableCodeTypeFactory) || cacheTimeout <= 0 || maxCached <= 0 ) {
+			return factory.getCodeType(locale, user, params);
+		}
+		
+		StringBuilder buf = new StringBuilder(name).append('|').append(locale);
+		if( params != null && params.size() > 0 ) buf.append('|').append(new TreeMap<String, String>(params));
+		String key = buf.toString();
+		
+		long now = System.currentTimeMillis();
+		CachedCodeType cached = cache.get(key);
+		if( cached != null && cached.expires > now ) return cached.type;
+		
+		CodeType ret = factory.getCodeType(locale, user, params);
+		if( ret != null ) {
+			if( cache.size() >= maxCached ) removeExpired(now);
+			if( cache.size() < maxCached ) cache.put(key, new CachedCodeType(ret, now + cacheTimeout));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Determines if the code types of the factory are held by
+	 * this locator, so the same instance is handed out until
+	 * it expires or the factory reports a change.
+	 * 
+	 * @param name The name of the code type
+	 * @return True if its code types are held
+	 */
+	public boolean isCached(String name) {
+		return codeFactories.get(name) instanceof CacheableCodeTypeFactory && cacheTimeout > 0 && maxCached > 0;
+	}
+	
+	/**
+	 * Call when the codes of a factory change. Any code types
+	 * held for it are removed so the next request gets a new
+	 * code type from the factory (along with anything held
+	 * against the old code type, such as pre-rendered options).
+	 * 
+	 * @param name The name of the factory whose codes have changed
+	 */
+	public void codeTypeChanged(String name) {
+		String prefix = name + '|';
+		Iterator<String> it = cache.keySet().iterator();
+		while( it.hasNext() ) {
+			if( it.next().startsWith(prefix) ) it.remove();
+		}
+	}
+	
+	/**
+	 * Removes all cached code types
+	 */
+	public void clearCache() {
+		cache.clear();
+	}
+	
+	/**
+	 * Removes the cached code types that have expired
+	 * 
+	 * @param now The current time
+	 */
+	private void removeExpired(long now) {
+		Iterator<CachedCodeType> it = cache.values().iterator();
+		while( it.hasNext() ) {
+			if( it.next().expires <= now ) it.remove();
+		}
+	}
+	
+	/**
+	 * @return The time in ms code types are cached for
+	 */
+	public long getCacheTimeout() {
+		return cacheTimeout;
+	}
+	
+	/**
+	 * @param cacheTimeout The time in ms code types are cached for (0 = no caching)
+	 */
+	public void setCacheTimeout(long cacheTimeout) {
+		this.cacheTimeout = cacheTimeout;
+	}
+	
+	/**
+	 * @return The maximum number of cached code types
+	 */
+	public int getMaxCached() {
+		return maxCached;
+	}
+	
+	/**
+	 * @param maxCached The maximum number of cached code types (0 = no caching)
+	 */
+	public void setMaxCached(int maxCached) {
+		this.maxCached = maxCached;
+	}
+	
+	/**
+	 * Holds a cached code type and the time it expires
+	 *
+	 * @author Tom Spencer
+	 */
+	private static final class CachedCodeType {
+		private final CodeType type;
+		private final long expires;
+		
+		public CachedCodeType(CodeType type, long expires) {
+			this.type = type;
+			this.expires = expires;
+		}
 	}
 }
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render.codes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * This class is a search index over the codes of a {@link CodeType}.
+ * A code matches a search if either its id or its description 
+ * contains the search text (ignoring case). The index is immutable
+ * and safe to share between threads once built.
+ * 
+ * <p>The lower case id and description of each code is held so
+ * that no case conversion is needed per search. In addition each
+ * 3 character sequence (trigram) in these is indexed against the
+ * codes it appears in. A search of 3 or more characters only needs
+ * to check the codes that contain every trigram of the search text,
+ * shorter searches check the codes in order until the limit is 
+ * reached. The results are always in the order of the codes in the
+ * code type.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class CodeTypeIndex {
+	/** The length of each indexed sequence */
+	private static final int GRAM = 3;
+	
+	/** The locale the index was built for */
+	private final Locale locale;
+	/** The codes in their natural order */
+	private final String[] codes;
+	/** The descriptions of the codes */
+	private final String[] descriptions;
+	/** The search text for each code (lower case id and description) */
+	private final String[] searchText;
+	/** The positions of the codes holding each trigram */
+	private final Map<String, int[]> grams;
+	
+	/**
+	 * Constructs the index from the code type
+	 * 
+	 * @param type The code type to index
+	 * @param locale The locale used to lower case the codes (may be null)
+	 */
+	public CodeTypeIndex(CodeType type, Locale locale) {
+		this.locale = locale != null ? locale : Locale.getDefault();
+		
+		String[] ids = type.getCodes();
+		if( ids == null ) ids = new String[0];
+		
+		codes = ids;
+		descriptions = new String[ids.length];
+		searchText = new String[ids.length];
+		
+		Map<String, List<Integer>> gramLists = new HashMap<String, List<Integer>>();
+		for( int i = 0 ; i < ids.length ; i++ ) {
+			descriptions[i] = type.getCodeDescription(ids[i]);
+			
+			StringBuilder buf = new StringBuilder();
+			if( ids[i] != null ) buf.append(ids[i].toLowerCase(this.locale));
+			buf.append('\n');
+			if( descriptions[i] != null ) buf.append(descriptions[i].toLowerCase(this.locale));
+			searchText[i] = buf.toString();
+			
+			addGrams(searchText[i], i, gramLists);
+		}
+		
+		grams = new HashMap<String, int[]>(gramLists.size() * 2);
+		Iterator<String> it = gramLists.keySet().iterator();
+		while( it.hasNext() ) {
+			String gram = it.next();
+			List<Integer> positions = gramLists.get(gram);
+			int[] arr = new int[positions.size()];
+			for( int i = 0 ; i < arr.length ; i++ ) arr[i] = positions.get(i).intValue();
+			grams.put(gram, arr);
+		}
+	}
+	
+	/**
+	 * Searches the index for codes containing the text.
+	 * 
+	 * @param text The text to search for (if null or empty all codes match)
+	 * @param limit The maximum number of results (0 or less means no limit)
+	 * @return The positions of the matching codes (use getCode/getDescription)
+	 */
+	public int[] search(String text, int limit) {
+		if( limit <= 0 || limit > codes.length ) limit = codes.length;
+		if( text != null ) text = text.toLowerCase(locale);
+		
+		int[] candidates = text != null && text.length() >= GRAM ? getCandidates(text) : null;
+		int[] ret = new int[limit];
+		int found = 0;
+		
+		if( candidates != null ) {
+			for( int i = 0 ; i < candidates.length && found < limit ; i++ ) {
+				if( searchText[candidates[i]].indexOf(text) >= 0 ) ret[found++] = candidates[i];
+			}
+		}
+		else {
+			for( int i = 0 ; i < codes.length && found < limit ; i++ ) {
+				if( text == null || searchText[i].indexOf(text) >= 0 ) ret[found++] = i;
+			}
+		}
+		
+		if( found == ret.length ) return ret;
+		
+		int[] trimmed = new int[found];
+		System.arraycopy(ret, 0, trimmed, 0, found);
+		return trimmed;
+	}
+	
+	/**
+	 * @param position The position of the code (from search)
+	 * @return The code
+	 */
+	public String getCode(int position) {
+		return codes[position];
+	}
+	
+	/**
+	 * @param position The position of the code (from search)
+	 * @return The description of the code
+	 */
+	public String getDescription(int position) {
+		return descriptions[position];
+	}
+	
+	/**
+	 * @return The number of codes in the index
+	 */
+	public int size() {
+		return codes.length;
+	}
+	
+	/**
+	 * Gets the codes that hold every trigram in the text. These
+	 * are candidates only as the trigrams may not be adjacent.
+	 * 
+	 * @param text The search text (at least 3 chars)
+	 * @return The candidate positions (in order)
+	 */
+	private int[] getCandidates(String text) {
+		int[] ret = null;
+		for( int i = 0 ; i + GRAM <= text.length() ; i++ ) {
+			int[] positions = grams.get(text.substring(i, i + GRAM));
+			if( positions == null ) return new int[0];
+			
+			ret = ret == null ? positions : intersect(ret, positions);
+			if( ret.length == 0 ) break;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Intersects two sorted arrays of positions
+	 */
+	private int[] intersect(int[] a, int[] b) {
+		int[] ret = new int[Math.min(a.length, b.length)];
+		int n = 0;
+		int i = 0;
+		int j = 0;
+		while( i < a.length && j < b.length ) {
+			if( a[i] < b[j] ) i++;
+			else if( a[i] > b[j] ) j++;
+			else {
+				ret[n++] = a[i];
+				i++;
+				j++;
+			}
+		}
+		
+		if( n == ret.length ) return ret;
+		int[] trimmed = new int[n];
+		System.arraycopy(ret, 0, trimmed, 0, n);
+		return trimmed;
+	}
+	
+	/**
+	 * Adds each trigram in the text against the position 
+	 */
+	private void addGrams(String text, int position, Map<String, List<Integer>> gramLists) {
+		Integer pos = Integer.valueOf(position);
+		for( int i = 0 ; i + GRAM <= text.length() ; i++ ) {
+			String gram = text.substring(i, i + GRAM);
+			List<Integer> positions = gramLists.get(gram);
+			if( positions == null ) {
+				positions = new ArrayList<Integer>();
+				gramLists.put(gram, positions);
+			}
+			
+			// Positions are added in order, so only need to check the last
+			if( positions.size() == 0 || positions.get(positions.size() - 1).intValue() != position ) positions.add(pos);
+		}
+	}
+}
@@ -16,18 +16,36 @@
 
 package org.talframework.talui.template.render.codes;
 
+import java.text.Collator;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 
+/**
+ * A code type whose codes are the keys of a resource bundle
+ * and whose descriptions are the values. The codes are read
+ * from the bundle once, when they are first asked for, and are
+ * then held in order of their descriptions (using the collation
+ * rules of the bundle's locale). Descriptions are always got
+ * straight from the bundle, so a code type that is only used to
+ * describe codes never reads the whole bundle.
+ * 
+ * @author Tom Spencer
+ */
 public final class ResourceCodeType implements CodeType {
 	
 	/** Holds the type of the code type */
 	private final String name;
 	/** Holds the resource base name */
 	private final ResourceBundle bundle;
+	/** The codes and descriptions, read on first use */
+	private volatile Codes codes = null;
 	
 	/**
 	 * Simple constructor - tests the resource exists.
@@ -47,21 +65,10 @@ public final class ResourceCodeType implements CodeType {
 	}
 	
 	/**
-	 * Gets the keys and returns them.
+	 * Returns the keys in order of their descriptions
 	 */
 	public String[] getCodes() {
-		try {
-			List<String> ret = new ArrayList<String>();
-			Enumeration<String> e = bundle.getKeys();
-			while( e.hasMoreElements() ) {
-				ret.add(e.nextElement());
-			}
-			return ret.toArray(new String[ret.size()]);
-		}
-		catch( MissingResourceException e ) {
-			// Can't happen, see constructor
-			return null;
-		}
+		return getHeldCodes().codes;
 	}
 	
 	/**
@@ -74,7 +81,11 @@ public final class ResourceCodeType implements CodeType {
 		try {
 			return bundle.getString(code);
 		}
-		catch( MissingResourceException e ) {	
+		catch( MissingResourceException e ) {
+			return code;
+		}
+		catch( ClassCastException e ) {
+			// Not a string, so not a code
 			return code;
 		}
 	}
@@ -83,4 +94,59 @@ public final class ResourceCodeType implements CodeType {
 	public String toString() {
 		return "ResourceCodeType name=" + name + ", bundle=" + bundle.toString();
 	}
+	
+	/**
+	 * Gets the held codes reading them from the bundle if
+	 * this has not been done. Two threads may both read 
+	 * the bundle, but the result is the same.
+	 * 
+	 * @return The held codes
+	 */
+	private Codes getHeldCodes() {
+		Codes ret = codes;
+		if( ret == null ) {
+			ret = new Codes(bundle);
+			codes = ret;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Holds the codes sorted by their descriptions
+	 *
+	 * @author Tom Spencer
+	 */
+	private static final class Codes {
+		private final String[] codes;
+		
+		public Codes(ResourceBundle bundle) {
+			final Map<String, String> descs = new HashMap<String, String>();
+			List<String> keys = new ArrayList<String>();
+			Enumeration<String> e = bundle.getKeys();
+			while( e.hasMoreElements() ) {
+				String key = e.nextElement();
+				try {
+					descs.put(key, bundle.getString(key));
+					keys.add(key);
+				}
+				catch( MissingResourceException ex ) {
+					// Not a string, so not a code
+				}
+				catch( ClassCastException ex ) {
+					// Not a string, so not a code
+				}
+			}
+			
+			String[] arr = keys.toArray(new String[keys.size()]);
+			final Collator collator = bundle.getLocale() != null ? Collator.getInstance(bundle.getLocale()) : Collator.getInstance();
+			Arrays.sort(arr, new Comparator<String>() {
+				public int compare(String o1, String o2) {
+					int ret = collator.compare(descs.get(o1), descs.get(o2));
+					return ret != 0 ? ret : o1.compareTo(o2);
+				}
+			});
+			
+			this.codes = arr;
+		}
+	}
 }
@@ -22,7 +22,7 @@ import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
 
-public final class ResourceCodeTypeFactory implements CodeTypeFactory {
+public final class ResourceCodeTypeFactory implements CacheableCodeTypeFactory {
 	
 	/** The name of the code type */
 	private final String name;
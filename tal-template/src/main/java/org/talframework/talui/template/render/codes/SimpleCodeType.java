@@ -16,10 +16,16 @@
 
 package org.talframework.talui.template.render.codes;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 /**
  * The simplest form of code type is a map of codes to descriptions.
+ * The map is copied on construction and the codes are held in
+ * the order of the map, so the code type is immutable. The
+ * exception is a map held in the render model, which is only
+ * wrapped (see {@link #wrap(String, Map)}).
  * 
  * @author Tom Spencer
  */
@@ -29,6 +35,8 @@ public final class SimpleCodeType implements CodeType {
 	private final String name;
 	/** The codes and their descriptions */
 	private final Map<String, String> codes;
+	/** The codes in order (null if the map is only wrapped) */
+	private final String[] codeArray;
 	
 	/**
 	 * Simple constructor
@@ -37,8 +45,32 @@ public final class SimpleCodeType implements CodeType {
 	 * @param codes The codes
 	 */
 	public SimpleCodeType(String type, Map<String, String> codes) {
+		this.name = type;
+		this.codes = Collections.unmodifiableMap(new LinkedHashMap<String, String>(codes));
+		this.codeArray = this.codes.keySet().toArray(new String[this.codes.size()]);
+	}
+	
+	/**
+	 * Constructor used to wrap the map
+	 */
+	private SimpleCodeType(String type, Map<String, String> codes, String[] codeArray) {
 		this.name = type;
 		this.codes = codes;
+		this.codeArray = codeArray;
+	}
+	
+	/**
+	 * Call to wrap a map without copying it. This is used for
+	 * maps held in the render model, where the code type is
+	 * typically used only to describe a single code and copying
+	 * the map each time would be wasted.
+	 * 
+	 * @param type The name of the code type
+	 * @param codes The codes (which are not copied)
+	 * @return The code type
+	 */
+	static SimpleCodeType wrap(String type, Map<String, String> codes) {
+		return new SimpleCodeType(type, codes, null);
 	}
 	
 	/**
@@ -52,6 +84,7 @@ public final class SimpleCodeType implements CodeType {
 	 * Returns back all codes.
 	 */
 	public String[] getCodes() {
+		if( codeArray != null ) return codeArray;
 		return codes.keySet().toArray(new String[codes.size()]);
 	}
 	
@@ -60,7 +93,8 @@ public final class SimpleCodeType implements CodeType {
 	 */
 	public String getCodeDescription(String code) {
 		if( code == null ) return null;
-		if( codes.containsKey(code) ) return codes.get(code);
+		String ret = codes.get(code);
+		if( ret != null || codes.containsKey(code) ) return ret;
 		else return code;
 	}
 	
@@ -27,7 +27,7 @@ import java.util.Map;
  * 
  * @author Tom Spencer
  */
-public final class SimpleCodeTypeFactory implements CodeTypeFactory {
+public final class SimpleCodeTypeFactory implements CacheableCodeTypeFactory {
 	
 	private final SimpleCodeType type;
 	
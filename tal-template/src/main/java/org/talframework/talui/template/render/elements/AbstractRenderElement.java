@@ -36,6 +36,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public abstract class AbstractRenderElement implements RenderElement {
+	private static final long serialVersionUID = 1L;
 	
 	/** The child elements to render in between this element */
 	private List<RenderElement> children = null;
@@ -85,4 +86,21 @@ public abstract class AbstractRenderElement implements RenderElement {
 	
 	protected void postRender(RenderModel model) throws IOException {
 	}
+	
+	/**
+	 * @return The child elements (or null if there are none)
+	 */
+	public List<RenderElement> getChildren() {
+		return children;
+	}
+	
+	/**
+	 * Call at compile time to replace the child elements. This
+	 * is used by optimisations that rewrite the compiled tree.
+	 * 
+	 * @param children The new children (or null for none)
+	 */
+	public void setChildren(List<RenderElement> children) {
+		this.children = children;
+	}
 }
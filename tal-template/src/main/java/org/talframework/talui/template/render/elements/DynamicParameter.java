@@ -29,9 +29,12 @@ import org.talframework.talui.template.TemplateElement;
  * @author Tom Spencer
  */
 public final class DynamicParameter implements RenderParameter {
+	private static final long serialVersionUID = 1L;
 
 	public final TemplateElement element;
-	public final Method method;
+	public final transient Method method;
+	/** The name of the method (methods are not serializable) */
+	private final String methodName;
 	
 	/**
 	 * Constructs a dynamic parameter to call the given
@@ -42,6 +45,7 @@ public final class DynamicParameter implements RenderParameter {
 	 */
 	public DynamicParameter(TemplateElement element, String method) {
 		this.element = element;
+		this.methodName = method;
 		try {
 			this.method = element.getClass().getMethod(method, RenderModel.class);
 		}
@@ -50,6 +54,13 @@ public final class DynamicParameter implements RenderParameter {
 		}
 	}
 	
+	/**
+	 * Finds the method again when the parameter is deserialised
+	 */
+	private Object readResolve() {
+		return new DynamicParameter(element, methodName);
+	}
+	
 	/**
 	 * Simply invokes the method determined in the constructor
 	 */
@@ -17,6 +17,7 @@
 package org.talframework.talui.template.render.elements;
 
 import org.talframework.talui.template.RenderModel;
+import org.talframework.talui.template.render.ExpressionPreparerLocator;
 
 /**
  * This class implements the the {@link RenderParameter} interface 
@@ -26,6 +27,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public final class ExpressionParameter implements RenderParameter {
+	private static final long serialVersionUID = 1L;
 
 	private final String expression;
 	private final Class<?> expected;
@@ -39,6 +41,7 @@ public final class ExpressionParameter implements RenderParameter {
 	public ExpressionParameter(String expression) {
 		this.expression = expression;
 		this.expected = String.class;
+		ExpressionPreparerLocator.getInstance().prepareExpression(expression, this.expected);
 	}
 	
 	/**
@@ -66,6 +69,7 @@ public final class ExpressionParameter implements RenderParameter {
 	public ExpressionParameter(String expression, Class<?> expected) {
 		this.expression = expression;
 		this.expected = expected;
+		ExpressionPreparerLocator.getInstance().prepareExpression(expression, expected);
 	}
 	
 	/**
@@ -16,6 +16,8 @@
 
 package org.talframework.talui.template.render.elements;
 
+import java.io.Serializable;
+
 import org.talframework.talui.template.RenderModel;
 
 /**
@@ -29,7 +31,7 @@ import org.talframework.talui.template.RenderModel;
  * 
  * @author Tom Spencer
  */
-public interface RenderParameter {
+public interface RenderParameter extends Serializable {
 
 	/**
 	 * Call to get the value of the parameter at render time.
@@ -26,6 +26,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public final class ResourceParameter implements RenderParameter {
+	private static final long serialVersionUID = 1L;
 
 	private final String resourceKey;
 	private final String defaultKey;
@@ -24,6 +24,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public final class SimpleParameter implements RenderParameter {
+	private static final long serialVersionUID = 1L;
 	
 	private final String value;
 	
@@ -28,6 +28,7 @@ import org.talframework.talui.template.RenderElement;
  * @author Tom Spencer
  */
 public abstract class SimpleRenderElementBase implements RenderElement {
+	private static final long serialVersionUID = 1L;
 
 	/**
 	 * Throws an illegal argument exception
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render.elements;
+
+import java.io.IOException;
+
+import org.talframework.talui.template.RenderModel;
+
+/**
+ * This render element simply writes out a fixed block of
+ * markup that was pre-rendered at compile time. It is
+ * created by the compiler when it finds elements whose
+ * output does not depend on the model and is written out
+ * in a single call to the writer.
+ * 
+ * @author Tom Spencer
+ */
+public final class StaticMarkupElement extends SimpleRenderElementBase {
+	private static final long serialVersionUID = 1L;
+
+	/** The pre-rendered markup */
+	private final char[] markup;
+	
+	/**
+	 * Constructs the element
+	 * 
+	 * @param markup The markup to output
+	 */
+	public StaticMarkupElement(String markup) {
+		if( markup == null ) throw new IllegalArgumentException("You must provide the markup for a static markup element");
+		
+		this.markup = markup.toCharArray();
+	}
+	
+	/**
+	 * Writes out the markup
+	 */
+	public void render(RenderModel model) throws IOException {
+		model.getWriter().write(markup);
+	}
+	
+	/**
+	 * @return The markup this element outputs
+	 */
+	public String getMarkup() {
+		return new String(markup);
+	}
+	
+	@Override
+	public String toString() {
+		return "StaticMarkupElement: length=" + markup.length;
+	}
+}
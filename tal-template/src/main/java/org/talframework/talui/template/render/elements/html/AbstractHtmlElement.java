@@ -24,12 +24,14 @@ import static org.talframework.talui.util.htmlhelper.HtmlConstants.ATTR_TAB;
 import static org.talframework.talui.util.htmlhelper.HtmlConstants.ATTR_TITLE;
 
 import java.io.IOException;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
 import org.talframework.talui.template.RenderModel;
+import org.talframework.talui.template.render.ExpressionPreparerLocator;
 import org.talframework.talui.template.render.elements.AbstractRenderElement;
 import org.talframework.talui.template.render.elements.html.attributes.ExpressionAttribute;
 import org.talframework.talui.template.render.elements.html.attributes.HtmlAttribute;
@@ -48,6 +50,7 @@ import org.talframework.talui.util.htmlhelper.GenericElement;
  * @author Tom Spencer
  */
 public abstract class AbstractHtmlElement extends AbstractRenderElement {
+	private static final long serialVersionUID = 1L;
 	
 	/** Holds the name of the element (set by derived class) */
 	private String elementName = null;
@@ -353,6 +356,83 @@ public abstract class AbstractHtmlElement extends AbstractRenderElement {
 		return ret;
 	}
 
+	/**
+	 * Determines if the start and end markup of this element
+	 * are entirely fixed, i.e. they do not depend on the model
+	 * in any way. This is true if there is no id (which is
+	 * prefixed by the namespace and current node), no show,
+	 * hide or ignore expression, no error field and only
+	 * simple attributes. Derived classes that add anything 
+	 * dynamic to the markup must override this method.
+	 * 
+	 * <p>This is used by the compiler to pre-render elements
+	 * at compile time.</p>
+	 * 
+	 * @return True if the markup is static
+	 */
+	public boolean isStaticMarkup() {
+		if( id != null || showExpr != null || hideExpr != null || ignoreExpr != null || errorField != null ) return false;
+		
+		if( attributes != null ) {
+			int ln = attributes.size();
+			for( int i = 0 ; i < ln ; i++ ) {
+				if( !(attributes.get(i) instanceof SimpleAttribute) ) return false;
+			}
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Call to get the start markup for a static element. Should
+	 * only be called if {@link #isStaticMarkup()} returns true.
+	 * 
+	 * @return The start markup
+	 */
+	public String getStaticStart() {
+		if( !isStaticMarkup() ) throw new IllegalStateException("Cannot get the static markup of an element that is not static: " + this);
+		
+		GenericElement elem = new GenericElement(elementName);
+		if( style != null ) elem.addAttribute(ATTR_STYLE, style, false);
+		if( styleClass != null ) elem.addAttribute(ATTR_CLASS, styleClass, false);
+		if( templateRole != null ) {
+			elem.addAttribute("templateRole", templateRole, false);
+			if( templateType != null ) elem.addAttribute("templateType", templateType, false);
+		}
+		if( attributes != null ) {
+			int ln = attributes.size();
+			for( int i = 0 ; i < ln ; i++ ) {
+				attributes.get(i).addAttribute(null, elem);
+			}
+		}
+		
+		StringWriter writer = new StringWriter();
+		try {
+			elem.write(writer, false);
+		}
+		catch( IOException e ) {
+			throw new IllegalStateException("Unexpected exception writing to a string", e);
+		}
+		if( newLineAfterStart ) writer.write("\n");
+		
+		return writer.toString();
+	}
+	
+	/**
+	 * Call to get the end markup for a static element. Should
+	 * only be called if {@link #isStaticMarkup()} returns true.
+	 * 
+	 * @return The end markup
+	 */
+	public String getStaticEnd() {
+		if( !isStaticMarkup() ) throw new IllegalStateException("Cannot get the static markup of an element that is not static: " + this);
+		
+		StringBuilder buf = new StringBuilder();
+		buf.append("</").append(elementName).append('>');
+		if( newLineAfterTerminate ) buf.append("\n");
+		return buf.toString();
+	}
+	
 	/////////////////////////////////
 	// Getters / Setters
 	
@@ -396,6 +476,7 @@ public abstract class AbstractHtmlElement extends AbstractRenderElement {
 	 */
 	public void setShowExpr(String showExpr) {
 		this.showExpr = showExpr;
+		ExpressionPreparerLocator.getInstance().prepareExpression(showExpr, Boolean.class);
 	}
 
 	/**
@@ -410,6 +491,7 @@ public abstract class AbstractHtmlElement extends AbstractRenderElement {
 	 */
 	public void setHideExpr(String hideExpr) {
 		this.hideExpr = hideExpr;
+		ExpressionPreparerLocator.getInstance().prepareExpression(hideExpr, Boolean.class);
 	}
 
 	/**
@@ -424,6 +506,7 @@ public abstract class AbstractHtmlElement extends AbstractRenderElement {
 	 */
 	public void setIgnoreExpr(String ignoreExpr) {
 		this.ignoreExpr = ignoreExpr;
+		ExpressionPreparerLocator.getInstance().prepareExpression(ignoreExpr, Boolean.class);
 	}
 
 	/**
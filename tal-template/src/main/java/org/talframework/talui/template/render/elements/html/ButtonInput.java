@@ -26,6 +26,7 @@ import org.talframework.talui.util.htmlhelper.GenericElement;
 import org.talframework.talui.util.htmlhelper.HtmlConstants;
 
 public class ButtonInput extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 	
 	/** Holds the property we should test for true to set checked attribute */
 	private DynamicProperty prop = null;
@@ -128,4 +129,12 @@ public class ButtonInput extends AbstractHtmlElement {
 	public void setLabel(String label) {
 		this.label = label;
 	}
+	
+	/**
+	 * Always false, the name and label depend on the model
+	 */
+	@Override
+	public boolean isStaticMarkup() {
+		return false;
+	}
 }
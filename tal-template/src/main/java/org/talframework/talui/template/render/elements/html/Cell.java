@@ -22,6 +22,7 @@ import org.talframework.talui.template.RenderModel;
 import org.talframework.talui.util.htmlhelper.HtmlConstants;
 
 public class Cell extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 	
 	private String message = null;
 
@@ -68,4 +69,13 @@ public class Cell extends AbstractHtmlElement {
 	public void setMessage(String message) {
 		this.message = message;
 	}
+	
+	/**
+	 * Only static if there is no message (which comes from the
+	 * resource bundle)
+	 */
+	@Override
+	public boolean isStaticMarkup() {
+		return message == null && super.isStaticMarkup();
+	}
 }
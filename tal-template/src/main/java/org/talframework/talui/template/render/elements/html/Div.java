@@ -31,6 +31,7 @@ import org.talframework.talui.util.htmlhelper.HtmlConstants;
  * @author Tom Spencer
  */
 public class Div extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 	
 	/** Holds the dynamic content of the element (if there is any) */
 	private final RenderParameter content;
@@ -56,7 +57,7 @@ public class Div extends AbstractHtmlElement {
 		if( ret ) {
 			if( content != null ) {
 				Object val = content.getValue(model);
-				if( val != null ) HtmlCharStripper.strip(val.toString(), model.getWriter());
+				if( val != null ) HtmlCharStripper.escapeText(val.toString(), model.getWriter());
 				else model.getWriter().append("&nbsp;");
 			}
 		}
@@ -78,4 +79,12 @@ public class Div extends AbstractHtmlElement {
 		this.asDiv = asDiv;
 		setElementName(asDiv ? HtmlConstants.ELEM_DIV : HtmlConstants.ELEM_SPAN);
 	}
+	
+	/**
+	 * Only static if there is no content
+	 */
+	@Override
+	public boolean isStaticMarkup() {
+		return content == null && super.isStaticMarkup();
+	}
 }
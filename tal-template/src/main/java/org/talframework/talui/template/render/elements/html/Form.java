@@ -22,6 +22,7 @@ import org.talframework.talui.template.render.elements.html.attributes.SimpleAtt
 import org.talframework.talui.util.htmlhelper.HtmlConstants;
 
 public class Form extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 
 	public Form(String name, String action) {
 		super(HtmlConstants.ELEM_FORM);
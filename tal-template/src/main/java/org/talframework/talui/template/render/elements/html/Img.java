@@ -27,6 +27,7 @@ import org.talframework.talui.util.htmlhelper.HtmlConstants;
  * @author Tom Spencer
  */
 public class Img extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 	
 	private RenderParameter resource = null;
 
@@ -55,4 +56,12 @@ public class Img extends AbstractHtmlElement {
 	public void setResource(RenderParameter resource) {
 		this.resource = resource;
 	}
+	
+	/**
+	 * Always false, the source is generated at render time
+	 */
+	@Override
+	public boolean isStaticMarkup() {
+		return false;
+	}
 }
@@ -32,6 +32,7 @@ import org.talframework.talui.util.htmlhelper.HtmlConstants;
  * @author Tom Spencer
  */
 public class Input extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 	
 	/** The optional dynamic value */
 	private final RenderParameter value;
@@ -91,4 +92,12 @@ public class Input extends AbstractHtmlElement {
 	public void setType(String type) {
 		addAttribute(new SimpleAttribute(HtmlConstants.ATTR_TYPE, type, false));
 	}
+	
+	/**
+	 * Always false, the value is obtained at render time
+	 */
+	@Override
+	public boolean isStaticMarkup() {
+		return false;
+	}
 }
@@ -28,6 +28,7 @@ import org.talframework.talui.util.htmlhelper.HtmlConstants;
  * @author Tom Spencer
  */
 public class Label extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 
 	private String label = null;
 	
@@ -66,4 +67,12 @@ public class Label extends AbstractHtmlElement {
 	public void setForField(String forField) {
 		addAttribute(new IDAttribute(HtmlConstants.ATTR_FOR, forField));
 	}
+	
+	/**
+	 * Always false, the label comes from the resource bundle
+	 */
+	@Override
+	public boolean isStaticMarkup() {
+		return false;
+	}
 }
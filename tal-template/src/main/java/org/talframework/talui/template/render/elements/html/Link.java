@@ -25,6 +25,7 @@ import org.talframework.talui.util.htmlhelper.GenericElement;
 import org.talframework.talui.util.htmlhelper.HtmlConstants;
 
 public class Link extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 
 	private String message = null;
 	private final CommandElement command;
@@ -71,4 +72,12 @@ public class Link extends AbstractHtmlElement {
 	public void setMessage(String message) {
 		this.message = message;
 	}
+	
+	/**
+	 * Always false, the href is generated at render time
+	 */
+	@Override
+	public boolean isStaticMarkup() {
+		return false;
+	}
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render.elements.html;
+
+import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.talframework.talui.template.render.codes.CodeType;
+import org.talframework.talui.util.htmlhelper.GenericElement;
+import org.talframework.talui.util.htmlhelper.HtmlConstants;
+
+/**
+ * This class holds the pre-rendered option markup for all the
+ * codes of a {@link CodeType}. The markup is held in a single
+ * immutable char buffer along with the offset, for each code,
+ * at which the selected attribute is inserted. A {@link Select}
+ * then writes out all of its options in at most three writes
+ * regardless of the number of codes.
+ * 
+ * <p>Fragments are only held for the code types that the
+ * {@link org.talframework.talui.template.render.codes.CodeTypeFactoryLocator}
+ * holds, keyed by the name of the type and the locale. The fragment
+ * remembers the code type instance it was rendered from, so when 
+ * the locator hands out a new instance (because it expired or the
+ * factory reported a change) the options are rendered again.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class OptionFragment {
+	/** The selected attribute spliced in for the current value */
+	private static final char[] SELECTED = (" " + HtmlConstants.ATTR_SELECTED + "=\"" + HtmlConstants.ATTR_SELECTED + "\"").toCharArray();
+	
+	/** Holds the fragments keyed by code type name and locale */
+	private static final ConcurrentMap<String, OptionFragment> fragments = new ConcurrentHashMap<String, OptionFragment>();
+	
+	/** The code type the options were rendered from */
+	private final CodeType type;
+	/** The markup of all the options */
+	private final char[] markup;
+	/** The offset of the selected marker for each code */
+	private final Map<String, Integer> offsets;
+	
+	/**
+	 * Gets the fragment for the code type, rendering it if
+	 * it is not already held or was held for another instance
+	 * of the code type.
+	 * 
+	 * @param key The key of the code type (i.e. its name and locale)
+	 * @param type The code type
+	 * @return The fragment
+	 */
+	public static OptionFragment getFragment(String key, CodeType type) {
+		OptionFragment ret = fragments.get(key);
+		if( ret == null || ret.type != type ) {
+			// Two threads may both render, but the result is the same
+			ret = new OptionFragment(type);
+			fragments.put(key, ret);
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Removes all held fragments
+	 */
+	public static void clear() {
+		fragments.clear();
+	}
+	
+	/**
+	 * Constructs the fragment rendering all the options
+	 * 
+	 * @param type The code type
+	 */
+	public OptionFragment(CodeType type) {
+		String[] codes = type.getCodes();
+		int ln = codes != null ? codes.length : 0;
+		
+		CharArrayWriter writer = new CharArrayWriter(ln * 32 + 1);
+		GenericElement elem = new GenericElement();
+		Map<String, Integer> positions = new HashMap<String, Integer>(ln * 2 + 1);
+		
+		try {
+			for( int i = 0 ; i < ln ; i++ ) {
+				String key = codes[i];
+				if( key == null ) continue;
+				
+				elem.reset(HtmlConstants.ELEM_OPTION);
+				elem.addAttribute(HtmlConstants.ATTR_VALUE, key, false);
+				elem.write(writer, false);
+				
+				// Selected goes before the closing '>' of the start tag
+				if( !positions.containsKey(key) ) positions.put(key, Integer.valueOf(writer.size() - 1));
+				
+				String desc = type.getCodeDescription(key);
+				if( desc != null ) writer.append(desc);
+				else writer.append(key);
+				elem.writeTerminate(writer);
+			}
+		}
+		catch( IOException e ) {
+			// Should not happen with a char array writer
+			throw new IllegalStateException("Unable to render the options: " + e.getMessage());
+		}
+		
+		this.type = type;
+		this.markup = writer.toCharArray();
+		this.offsets = positions;
+	}
+	
+	/**
+	 * Writes out the options marking the option for the current
+	 * value as selected.
+	 * 
+	 * @param writer The writer to write to
+	 * @param currentVal The current value (may be null)
+	 * @throws IOException
+	 */
+	public void write(Writer writer, Object currentVal) throws IOException {
+		Integer offset = currentVal instanceof String ? offsets.get(currentVal) : null;
+		
+		if( offset == null ) {
+			writer.write(markup, 0, markup.length);
+		}
+		else {
+			int pos = offset.intValue();
+			writer.write(markup, 0, pos);
+			writer.write(SELECTED, 0, SELECTED.length);
+			writer.write(markup, pos, markup.length - pos);
+		}
+	}
+	
+	/**
+	 * @return The length of the markup (without any selected marker)
+	 */
+	public int getLength() {
+		return markup.length;
+	}
+}
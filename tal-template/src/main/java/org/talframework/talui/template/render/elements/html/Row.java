@@ -21,6 +21,7 @@ import org.talframework.talui.template.RenderNode;
 import org.talframework.talui.util.htmlhelper.HtmlConstants;
 
 public class Row extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 
 	public Row(String id) {
 		super(HtmlConstants.ELEM_ROW, id);
@@ -49,4 +50,12 @@ public class Row extends AbstractHtmlElement {
 		
 		return ret;
 	}
+	
+	/**
+	 * Always false, the odd/even style depends on the current node
+	 */
+	@Override
+	public boolean isStaticMarkup() {
+		return false;
+	}
 }
@@ -24,6 +24,7 @@ import org.talframework.talui.template.render.elements.SimpleRenderElementBase;
 import org.talframework.talui.util.htmlhelper.GenericElement;
 
 public class Script extends SimpleRenderElementBase {
+	private static final long serialVersionUID = 1L;
 
 	private final String resource;
 	
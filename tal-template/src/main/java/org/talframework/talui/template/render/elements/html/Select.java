@@ -33,6 +33,7 @@ import org.talframework.talui.util.htmlhelper.HtmlConstants;
  * @author Tom Spencer
  */
 public class Select extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 
 	private final CodedProperty prop;
 
@@ -72,23 +73,32 @@ public class Select extends AbstractHtmlElement {
 	}
 	
 	/**
-	 * Helper to add the options. First this method gets the drop-down
-	 * value and then renders out the options using other helpers 
-	 * depending what the drop-down is.
+	 * Helper to add the options. The code type is taken from the
+	 * model (as a resource bundle, map or CodeType) or else from
+	 * the code type factory lookup. If the code type is held by the
+	 * locator the options are pre-rendered once (see 
+	 * {@link OptionFragment}) and written out with the current
+	 * value marked as selected, otherwise each option is written.
 	 * 
 	 * @param model The render model
 	 * @param val The (code) value of the property
 	 * @throws IOException
 	 */
 	private void addOptions(RenderModel model, Object val) throws IOException {
-		Writer writer = model.getWriter();
-		GenericElement elem = model.getGenericElement();
-		
 		// Blank / Select
 		// All
 		
 		// Add on options
-		CodeType lookup = findCodeType(model);
+		String name = prop.getCodeType(model);
+		Object obj = model.getObject(name);
+		CodeType lookup = CodeTypeFactoryLocator.resolveCodeType(name, obj, model, null);
+		if( obj == null && CodeTypeFactoryLocator.getInstance().isCached(name) ) {
+			OptionFragment.getFragment(name + '|' + model.getLocale(), lookup).write(model.getWriter(), val);
+			return;
+		}
+		
+		Writer writer = model.getWriter();
+		GenericElement elem = model.getGenericElement();
 		String[] codes = lookup.getCodes();
 		if( codes != null && codes.length > 0 ) {
 			for( int i = 0 ; i < codes.length ; i++ ) {
@@ -109,18 +119,13 @@ public class Select extends AbstractHtmlElement {
 		else writer.append(key);
 		elem.writeTerminate(writer);
 	}
+
 	
 	/**
-	 * Helper to get the code type for this property. First
-	 * the model is checked for a resource bundle, map or
-	 * CodeType instance in the properties type name. If that
-	 * fails we turn to the singleton code type factory lookup
-	 * and get the code from there.
-	 * 
-	 * @param model The model
-	 * @return The code type
+	 * Always false, the options depend on the model
 	 */
-	private CodeType findCodeType(RenderModel model) {
-		return CodeTypeFactoryLocator.getCodeType(prop.getCodeType(model), model, null);
+	@Override
+	public boolean isStaticMarkup() {
+		return false;
 	}
 }
@@ -19,6 +19,7 @@ package org.talframework.talui.template.render.elements.html;
 import org.talframework.talui.util.htmlhelper.HtmlConstants;
 
 public class Table extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 
 	public Table(String name) {
 		super(HtmlConstants.ELEM_TABLE, name);
@@ -19,6 +19,7 @@ package org.talframework.talui.template.render.elements.html;
 import org.talframework.talui.template.RenderModel;
 
 public final class TemplateScript extends Script {
+	private static final long serialVersionUID = 1L;
 	
 	public TemplateScript(String template) {
 		super(template);
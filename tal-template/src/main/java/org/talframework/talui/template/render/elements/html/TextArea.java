@@ -29,6 +29,7 @@ import org.talframework.talui.util.htmlhelper.HtmlConstants;
  * @author Tom Spencer
  */
 public class TextArea extends AbstractHtmlElement {
+	private static final long serialVersionUID = 1L;
 	
 	private final DynamicProperty prop;
 
@@ -47,7 +48,7 @@ public class TextArea extends AbstractHtmlElement {
 		boolean ret = super.preRender(model);
 		if( ret ) {
 			Object val = prop.getValue(model);
-			if( val != null ) HtmlCharStripper.strip(val.toString(), model.getWriter());
+			if( val != null ) HtmlCharStripper.escapeText(val.toString(), model.getWriter());
 		}
 		return ret;
 	}
@@ -27,6 +27,8 @@ import org.talframework.talui.util.htmlhelper.GenericElement;
  * @author Tom Spencer
  */
 public class ActionAttribute implements HtmlAttribute {
+	private static final long serialVersionUID = 1L;
+	
 	private String name = null;
 	private String action = null;
 	private Map<String, String> params = null;
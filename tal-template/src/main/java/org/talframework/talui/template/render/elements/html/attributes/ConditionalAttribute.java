@@ -17,6 +17,7 @@
 package org.talframework.talui.template.render.elements.html.attributes;
 
 import org.talframework.talui.template.RenderModel;
+import org.talframework.talui.template.render.ExpressionPreparerLocator;
 import org.talframework.talui.util.htmlhelper.GenericElement;
 
 /**
@@ -27,12 +28,15 @@ import org.talframework.talui.util.htmlhelper.GenericElement;
  * @author Tom Spencer
  */
 public class ConditionalAttribute implements HtmlAttribute {
+	private static final long serialVersionUID = 1L;
+	
 	private final String condition;
 	private final HtmlAttribute attr;
 
 	public ConditionalAttribute(String condition, HtmlAttribute attr) {
 		this.condition = condition;
 		this.attr = attr;
+		ExpressionPreparerLocator.getInstance().prepareExpression(condition, Boolean.class);
 	}
 	
 	public String getName() {
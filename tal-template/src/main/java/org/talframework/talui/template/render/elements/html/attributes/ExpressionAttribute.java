@@ -17,6 +17,7 @@
 package org.talframework.talui.template.render.elements.html.attributes;
 
 import org.talframework.talui.template.RenderModel;
+import org.talframework.talui.template.render.ExpressionPreparerLocator;
 import org.talframework.talui.util.htmlhelper.GenericElement;
 
 /**
@@ -26,6 +27,8 @@ import org.talframework.talui.util.htmlhelper.GenericElement;
  * @author Tom Spencer
  */
 public class ExpressionAttribute implements HtmlAttribute {
+	private static final long serialVersionUID = 1L;
+	
 	private String name = null;
 	private String expr = null;
 	private boolean escape = false;
@@ -34,6 +37,7 @@ public class ExpressionAttribute implements HtmlAttribute {
 		this.name = name;
 		this.expr = expr;
 		this.escape = escape;
+		ExpressionPreparerLocator.getInstance().prepareExpression(expr, String.class);
 	}
 	
 	public String getName() {
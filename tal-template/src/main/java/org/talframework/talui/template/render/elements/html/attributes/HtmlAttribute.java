@@ -16,6 +16,8 @@
 
 package org.talframework.talui.template.render.elements.html.attributes;
 
+import java.io.Serializable;
+
 import org.talframework.talui.template.RenderModel;
 import org.talframework.talui.util.htmlhelper.GenericElement;
 
@@ -28,7 +30,7 @@ import org.talframework.talui.util.htmlhelper.GenericElement;
  * 
  * @author Tom Spencer
  */
-public interface HtmlAttribute {
+public interface HtmlAttribute extends Serializable {
 	
 	/**
 	 * @return The name of the HTML attribute
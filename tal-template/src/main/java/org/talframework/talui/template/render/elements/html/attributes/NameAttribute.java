@@ -25,6 +25,8 @@ import org.talframework.talui.util.htmlhelper.GenericElement;
  * @author Tom Spencer
  */
 public class NameAttribute implements HtmlAttribute {
+	private static final long serialVersionUID = 1L;
+	
 	private String name = null;
 	private String val = null;
 	
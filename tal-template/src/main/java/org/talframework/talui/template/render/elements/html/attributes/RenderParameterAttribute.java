@@ -27,6 +27,7 @@ import org.talframework.talui.util.htmlhelper.GenericElement;
  * @author Tom Spencer
  */
 public class RenderParameterAttribute implements HtmlAttribute {
+	private static final long serialVersionUID = 1L;
 
 	/** The name of the attribute */
 	private final String name;
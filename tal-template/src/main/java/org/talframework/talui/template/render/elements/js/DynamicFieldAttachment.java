@@ -17,6 +17,7 @@
 package org.talframework.talui.template.render.elements.js;
 
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -33,6 +34,7 @@ import org.talframework.talui.template.render.elements.SimpleRenderElementBase;
  * @author Tom Spencer
  */
 public class DynamicFieldAttachment extends SimpleRenderElementBase {
+	private static final long serialVersionUID = 1L;
 	
 	/** The type of the wrapper that the element to apply dijit to is within */
 	private final String wrapperType;
@@ -151,7 +153,9 @@ public class DynamicFieldAttachment extends SimpleRenderElementBase {
 	 * 
 	 * @author Tom Spencer
 	 */
-	private class DynamicFieldAttribute {
+	private static final class DynamicFieldAttribute implements Serializable {
+		private static final long serialVersionUID = 1L;
+		
 		private final String name;
 		private final RenderParameter val;
 		
@@ -29,6 +29,7 @@ import org.talframework.talui.template.render.elements.SimpleRenderElementBase;
  * @author Tom Spencer
  */
 public class DynamicHandlerAttachment extends SimpleRenderElementBase {
+	private static final long serialVersionUID = 1L;
 
 	private final String propertyName;
 	private final String roleName;
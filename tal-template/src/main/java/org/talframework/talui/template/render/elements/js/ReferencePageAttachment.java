@@ -30,6 +30,7 @@ import org.talframework.talui.template.render.elements.SimpleRenderElementBase;
  * @author Tom Spencer
  */
 public class ReferencePageAttachment extends SimpleRenderElementBase {
+	private static final long serialVersionUID = 1L;
 
 	private final String type;
 	private final String role;
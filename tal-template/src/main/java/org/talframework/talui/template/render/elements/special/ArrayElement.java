@@ -22,6 +22,7 @@ import org.talframework.talui.template.RenderElement;
 import org.talframework.talui.template.RenderModel;
 
 public final class ArrayElement extends BaseMemberElement {
+	private static final long serialVersionUID = 1L;
 
 	private boolean showIfNull = false;
 	
@@ -54,7 +55,7 @@ public final class ArrayElement extends BaseMemberElement {
 		if( arr != null && arr.length > 0 ) {
 			if( name != null ) model.pushNode(name, -1);
 			for( int i = 0 ; i < arr.length ; i++ ) {
-				model.pushNode(Integer.toString(i), i); 
+				model.pushNode(Integer.toString(i), i, arr[i]); 
 				renderTemplate(model);
 				model.popNode();
 			}
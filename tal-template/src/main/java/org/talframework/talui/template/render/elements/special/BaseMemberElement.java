@@ -35,6 +35,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public abstract class BaseMemberElement implements RenderElement {
+	private static final long serialVersionUID = 1L;
 
 	private final String name;
 	private final RenderElement template;
@@ -24,6 +24,7 @@ import org.talframework.talui.template.RenderElement;
 import org.talframework.talui.template.RenderModel;
 
 public final class CollectionElement extends BaseMemberElement {
+	private static final long serialVersionUID = 1L;
 
 	private boolean showIfNull = false;
 	
@@ -47,7 +48,8 @@ public final class CollectionElement extends BaseMemberElement {
 
 	/**
 	 * Iterates around the collection and invokes render on
-	 * the template.
+	 * the template. Each member is pushed as the node directly
+	 * so the collection is only iterated once.
 	 */
 	public void render(RenderModel model) throws IOException {
 		Collection<? extends Object> coll = getCollection(model);
@@ -58,8 +60,7 @@ public final class CollectionElement extends BaseMemberElement {
 			int index = 0;
 			Iterator<? extends Object> it = coll.iterator();
 			while( it.hasNext() ) {
-				it.next();
-				model.pushNode(Integer.toString(index), index);
+				model.pushNode(Integer.toString(index), index, it.next());
 				renderTemplate(model);
 				model.popNode();
 				index++;
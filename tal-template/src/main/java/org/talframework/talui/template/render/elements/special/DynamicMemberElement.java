@@ -32,6 +32,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public final class DynamicMemberElement extends MemberElement {
+	private static final long serialVersionUID = 1L;
 
 	private final ArrayElement arrayElement;
 	private final CollectionElement collElement;
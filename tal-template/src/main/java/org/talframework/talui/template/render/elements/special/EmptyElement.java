@@ -26,5 +26,6 @@ import org.talframework.talui.template.render.elements.AbstractRenderElement;
  * @author Tom Spencer
  */
 public final class EmptyElement extends AbstractRenderElement {
+	private static final long serialVersionUID = 1L;
 
 }
@@ -24,6 +24,7 @@ import org.talframework.talui.template.RenderElement;
 import org.talframework.talui.template.RenderModel;
 
 public final class MapElement extends BaseMemberElement {
+	private static final long serialVersionUID = 1L;
 
 	private String keyIfNull = null;
 	
@@ -54,11 +55,11 @@ public final class MapElement extends BaseMemberElement {
 		
 		if( map != null && map.size() > 0 ) {
 			if( name != null ) model.pushNode(name, -1);
-			Iterator<? extends Object> it = map.keySet().iterator();
+			Iterator<? extends Map.Entry<?, ?>> it = map.entrySet().iterator();
 			int index = 0;
 			while( it.hasNext() ) {
-				Object key = it.next();
-				model.pushNode(key.toString(), index); 
+				Map.Entry<?, ?> entry = it.next();
+				model.pushNode(entry.getKey().toString(), index, entry.getValue()); 
 				renderTemplate(model);
 				model.popNode();
 				index++;
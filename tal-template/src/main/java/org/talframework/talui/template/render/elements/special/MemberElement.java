@@ -29,6 +29,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public class MemberElement extends BaseMemberElement {
+	private static final long serialVersionUID = 1L;
 
 	/** Determines if we should show if null */
 	private boolean showIfNull = false;
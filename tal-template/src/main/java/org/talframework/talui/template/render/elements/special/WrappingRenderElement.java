@@ -30,6 +30,7 @@ import org.talframework.talui.template.RenderModel;
  * @author Tom Spencer
  */
 public class WrappingRenderElement implements RenderElement {
+	private static final long serialVersionUID = 1L;
 
 	private RenderElement primaryElement = null;
 	private RenderElement secondaryElement = null;
@@ -63,4 +64,18 @@ public class WrappingRenderElement implements RenderElement {
 	public void render(RenderModel model) throws IOException {
 		primaryElement.render(model);
 	}
+	
+	/**
+	 * @return The primary (wrapping) element
+	 */
+	public RenderElement getPrimaryElement() {
+		return primaryElement;
+	}
+	
+	/**
+	 * @return The inner element
+	 */
+	public RenderElement getSecondaryElement() {
+		return secondaryElement;
+	}
 }
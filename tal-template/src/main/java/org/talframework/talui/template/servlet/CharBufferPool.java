@@ -0,0 +1,95 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.servlet;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class holds a pool of character buffers so that each
+ * request does not allocate (and then throw away) its own 
+ * output buffer. The pool never holds more than maxPooled
+ * buffers, if more are in use at once then extra buffers are
+ * created and simply dropped when released.
+ * 
+ * @author Tom Spencer
+ */
+public final class CharBufferPool {
+	
+	/** The size of each buffer */
+	private final int bufferSize;
+	/** The maximum number of buffers held in the pool */
+	private final int maxPooled;
+	/** The free buffers */
+	private final Queue<char[]> buffers = new ConcurrentLinkedQueue<char[]>();
+	/** The number of free buffers (size on the queue is not constant time) */
+	private final AtomicInteger pooled = new AtomicInteger();
+	
+	/**
+	 * Constructs the pool
+	 * 
+	 * @param bufferSize The size of each buffer
+	 * @param maxPooled The maximum number of buffers to hold
+	 */
+	public CharBufferPool(int bufferSize, int maxPooled) {
+		if( bufferSize <= 0 ) throw new IllegalArgumentException("The buffer size must be greater than 0");
+		
+		this.bufferSize = bufferSize;
+		this.maxPooled = maxPooled;
+	}
+	
+	/**
+	 * Call to get a buffer from the pool, creating one if the
+	 * pool is empty.
+	 * 
+	 * @return The buffer
+	 */
+	public char[] getBuffer() {
+		char[] ret = buffers.poll();
+		if( ret != null ) pooled.decrementAndGet();
+		else ret = new char[bufferSize];
+		return ret;
+	}
+	
+	/**
+	 * Call to return a buffer to the pool. The buffer must not
+	 * be used by the caller afterwards.
+	 * 
+	 * @param buffer The buffer to release
+	 */
+	public void releaseBuffer(char[] buffer) {
+		if( buffer == null || buffer.length != bufferSize ) return;
+		
+		if( pooled.incrementAndGet() <= maxPooled ) buffers.offer(buffer);
+		else pooled.decrementAndGet();
+	}
+	
+	/**
+	 * @return The size of the buffers
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+	
+	/**
+	 * @return The number of free buffers currently held
+	 */
+	public int getPooled() {
+		return pooled.get();
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * This writer collects the rendered output in a pooled character
+ * buffer and writes it to the response in large chunks, rather
+ * than the many small writes a render makes going straight to 
+ * the response.
+ * 
+ * <p>If the whole render fits inside the buffer then the response
+ * is written in one go with a Content-Length header. Otherwise the
+ * buffer is written out each time it fills. An early flush size
+ * can be given so that the first part of the output is sent to the
+ * client as soon as it is available.</p>
+ * 
+ * <p>When the servlet has been included from another servlet the 
+ * writer of the response is used and no headers are set (gzip is
+ * not possible). Otherwise the output stream is used and the 
+ * output is optionally gzipped.</p>
+ * 
+ * <p>A writer must only be used for a single request. The caller
+ * must call close at the end of a successful render and release
+ * in all cases to return the buffer to the pool.</p>
+ * 
+ * @author Tom Spencer
+ */
+public final class ChunkedResponseWriter extends Writer {
+	
+	/** The response we are writing to */
+	private final HttpServletResponse response;
+	/** True if we are the main response (i.e. not included) */
+	private final boolean direct;
+	/** True if the output should be gzipped (only if direct) */
+	private final boolean gzip;
+	/** The statistics to record into (optional) */
+	private final RenderOutputStatistics stats;
+	/** The pool the buffer came from */
+	private final CharBufferPool pool;
+	
+	/** The buffer */
+	private char[] buffer;
+	/** The number of characters in the buffer */
+	private int count = 0;
+	/** The size after which the output is first flushed (0 = none) */
+	private int earlyFlushSize;
+	/** The total number of characters written */
+	private long total = 0;
+	/** The writer output is sent to once we start to flush chunks */
+	private Writer out = null;
+	/** The gzip stream (if gzipping) */
+	private GZIPOutputStream gzipStream = null;
+	
+	/**
+	 * Constructs the writer
+	 * 
+	 * @param response The response
+	 * @param pool The pool to get the buffer from
+	 * @param direct True if not included from another servlet
+	 * @param gzip True if the output should be gzipped
+	 * @param earlyFlushSize The number of characters after which to first flush (0 = off)
+	 * @param stats The statistics to record into (may be null)
+	 */
+	public ChunkedResponseWriter(HttpServletResponse response, CharBufferPool pool, boolean direct, boolean gzip, int earlyFlushSize, RenderOutputStatistics stats) {
+		this.response = response;
+		this.pool = pool;
+		this.direct = direct;
+		this.gzip = direct && gzip;
+		this.earlyFlushSize = earlyFlushSize > 0 && earlyFlushSize < pool.getBufferSize() ? earlyFlushSize : 0;
+		this.stats = stats;
+		this.buffer = pool.getBuffer();
+	}
+	
+	@Override
+	public void write(int c) throws IOException {
+		ensureOpen();
+		if( count == buffer.length ) flushBuffer();
+		buffer[count++] = (char)c;
+		total++;
+		if( earlyFlushSize > 0 && count >= earlyFlushSize ) earlyFlush();
+	}
+	
+	@Override
+	public void write(char[] cbuf, int off, int len) throws IOException {
+		ensureOpen();
+		total += len;
+		while( len > 0 ) {
+			if( count == buffer.length ) flushBuffer();
+			
+			int n = Math.min(len, buffer.length - count);
+			System.arraycopy(cbuf, off, buffer, count, n);
+			count += n;
+			off += n;
+			len -= n;
+		}
+		if( earlyFlushSize > 0 && count >= earlyFlushSize ) earlyFlush();
+	}
+	
+	@Override
+	public void write(String str, int off, int len) throws IOException {
+		ensureOpen();
+		total += len;
+		while( len > 0 ) {
+			if( count == buffer.length ) flushBuffer();
+			
+			int n = Math.min(len, buffer.length - count);
+			str.getChars(off, off + n, buffer, count);
+			count += n;
+			off += n;
+			len -= n;
+		}
+		if( earlyFlushSize > 0 && count >= earlyFlushSize ) earlyFlush();
+	}
+	
+	/**
+	 * Writes out any buffered output to the response. After 
+	 * this the response can no longer be written with a 
+	 * content length.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		flushBuffer();
+		out.flush();
+	}
+	
+	/**
+	 * Completes the response. If nothing has been flushed yet
+	 * the whole output is written with a content length.
+	 * This does not release the buffer.
+	 */
+	@Override
+	public void close() throws IOException {
+		if( buffer == null ) return;
+		
+		boolean singleBuffer = out == null && direct;
+		if( singleBuffer ) {
+			writeSingle();
+		}
+		else {
+			flushBuffer();
+			if( gzipStream != null ) {
+				out.flush();
+				gzipStream.finish();
+			}
+			out.flush();
+		}
+		
+		if( stats != null ) stats.recordResponse(total, singleBuffer, gzip);
+		release();
+	}
+	
+	/**
+	 * Returns the buffer to the pool. Any output not already
+	 * written is lost. This can be called any number of times.
+	 */
+	public void release() {
+		if( buffer != null ) {
+			pool.releaseBuffer(buffer);
+			buffer = null;
+		}
+	}
+	
+	/**
+	 * @return The total number of characters written so far
+	 */
+	public long getTotal() {
+		return total;
+	}
+	
+	/**
+	 * Flushes the first part of the output, turning off
+	 * early flushing after this.
+	 */
+	private void earlyFlush() throws IOException {
+		earlyFlushSize = 0;
+		flush();
+	}
+	
+	/**
+	 * Writes the contents of the buffer to the response
+	 * opening up the response writer if needed.
+	 */
+	private void flushBuffer() throws IOException {
+		if( out == null ) open();
+		
+		if( count > 0 ) {
+			out.write(buffer, 0, count);
+			count = 0;
+			if( stats != null ) stats.recordFlush();
+		}
+	}
+	
+	/**
+	 * Opens up the writer to send chunks to
+	 */
+	private void open() throws IOException {
+		if( !direct ) {
+			out = response.getWriter();
+			return;
+		}
+		
+		OutputStream stream = new CountingOutputStream(response.getOutputStream());
+		if( gzip ) {
+			response.setHeader("Content-Encoding", "gzip");
+			gzipStream = new GZIPOutputStream(stream, 1024);
+			stream = gzipStream;
+		}
+		out = new OutputStreamWriter(stream, response.getCharacterEncoding());
+	}
+	
+	/**
+	 * Writes the entire output, which is in the buffer, with
+	 * a content length.
+	 */
+	private void writeSingle() throws IOException {
+		byte[] bytes = new String(buffer, 0, count).getBytes(response.getCharacterEncoding());
+		
+		if( gzip ) {
+			ByteArrayOutputStream zipped = new ByteArrayOutputStream(bytes.length / 2 + 32);
+			GZIPOutputStream zip = new GZIPOutputStream(zipped);
+			zip.write(bytes);
+			zip.close();
+			bytes = zipped.toByteArray();
+			response.setHeader("Content-Encoding", "gzip");
+		}
+		
+		response.setContentLength(bytes.length);
+		response.getOutputStream().write(bytes);
+		count = 0;
+		
+		if( stats != null ) {
+			stats.recordFlush();
+			stats.recordBytes(bytes.length);
+		}
+	}
+	
+	/**
+	 * Ensures we are still open
+	 */
+	private void ensureOpen() throws IOException {
+		if( buffer == null ) throw new IOException("The response writer has been closed");
+	}
+	
+	/**
+	 * Simple stream that counts the bytes written into the stats
+	 * 
+	 * @author Tom Spencer
+	 */
+	private class CountingOutputStream extends FilterOutputStream {
+		
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+		
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			if( stats != null ) stats.recordBytes(1);
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);
+			if( stats != null ) stats.recordBytes(len);
+		}
+	}
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.servlet;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class holds simple counters about the output written by
+ * the {@link ChunkedResponseWriter}s of a servlet. These can be
+ * used to tune the buffer size and the early flush setting, for
+ * instance if most responses require several flushes the buffer
+ * size is probably too small.
+ * 
+ * @author Tom Spencer
+ */
+public final class RenderOutputStatistics {
+
+	/** The number of responses written */
+	private final AtomicLong responses = new AtomicLong();
+	/** The number of responses written from a single buffer with a content length */
+	private final AtomicLong singleBufferResponses = new AtomicLong();
+	/** The number of responses that were gzipped */
+	private final AtomicLong gzipResponses = new AtomicLong();
+	/** The number of chunks flushed to the response */
+	private final AtomicLong flushes = new AtomicLong();
+	/** The number of characters rendered */
+	private final AtomicLong charsWritten = new AtomicLong();
+	/** The number of bytes written (excludes included responses where the bytes are unknown) */
+	private final AtomicLong bytesWritten = new AtomicLong();
+	
+	/**
+	 * Records a completed response
+	 * 
+	 * @param chars The number of characters rendered
+	 * @param singleBuffer True if the response was written from a single buffer
+	 * @param gzip True if the response was gzipped
+	 */
+	void recordResponse(long chars, boolean singleBuffer, boolean gzip) {
+		responses.incrementAndGet();
+		charsWritten.addAndGet(chars);
+		if( singleBuffer ) singleBufferResponses.incrementAndGet();
+		if( gzip ) gzipResponses.incrementAndGet();
+	}
+	
+	/**
+	 * Records a flush of a chunk to the response
+	 */
+	void recordFlush() {
+		flushes.incrementAndGet();
+	}
+	
+	/**
+	 * Records bytes being written to the response
+	 * 
+	 * @param bytes The number of bytes
+	 */
+	void recordBytes(long bytes) {
+		bytesWritten.addAndGet(bytes);
+	}
+	
+	/**
+	 * Resets all the counters
+	 */
+	public void reset() {
+		responses.set(0);
+		singleBufferResponses.set(0);
+		gzipResponses.set(0);
+		flushes.set(0);
+		charsWritten.set(0);
+		bytesWritten.set(0);
+	}
+	
+	/**
+	 * @return The number of responses written
+	 */
+	public long getResponses() {
+		return responses.get();
+	}
+	
+	/**
+	 * @return The number of responses written from a single buffer
+	 */
+	public long getSingleBufferResponses() {
+		return singleBufferResponses.get();
+	}
+	
+	/**
+	 * @return The number of gzipped responses
+	 */
+	public long getGzipResponses() {
+		return gzipResponses.get();
+	}
+	
+	/**
+	 * @return The number of chunks flushed to the response
+	 */
+	public long getFlushes() {
+		return flushes.get();
+	}
+	
+	/**
+	 * @return The number of characters rendered
+	 */
+	public long getCharsWritten() {
+		return charsWritten.get();
+	}
+	
+	/**
+	 * @return The number of bytes written
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+	
+	@Override
+	public String toString() {
+		return "RenderOutputStatistics: responses=" + getResponses() + 
+			", singleBuffer=" + getSingleBufferResponses() + 
+			", gzip=" + getGzipResponses() + 
+			", flushes=" + getFlushes() + 
+			", chars=" + getCharsWritten() + 
+			", bytes=" + getBytesWritten();
+	}
+}
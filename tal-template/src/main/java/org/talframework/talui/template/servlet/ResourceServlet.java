@@ -16,14 +16,18 @@
 
 package org.talframework.talui.template.servlet;
 
-import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
-import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -37,6 +41,17 @@ import org.talframework.tal.aspects.annotations.HttpTrace;
  * to build UI components independantly of the final application
  * so that could intermix the same UI in multiple wars.
  * 
+ * <p>Each resource is looked up once and then held as a 
+ * {@link StaticResource}. Resources up to maxResourceSize
+ * (default 256K) are held in memory with a strong ETag and,
+ * for text resources, a gzipped copy with its own ETag. The
+ * servlet answers If-None-Match and If-Modified-Since with a 304
+ * and supports single byte ranges (which are always sent
+ * uncompressed). Larger file resources are sent from the file
+ * using its channel and other large resources are streamed from
+ * their URL. If the dev.env system property is set nothing is
+ * held so changes are picked up.</p>
+ * 
  * FUTURE: If failure, client is caching this and not re-requesting
  * 
  * @author Tom Spencer
@@ -46,15 +61,32 @@ public class ResourceServlet extends HttpServlet {
 	
 	/** Member holds valid file extensions for resources we will serve up */
 	private String[] validExtensions = new String[]{".css", ".js", ".properties", ".xml", ".png", ".gif", ".jpg"};
+	/** Member holds the file extensions of resources that are worth compressing */
+	private String[] compressExtensions = new String[]{".css", ".js", ".properties", ".xml"};
 	/** Member holds the startup time of the servlet, used if cannot get last modified from resource */
 	private long startupTime = 0L;
+	/** The maximum size of resource held in memory */
+	private int maxResourceSize = 256 * 1024;
+	/** The resources found so far */
+	private final ConcurrentMap<String, StaticResource> resources = new ConcurrentHashMap<String, StaticResource>();
 	
 	/**
 	 * Overridden to set the startup time which we use to stamp resources with
 	 */
 	public void init() throws ServletException {
-		this.startupTime = System.currentTimeMillis();
+		this.startupTime = (System.currentTimeMillis() / 1000) * 1000;
 		super.init();
+		
+		ServletConfig config = getServletConfig();
+		String size = config != null ? config.getInitParameter("maxResourceSize") : null;
+		if( size != null ) {
+			try {
+				maxResourceSize = Integer.parseInt(size.trim());
+			}
+			catch( NumberFormatException e ) {
+				throw new ServletException("The resource servlet requires a numeric maxResourceSize setting: " + size, e);
+			}
+		}
 	}
 
 	/**
@@ -75,43 +107,155 @@ public class ResourceServlet extends HttpServlet {
         }
         
         /* find the resource */
-        URL resource = Thread.currentThread().getContextClassLoader().getResource(path.substring(1));
+        StaticResource resource = getResource(path);
         if (resource == null) {
         	response.sendError(404, path + " not found on classpath");
             return;
-        } 
-        else {
-            /* check modification date */
-            URLConnection connection = resource.openConnection();
-            if( Boolean.getBoolean("dev.env") ) connection.setUseCaches(false);
-            // NOTE: Not checking last modified servlet is reloaded if we change
-            
-            /* write to response */
-            response.setContentType(getServletContext().getMimeType(path));
-            OutputStream out = new BufferedOutputStream(response.getOutputStream(), 512);
-            InputStream in = new BufferedInputStream(resource.openStream(), 512);
-            try {
-                int len;
-                byte[] data = new byte[512];
-                while( (len = in.read(data)) != -1 ) {
-                    out.write(data, 0, len);
-                }
-            } 
-            finally {
-                out.close();
-                in.close();
-                if (connection.getInputStream() != null) {
-                    connection.getInputStream().close();
-                }
-            }
         }
+        
+        /* range requests, ignored if If-Range does not match */
+        long[] range = null;
+        boolean unsatisfiable = false;
+        String rangeHeader = request.getHeader("Range");
+        String ifRange = request.getHeader("If-Range");
+        if( rangeHeader != null && (ifRange == null || ifRange.equals(resource.getEtag())) ) {
+        	try {
+        		range = StaticResource.getRange(rangeHeader, resource.getLength());
+        	}
+        	catch( IllegalArgumentException e ) {
+        		unsatisfiable = true;
+        	}
+        }
+        
+        /* gzipped if we can, but never for a range */
+        boolean gzip = false;
+        if( resource.getGzipped() != null ) {
+        	response.setHeader("Vary", "Accept-Encoding");
+        	String accept = request.getHeader("Accept-Encoding");
+        	gzip = range == null && !unsatisfiable && accept != null && accept.indexOf("gzip") >= 0;
+        }
+        
+        /* check the ETag of the variant we would send */
+        String etag = gzip ? resource.getGzipEtag() : resource.getEtag();
+        response.setHeader("ETag", etag);
+        response.setHeader("Accept-Ranges", "bytes");
+        String match = request.getHeader("If-None-Match");
+        if( match != null && (match.indexOf(etag) >= 0 || match.trim().equals("*")) ) {
+        	response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        	return;
+        }
+        
+        if( unsatisfiable ) {
+        	response.setHeader("Content-Range", "bytes */" + resource.getLength());
+        	response.sendError(416);
+        	return;
+        }
+        
+        response.setContentType(resource.getContentType());
+        
+        if( range != null ) {
+        	long len = range[1] - range[0] + 1;
+        	response.setStatus(206);
+        	response.setHeader("Content-Range", "bytes " + range[0] + "-" + range[1] + "/" + resource.getLength());
+        	response.setContentLength((int)len);
+        	writeContent(resource, range[0], len, response.getOutputStream());
+        	return;
+        }
+        
+        if( gzip ) {
+        	response.setHeader("Content-Encoding", "gzip");
+        	response.setContentLength(resource.getGzipped().length);
+        	response.getOutputStream().write(resource.getGzipped());
+        	return;
+        }
+        
+        response.setContentLength((int)resource.getLength());
+        writeContent(resource, 0, resource.getLength(), response.getOutputStream());
     }
 	
 	/**
-	 * Overridden to determine if neccessary to get the resource
+	 * Overridden to return the last modified of the resource
 	 */
 	protected long getLastModified(HttpServletRequest req) {
-		return this.startupTime;
+		String path = req.getPathInfo();
+		StaticResource resource = path != null ? resources.get(path) : null;
+		return resource != null ? resource.getLastModified() : this.startupTime;
+	}
+	
+	/**
+	 * Gets the resource, finding and holding it if not held.
+	 * 
+	 * @param path The path to the resource
+	 * @return The resource or null if it does not exist
+	 */
+	protected StaticResource getResource(String path) throws IOException {
+		boolean dev = Boolean.getBoolean("dev.env");
+		StaticResource ret = dev ? null : resources.get(path);
+		if( ret != null ) return ret;
+		
+		URL url = Thread.currentThread().getContextClassLoader().getResource(path.substring(1));
+		if( url == null ) return null;
+		
+		ret = new StaticResource(path, url, getServletContext().getMimeType(path), startupTime, maxResourceSize, isCompressible(path));
+		if( !dev ) {
+			StaticResource existing = resources.putIfAbsent(path, ret);
+			if( existing != null ) ret = existing;
+		}
+		return ret;
+	}
+	
+	/**
+	 * Writes all or part of the resource to the output
+	 * 
+	 * @param resource The resource
+	 * @param start The first byte to write
+	 * @param len The number of bytes to write
+	 * @param out The output
+	 */
+	private void writeContent(StaticResource resource, long start, long len, OutputStream out) throws IOException {
+		if( resource.isHeld() ) {
+			out.write(resource.getContent(), (int)start, (int)len);
+		}
+		else if( resource.getFile() != null ) {
+			FileInputStream in = new FileInputStream(resource.getFile());
+			try {
+				FileChannel channel = in.getChannel();
+				WritableByteChannel target = Channels.newChannel(out);
+				long pos = start;
+				long remaining = len;
+				while( remaining > 0 ) {
+					long n = channel.transferTo(pos, remaining, target);
+					if( n <= 0 ) break;
+					pos += n;
+					remaining -= n;
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
+		else {
+			InputStream in = resource.getUrl().openStream();
+			try {
+				long skipped = 0;
+				while( skipped < start ) {
+					long n = in.skip(start - skipped);
+					if( n <= 0 ) break;
+					skipped += n;
+				}
+				
+				byte[] data = new byte[8192];
+				long remaining = len;
+				int n;
+				while( remaining > 0 && (n = in.read(data, 0, (int)Math.min(data.length, remaining))) != -1 ) {
+					out.write(data, 0, n);
+					remaining -= n;
+				}
+			}
+			finally {
+				in.close();
+			}
+		}
 	}
 	
 	/**
@@ -121,10 +265,27 @@ public class ResourceServlet extends HttpServlet {
 	 * @return
 	 */
 	protected boolean isValidExtension(String path) {
+		return endsWith(path, validExtensions);
+	}
+	
+	/**
+	 * Determines if the resource is worth compressing
+	 * 
+	 * @param path
+	 * @return
+	 */
+	protected boolean isCompressible(String path) {
+		return endsWith(path, compressExtensions);
+	}
+	
+	/**
+	 * Internal helper to determine if path has one of the extensions
+	 */
+	private boolean endsWith(String path, String[] extensions) {
 		boolean ret = false;
 		
-		for( int i = 0 ; i < validExtensions.length ; i++ ) {
-			if( path.endsWith(validExtensions[i]) ) {
+		for( int i = 0 ; i < extensions.length ; i++ ) {
+			if( path.endsWith(extensions[i]) ) {
 				ret = true;
 				break;
 			}
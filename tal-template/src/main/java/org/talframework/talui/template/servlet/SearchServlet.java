@@ -17,27 +17,72 @@
 package org.talframework.talui.template.servlet;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.security.Principal;
 import java.util.Enumeration;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 
+import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.talframework.tal.aspects.annotations.HttpTrace;
+import org.talframework.talui.template.render.codes.CacheableCodeTypeFactory;
 import org.talframework.talui.template.render.codes.CodeType;
 import org.talframework.talui.template.render.codes.CodeTypeFactoryLocator;
+import org.talframework.talui.template.render.codes.CodeTypeIndex;
+import org.talframework.talui.util.htmlhelper.JsonCharStripper;
 
 /**
  * This standard servlet serves up code types dynamically given
  * the parameters submitted.
  * 
+ * <p>The servlet searches a {@link CodeTypeIndex} of the code
+ * type, which is built on first use and then held for the
+ * given type, locale and parameters (and user unless the factory
+ * is a {@link CacheableCodeTypeFactory}). The index is rebuilt
+ * after indexTimeout seconds (default 300) so changes to the 
+ * codes are seen. No more than maxIndexes (default 200) are 
+ * held, the least recently used being dropped. The number of
+ * results can be restricted with the limit parameter.</p>
+ * 
  * @author Tom Spencer
  */
 public class SearchServlet extends HttpServlet {
 	private static final long serialVersionUID = 1L;
+	
+	/** The time in ms an index is held for */
+	private long indexTimeout = 300000;
+	/** The maximum number of indexes held */
+	private int maxIndexes = 200;
+	/** The indexes keyed by type, locale, user and parameters (in access order, guarded by itself) */
+	@SuppressWarnings("serial")
+	private final Map<String, IndexEntry> indexes = new LinkedHashMap<String, IndexEntry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, IndexEntry> eldest) {
+			return size() > maxIndexes;
+		}
+	};
+	
+	@Override
+	public void init(ServletConfig config) throws ServletException {
+		super.init(config);
+		
+		try {
+			String val = config.getInitParameter("indexTimeout");
+			if( val != null ) indexTimeout = Long.parseLong(val.trim()) * 1000;
+			val = config.getInitParameter("maxIndexes");
+			if( val != null ) maxIndexes = Integer.parseInt(val.trim());
+		}
+		catch( NumberFormatException e ) {
+			throw new ServletException("The search servlet requires numeric indexTimeout and maxIndexes settings", e);
+		}
+	}
 
 	@SuppressWarnings("unchecked")
 	@Override
@@ -47,6 +92,7 @@ public class SearchServlet extends HttpServlet {
 		String prefix = req.getParameter("q");
 		String typeName = req.getPathInfo();
 		if( typeName.charAt(0) == '/' ) typeName = typeName.substring(1);
+		int limit = getLimit(req.getParameter("limit"));
 		
 		Map<String, String> params = null;
 		Enumeration e = req.getParameterNames();
@@ -54,31 +100,95 @@ public class SearchServlet extends HttpServlet {
 			String param = (String)e.nextElement();
 			if( !"q".equals(param) && !"type".equals(param) &&
 					!"timestamp".equals(param) && !"limit".equals(param) ) {
-				if( params == null ) params = new HashMap<String, String>();
+				if( params == null ) params = new TreeMap<String, String>();
 				params.put(param, req.getParameter(param));
 			}
 		}
 		
-		StringBuilder buf = new StringBuilder();
-		buf.append("{ \"results\" : [");
-		CodeType type = CodeTypeFactoryLocator.getCodeType(typeName, req.getLocale(), req.getUserPrincipal(), params);
-		if( type != null ) {
-			String[] ids = type.getCodes();
-			boolean first = true;
-			if( ids != null ) {
-				for( int i = 0 ; i < ids.length ; i++ ) {
-					String desc = type.getCodeDescription(ids[i]);
-					if( ids[i].toLowerCase().contains(prefix) || desc.toLowerCase().contains(prefix) ) {
-						if( !first ) buf.append(", ");
-						buf.append("{ \"id\": \"").append(ids[i]).append("\", \"label\": \"").append(desc).append("\" }");
-						first = false;
-					}
-				}
+		CodeTypeIndex index = getIndex(typeName, req.getLocale(), req.getUserPrincipal(), params);
+		
+		resp.setContentType("application/json");
+		Writer writer = resp.getWriter();
+		writer.write("{ \"results\" : [");
+		if( index != null ) {
+			int[] results = index.search(prefix, limit);
+			for( int i = 0 ; i < results.length ; i++ ) {
+				if( i > 0 ) writer.write(", ");
+				writer.write("{ \"id\": \"");
+				JsonCharStripper.escape(index.getCode(results[i]), writer);
+				writer.write("\", \"label\": \"");
+				JsonCharStripper.escape(index.getDescription(results[i]), writer);
+				writer.write("\" }");
 			}
 		}
-		buf.append("]}");
+		writer.write("]}");
+	}
+	
+	/**
+	 * Gets the index for the code type, building it if it is not
+	 * held or has expired.
+	 * 
+	 * @param typeName The name of the code type
+	 * @param locale The locale
+	 * @param user The user
+	 * @param params The additional parameters (if any)
+	 * @return The index or null if there is no code type
+	 */
+	protected CodeTypeIndex getIndex(String typeName, Locale locale, Principal user, Map<String, String> params) {
+		boolean userCodes = !(CodeTypeFactoryLocator.getInstance().getCodeFactory(typeName) instanceof CacheableCodeTypeFactory);
 		
-		resp.setContentType("application/json");
-		resp.getWriter().write(buf.toString());
+		StringBuilder buf = new StringBuilder(typeName).append('|').append(locale);
+		if( userCodes ) buf.append('|').append(user != null ? user.getName() : null);
+		if( params != null ) buf.append('|').append(params);
+		String key = buf.toString();
+		
+		long now = System.currentTimeMillis();
+		IndexEntry entry = null;
+		synchronized( indexes ) {
+			entry = indexes.get(key);
+		}
+		if( entry != null && entry.expires > now ) return entry.index;
+		
+		// Built outside the lock, at worst two threads build the same index
+		CodeType type = CodeTypeFactoryLocator.getCodeType(typeName, locale, user, params);
+		if( type == null ) return null;
+		
+		entry = new IndexEntry(new CodeTypeIndex(type, locale), now + indexTimeout);
+		synchronized( indexes ) {
+			indexes.put(key, entry);
+		}
+		return entry.index;
+	}
+	
+	/**
+	 * Gets the limit on the results
+	 * 
+	 * @param limit The limit parameter
+	 * @return The limit (0 if there is no limit)
+	 */
+	private int getLimit(String limit) {
+		if( limit == null || limit.length() == 0 ) return 0;
+		
+		try {
+			return Math.max(0, Integer.parseInt(limit));
+		}
+		catch( NumberFormatException e ) {
+			throw new IllegalArgumentException("The search limit must be a number: " + limit);
+		}
+	}
+	
+	/**
+	 * Holds an index and the time it expires
+	 *
+	 * @author Tom Spencer
+	 */
+	private static final class IndexEntry {
+		private final CodeTypeIndex index;
+		private final long expires;
+		
+		public IndexEntry(CodeTypeIndex index, long expires) {
+			this.index = index;
+			this.expires = expires;
+		}
 	}
 }
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * This class holds a static resource (typically JS, CSS or an
+ * image) that the {@link ResourceServlet} serves up. Resources 
+ * up to a maximum size are held in memory along with a strong
+ * ETag computed from the content and, for text resources, a
+ * gzipped copy (with its own ETag) if that is smaller. Larger
+ * resources, whatever their URL, are not held; they are served
+ * directly from the file if they are one or else streamed from
+ * the URL.
+ * 
+ * @author Tom Spencer
+ */
+public final class StaticResource {
+	
+	/** The path of the resource */
+	private final String path;
+	/** The content type of the resource */
+	private final String contentType;
+	/** The last modified time of the resource */
+	private final long lastModified;
+	/** The length of the resource */
+	private final long length;
+	/** The strong ETag of the resource */
+	private final String etag;
+	/** The ETag of the gzipped content (if held) */
+	private final String gzipEtag;
+	/** The content (if held in memory) */
+	private final byte[] content;
+	/** The gzipped content (if held in memory and worthwhile) */
+	private final byte[] gzipped;
+	/** The file (if not held in memory and the resource is a file) */
+	private final File file;
+	/** The URL of the resource (always held) */
+	private final URL url;
+	
+	/**
+	 * Constructs the resource reading it from the URL.
+	 * 
+	 * @param path The path of the resource
+	 * @param url The URL to read it from
+	 * @param contentType The content type
+	 * @param defaultLastModified The last modified if it cannot be obtained from the resource
+	 * @param maxSize The maximum size of resource that is held in memory
+	 * @param compress True if the resource should be gzipped
+	 */
+	public StaticResource(String path, URL url, String contentType, long defaultLastModified, int maxSize, boolean compress) throws IOException {
+		this.path = path;
+		this.url = url;
+		this.contentType = contentType;
+		
+		URLConnection connection = url.openConnection();
+		long modified = connection.getLastModified();
+		this.lastModified = modified > 0 ? (modified / 1000) * 1000 : defaultLastModified;
+		
+		File resourceFile = getFile(url);
+		long size = resourceFile != null ? resourceFile.length() : connection.getContentLength();
+		
+		byte[] data = null;
+		if( size <= maxSize ) data = read(connection.getInputStream(), size, maxSize);
+		else connection.getInputStream().close();
+		
+		if( data == null ) {
+			// Length was not known up front, so count it
+			if( size < 0 ) size = count(url);
+			
+			this.content = null;
+			this.gzipped = null;
+			this.file = resourceFile;
+			this.length = size;
+			this.etag = "\"" + Long.toHexString(size) + "-" + Long.toHexString(lastModified) + "\"";
+			this.gzipEtag = null;
+		}
+		else {
+			this.content = data;
+			this.file = null;
+			this.length = content.length;
+			
+			String hash = digest(content);
+			this.etag = "\"" + hash + "\"";
+			
+			byte[] zip = compress ? gzip(content) : null;
+			this.gzipped = zip != null && zip.length < content.length ? zip : null;
+			this.gzipEtag = gzipped != null ? "\"" + hash + "-gz\"" : null;
+		}
+	}
+	
+	/**
+	 * Parses a range header against the resource. Only a single
+	 * range is supported.
+	 * 
+	 * @param header The range header (i.e. bytes=0-99)
+	 * @param length The length of the resource
+	 * @return The start and end (inclusive) or null if the range cannot be understood
+	 * @throws IllegalArgumentException If the range is not satisfiable
+	 */
+	public static long[] getRange(String header, long length) {
+		if( header == null || !header.startsWith("bytes=") || header.indexOf(',') >= 0 ) return null;
+		
+		String spec = header.substring(6).trim();
+		int dash = spec.indexOf('-');
+		if( dash < 0 ) return null;
+		
+		long start = 0;
+		long end = length - 1;
+		try {
+			if( dash == 0 ) {
+				// Suffix range, the last n bytes
+				long suffix = Long.parseLong(spec.substring(1).trim());
+				if( suffix <= 0 ) throw new IllegalArgumentException("Range not satisfiable: " + header);
+				start = Math.max(0, length - suffix);
+			}
+			else {
+				start = Long.parseLong(spec.substring(0, dash).trim());
+				if( dash < spec.length() - 1 ) end = Math.min(end, Long.parseLong(spec.substring(dash + 1).trim()));
+			}
+		}
+		catch( NumberFormatException e ) {
+			return null;
+		}
+		
+		if( start >= length || start > end ) throw new IllegalArgumentException("Range not satisfiable: " + header);
+		return new long[]{start, end};
+	}
+	
+	/**
+	 * @return True if the content is held in memory
+	 */
+	public boolean isHeld() {
+		return content != null;
+	}
+	
+	/**
+	 * @return the path
+	 */
+	public String getPath() {
+		return path;
+	}
+
+	/**
+	 * @return the contentType
+	 */
+	public String getContentType() {
+		return contentType;
+	}
+
+	/**
+	 * @return the lastModified
+	 */
+	public long getLastModified() {
+		return lastModified;
+	}
+
+	/**
+	 * @return the length
+	 */
+	public long getLength() {
+		return length;
+	}
+
+	/**
+	 * @return the etag
+	 */
+	public String getEtag() {
+		return etag;
+	}
+
+	/**
+	 * @return the etag of the gzipped content (null if not gzipped)
+	 */
+	public String getGzipEtag() {
+		return gzipEtag;
+	}
+
+	/**
+	 * @return the content (null if not held)
+	 */
+	public byte[] getContent() {
+		return content;
+	}
+
+	/**
+	 * @return the gzipped content (null if not held or not compressed)
+	 */
+	public byte[] getGzipped() {
+		return gzipped;
+	}
+
+	/**
+	 * @return the file (only if not held and the resource is a file)
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * @return the url
+	 */
+	public URL getUrl() {
+		return url;
+	}
+	
+	/**
+	 * Gets the URL as a file if it is one
+	 */
+	private static File getFile(URL url) {
+		if( !"file".equals(url.getProtocol()) ) return null;
+		
+		try {
+			File ret = new File(url.toURI());
+			return ret.isFile() ? ret : null;
+		}
+		catch( URISyntaxException e ) {
+			return null;
+		}
+		catch( IllegalArgumentException e ) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Reads the whole stream, closing it
+	 * 
+	 * @return The content or null if it is larger than maxSize
+	 */
+	private static byte[] read(InputStream in, long size, int maxSize) throws IOException {
+		try {
+			ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? (int)size : 4096);
+			byte[] buf = new byte[8192];
+			int len;
+			while( (len = in.read(buf)) != -1 ) {
+				if( out.size() + len > maxSize ) return null;
+				out.write(buf, 0, len);
+			}
+			return out.toByteArray();
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Counts the bytes in the resource without holding them
+	 */
+	private static long count(URL url) throws IOException {
+		InputStream in = url.openStream();
+		try {
+			long ret = 0;
+			byte[] buf = new byte[8192];
+			int len;
+			while( (len = in.read(buf)) != -1 ) ret += len;
+			return ret;
+		}
+		finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Gzips the content
+	 */
+	private static byte[] gzip(byte[] content) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2 + 32);
+		GZIPOutputStream zip = new GZIPOutputStream(out);
+		zip.write(content);
+		zip.close();
+		return out.toByteArray();
+	}
+	
+	/**
+	 * Computes the digest of the content as hex
+	 */
+	private static String digest(byte[] content) {
+		try {
+			byte[] hash = MessageDigest.getInstance("MD5").digest(content);
+			StringBuilder buf = new StringBuilder(hash.length * 2);
+			for( int i = 0 ; i < hash.length ; i++ ) {
+				int b = hash[i] & 0xFF;
+				if( b < 16 ) buf.append('0');
+				buf.append(Integer.toHexString(b));
+			}
+			return buf.toString();
+		}
+		catch( NoSuchAlgorithmException e ) {
+			// MD5 is always present, but fall back on the hash code
+			return Integer.toHexString(Arrays.hashCode(content)) + "-" + Integer.toHexString(content.length);
+		}
+	}
+}
@@ -17,6 +17,10 @@
 package org.talframework.talui.template.servlet;
 
 import java.io.IOException;
+import java.io.Writer;
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.Locale;
 import java.util.Map;
 
 import javax.servlet.ServletConfig;
@@ -29,6 +33,7 @@ import org.talframework.tal.aspects.annotations.HttpTrace;
 import org.talframework.tal.aspects.annotations.Trace;
 import org.talframework.talui.template.Renderer;
 import org.talframework.talui.template.TemplateConfiguration;
+import org.talframework.talui.template.core.ParallelTemplateCompiler;
 import org.talframework.talui.template.core.TemplateConfigurationLocator;
 import org.talframework.talui.template.render.SimpleRenderModel;
 import org.talframework.talui.template.render.SpringRenderNodeFactory;
@@ -78,6 +83,19 @@ import org.talframework.talui.template.render.apacheel.ApacheELExpressionEvaluat
  * for _urlGenerator, templateConfig and namepsace. With the exception of
  * the latter, if they are not present then the servlet fails.</p>
  * 
+ * <p>The output is rendered into a pooled buffer and written to the
+ * response in chunks (see {@link ChunkedResponseWriter}). This can
+ * be tuned with the following init parameters:</p>
+ * <ul>
+ * <li>bufferSize - The size of each output buffer in chars (default 8192)
+ * <li>maxPooledBuffers - The maximum buffers held in the pool (default 32)
+ * <li>earlyFlushSize - Chars after which the first output is flushed (default 0, off)
+ * <li>gzip - True to gzip the output if the client accepts it (default false)
+ * <li>statisticsPath - If set, the path that reports the template and output statistics
+ * <li>compileThreads - If set, all registered templates are compiled in parallel on this 
+ * many threads when the servlet starts (0 is one per processor)
+ * </ul>
+ * 
  * @author Tom Spencer
  */
 public class WebTemplateServlet extends HttpServlet {
@@ -85,6 +103,16 @@ public class WebTemplateServlet extends HttpServlet {
 	
 	/** The configured URL Generator Factory */
 	private UrlGeneratorFactory urlGeneratorFactory = null;
+	/** The pool of output buffers */
+	private CharBufferPool bufferPool = null;
+	/** The number of chars after which output is first flushed */
+	private int earlyFlushSize = 0;
+	/** Determines if output is gzipped when the client accepts it */
+	private boolean gzip = false;
+	/** The statistics on the output written */
+	private final RenderOutputStatistics statistics = new RenderOutputStatistics();
+	/** The path (if any) that reports the statistics */
+	private String statisticsPath = null;
 	
 	@Override
 	public void init(ServletConfig config) throws ServletException {
@@ -100,6 +128,32 @@ public class WebTemplateServlet extends HttpServlet {
 		catch( Exception e ) {
 			throw new ServletException("The template servlet requires a valid urlGeneratorFactoryClass setting: " + e.getMessage(), e);
 		}
+		
+		bufferPool = new CharBufferPool(getIntParameter(config, "bufferSize", 8192), getIntParameter(config, "maxPooledBuffers", 32));
+		earlyFlushSize = getIntParameter(config, "earlyFlushSize", 0);
+		gzip = Boolean.valueOf(config.getInitParameter("gzip")).booleanValue();
+		statisticsPath = config.getInitParameter("statisticsPath");
+		
+		int compileThreads = getIntParameter(config, "compileThreads", -1);
+		if( compileThreads >= 0 ) compileTemplates(compileThreads);
+	}
+	
+	/**
+	 * Compiles all the registered templates in parallel, logging
+	 * the time taken to compile each renderer.
+	 * 
+	 * @param threads The number of threads (0 is one per processor)
+	 */
+	protected void compileTemplates(int threads) {
+		ParallelTemplateCompiler compiler = new ParallelTemplateCompiler(threads);
+		Map<String, Long> timings = compiler.compileAll();
+		
+		Iterator<String> it = timings.keySet().iterator();
+		while( it.hasNext() ) {
+			String renderer = it.next();
+			log("Compiled " + renderer + " in " + timings.get(renderer) + "ms");
+		}
+		log("Compiled " + timings.size() + " renderers in " + compiler.getElapsed() + "ms");
 	}
 	
 	/*
@@ -110,6 +164,10 @@ public class WebTemplateServlet extends HttpServlet {
 	@HttpTrace
 	protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
 		String path = getTemplatePath(req);
+		if( statisticsPath != null && statisticsPath.equals(path) ) {
+			writeStatistics(resp);
+			return;
+		}
 		
 		String name = getTemplateName(path);
 		String renderType = getRenderType(path);
@@ -122,27 +180,89 @@ public class WebTemplateServlet extends HttpServlet {
 		if( !config.hasRenderer(renderType) ) throw new IllegalArgumentException("The template servlet has not been provided with a valid render for config: " + renderType);
 		Renderer renderer = config.getRenderer(renderType);
 		
-		SimpleRenderModel renderModel = new SimpleRenderModel(resp.getWriter(), urlGenerator);
-		renderModel.setEvaluator(new ApacheELExpressionEvaluator());
-		if( namespace != null ) renderModel.setNamespace(namespace);
-		renderModel.setLocale(req.getLocale());
-		renderModel.setUser(req.getUserPrincipal());
-		renderModel.setBundle(config.getResourceName());
+		boolean direct = req.getAttribute("javax.servlet.include.request_uri") == null;
+		boolean gzipOutput = direct && gzip && acceptsGzip(req);
+		if( direct && gzip ) resp.setHeader("Vary", "Accept-Encoding");
+		ChunkedResponseWriter writer = new ChunkedResponseWriter(resp, bufferPool, direct, gzipOutput, earlyFlushSize, statistics);
 		
-		// Add in the model if we are a model renderer
-		Map<String, Object> model = null;
-		if( renderer.isModelRenderer() ) {
-			model = getModel(req);
-			if( model != null ) renderModel.setModel(model);
-			renderModel.setNodeFactory(SpringRenderNodeFactory.getInstance());
-		}
+		Map<String, Object> model = renderer.isModelRenderer() ? getModel(req) : null;
+		SimpleRenderModel renderModel = createRenderModel(writer, urlGenerator, config, renderer, namespace, req.getLocale(), req.getUserPrincipal(), model);
 		
 		try {
 			renderer.render(renderModel);
+			writer.close();
 		}
 		catch( Exception ex ) {
 			throw new ServletException(ex);
 		}
+		finally {
+			writer.release();
+		}
+	}
+	
+	/**
+	 * Creates the render model used to render a template. This
+	 * is also used to render templates outside of this servlet 
+	 * (i.e. when windows are rendered in parallel).
+	 * 
+	 * @param writer The writer to render to
+	 * @param urlGenerator The URL generator
+	 * @param config The template configuration
+	 * @param renderer The renderer that will be used
+	 * @param namespace The namespace (optional)
+	 * @param locale The locale
+	 * @param user The user
+	 * @param model The model, only used if the renderer is a model renderer (optional)
+	 * @return The render model
+	 */
+	public static SimpleRenderModel createRenderModel(Writer writer, UrlGenerator urlGenerator, TemplateConfiguration config, Renderer renderer, String namespace, Locale locale, Principal user, Map<String, Object> model) {
+		SimpleRenderModel ret = new SimpleRenderModel(writer, urlGenerator);
+		ret.setEvaluator(new ApacheELExpressionEvaluator());
+		if( namespace != null ) ret.setNamespace(namespace);
+		ret.setLocale(locale);
+		ret.setUser(user);
+		ret.setBundle(config.getResourceName());
+		
+		// Add in the model if we are a model renderer
+		if( renderer.isModelRenderer() ) {
+			if( model != null ) ret.setModel(model);
+			ret.setNodeFactory(SpringRenderNodeFactory.getInstance());
+		}
+		
+		return ret;
+	}
+	
+	/**
+	 * Writes out the template statistics and the output 
+	 * statistics as plain text.
+	 * 
+	 * @param resp The response
+	 */
+	protected void writeStatistics(HttpServletResponse resp) throws IOException {
+		resp.setContentType("text/plain");
+		Writer writer = resp.getWriter();
+		TemplateConfigurationLocator.getInstance().writeStatistics(writer);
+		writer.write(statistics.toString());
+		writer.write('\n');
+		writer.flush();
+	}
+	
+	/**
+	 * @return The statistics on the output written by this servlet
+	 */
+	public RenderOutputStatistics getStatistics() {
+		return statistics;
+	}
+	
+	/**
+	 * Determines if the client will accept gzipped output
+	 * 
+	 * @param req The request
+	 * @return True if the client accepts gzip
+	 */
+	protected boolean acceptsGzip(HttpServletRequest req) {
+		String encoding = req.getHeader("Accept-Encoding");
+		return encoding != null && encoding.indexOf("gzip") >= 0;
 	}
 	
 	/**
@@ -244,6 +364,27 @@ public class WebTemplateServlet extends HttpServlet {
 		return path.substring(index + 1);
 	}
 	
+	/**
+	 * Internal helper to get an integer init parameter
+	 * 
+	 * @param config The servlet config
+	 * @param name The name of the parameter
+	 * @param defaultValue The value if the parameter is not set
+	 * @return The value
+	 * @throws ServletException If the parameter is not a number
+	 */
+	private int getIntParameter(ServletConfig config, String name, int defaultValue) throws ServletException {
+		String val = config.getInitParameter(name);
+		if( val == null || val.length() == 0 ) return defaultValue;
+		
+		try {
+			return Integer.parseInt(val.trim());
+		}
+		catch( NumberFormatException e ) {
+			throw new ServletException("The template servlet requires a numeric " + name + " setting: " + val, e);
+		}
+	}
+	
 	/**
 	 * Internal helper to strip a leading / from a path
 	 * 
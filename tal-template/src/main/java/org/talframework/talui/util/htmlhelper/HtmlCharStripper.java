@@ -18,30 +18,56 @@ package org.talframework.talui.util.htmlhelper;
 
 import java.io.IOException;
 import java.io.Writer;
-import java.util.regex.Pattern;
 
 /**
  * This utility class will strip any string of
  * HTML special characters. 
  * 
+ * <p>Each string is scanned once using a lookup table of
+ * the characters to escape. Runs of characters that do not
+ * need escaping are written in bulk, so a string without
+ * any special characters is written in a single call and
+ * nothing is allocated.</p>
+ * 
+ * <p>There are two contexts. Attribute values must escape
+ * quotes as well as the markup characters, whereas text
+ * content only needs to escape the markup characters.
+ * The strip methods escape for the attribute context, which
+ * is safe for both.</p>
+ * 
  * @author Tom Spencer
  */
 public class HtmlCharStripper {
 	
-	private static Pattern htmlPattern = Pattern.compile(".*[&<>\\\\\"]+.*");
+	/** The replacements for characters in attribute values */
+	private static final String[] ATTRIBUTE_ESCAPES = new String[128];
+	/** The replacements for characters in text content */
+	private static final String[] TEXT_ESCAPES = new String[128];
+	static {
+		TEXT_ESCAPES['&'] = "&amp;";
+		TEXT_ESCAPES['<'] = "&lt;";
+		TEXT_ESCAPES['>'] = "&gt;";
+		
+		System.arraycopy(TEXT_ESCAPES, 0, ATTRIBUTE_ESCAPES, 0, TEXT_ESCAPES.length);
+		ATTRIBUTE_ESCAPES['\''] = "&#39;";
+		ATTRIBUTE_ESCAPES['"'] = "&quot;";
+	}
 
 	/**
 	 * Simple method that strips out HTML chars from a 
 	 * string and returns the value.
 	 * 
 	 * @param src The source string
-	 * @return The safe string
+	 * @return The safe string (the source if nothing needed escaping)
 	 */
 	public static String strip(String src) {
 		if( src == null ) return src;
 		
-		StringBuilder buf = new StringBuilder(src.length());
-		strip(src, buf);
+		int first = firstEscape(src, ATTRIBUTE_ESCAPES);
+		if( first < 0 ) return src;
+		
+		StringBuilder buf = new StringBuilder(src.length() + 16);
+		escape(src, first, ATTRIBUTE_ESCAPES, buf);
 		return buf.toString();
 	}
 	
@@ -54,24 +80,7 @@ public class HtmlCharStripper {
 	 * @throws IOException Any exceptions from writer
 	 */
 	public static void strip(String src, Writer writer) throws IOException {
-		if( src == null ) return;
-		
-		// Ensure we need to perform the strip - our test shows this is faster!
-		if( requiresStipping(src) ) {
-			char[] arr = src.toCharArray();
-			for( int i = 0 ; i < arr.length ; i++ ) {
-				if( arr[i] == '&' ) writer.append("&amp;");
-				else if( arr[i] == '<' ) writer.append("&lt;");
-				else if( arr[i] == '>' ) writer.append("&gt;");
-				else if( arr[i] == '\'' ) writer.append("&#39;");
-				else if( arr[i] == '"' ) writer.append("&quot;");
-				else writer.append(arr[i]);
-			}
-		}
-		else {
-			writer.append(src);
-			return;
-		}
+		escapeAttribute(src, writer);
 	}
 	
 	/**
@@ -82,41 +91,128 @@ public class HtmlCharStripper {
 	 * @param buf The StringBuilder to add to
 	 */
 	public static void strip(String src, StringBuilder buf) {
+		escapeAttribute(src, buf);
+	}
+	
+	/**
+	 * Escapes the string for use inside an attribute value
+	 * writing it to the writer.
+	 * 
+	 * @param src The source
+	 * @param writer The writer to append to
+	 * @throws IOException Any exceptions from writer
+	 */
+	public static void escapeAttribute(String src, Writer writer) throws IOException {
 		if( src == null ) return;
-		
-		// Ensure we need to perform the strip - our test shows this is faster!
-		if( requiresStipping(src) ) {
-			char[] arr = src.toCharArray();
-			for( int i = 0 ; i < arr.length ; i++ ) {
-				if( arr[i] == '&' ) buf.append("&amp;");
-				else if( arr[i] == '<' ) buf.append("&lt;");
-				else if( arr[i] == '>' ) buf.append("&gt;");
-				else if( arr[i] == '\'' ) buf.append("&#39;");
-				else if( arr[i] == '"' ) buf.append("&quot;");
-				else buf.append(arr[i]);
-			}
+		escape(src, firstEscape(src, ATTRIBUTE_ESCAPES), ATTRIBUTE_ESCAPES, writer);
+	}
+	
+	/**
+	 * Escapes the string for use inside an attribute value
+	 * adding it to the StringBuilder.
+	 * 
+	 * @param src The source
+	 * @param buf The StringBuilder to add to
+	 */
+	public static void escapeAttribute(String src, StringBuilder buf) {
+		if( src == null ) return;
+		escape(src, firstEscape(src, ATTRIBUTE_ESCAPES), ATTRIBUTE_ESCAPES, buf);
+	}
+	
+	/**
+	 * Escapes the string for use as text content writing it 
+	 * to the writer. Quotes are not escaped.
+	 * 
+	 * @param src The source
+	 * @param writer The writer to append to
+	 * @throws IOException Any exceptions from writer
+	 */
+	public static void escapeText(String src, Writer writer) throws IOException {
+		if( src == null ) return;
+		escape(src, firstEscape(src, TEXT_ESCAPES), TEXT_ESCAPES, writer);
+	}
+	
+	/**
+	 * Escapes the string for use as text content adding it
+	 * to the StringBuilder. Quotes are not escaped.
+	 * 
+	 * @param src The source
+	 * @param buf The StringBuilder to add to
+	 */
+	public static void escapeText(String src, StringBuilder buf) {
+		if( src == null ) return;
+		escape(src, firstEscape(src, TEXT_ESCAPES), TEXT_ESCAPES, buf);
+	}
+	
+	/**
+	 * Internal helper to find the first char that needs escaping.
+	 * 
+	 * @param src The src
+	 * @param escapes The lookup table
+	 * @return The index of the first char to escape or -1 if there are none
+	 */
+	private static int firstEscape(String src, String[] escapes) {
+		int ln = src.length();
+		for( int i = 0 ; i < ln ; i++ ) {
+			char c = src.charAt(i);
+			if( c < 128 && escapes[c] != null ) return i;
 		}
-		else {
-			buf.append(src);
+		return -1;
+	}
+	
+	/**
+	 * Internal helper to write the string out escaping chars
+	 * from the first index onwards.
+	 * 
+	 * @param src The source
+	 * @param first The first char to escape (or -1 if there are none)
+	 * @param escapes The lookup table
+	 * @param writer The writer to append to
+	 */
+	private static void escape(String src, int first, String[] escapes, Writer writer) throws IOException {
+		if( first < 0 ) {
+			writer.write(src);
 			return;
 		}
+		
+		int ln = src.length();
+		int start = 0;
+		for( int i = first ; i < ln ; i++ ) {
+			char c = src.charAt(i);
+			if( c < 128 && escapes[c] != null ) {
+				if( i > start ) writer.write(src, start, i - start);
+				writer.write(escapes[c]);
+				start = i + 1;
+			}
+		}
+		if( start < ln ) writer.write(src, start, ln - start);
 	}
 	
 	/**
-	 * Internal helper to determine if stripping is necc.
+	 * Internal helper to add the string escaping chars from
+	 * the first index onwards.
 	 * 
-	 * @param src The src
-	 * @return True if stripping is required
+	 * @param src The source
+	 * @param first The first char to escape (or -1 if there are none)
+	 * @param escapes The lookup table
+	 * @param buf The StringBuilder to add to
 	 */
-	private static boolean requiresStipping(String src) {
-		return htmlPattern.matcher(src).matches();
-		
-		/*int index = src.indexOf('&');
-		if( index < 0 ) index = src.indexOf('<'); else return true;
-		if( index < 0 ) index = src.indexOf('>'); else return true;
-		if( index < 0 ) index = src.indexOf('\''); else return true;
-		if( index < 0 ) index = src.indexOf('"'); else return true;
+	private static void escape(String src, int first, String[] escapes, StringBuilder buf) {
+		if( first < 0 ) {
+			buf.append(src);
+			return;
+		}
 		
-		return index >= 0;*/
+		int ln = src.length();
+		int start = 0;
+		for( int i = first ; i < ln ; i++ ) {
+			char c = src.charAt(i);
+			if( c < 128 && escapes[c] != null ) {
+				if( i > start ) buf.append(src, start, i);
+				buf.append(escapes[c]);
+				start = i + 1;
+			}
+		}
+		if( start < ln ) buf.append(src, start, ln);
 	}
 }
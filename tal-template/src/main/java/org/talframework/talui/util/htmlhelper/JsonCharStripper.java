@@ -0,0 +1,98 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.util.htmlhelper;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+
+/**
+ * This utility class escapes strings so they can be written
+ * as the value of a JSON string. Quotes, backslashes and all
+ * control characters are escaped. The '<' and '>' characters
+ * and the unicode line separators are also escaped so the 
+ * output is safe inside a script element. Runs of characters
+ * that do not need escaping are written in bulk.
+ * 
+ * @author Tom Spencer
+ */
+public class JsonCharStripper {
+	
+	/** Unicode line separator, valid in JSON but not in Javascript strings */
+	private static final char LINE_SEPARATOR = (char)0x2028;
+	/** Unicode paragraph separator, valid in JSON but not in Javascript strings */
+	private static final char PARAGRAPH_SEPARATOR = (char)0x2029;
+	/** The hex digits for unicode escapes */
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+	
+	/**
+	 * Escapes the string and writes it to the writer. The 
+	 * surrounding quotes are not written.
+	 * 
+	 * @param src The source (nothing is written if null)
+	 * @param writer The writer to append to
+	 * @throws IOException Any exceptions from writer
+	 */
+	public static void escape(String src, Writer writer) throws IOException {
+		if( src == null ) return;
+		
+		int ln = src.length();
+		int start = 0;
+		for( int i = 0 ; i < ln ; i++ ) {
+			char c = src.charAt(i);
+			if( c >= 0x20 && c != '"' && c != '\\' && c != '<' && c != '>' && c != LINE_SEPARATOR && c != PARAGRAPH_SEPARATOR ) continue;
+			
+			if( i > start ) writer.write(src, start, i - start);
+			start = i + 1;
+			
+			switch( c ) {
+			case '"': writer.write("\\\""); break;
+			case '\\': writer.write("\\\\"); break;
+			case '\n': writer.write("\\n"); break;
+			case '\r': writer.write("\\r"); break;
+			case '\t': writer.write("\\t"); break;
+			default:
+				writer.write("\\u");
+				writer.write(HEX[(c >> 12) & 0xF]);
+				writer.write(HEX[(c >> 8) & 0xF]);
+				writer.write(HEX[(c >> 4) & 0xF]);
+				writer.write(HEX[c & 0xF]);
+			}
+		}
+		if( start < ln ) writer.write(src, start, ln - start);
+	}
+	
+	/**
+	 * Escapes the string and returns it.
+	 * 
+	 * @param src The source
+	 * @return The escaped string
+	 */
+	public static String escape(String src) {
+		if( src == null ) return null;
+		
+		StringWriter writer = new StringWriter(src.length() + 16);
+		try {
+			escape(src, writer);
+		}
+		catch( IOException e ) {
+			// Cannot happen with a StringWriter
+			throw new IllegalStateException("Failed to write to string", e);
+		}
+		return writer.toString();
+	}
+}
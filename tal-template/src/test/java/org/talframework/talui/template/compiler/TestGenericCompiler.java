@@ -16,7 +16,9 @@
 
 package org.talframework.talui.template.compiler;
 
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -48,6 +50,7 @@ public class TestGenericCompiler {
 	private TemplateRenderMold defaultMold = null;
 	private TemplateConfiguration config = null;
 	private Template root = null;
+	private Map<String, Template> templates = null;
 	
 	@SuppressWarnings("serial")
 	@Before
@@ -60,7 +63,7 @@ public class TestGenericCompiler {
 		
 		config = context.mock(TemplateConfiguration.class);
 		root = context.mock(Template.class);
-		final Map<String, Template> templates = new HashMap<String, Template>() {{ put("root", root); }};
+		templates = new HashMap<String, Template>() {{ put("root", root); }};
 		
 		context.checking(new Expectations() {{
 			allowing(config).getName(); will(returnValue("/testTemplate"));
@@ -73,7 +76,7 @@ public class TestGenericCompiler {
 	public void simple() {
 		context.checking(new Expectations() {{
 			oneOf(root).getName(); will(returnValue("root"));
-			oneOf(defaultMold).compile(compiler, root);
+			oneOf(defaultMold).compile(with(any(GenericCompiler.class)), with(same(root)));
 		}});
 		
 		Renderer res = compiler.compile(config);
@@ -83,14 +86,13 @@ public class TestGenericCompiler {
 	
 	@Test
 	public void compileTemplate() {
+		final CompileContext underTest = new CompileContext(compiler, templates);
 		context.checking(new Expectations() {{
 			oneOf(root).getName(); will(returnValue("root"));
-			oneOf(defaultMold).compile(compiler, root);
-			oneOf(root).getName(); will(returnValue("root"));
+			oneOf(defaultMold).compile(underTest, root);
 		}});
 		
-		compiler.compile(config);
-		RenderElement tst = compiler.compileTemplate("root", null, null);
+		RenderElement tst = underTest.compileTemplate("root", null, null);
 		context.assertIsSatisfied();
 		assertNotNull(tst);
 	}
@@ -101,18 +103,16 @@ public class TestGenericCompiler {
 	 */
 	@Test
 	public void compileTemplateTwiceOnStyleChange() {
+		final CompileContext underTest = new CompileContext(compiler, templates);
 		context.checking(new Expectations() {{
 			oneOf(root).getName(); will(returnValue("root"));
-			oneOf(defaultMold).compile(compiler, root);
-			oneOf(root).getName(); will(returnValue("root"));
-			oneOf(defaultMold).compile(compiler, root);
 			oneOf(root).getName(); will(returnValue("root"));
+			exactly(2).of(defaultMold).compile(underTest, root);
 		}});
 		
-		compiler.compile(config);
-		compiler.compileTemplate("root", null, null);
-		compiler.addStyle("form");
-		compiler.compileTemplate("root", null, null);
+		underTest.compileTemplate("root", null, null);
+		underTest.addStyle("form");
+		underTest.compileTemplate("root", null, null);
 		context.assertIsSatisfied();
 	}
 	
@@ -122,16 +122,35 @@ public class TestGenericCompiler {
 	 */
 	@Test
 	public void compileTemplateTwiceNoStyleChange() {
+		final CompileContext underTest = new CompileContext(compiler, templates);
 		context.checking(new Expectations() {{
-			oneOf(root).getName(); will(returnValue("root"));
-			oneOf(defaultMold).compile(compiler, root);
 			oneOf(root).getName(); will(returnValue("root"));
 			oneOf(root).getName(); will(returnValue("root"));
+			oneOf(defaultMold).compile(underTest, root);
 		}});
 		
-		compiler.compile(config);
-		compiler.compileTemplate("root", null, null);
-		compiler.compileTemplate("root", null, null);
+		underTest.compileTemplate("root", null, null);
+		underTest.compileTemplate("root", null, null);
 		context.assertIsSatisfied();
 	}
+	
+	/**
+	 * Tests that styles set in one compilation are not seen
+	 * by another compilation using the same compiler.
+	 */
+	@Test
+	public void separateContexts() {
+		compiler.setCompilerStyles(new String[]{"html"});
+		
+		CompileContext first = new CompileContext(compiler, templates);
+		CompileContext second = new CompileContext(compiler, templates);
+		
+		first.addStyle("form");
+		first.addTemplateStyle("inElement");
+		assertTrue(first.isStyle("form"));
+		assertTrue(first.isStyle("inElement"));
+		assertFalse(second.isStyle("form"));
+		assertFalse(second.isStyle("inElement"));
+		assertTrue(second.isStyle("html"));
+	}
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.compiler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Test;
+import org.talframework.talui.template.RenderModel;
+import org.talframework.talui.template.render.elements.StaticMarkupElement;
+import org.talframework.talui.template.render.elements.html.Div;
+import org.talframework.talui.template.render.elements.html.attributes.SimpleAttribute;
+import org.talframework.talui.template.render.elements.special.EmptyElement;
+import org.talframework.talui.util.htmlhelper.AttributeAdaptor;
+import org.talframework.talui.util.htmlhelper.GenericElement;
+
+/**
+ * Tests the static markup compilation pass produces the same
+ * output as the original tree of render elements.
+ * 
+ * @author Tom Spencer
+ */
+public class TestStaticMarkupCoalescer {
+
+	private Mockery context = new JUnit4Mockery();
+	private StringWriter writer = null;
+	private RenderModel model = null;
+	
+	@Before
+	public void setup() {
+		writer = new StringWriter();
+		model = context.mock(RenderModel.class);
+		
+		context.checking(new Expectations() {{
+			allowing(model).getGenericElement(); will(returnValue(new GenericElement((AttributeAdaptor)null)));
+			allowing(model).getWriter(); will(returnValue(writer));
+		}});
+	}
+	
+	@Test
+	public void allStatic() throws IOException {
+		EmptyElement root = new EmptyElement();
+		Div outer = new Div(null);
+		outer.setStyleClass("outer");
+		Div inner = new Div(null);
+		inner.addAttribute(new SimpleAttribute("title", "a & b", true));
+		outer.addElement(inner);
+		root.addElement(outer);
+		
+		new StaticMarkupCoalescer().coalesce(root);
+		
+		assertEquals(1, root.getChildren().size());
+		assertTrue(root.getChildren().get(0) instanceof StaticMarkupElement);
+		
+		root.render(model);
+		assertEquals("<div class=\"outer\"><div title=\"a &amp; b\"></div></div>", writer.toString());
+	}
+	
+	@Test
+	public void mixed() throws IOException {
+		EmptyElement root = new EmptyElement();
+		Div outer = new Div(null);
+		Div dynamic = new Div("test");
+		outer.addElement(dynamic);
+		outer.addElement(new Div(null));
+		root.addElement(outer);
+		
+		new StaticMarkupCoalescer().coalesce(root);
+		
+		assertEquals(3, root.getChildren().size());
+		assertEquals(dynamic, root.getChildren().get(1));
+		
+		root.render(model);
+		assertEquals("<div><div id=\"test\"></div><div></div></div>", writer.toString());
+	}
+}
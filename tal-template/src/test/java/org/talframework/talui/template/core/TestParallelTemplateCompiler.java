@@ -0,0 +1,143 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.talframework.talui.template.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.talframework.talui.template.Compiler;
+import org.talframework.talui.template.Renderer;
+import org.talframework.talui.template.StubResourceBundle;
+import org.talframework.talui.template.TemplateConfiguration;
+import org.talframework.talui.template.compiler.html.HtmlCompiler;
+import org.talframework.talui.template.compiler.js.JsCompiler;
+import org.talframework.talui.template.core.xml.XmlTemplateConfiguration;
+import org.talframework.talui.template.render.SimpleRenderModel;
+import org.talframework.talui.template.render.TestUrlGenerator;
+
+/**
+ * Tests that configurations sharing the same compilers can be
+ * compiled in parallel.
+ * 
+ * @author Tom Spencer
+ */
+public class TestParallelTemplateCompiler {
+	
+	private List<BasicTemplateConfiguration> configs = null;
+	
+	@Before
+	public void setup() {
+		Map<String, Compiler> compilers = new HashMap<String, Compiler>();
+		compilers.put("html", new HtmlCompiler(true));
+		compilers.put("js", new JsCompiler(true));
+		
+		configs = new ArrayList<BasicTemplateConfiguration>();
+		for( int i = 0 ; i < 4 ; i++ ) {
+			XmlTemplateConfiguration config = new XmlTemplateConfiguration();
+			config.setName("TestParallel" + i);
+			config.setTemplateResource("/testTemplate.xml");
+			config.setRootTemplate("form");
+			config.setInitRenderers(false);
+			config.setCompilers(compilers);
+			config.init();
+			configs.add(config);
+		}
+	}
+
+	@Test
+	public void compile() throws IOException {
+		ParallelTemplateCompiler underTest = new ParallelTemplateCompiler(4);
+		Map<String, Long> timings = underTest.compile(configs);
+		
+		assertEquals(8, timings.size());
+		assertTrue(timings.get("TestParallel0.html") >= 0);
+		assertTrue(timings.get("TestParallel3.js") >= 0);
+		assertTrue(underTest.getElapsed() >= 0);
+		
+		// Each renderer must match one compiled on its own
+		for( int i = 0 ; i < configs.size() ; i++ ) {
+			BasicTemplateConfiguration config = configs.get(i);
+			assertEquals(2, config.getRenderers().size());
+			assertEquals(render(new HtmlCompiler(true).compile(config)), render(config.getRenderer("html")));
+			assertEquals(render(new JsCompiler(true).compile(config)), render(config.getRenderer("js")));
+		}
+	}
+	
+	@Test
+	public void alreadyCompiled() {
+		Renderer html = configs.get(0).compileRenderer("html");
+		
+		new ParallelTemplateCompiler().compile(configs);
+		assertTrue(html == configs.get(0).getRenderer("html"));
+	}
+	
+	/**
+	 * Ensures a thread waiting on another's compile sees the time
+	 * it took as soon as it has the renderer
+	 */
+	@Test
+	public void compileTimeSeenByWaiter() throws InterruptedException {
+		final BasicTemplateConfiguration config = configs.get(0);
+		Map<String, Compiler> compilers = new HashMap<String, Compiler>();
+		compilers.put("slow", new Compiler() {
+			public Renderer compile(TemplateConfiguration config) {
+				try {
+					Thread.sleep(100);
+				}
+				catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+				return new HtmlCompiler(true).compile(config);
+			}
+		});
+		config.setCompilers(compilers);
+		
+		Thread compiling = new Thread() {
+			@Override
+			public void run() {
+				config.compileRenderer("slow");
+			}
+		};
+		compiling.start();
+		Thread.sleep(20);
+		
+		config.getRenderer("slow");
+		assertTrue(config.getCompileTime("slow") >= 50);
+		compiling.join();
+	}
+	
+	/**
+	 * Helper to render the renderer to a string
+	 */
+	private String render(Renderer renderer) throws IOException {
+		StringWriter writer = new StringWriter();
+		SimpleRenderModel model = new SimpleRenderModel(writer, new TestUrlGenerator());
+		model.setBundle(StubResourceBundle.class.getName());
+		renderer.render(model);
+		return writer.toString();
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.talframework.talui.template.Compiler;
+import org.talframework.talui.template.Renderer;
+import org.talframework.talui.template.StubResourceBundle;
+import org.talframework.talui.template.compiler.html.HtmlCompiler;
+import org.talframework.talui.template.compiler.js.JsCompiler;
+import org.talframework.talui.template.core.xml.XmlTemplateConfiguration;
+import org.talframework.talui.template.render.SimpleRenderModel;
+import org.talframework.talui.template.render.TestUrlGenerator;
+
+/**
+ * Tests that renderers can be written out and read back in
+ * by the precompiled renderer store.
+ * 
+ * @author Tom Spencer
+ */
+public class TestPrecompiledRendererStore {
+	
+	private PrecompiledRendererStore underTest = PrecompiledRendererStore.getInstance();
+	private XmlTemplateConfiguration config = null;
+	private File dir = null;
+	private ClassLoader originalLoader = null;
+	
+	@Before
+	public void setup() throws IOException {
+		dir = File.createTempFile("precompiled", "");
+		dir.delete();
+		dir.mkdirs();
+		
+		originalLoader = Thread.currentThread().getContextClassLoader();
+		
+		config = new XmlTemplateConfiguration();
+		config.setName("TestResources");
+		config.setTemplateResource("/testTemplate.xml");
+		config.setRootTemplate("form");
+		Map<String, Compiler> compilers = new HashMap<String, Compiler>();
+		compilers.put("html", new HtmlCompiler(false));
+		compilers.put("js", new JsCompiler(true));
+		config.setCompilers(compilers);
+		config.init();
+	}
+	
+	@After
+	public void teardown() {
+		Thread.currentThread().setContextClassLoader(originalLoader);
+		
+		File[] files = new File(dir, underTest.getLocation()).listFiles();
+		for( int i = 0 ; files != null && i < files.length ; i++ ) files[i].delete();
+	}
+
+	@Test
+	public void writeAndLoad() throws IOException {
+		assertEquals(2, underTest.write(config, dir));
+		useOutput();
+		
+		Renderer html = underTest.load(config, "html", config.getCompilers().get("html"));
+		assertNotNull(html);
+		assertEquals(render(config.getRenderer("html")), render(html));
+		
+		Renderer js = underTest.load(config, "js", config.getCompilers().get("js"));
+		assertNotNull(js);
+		assertEquals(render(config.getRenderer("js")), render(js));
+	}
+	
+	@Test
+	public void differentCompiler() throws IOException {
+		underTest.write(config, dir);
+		useOutput();
+		
+		assertNull(underTest.load(config, "js", new HtmlCompiler(false)));
+	}
+	
+	/**
+	 * Ensures the stored renderer is not used by the same compiler
+	 * class when it is configured differently
+	 */
+	@Test
+	public void differentConfiguration() throws IOException {
+		underTest.write(config, dir);
+		useOutput();
+		
+		assertNotNull(underTest.load(config, "js", new JsCompiler(true)));
+		assertNull(underTest.load(config, "js", new JsCompiler(false)));
+		assertNull(underTest.load(config, "html", new HtmlCompiler(true)));
+		
+		HtmlCompiler compiler = new HtmlCompiler(false);
+		compiler.setCoalesceStaticMarkup(false);
+		assertNull(underTest.load(config, "html", compiler));
+		
+		compiler = new HtmlCompiler(false);
+		compiler.setRecurseTemplates(true);
+		assertNull(underTest.load(config, "html", compiler));
+	}
+	
+	/**
+	 * Ensures the stored renderer is not used once the template
+	 * source is newer than it
+	 */
+	@Test
+	public void sourceModified() throws IOException {
+		File source = new File(dir, "template.xml");
+		copy(getClass().getResourceAsStream("/testTemplate.xml"), source);
+		source.setLastModified((System.currentTimeMillis() / 1000) * 1000 - 60000);
+		
+		XmlTemplateConfiguration fileConfig = new XmlTemplateConfiguration();
+		fileConfig.setName("TestFileResources");
+		fileConfig.setTemplateResource(source.toURI().toURL().toString());
+		fileConfig.setRootTemplate("form");
+		fileConfig.setCompilers(config.getCompilers());
+		fileConfig.init();
+		
+		assertEquals(2, underTest.write(fileConfig, dir));
+		useOutput();
+		assertNotNull(underTest.load(fileConfig, "js", fileConfig.getCompilers().get("js")));
+		
+		source.setLastModified(source.lastModified() + 10000);
+		assertNull(underTest.load(fileConfig, "js", fileConfig.getCompilers().get("js")));
+		source.delete();
+	}
+	
+	@Test
+	public void notPrecompiled() {
+		assertNull(underTest.load(config, "js", config.getCompilers().get("js")));
+	}
+	
+	/**
+	 * Puts the output directory on the context classpath
+	 */
+	private void useOutput() throws IOException {
+		URL url = dir.toURI().toURL();
+		Thread.currentThread().setContextClassLoader(new URLClassLoader(new URL[]{url}, originalLoader));
+	}
+	
+	/**
+	 * Helper to copy the stream to the file
+	 */
+	private void copy(InputStream in, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			byte[] buf = new byte[4096];
+			int n;
+			while( (n = in.read(buf)) != -1 ) out.write(buf, 0, n);
+		}
+		finally {
+			out.close();
+			in.close();
+		}
+	}
+	
+	/**
+	 * Helper to render the renderer to a string
+	 */
+	private String render(Renderer renderer) throws IOException {
+		StringWriter writer = new StringWriter();
+		SimpleRenderModel model = new SimpleRenderModel(writer, new TestUrlGenerator());
+		model.setBundle(StubResourceBundle.class.getName());
+		renderer.render(model);
+		return writer.toString();
+	}
+}
@@ -16,13 +16,17 @@
 
 package org.talframework.talui.template.core.xml;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 import org.talframework.talui.template.Compiler;
 import org.talframework.talui.template.Renderer;
+import org.talframework.talui.template.TemplateConfiguration;
 import org.talframework.talui.template.compiler.html.HtmlCompiler;
 import org.talframework.talui.template.core.xml.XmlTemplateConfiguration;
 
@@ -50,4 +54,55 @@ public class TestXmlTemplateConfiguration {
 		Renderer r = config.getRenderer("html");
 		assertNotNull(r);
 	}
+	
+	/**
+	 * Ensures a lazily compiled renderer is only compiled
+	 * once even if many threads ask for it at once.
+	 */
+	@Test
+	public void lazyCompile() throws Exception {
+		final AtomicInteger compiles = new AtomicInteger();
+		final Compiler html = new HtmlCompiler(false);
+		Compiler counting = new Compiler() {
+			public Renderer compile(TemplateConfiguration config) {
+				compiles.incrementAndGet();
+				try {
+					Thread.sleep(50);
+				}
+				catch( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+				return html.compile(config);
+			}
+		};
+		
+		final XmlTemplateConfiguration config = new XmlTemplateConfiguration();
+		config.setName(this.getClass().getName().replace(".", "/") + "Lazy");
+		config.setRootTemplate("SimpleBeanA");
+		config.setInitRenderers(false);
+		config.setCompilers(new HashMap<String, Compiler>());
+		config.getCompilers().put("html", counting);
+		config.setTemplateResource("/testTemplate.xml");
+		config.init();
+		assertEquals(0, compiles.get());
+		
+		final Renderer[] results = new Renderer[8];
+		Thread[] threads = new Thread[results.length];
+		for( int i = 0 ; i < threads.length ; i++ ) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					results[index] = config.getRenderer("html");
+				}
+			};
+			threads[i].start();
+		}
+		for( int i = 0 ; i < threads.length ; i++ ) threads[i].join();
+		
+		assertEquals(1, compiles.get());
+		assertNotNull(results[0]);
+		for( int i = 1 ; i < results.length ; i++ ) assertSame(results[0], results[i]);
+		assertEquals(results.length, config.getRendererHits("html"));
+	}
 }
@@ -18,7 +18,9 @@ package org.talframework.talui.template.core.xml;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.junit.Test;
 import org.talframework.talui.template.Template;
@@ -42,6 +44,29 @@ public class TestXmlTemplateLoader {
 		assertEquals(4, res.size());
 	}
 	
+	/**
+	 * Loads a number of files in parallel
+	 */
+	@Test
+	public void parallel() {
+		List<String> resources = new ArrayList<String>();
+		resources.add("/testTemplate.xml");
+		resources.add("/simpleTemplate.xml");
+		
+		Map<String, List<Template>> res = XmlTemplateReader.getStdReader().loadTemplates(resources, 2);
+		assertEquals(2, res.size());
+		assertEquals(4, res.get("/testTemplate.xml").size());
+		assertEquals(3, res.get("/simpleTemplate.xml").size());
+	}
+	
+	/**
+	 * Ensures we fail if the classpath resource does not exist
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void missingResource() {
+		XmlTemplateReader.getStdReader().loadTemplates("/noSuchTemplate.xml");
+	}
+	
 	/**
 	 * As basic, but passes the resource as a file
 	 */
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.lang.ref.WeakReference;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+import org.junit.After;
+import org.junit.Test;
+import org.talframework.talui.template.StubResourceBundle;
+
+/**
+ * Tests the message catalogue
+ * 
+ * @author Tom Spencer
+ */
+public class TestMessageCatalogue {
+	
+	@After
+	public void teardown() {
+		MessageCatalogue.clear();
+	}
+
+	@Test
+	public void listBundle() {
+		MessageCatalogue underTest = MessageCatalogue.getCatalogue(new ListResourceBundle() {
+			@Override
+			protected Object[][] getContents() {
+				return new Object[][]{{"label.name", "Name"}, {"label.count", "{0} items"}};
+			}
+		});
+		
+		assertEquals("Name", underTest.getMessage("label.name"));
+		assertEquals("Name", underTest.getMessage("label.name"));
+		assertNull(underTest.getMessage("label.missing"));
+		assertNull(underTest.getMessage("label.missing"));
+		assertEquals("3 items", underTest.format(underTest.getMessage("label.count"), new Object[]{3}));
+	}
+	
+	/**
+	 * Ensures the catalogue is shared while it is in use, but
+	 * does not hold on to the bundle once it is not
+	 */
+	@Test
+	public void bundleReleased() {
+		ResourceBundle bundle = new ListResourceBundle() {
+			@Override
+			protected Object[][] getContents() {
+				return new Object[][]{{"label.name", "Name"}};
+			}
+		};
+		
+		MessageCatalogue catalogue = MessageCatalogue.getCatalogue(bundle);
+		assertSame(catalogue, MessageCatalogue.getCatalogue(bundle));
+		
+		WeakReference<ResourceBundle> ref = new WeakReference<ResourceBundle>(bundle);
+		bundle = null;
+		catalogue = null;
+		for( int i = 0 ; i < 50 && ref.get() != null ; i++ ) {
+			System.gc();
+			Thread.yield();
+		}
+		assertNull(ref.get());
+	}
+	
+	/**
+	 * Ensures a held format can be used by many threads at once
+	 */
+	@Test
+	public void concurrentFormat() throws Exception {
+		final MessageCatalogue underTest = MessageCatalogue.getCatalogue(null);
+		final String pattern = "{0} of {1,number,0000}";
+		final String[] errors = new String[8];
+		
+		Thread[] threads = new Thread[errors.length];
+		for( int i = 0 ; i < threads.length ; i++ ) {
+			final int index = i;
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for( int j = 0 ; j < 2000 && errors[index] == null ; j++ ) {
+						String exp = index + " of " + (j < 10 ? "000" : j < 100 ? "00" : j < 1000 ? "0" : "") + j;
+						String actual = underTest.format(pattern, new Object[]{index, j});
+						if( !exp.equals(actual) ) errors[index] = actual;
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for( int i = 0 ; i < threads.length ; i++ ) threads[i].join();
+		
+		for( int i = 0 ; i < errors.length ; i++ ) assertNull(errors[i]);
+	}
+	
+	@Test
+	public void namedBundle() {
+		MessageCatalogue underTest = MessageCatalogue.getCatalogue(StubResourceBundle.class.getName(), Locale.UK);
+		assertSame(underTest, MessageCatalogue.getCatalogue(StubResourceBundle.class.getName(), Locale.UK));
+		
+		// Stub bundle returns a message for any key
+		assertEquals("First Name", underTest.getMessage("label.firstName"));
+		assertEquals("other", underTest.getMessage("other"));
+	}
+	
+	@Test
+	public void namedEvicted() {
+		String name = StubResourceBundle.class.getName();
+		MessageCatalogue first = MessageCatalogue.getCatalogue(name, Locale.UK);
+		for( int i = 0 ; i < 600 ; i++ ) {
+			MessageCatalogue.getCatalogue(name, new Locale("x" + i));
+			assertSame(first, MessageCatalogue.getCatalogue(name, Locale.UK));
+		}
+		
+		assertEquals(500, MessageCatalogue.getSize());
+	}
+	
+	@Test
+	public void noBundle() {
+		MessageCatalogue underTest = MessageCatalogue.getCatalogue(null);
+		assertNull(underTest.getBundle());
+		assertNull(underTest.getMessage("label.name"));
+		assertEquals("Value: a", underTest.format("Value: {0}", new Object[]{"a"}));
+	}
+}
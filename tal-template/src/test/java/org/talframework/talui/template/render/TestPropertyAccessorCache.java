@@ -0,0 +1,100 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * Tests the property accessor cache
+ * 
+ * @author Tom Spencer
+ */
+public class TestPropertyAccessorCache {
+	
+	private PropertyAccessorCache underTest = PropertyAccessorCache.getInstance();
+
+	@Test
+	public void properties() {
+		TestBean bean = new TestBean();
+		
+		assertTrue(underTest.isReadableProperty(bean, "name"));
+		assertTrue(underTest.isReadableProperty(bean, "active"));
+		assertFalse(underTest.isReadableProperty(bean, "other"));
+		assertFalse(underTest.isReadableProperty(null, "name"));
+		
+		assertEquals("Fred", underTest.getProperty(bean, "name"));
+		assertEquals(Boolean.TRUE, underTest.getProperty(bean, "active"));
+		assertNull(underTest.getProperty(bean, "other"));
+		assertNull(underTest.getProperty(null, "name"));
+	}
+	
+	@Test
+	public void indexed() {
+		List<String> list = new ArrayList<String>();
+		list.add("a");
+		list.add("b");
+		assertEquals("b", underTest.getIndexedValue(list, "1", 1));
+		assertNull(underTest.getIndexedValue(list, "2", 2));
+		
+		Set<String> set = new LinkedHashSet<String>(list);
+		assertEquals("b", underTest.getIndexedValue(set, "1", 1));
+		
+		String[] arr = new String[]{"a", "b"};
+		assertEquals("a", underTest.getIndexedValue(arr, "0", 0));
+		
+		int[] ints = new int[]{1, 2};
+		assertEquals(2, underTest.getIndexedValue(ints, "1", 1));
+		
+		assertNull(underTest.getIndexedValue(null, "0", 0));
+	}
+	
+	@Test
+	public void map() {
+		Map<Object, String> map = new HashMap<Object, String>();
+		map.put("key", "value");
+		map.put(new Integer(10), "ten");
+		
+		assertEquals("value", underTest.getIndexedValue(map, "key", 0));
+		assertEquals("ten", underTest.getIndexedValue(map, "10", 1));
+		assertNull(underTest.getIndexedValue(map, "other", 2));
+	}
+	
+	/**
+	 * Simple bean for testing
+	 */
+	public static class TestBean {
+		public String getName() {
+			return "Fred";
+		}
+		
+		public boolean isActive() {
+			return true;
+		}
+	}
+}
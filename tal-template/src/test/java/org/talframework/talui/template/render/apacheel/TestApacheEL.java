@@ -140,4 +140,15 @@ public class TestApacheEL {
 		assertNotNull(ret);
 		assertEquals("15 High Street", ret);
 	}
+	
+	@Test
+	public void testModelChange() {
+		Object ret = evaluator.evaluateExpression(model, null, "${test}", String.class);
+		assertEquals("testing", ret);
+		
+		Map<String, Object> model2 = new HashMap<String, Object>();
+		model2.put("test", "testing2");
+		ret = evaluator.evaluateExpression(model2, null, "${test}", String.class);
+		assertEquals("testing2", ret);
+	}
 }
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render.apacheel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import javax.el.ValueExpression;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.talframework.talui.template.render.ExpressionPreparerLocator;
+
+/**
+ * This class tests the shared cache of parsed expressions
+ * 
+ * @author Tom Spencer
+ */
+public class TestApacheELExpressionCache {
+	
+	private ApacheELExpressionCache cache = null;
+	
+	@Before
+	public void setup() {
+		cache = ApacheELExpressionCache.getInstance();
+		cache.clear();
+	}
+	
+	@After
+	public void teardown() {
+		cache.setMaxSize(5000);
+		cache.clear();
+	}
+
+	@Test
+	public void basic() {
+		ValueExpression expr = cache.getExpression("${test}", String.class);
+		assertNotNull(expr);
+		assertSame(expr, cache.getExpression("${test}", String.class));
+		assertEquals(1, cache.getSize());
+	}
+	
+	@Test
+	public void expectedType() {
+		ValueExpression expr = cache.getExpression("${test}", String.class);
+		assertNotSame(expr, cache.getExpression("${test}", Boolean.class));
+		assertEquals(2, cache.getSize());
+	}
+	
+	@Test
+	public void prepare() {
+		assertSame(cache, ExpressionPreparerLocator.getInstance().getPreparer());
+		
+		ExpressionPreparerLocator.getInstance().prepareExpression("${!simpleTrue}", Boolean.class);
+		assertEquals(1, cache.getSize());
+	}
+	
+	@Test
+	public void bounded() {
+		cache.setMaxSize(1);
+		
+		cache.getExpression("${test}", String.class);
+		ValueExpression expr = cache.getExpression("${test2}", String.class);
+		assertNotNull(expr);
+		assertNotSame(expr, cache.getExpression("${test2}", String.class));
+		assertEquals(1, cache.getSize());
+	}
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render.codes;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the caching of code types in the locator and the
+ * ordering of the standard code types.
+ * 
+ * @author Tom Spencer
+ */
+public class TestCodeTypeFactoryLocator {
+	
+	private CodeTypeFactoryLocator underTest = CodeTypeFactoryLocator.getInstance();
+	
+	@After
+	public void teardown() {
+		underTest.setCacheTimeout(300000);
+		underTest.setMaxCached(500);
+		underTest.clearCache();
+	}
+
+	@Test
+	public void cached() {
+		CountingFactory factory = new CountingFactory();
+		underTest.addCodeFactory("testCachedCodes", factory);
+		
+		assertTrue(underTest.isCached("testCachedCodes"));
+		assertFalse(underTest.isCached("unknownCodes"));
+		
+		CodeType first = CodeTypeFactoryLocator.getCodeType("testCachedCodes", Locale.UK, null, null);
+		CodeType second = CodeTypeFactoryLocator.getCodeType("testCachedCodes", Locale.UK, null, null);
+		assertSame(first, second);
+		assertEquals(1, factory.calls);
+		
+		// Different locale and params are held separately
+		CodeTypeFactoryLocator.getCodeType("testCachedCodes", Locale.FRANCE, null, null);
+		Map<String, String> params = new HashMap<String, String>();
+		params.put("filter", "a");
+		CodeTypeFactoryLocator.getCodeType("testCachedCodes", Locale.UK, null, params);
+		CodeTypeFactoryLocator.getCodeType("testCachedCodes", Locale.UK, null, params);
+		assertEquals(3, factory.calls);
+	}
+	
+	@Test
+	public void noCache() {
+		CountingFactory factory = new CountingFactory();
+		underTest.addCodeFactory("testCachedCodes", factory);
+		underTest.setCacheTimeout(0);
+		
+		assertFalse(underTest.isCached("testCachedCodes"));
+		CodeType first = CodeTypeFactoryLocator.getCodeType("testCachedCodes", Locale.UK, null, null);
+		CodeType second = CodeTypeFactoryLocator.getCodeType("testCachedCodes", Locale.UK, null, null);
+		assertNotSame(first, second);
+		assertEquals(2, factory.calls);
+	}
+	
+	@Test
+	public void changed() {
+		CountingFactory factory = new CountingFactory();
+		underTest.addCodeFactory("testCachedCodes", factory);
+		
+		CodeType first = CodeTypeFactoryLocator.getCodeType("testCachedCodes", Locale.UK, null, null);
+		underTest.codeTypeChanged("testCachedCodes");
+		CodeType second = CodeTypeFactoryLocator.getCodeType("testCachedCodes", Locale.UK, null, null);
+		assertNotSame(first, second);
+		assertEquals(2, factory.calls);
+	}
+	
+	@Test
+	public void resourceOrder() {
+		ResourceCodeType type = new ResourceCodeType("test", new ListResourceBundle() {
+			@Override
+			protected Object[][] getContents() {
+				return new Object[][]{{"US", "United States"}, {"FR", "France"}, {"GB", "United Kingdom"}, {"DE", "Germany"}};
+			}
+		});
+		
+		assertArrayEquals(new String[]{"FR", "DE", "GB", "US"}, type.getCodes());
+		assertSame(type.getCodes(), type.getCodes());
+		assertEquals("France", type.getCodeDescription("FR"));
+		assertEquals("XX", type.getCodeDescription("XX"));
+	}
+	
+	@Test
+	public void modelCodes() {
+		Map<String, String> codes = new LinkedHashMap<String, String>();
+		codes.put("A", "Code A");
+		
+		CodeType type = CodeTypeFactoryLocator.resolveCodeType("modelCodes", codes, null, null);
+		assertEquals("Code A", type.getCodeDescription("A"));
+		assertEquals("B", type.getCodeDescription("B"));
+		
+		codes.put("B", "Code B");
+		assertEquals("Code B", type.getCodeDescription("B"));
+		assertArrayEquals(new String[]{"A", "B"}, type.getCodes());
+		
+		type = CodeTypeFactoryLocator.resolveCodeType("modelCodes", new ListResourceBundle() {
+			@Override
+			protected Object[][] getContents() {
+				return new Object[][]{{"A", "Code A"}, {"N", new Integer(1)}};
+			}
+		}, null, null);
+		assertEquals("Code A", type.getCodeDescription("A"));
+		assertEquals("N", type.getCodeDescription("N"));
+		assertEquals("B", type.getCodeDescription("B"));
+		assertArrayEquals(new String[]{"A"}, type.getCodes());
+	}
+	
+	/**
+	 * Simple cacheable factory that counts the calls
+	 */
+	private static class CountingFactory implements CacheableCodeTypeFactory {
+		private int calls = 0;
+		
+		public CodeType getCodeType(Locale locale, Principal user, Map<String, String> params) {
+			calls++;
+			Map<String, String> codes = new HashMap<String, String>();
+			codes.put("A", "Code A");
+			return new SimpleCodeType("testCachedCodes", codes);
+		}
+	}
+}
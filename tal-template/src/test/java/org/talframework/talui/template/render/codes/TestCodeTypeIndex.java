@@ -0,0 +1,91 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render.codes;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the code type index
+ * 
+ * @author Tom Spencer
+ */
+public class TestCodeTypeIndex {
+	
+	private CodeTypeIndex underTest = null;
+	
+	@Before
+	public void setup() {
+		Map<String, String> codes = new LinkedHashMap<String, String>();
+		codes.put("GB", "United Kingdom");
+		codes.put("US", "United States");
+		codes.put("FR", "France");
+		codes.put("DE", "Germany");
+		codes.put("AE", "United Arab Emirates");
+		
+		underTest = new CodeTypeIndex(new SimpleCodeType("countries", codes), Locale.UK);
+	}
+
+	@Test
+	public void all() {
+		assertEquals(5, underTest.size());
+		assertEquals(5, underTest.search(null, 0).length);
+		assertEquals(5, underTest.search("", 0).length);
+		assertEquals(2, underTest.search(null, 2).length);
+	}
+	
+	@Test
+	public void shortSearch() {
+		int[] results = underTest.search("fr", 0);
+		assertEquals(1, results.length);
+		assertEquals("FR", underTest.getCode(results[0]));
+		assertEquals("France", underTest.getDescription(results[0]));
+		
+		results = underTest.search("e", 0);
+		assertEquals(5, results.length);
+	}
+	
+	@Test
+	public void infix() {
+		int[] results = underTest.search("ITED", 0);
+		assertEquals(3, results.length);
+		assertEquals("GB", underTest.getCode(results[0]));
+		assertEquals("US", underTest.getCode(results[1]));
+		assertEquals("AE", underTest.getCode(results[2]));
+		
+		results = underTest.search("ited", 2);
+		assertEquals(2, results.length);
+		assertEquals("US", underTest.getCode(results[1]));
+		
+		results = underTest.search("d states", 0);
+		assertEquals(1, results.length);
+		assertEquals("US", underTest.getCode(results[0]));
+	}
+	
+	@Test
+	public void noMatch() {
+		assertEquals(0, underTest.search("spain", 0).length);
+		assertEquals(0, underTest.search("kingdomx", 0).length);
+		assertEquals(0, underTest.search("z", 0).length);
+	}
+}
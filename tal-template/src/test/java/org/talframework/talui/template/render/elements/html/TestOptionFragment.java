@@ -0,0 +1,109 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.render.elements.html;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.talframework.talui.template.render.codes.SimpleCodeType;
+
+/**
+ * Tests the pre-rendered option fragments
+ * 
+ * @author Tom Spencer
+ */
+public class TestOptionFragment {
+	
+	private Map<String, String> codes = null;
+	private SimpleCodeType type = null;
+	
+	@Before
+	public void setup() {
+		codes = new LinkedHashMap<String, String>();
+		codes.put("code1", "Code 1");
+		codes.put("code2", null);
+		codes.put("code3", "Code 3");
+		type = new SimpleCodeType("testCodes", codes);
+	}
+
+	@Test
+	public void selected() throws IOException {
+		OptionFragment underTest = OptionFragment.getFragment("testCodes|en", type);
+		assertSame(underTest, OptionFragment.getFragment("testCodes|en", type));
+		
+		String exp = "<option value=\"code1\">Code 1</option>";
+		exp += "<option value=\"code2\" selected=\"selected\">code2</option>";
+		exp += "<option value=\"code3\">Code 3</option>";
+		assertEquals(exp, write(underTest, "code2"));
+		
+		exp = "<option value=\"code1\">Code 1</option>";
+		exp += "<option value=\"code2\">code2</option>";
+		exp += "<option value=\"code3\" selected=\"selected\">Code 3</option>";
+		assertEquals(exp, write(underTest, "code3"));
+	}
+	
+	/**
+	 * Ensures the options are rendered again for a new instance
+	 * of the code type under the same key
+	 */
+	@Test
+	public void newInstance() throws IOException {
+		OptionFragment first = OptionFragment.getFragment("testCodes|fr", type);
+		
+		codes.put("code4", "Code 4");
+		SimpleCodeType changed = new SimpleCodeType("testCodes", codes);
+		OptionFragment second = OptionFragment.getFragment("testCodes|fr", changed);
+		assertNotSame(first, second);
+		assertSame(second, OptionFragment.getFragment("testCodes|fr", changed));
+		
+		String exp = "<option value=\"code1\">Code 1</option>";
+		exp += "<option value=\"code2\">code2</option>";
+		exp += "<option value=\"code3\">Code 3</option>";
+		exp += "<option value=\"code4\" selected=\"selected\">Code 4</option>";
+		assertEquals(exp, write(second, "code4"));
+	}
+	
+	@Test
+	public void noSelection() throws IOException {
+		OptionFragment underTest = new OptionFragment(type);
+		
+		String exp = "<option value=\"code1\">Code 1</option>";
+		exp += "<option value=\"code2\">code2</option>";
+		exp += "<option value=\"code3\">Code 3</option>";
+		assertEquals(exp, write(underTest, null));
+		assertEquals(exp, write(underTest, "code4"));
+		assertEquals(exp, write(underTest, Integer.valueOf(1)));
+		assertEquals(exp.length(), underTest.getLength());
+	}
+	
+	/**
+	 * Helper to write the fragment to a string
+	 */
+	private String write(OptionFragment fragment, Object val) throws IOException {
+		StringWriter writer = new StringWriter();
+		fragment.write(writer, val);
+		return writer.toString();
+	}
+}
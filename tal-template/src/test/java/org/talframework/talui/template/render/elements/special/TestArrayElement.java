@@ -69,10 +69,10 @@ public class TestArrayElement {
 		context.checking(new Expectations() {{
 			oneOf(node).getProperty("test"); will(returnValue(tst));
 			oneOf(model).pushNode("test", -1); will(returnValue(node));
-			oneOf(model).pushNode("0", 0); will(returnValue(node));
+			oneOf(model).pushNode("0", 0, "test1"); will(returnValue(node));
 			oneOf(template).render(model);
 			oneOf(model).popNode();
-			oneOf(model).pushNode("1", 1); will(returnValue(node));
+			oneOf(model).pushNode("1", 1, "test2"); will(returnValue(node));
 			oneOf(template).render(model);
 			oneOf(model).popNode();
 			oneOf(model).popNode();
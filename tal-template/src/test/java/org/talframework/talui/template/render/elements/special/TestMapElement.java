@@ -70,10 +70,10 @@ public class TestMapElement {
 			allowing(model).getCurrentNode(); will(returnValue(node));
 			oneOf(node).getProperty("test"); will(returnValue(tst));
 			oneOf(model).pushNode("test", -1); will(returnValue(node));
-			oneOf(model).pushNode("it1", 0); will(returnValue(node));
+			oneOf(model).pushNode("it1", 0, "test1"); will(returnValue(node));
 			oneOf(template).render(model);
 			oneOf(model).popNode();
-			oneOf(model).pushNode("it2", 1); will(returnValue(node));
+			oneOf(model).pushNode("it2", 1, "test2"); will(returnValue(node));
 			oneOf(template).render(model);
 			oneOf(model).popNode();
 			oneOf(model).popNode();
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.servlet;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.zip.GZIPInputStream;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the chunked response writer
+ * 
+ * @author Tom Spencer
+ */
+public class TestChunkedResponseWriter {
+
+	private Mockery context = new JUnit4Mockery();
+	private HttpServletResponse response = null;
+	private ByteArrayOutputStream output = null;
+	private CharBufferPool pool = null;
+	private RenderOutputStatistics stats = null;
+	
+	@Before
+	public void setup() {
+		response = context.mock(HttpServletResponse.class);
+		output = new ByteArrayOutputStream();
+		pool = new CharBufferPool(16, 2);
+		stats = new RenderOutputStatistics();
+		
+		final ServletOutputStream stream = new ServletOutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				output.write(b);
+			}
+		};
+		
+		context.checking(new Expectations() {{
+			allowing(response).getCharacterEncoding(); will(returnValue("UTF-8"));
+			allowing(response).getOutputStream(); will(returnValue(stream));
+		}});
+	}
+	
+	@Test
+	public void singleBuffer() throws IOException {
+		context.checking(new Expectations() {{
+			oneOf(response).setContentLength(12);
+		}});
+		
+		ChunkedResponseWriter writer = new ChunkedResponseWriter(response, pool, true, false, 0, stats);
+		writer.write("<div>");
+		writer.write('a');
+		writer.write("</div>");
+		writer.close();
+		
+		assertEquals("<div>a</div>", output.toString("UTF-8"));
+		assertEquals(1, stats.getSingleBufferResponses());
+		assertEquals(1, stats.getFlushes());
+		assertEquals(12, stats.getBytesWritten());
+		assertEquals(1, pool.getPooled());
+	}
+	
+	@Test
+	public void chunked() throws IOException {
+		ChunkedResponseWriter writer = new ChunkedResponseWriter(response, pool, true, false, 0, stats);
+		StringBuilder expected = new StringBuilder();
+		for( int i = 0 ; i < 10 ; i++ ) {
+			writer.write("<span>" + i + "</span>");
+			expected.append("<span>").append(i).append("</span>");
+		}
+		writer.close();
+		
+		assertEquals(expected.toString(), output.toString("UTF-8"));
+		assertEquals(0, stats.getSingleBufferResponses());
+		assertEquals(expected.length(), stats.getCharsWritten());
+		assertEquals(expected.length(), stats.getBytesWritten());
+		assertEquals(9, stats.getFlushes());
+	}
+	
+	@Test
+	public void earlyFlush() throws IOException {
+		ChunkedResponseWriter writer = new ChunkedResponseWriter(response, pool, true, false, 4, stats);
+		writer.write("<div>");
+		assertEquals("<div>", output.toString("UTF-8"));
+		writer.write("</div>");
+		writer.close();
+		
+		assertEquals("<div></div>", output.toString("UTF-8"));
+		assertEquals(2, stats.getFlushes());
+	}
+	
+	@Test
+	public void gzip() throws IOException {
+		context.checking(new Expectations() {{
+			oneOf(response).setHeader("Content-Encoding", "gzip");
+			oneOf(response).setContentLength(with(any(Integer.class)));
+		}});
+		
+		ChunkedResponseWriter writer = new ChunkedResponseWriter(response, pool, true, true, 0, stats);
+		writer.write("<div>a</div>");
+		writer.close();
+		
+		assertEquals("<div>a</div>", unzip(output.toByteArray()));
+		assertEquals(1, stats.getGzipResponses());
+	}
+	
+	@Test
+	public void gzipChunked() throws IOException {
+		context.checking(new Expectations() {{
+			oneOf(response).setHeader("Content-Encoding", "gzip");
+		}});
+		
+		ChunkedResponseWriter writer = new ChunkedResponseWriter(response, pool, true, true, 0, stats);
+		writer.write("<div>Some content over the buffer size</div>");
+		writer.close();
+		
+		assertEquals("<div>Some content over the buffer size</div>", unzip(output.toByteArray()));
+	}
+	
+	@Test
+	public void release() throws IOException {
+		ChunkedResponseWriter writer = new ChunkedResponseWriter(response, pool, true, false, 0, stats);
+		writer.write("<div>");
+		writer.release();
+		writer.release();
+		
+		assertEquals(0, output.size());
+		assertEquals(1, pool.getPooled());
+	}
+	
+	/**
+	 * Helper to unzip the output
+	 */
+	private String unzip(byte[] bytes) throws IOException {
+		Reader reader = new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(bytes)), "UTF-8");
+		StringBuilder buf = new StringBuilder();
+		int c = reader.read();
+		while( c >= 0 ) {
+			buf.append((char)c);
+			c = reader.read();
+		}
+		return buf.toString();
+	}
+}
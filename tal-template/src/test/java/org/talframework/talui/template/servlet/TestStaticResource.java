@@ -0,0 +1,175 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.template.servlet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests the static resource
+ * 
+ * @author Tom Spencer
+ */
+public class TestStaticResource {
+	
+	private File file;
+	private byte[] content;
+	
+	@Before
+	public void setup() throws IOException {
+		StringBuilder buf = new StringBuilder();
+		for( int i = 0 ; i < 200 ; i++ ) buf.append("body { color: red; }\n");
+		content = buf.toString().getBytes("UTF-8");
+		
+		file = File.createTempFile("resource", ".css");
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(content);
+		out.close();
+	}
+	
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Ensures a small resource is held with a gzipped copy
+	 */
+	@Test
+	public void held() throws Exception {
+		StaticResource underTest = new StaticResource("/resource.css", file.toURI().toURL(), "text/css", 0L, 100000, true);
+		
+		assertTrue(underTest.isHeld());
+		assertEquals(content.length, underTest.getLength());
+		assertArrayEquals(content, underTest.getContent());
+		assertEquals("text/css", underTest.getContentType());
+		assertEquals((file.lastModified() / 1000) * 1000, underTest.getLastModified());
+		
+		assertNotNull(underTest.getGzipped());
+		assertTrue(underTest.getGzipped().length < content.length);
+		assertArrayEquals(content, gunzip(underTest.getGzipped()));
+		assertNotNull(underTest.getGzipEtag());
+		assertFalse(underTest.getEtag().equals(underTest.getGzipEtag()));
+		
+		// ETag depends only on content
+		StaticResource other = new StaticResource("/other.css", file.toURI().toURL(), "text/css", 0L, 100000, false);
+		assertEquals(underTest.getEtag(), other.getEtag());
+		assertNull(other.getGzipped());
+		assertNull(other.getGzipEtag());
+	}
+	
+	/**
+	 * Ensures a large resource is left on disk
+	 */
+	@Test
+	public void large() throws Exception {
+		StaticResource underTest = new StaticResource("/resource.css", file.toURI().toURL(), "text/css", 0L, 100, true);
+		
+		assertFalse(underTest.isHeld());
+		assertNull(underTest.getContent());
+		assertNull(underTest.getGzipped());
+		assertEquals(file, underTest.getFile());
+		assertEquals(content.length, underTest.getLength());
+		assertNotNull(underTest.getEtag());
+	}
+	
+	/**
+	 * Ensures a large resource inside a JAR is not held, but is
+	 * left to be streamed from its URL
+	 */
+	@Test
+	public void largeInJar() throws Exception {
+		File jar = File.createTempFile("resource", ".jar");
+		try {
+			JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+			out.putNextEntry(new JarEntry("resource.css"));
+			out.write(content);
+			out.close();
+			
+			URL url = new URL("jar:" + jar.toURI().toURL() + "!/resource.css");
+			StaticResource underTest = new StaticResource("/resource.css", url, "text/css", 0L, 100, true);
+			
+			assertFalse(underTest.isHeld());
+			assertNull(underTest.getContent());
+			assertNull(underTest.getGzipped());
+			assertNull(underTest.getFile());
+			assertEquals(url, underTest.getUrl());
+			assertEquals(content.length, underTest.getLength());
+			assertNotNull(underTest.getEtag());
+			
+			// But is held if small enough
+			StaticResource held = new StaticResource("/resource.css", url, "text/css", 0L, 100000, true);
+			assertTrue(held.isHeld());
+			assertArrayEquals(content, held.getContent());
+		}
+		finally {
+			jar.delete();
+		}
+	}
+	
+	/**
+	 * Tests the parsing of range headers
+	 */
+	@Test
+	public void range() {
+		assertArrayEquals(new long[]{0, 99}, StaticResource.getRange("bytes=0-99", 1000));
+		assertArrayEquals(new long[]{500, 999}, StaticResource.getRange("bytes=500-", 1000));
+		assertArrayEquals(new long[]{900, 999}, StaticResource.getRange("bytes=-100", 1000));
+		assertArrayEquals(new long[]{900, 999}, StaticResource.getRange("bytes=900-2000", 1000));
+		
+		assertNull(StaticResource.getRange(null, 1000));
+		assertNull(StaticResource.getRange("bytes=0-1,5-6", 1000));
+		assertNull(StaticResource.getRange("lines=0-1", 1000));
+		assertNull(StaticResource.getRange("bytes=a-b", 1000));
+	}
+	
+	/**
+	 * Ensures an unsatisfiable range is rejected
+	 */
+	@Test(expected=IllegalArgumentException.class)
+	public void unsatisfiableRange() {
+		StaticResource.getRange("bytes=1000-", 1000);
+	}
+	
+	private byte[] gunzip(byte[] data) throws IOException {
+		InputStream in = new GZIPInputStream(new ByteArrayInputStream(data));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buf = new byte[512];
+		int n;
+		while( (n = in.read(buf)) != -1 ) out.write(buf, 0, n);
+		return out.toByteArray();
+	}
+}
@@ -19,6 +19,7 @@ package org.talframework.talui.util.htmlhelper;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.io.Writer;
+import java.util.regex.Pattern;
 
 import org.junit.Test;
 import org.talframework.talui.util.htmlhelper.HtmlCharStripper;
@@ -44,6 +45,87 @@ public class TestHtmlCharStripper {
 		Assert.assertEquals("this &quot;is&quot; a &lt;bad&gt; html &#39;string&#39; &amp; then some", writer.toString());
 	}
 	
+	@Test
+	public void noEscaping() {
+		String tst = "a normal string";
+		Assert.assertSame(tst, HtmlCharStripper.strip(tst));
+		Assert.assertNull(HtmlCharStripper.strip(null));
+	}
+	
+	@Test
+	public void quotesOnly() {
+		Assert.assertEquals("it&#39;s", HtmlCharStripper.strip("it's"));
+		Assert.assertEquals("&quot;quoted&quot;", HtmlCharStripper.strip("\"quoted\""));
+	}
+	
+	@Test
+	public void text() throws IOException {
+		String tst = "this \"is\" a <bad> html 'string' & then some";
+		Writer writer = new StringWriter();
+		StringBuilder buf = new StringBuilder();
+		
+		HtmlCharStripper.escapeText(tst, writer);
+		HtmlCharStripper.escapeText(tst, buf);
+		Assert.assertEquals("this \"is\" a &lt;bad&gt; html 'string' &amp; then some", writer.toString());
+		Assert.assertEquals("this \"is\" a &lt;bad&gt; html 'string' &amp; then some", buf.toString());
+	}
+	
+	@Test
+	public void attribute() throws IOException {
+		String tst = "<'\"&\">";
+		Writer writer = new StringWriter();
+		StringBuilder buf = new StringBuilder();
+		
+		HtmlCharStripper.escapeAttribute(tst, writer);
+		HtmlCharStripper.escapeAttribute(tst, buf);
+		Assert.assertEquals("&lt;&#39;&quot;&amp;&quot;&gt;", writer.toString());
+		Assert.assertEquals("&lt;&#39;&quot;&amp;&quot;&gt;", buf.toString());
+	}
+	
+	/**
+	 * Compares the escaping with the previous regex based 
+	 * implementation on a mix of typical values. Both must 
+	 * produce the same output.
+	 */
+	@Test
+	public void compareWithRegex() throws IOException {
+		String[] values = new String[]{
+				"Fred Bloggs", 
+				"12 High Street, Anytown", 
+				"2009-04-01", 
+				"Smith & Sons Ltd", 
+				"A longer description of an item that a user has typed in without any special characters in it at all",
+				"Price < 100 and > 50",
+				"She said \"hello\""};
+		int runs = 2000;
+		
+		for( int i = 0 ; i < values.length ; i++ ) {
+			StringWriter expected = new StringWriter();
+			StringWriter actual = new StringWriter();
+			RegexStripper.strip(values[i], expected);
+			HtmlCharStripper.strip(values[i], actual);
+			Assert.assertEquals(expected.toString(), actual.toString());
+		}
+		
+		// Regex version
+		long st = System.nanoTime();
+		for( int i = 0 ; i < runs ; i++ ) {
+			Writer writer = new StringWriter();
+			for( int j = 0 ; j < values.length ; j++ ) RegexStripper.strip(values[j], writer);
+		}
+		long regex = System.nanoTime() - st;
+		System.out.println("Regex HTML stripping takes: " + regex + "ns");
+		
+		// Lookup version
+		st = System.nanoTime();
+		for( int i = 0 ; i < runs ; i++ ) {
+			Writer writer = new StringWriter();
+			for( int j = 0 ; j < values.length ; j++ ) HtmlCharStripper.strip(values[j], writer);
+		}
+		long lookup = System.nanoTime() - st;
+		System.out.println("Lookup HTML stripping takes: " + lookup + "ns");
+	}
+	
 	@Test
 	public void comparePerf() throws IOException { 
 		String tst = "normal string";
@@ -77,4 +159,29 @@ public class TestHtmlCharStripper {
 		// spec hardware or heavily used infrastructure. 
 		Assert.assertTrue("HTML Stripping takes more than 1ms per " + per + " 'strips'", (strip / runs) < 1000000);
 	}
+	
+	/**
+	 * The original regex based implementation, used as
+	 * the baseline in the comparison.
+	 */
+	private static class RegexStripper {
+		private static Pattern htmlPattern = Pattern.compile(".*[&<>\\\\\"]+.*");
+		
+		public static void strip(String src, Writer writer) throws IOException {
+			if( htmlPattern.matcher(src).matches() ) {
+				char[] arr = src.toCharArray();
+				for( int i = 0 ; i < arr.length ; i++ ) {
+					if( arr[i] == '&' ) writer.append("&amp;");
+					else if( arr[i] == '<' ) writer.append("&lt;");
+					else if( arr[i] == '>' ) writer.append("&gt;");
+					else if( arr[i] == '\'' ) writer.append("&#39;");
+					else if( arr[i] == '"' ) writer.append("&quot;");
+					else writer.append(arr[i]);
+				}
+			}
+			else {
+				writer.append(src);
+			}
+		}
+	}
 }
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2008 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.talframework.talui.util.htmlhelper;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.Test;
+
+/**
+ * Tests the JSON escaping
+ * 
+ * @author Tom Spencer
+ */
+public class TestJsonCharStripper {
+
+	@Test
+	public void basic() {
+		assertEquals("a normal string", JsonCharStripper.escape("a normal string"));
+		assertEquals("say \\\"hi\\\" \\\\ bye", JsonCharStripper.escape("say \"hi\" \\ bye"));
+		assertEquals("line1\\nline2\\ttab", JsonCharStripper.escape("line1\nline2\ttab"));
+		assertEquals("\\u003c/script\\u003e", JsonCharStripper.escape("</script>"));
+		assertEquals("\\u0001", JsonCharStripper.escape("\u0001"));
+		assertNull(JsonCharStripper.escape(null));
+	}
+	
+	@Test
+	public void intoWriter() throws IOException {
+		StringWriter writer = new StringWriter();
+		JsonCharStripper.escape("Smith & \"Sons\"", writer);
+		assertEquals("Smith & \\\"Sons\\\"", writer.toString());
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2009 Thomas Spencer
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.tpspencer.tal.ui.mojo;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.springframework.beans.factory.xml.XmlBeanDefinitionReader;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.io.FileSystemResource;
+import org.talframework.talui.template.TemplateConfiguration;
+import org.talframework.talui.template.core.BasicTemplateConfiguration;
+import org.talframework.talui.template.core.PrecompiledRendererStore;
+import org.talframework.talui.template.core.TemplateConfigurationLocator;
+
+/**
+ * This Mojo compiles the templates of a Web Application at
+ * build time. The application context is loaded, which creates
+ * and initialises all of the template configurations (and so 
+ * compiles their renderers). The compiled renderers are then
+ * written into the build output by the {@link PrecompiledRendererStore}
+ * so at runtime they are loaded rather than compiled again.
+ * Any renderers already in the output are not used while the
+ * templates are compiled.
+ * 
+ * @goal compile-templates
+ * @phase process-classes
+ * @requiresDependencyResolution runtime
+ */
+public class TemplateCompileMojo extends AbstractMojo {
+	
+	/**
+	 * Holds the path of the application context files
+	 * 
+	 * @parameter default-value="${basedir}/src/main/webapp/WEB-INF"
+	 * @required
+	 */
+	private File configLocation;
+	
+	/**
+	 * Holds the output directory, the renderers are written
+	 * under this in the precompiled location
+	 * 
+	 * @parameter default-value="${project.build.outputDirectory}"
+	 * @required
+	 */
+	private File outputDir;
+	
+	/**
+	 * Holds the runtime classpath of the project
+	 * 
+	 * @parameter expression="${project.runtimeClasspathElements}"
+	 * @required
+	 * @readonly
+	 */
+	private List<String> classpathElements;
+	
+	/**
+	 * Actual execute method to load the app configuration and
+	 * write out the compiled templates.
+	 */
+    public void execute() throws MojoExecutionException {
+    	getLog().info("Compiling templates in config: " + configLocation);
+    	getLog().info("Compiled templates output: " + outputDir);
+    	
+    	if( configLocation == null || !configLocation.isDirectory() ) {
+    		throw new MojoExecutionException("Cannot compile templates as config location is not a directory: " + configLocation);
+    	}
+    	
+    	// Get all Spring files
+    	File[] configs = configLocation.listFiles(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith("applicationContext") && name.endsWith(".xml");
+			}
+		});
+    	
+    	ClassLoader original = Thread.currentThread().getContextClassLoader();
+    	PrecompiledRendererStore store = PrecompiledRendererStore.getInstance();
+    	boolean enabled = store.isEnabled();
+    	try {
+    		// Always compile, never load what the last build wrote
+    		store.setEnabled(false);
+    		
+    		ClassLoader loader = getProjectClassLoader();
+    		Thread.currentThread().setContextClassLoader(loader);
+    		
+	    	GenericApplicationContext ctx = new GenericApplicationContext();
+	    	ctx.setClassLoader(loader);
+	    	XmlBeanDefinitionReader xmlReader = new XmlBeanDefinitionReader(ctx);
+	    	xmlReader.setValidationMode(XmlBeanDefinitionReader.VALIDATION_XSD);
+	    	
+	    	for( int i = 0 ; i < configs.length ; i++ ) {
+				getLog().debug("Reading Application Context: " + configs[i]);
+				xmlReader.loadBeanDefinitions(new FileSystemResource(configs[i]));
+			}
+	    	
+	    	// Refreshing creates and initialises the templates
+	    	ctx.refresh();
+	    	
+	    	int written = 0;
+	    	TemplateConfigurationLocator locator = TemplateConfigurationLocator.getInstance();
+	    	Iterator<String> it = locator.getTemplateNames().iterator();
+	    	while( it.hasNext() ) {
+	    		String name = it.next();
+	    		TemplateConfiguration config = locator.getTemplate(name);
+	    		if( !(config instanceof BasicTemplateConfiguration) ) {
+	    			getLog().warn("Cannot precompile template as it is not a BasicTemplateConfiguration: " + name);
+	    			continue;
+	    		}
+	    		
+	    		getLog().debug("Writing compiled template: " + name);
+	    		written += store.write((BasicTemplateConfiguration)config, outputDir);
+	    	}
+	    	
+	    	getLog().info("Compiled renderers written: " + written);
+	    	ctx.close();
+    	}
+    	catch( Exception e ) {
+    		throw new MojoExecutionException("Cannot compile templates: " + e.getMessage(), e);
+    	}
+    	finally {
+    		store.setEnabled(enabled);
+    		Thread.currentThread().setContextClassLoader(original);
+    	}
+    }
+    
+    /**
+     * Creates a classloader holding the projects classes
+     * and dependencies
+     */
+    private ClassLoader getProjectClassLoader() throws MojoExecutionException {
+    	try {
+	    	URL[] urls = new URL[classpathElements.size()];
+	    	for( int i = 0 ; i < urls.length ; i++ ) {
+	    		urls[i] = new File(classpathElements.get(i)).toURI().toURL();
+	    	}
+	    	return new URLClassLoader(urls, getClass().getClassLoader());
+    	}
+    	catch( Exception e ) {
+    		throw new MojoExecutionException("Cannot create the project classloader: " + e.getMessage(), e);
+    	}
+    }
+}
@@ -49,12 +49,14 @@ function refreshMVCWindow(id) {
 
 /**
  * Call to perform an action asynchronously. All affected
- * windows are refreshed and if a full page url is returned
- * the browser re-directs
+ * windows are refreshed with the HTML returned and if a full
+ * page url is returned the browser re-directs. The response
+ * is either:
  * 
- * <p>See also the post action based on a form submit</p>
+ * {"windows":[{"name":"w1","namespace":"ns1","html":"..."}]}
+ * {"page":"url"}
  * 
- * TODO: Update windows and redirect
+ * <p>See also the post action based on a form submit</p>
  * 
  * @param actionUrl The url to perform
  * @param params The parameters
@@ -66,15 +68,22 @@ function performGetAction(actionUrl, params) {
 		handleAs : "json",
 		content: params,
 		load : function(response, ioArgs) {
-			if( response != null && response["windows"] != null ) {
+			if( response == null ) return response;
+			
+			if( response["page"] != null ) {
+				log("Redirecting to page: " + response["page"]);
+				window.location.href = response["page"];
+				return response;
+			}
+			
+			if( response["windows"] != null ) {
 				for( var i = 0 ; i < response["windows"].length ; i++ ) {
-					log("Refreshing window: " + response["windows"][i]);
-					refreshMVCWindow(response["windows"][i]);
+					var w = response["windows"][i];
+					log("Refreshing window: " + w["name"]);
+					updateMVCWindow(w["namespace"], w["html"]);
 				}
 			}
 
-			// TODO: Redirect
-
 			return response;
 		},
 		error : function(response, ioArgs) {
@@ -85,9 +94,22 @@ function performGetAction(actionUrl, params) {
 	});
 }
 
+/**
+ * Replaces the content of a window with the given HTML. If
+ * the window is not on the page nothing happens.
+ * 
+ * param namespace The namespace of the window
+ * param html The rendered HTML of the window
+ */
+function updateMVCWindow(namespace, html) {
+	var content = dojo.byId(namespace + "-content");
+	if( content != null ) content.innerHTML = html;
+	else log("Window not on page: " + namespace);
+}
+
 
 function log(msg) {
 	if( window.console != null ) {
 		console.log(msg);
 	}
-}
\ No newline at end of file
+}
\ No newline at end of file